@@ -93,6 +93,7 @@ class CallApiImpl constructor(
     }
 
     private val kCurrentMessageVersion = "1.0"
+    private val kSupportedMessageVersions = setOf(kCurrentMessageVersion, CallMessageCodec.kMessageVersion)
     private val kMessageAction = "message_action"
     private val kMessageVersion = "message_version"
     private val kMessageTs = "message_timestamp"
@@ -864,8 +865,13 @@ class CallApiImpl constructor(
         messageId %= Int.MAX_VALUE
         val map = message.toMutableMap()
         map[kMessageId] = messageId
+        val signalClient = config?.signalClient ?: return
+        if (config?.messageVersion == CallMessageCodec.kMessageVersion && signalClient.isBinaryMessageSupported()) {
+            signalClient.sendMessage(userId, CallMessageCodec.encode(map), completion)
+            return
+        }
         val jsonString = Gson().toJson(map).toString()
-        config?.signalClient?.sendMessage(userId, jsonString, completion)
+        signalClient.sendMessage(userId, jsonString, completion)
     }
 
     //MARK: on Message
@@ -1311,9 +1317,27 @@ class CallApiImpl constructor(
 //        notifyEvent(CallEvent.RtmLost)
 //    }
 
+    override fun onMessageReceive(message: ByteArray) {
+        if (!CallMessageCodec.isBinaryMessage(message)) {
+            onMessageReceive(String(message, Charsets.UTF_8))
+            return
+        }
+        val messageDic = try {
+            CallMessageCodec.decode(message)
+        } catch (e: Exception) {
+            callWarningPrint("fail to decode binary message: ${e.message}")
+            return
+        }
+        callPrint("on event message: $messageDic")
+        onMessageReceive(messageDic, messageDic.toString())
+    }
+
     override fun onMessageReceive(message: String) {
         callPrint("on event message: $message")
-        val messageDic = jsonStringToMap(message)
+        onMessageReceive(jsonStringToMap(message), message)
+    }
+
+    private fun onMessageReceive(messageDic: Map<String, Any>, message: String) {
         val messageAction = messageDic[kMessageAction] as? Int ?: 0
         val msgTs = messageDic[kMessageTs] as? Long
         val userId = messageDic[kFromUserId] as? Int
@@ -1323,7 +1347,7 @@ class CallApiImpl constructor(
             return
         }
         //TODO: compatible other message version
-        if (kCurrentMessageVersion != messageVersion)  { return }
+        if (!kSupportedMessageVersions.contains(messageVersion))  { return }
         CallAction.fromValue(messageAction)?.let {
             processRespEvent(it, messageDic)
         }
@@ -12,7 +12,10 @@ open class CallConfig(
     // RTC engine instance
     var rtcEngine: RtcEngineEx,
     // ISignalClient instance
-    var signalClient: ISignalClient
+    var signalClient: ISignalClient,
+    // [Optional] Version of the sent signaling messages, "1.0" is JSON, "2.0" is the compact binary format.
+    // Only use "2.0" when all receivers support it, falls back to "1.0" if signalClient cannot send binary messages
+    var messageVersion: String = "1.0"
 ){}
 open class PrepareConfig(
     // Own RTC channel name, used when calling remote user to join this RTC channel
@@ -0,0 +1,146 @@
+package io.agora.onetoone
+
+import com.google.gson.Gson
+import org.json.JSONObject
+import java.io.ByteArrayOutputStream
+
+/**
+ * Compact binary signaling format (message_version 2.0), shared with the backend BinaryMessageCodec
+ * 紧凑二进制信令格式(message_version 2.0)，与后端 BinaryMessageCodec 保持一致
+ *
+ * The first byte is MAGIC, which never starts a 1.0 JSON message ('{'), followed by fields.
+ * Each field is a varint key (field number << 3 | wire type) and a value, wire type 0 is a zigzag varint,
+ * wire type 2 is a varint length followed by UTF-8 bytes. Unknown fields are skipped.
+ * fromUserExtension and keys without a field number are carried as JSON objects.
+ */
+object CallMessageCodec {
+    const val kMessageVersion = "2.0"
+    private const val MAGIC: Byte = 0x02
+
+    private const val WIRE_VARINT = 0
+    private const val WIRE_BYTES = 2
+
+    private const val FIELD_FROM_USER_EXTENSION = 7
+    private const val FIELD_EXTRA = 15
+
+    private const val kMessageVersionKey = "message_version"
+    private const val kMessageTsKey = "message_timestamp"
+
+    // Field numbers, must stay in sync with the backend
+    // 字段编号，需与后端保持一致
+    private val fieldKeys = mapOf(
+        1 to "message_action",
+        2 to kMessageTsKey,
+        3 to CallApiImpl.kFromUserId,
+        4 to CallApiImpl.kRemoteUserId,
+        5 to CallApiImpl.kFromRoomId,
+        6 to "callId",
+        FIELD_FROM_USER_EXTENSION to CallApiImpl.kFromUserExtension,
+        8 to CallApiImpl.kHangupReason,
+        9 to CallApiImpl.kRejectReason,
+        10 to CallApiImpl.kRejectByInternal,
+        11 to CallApiImpl.kCancelCallByInternal,
+        12 to "messageId"
+    )
+    private val keyFields = fieldKeys.entries.associate { (field, key) -> key to field }
+
+    fun isBinaryMessage(message: ByteArray): Boolean {
+        return message.isNotEmpty() && message[0] == MAGIC
+    }
+
+    /**
+     * Encode a message map, message_version is implied by the format and not written
+     * 编码消息，message_version 由格式隐含，不写入
+     */
+    fun encode(message: Map<String, Any>): ByteArray {
+        val out = ByteArrayOutputStream(128)
+        out.write(MAGIC.toInt())
+        val extra = mutableMapOf<String, Any>()
+        message.forEach { (key, value) ->
+            if (key == kMessageVersionKey) return@forEach
+            val field = keyFields[key]
+            when {
+                field == null -> extra[key] = value
+                field == FIELD_FROM_USER_EXTENSION -> writeBytesField(out, field, Gson().toJson(value).toByteArray())
+                value is Number -> writeVarintField(out, field, value.toLong())
+                else -> writeBytesField(out, field, value.toString().toByteArray())
+            }
+        }
+        if (extra.isNotEmpty()) {
+            writeBytesField(out, FIELD_EXTRA, Gson().toJson(extra).toByteArray())
+        }
+        return out.toByteArray()
+    }
+
+    /**
+     * Decode into the same map as a 1.0 JSON message parsed by org.json
+     * 解码为与 1.0 JSON 消息相同结构的 map
+     */
+    fun decode(message: ByteArray): Map<String, Any> {
+        require(isBinaryMessage(message)) { "not a binary message" }
+        val map = mutableMapOf<String, Any>(kMessageVersionKey to kMessageVersion)
+        val position = intArrayOf(1)
+        while (position[0] < message.size) {
+            val key = readVarint(message, position)
+            val field = (key ushr 3).toInt()
+            when ((key and 0x7).toInt()) {
+                WIRE_VARINT -> {
+                    val raw = readVarint(message, position)
+                    val value = (raw ushr 1) xor -(raw and 1)
+                    fieldKeys[field]?.let { name ->
+                        map[name] = if (name == kMessageTsKey) value else value.toInt()
+                    }
+                }
+                WIRE_BYTES -> {
+                    val length = readVarint(message, position).toInt()
+                    require(length >= 0 && position[0] + length <= message.size) { "truncated binary message" }
+                    val text = String(message, position[0], length, Charsets.UTF_8)
+                    position[0] += length
+                    when (field) {
+                        FIELD_EXTRA -> {
+                            val json = JSONObject(text)
+                            json.keys().forEach { map[it] = json.get(it) }
+                        }
+                        FIELD_FROM_USER_EXTENSION -> map[fieldKeys.getValue(field)] = JSONObject(text)
+                        else -> fieldKeys[field]?.let { map[it] = text }
+                    }
+                }
+                else -> throw IllegalArgumentException("unsupported wire type")
+            }
+        }
+        return map
+    }
+
+    private fun writeVarintField(out: ByteArrayOutputStream, field: Int, value: Long) {
+        writeVarint(out, (field.toLong() shl 3) or WIRE_VARINT.toLong())
+        writeVarint(out, (value shl 1) xor (value shr 63))
+    }
+
+    private fun writeBytesField(out: ByteArrayOutputStream, field: Int, value: ByteArray) {
+        writeVarint(out, (field.toLong() shl 3) or WIRE_BYTES.toLong())
+        writeVarint(out, value.size.toLong())
+        out.write(value, 0, value.size)
+    }
+
+    private fun writeVarint(out: ByteArrayOutputStream, value: Long) {
+        var v = value
+        while (v and 0x7FL.inv() != 0L) {
+            out.write(((v and 0x7F) or 0x80).toInt())
+            v = v ushr 7
+        }
+        out.write(v.toInt())
+    }
+
+    private fun readVarint(message: ByteArray, position: IntArray): Long {
+        var value = 0L
+        var shift = 0
+        while (shift < 64) {
+            require(position[0] < message.size) { "truncated binary message" }
+            val b = message[position[0]++].toInt()
+            value = value or ((b and 0x7F).toLong() shl shift)
+            if (b and 0x80 == 0) return value
+            shift += 7
+        }
+        throw IllegalArgumentException("malformed varint")
+    }
+}
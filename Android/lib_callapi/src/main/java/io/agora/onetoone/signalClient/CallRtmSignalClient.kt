@@ -41,19 +41,38 @@ class CallRtmSignalClient(
         innerSendMessage(userId, message, completion)
     }
 
+    override fun isBinaryMessageSupported(): Boolean = true
+
+    override fun sendMessage(
+        userId: String,
+        message: ByteArray,
+        completion: ((AGError?) -> Unit)?
+    ) {
+        if (userId.isEmpty() || userId == "0") {
+            val errorStr = "sendMessage fail, invalid userId[$userId]"
+            callMessagePrint(errorStr)
+            completion?.invoke(AGError(errorStr, -1))
+            return
+        }
+        innerSendMessage(userId, message, "${message.size} bytes", completion)
+    }
+
     // --------------- MARK: AgoraRtmClientDelegate -------------
     override fun onMessageEvent(event: MessageEvent?) {
         runOnUiThread {
             val message = event?.message?.data as? ByteArray ?: return@runOnUiThread
-            val jsonString = String(message, Charsets.UTF_8)
             listeners.forEach {
-                it.onMessageReceive(jsonString)
+                it.onMessageReceive(message)
             }
         }
     }
 
     // --------------- inner private ---------------
     private fun innerSendMessage(userId: String, message: String, completion:((AGError?)->Unit)?) {
+        innerSendMessage(userId, message.toByteArray(), message, completion)
+    }
+
+    private fun innerSendMessage(userId: String, message: ByteArray, description: String, completion:((AGError?)->Unit)?) {
         if (userId.isEmpty()) {
             completion?.invoke(AGError("send message fail! userId is empty", -1))
             return
@@ -61,8 +80,8 @@ class CallRtmSignalClient(
         val options = PublishOptions()
         options.setChannelType(RtmConstants.RtmChannelType.USER)
         val startTime = System.currentTimeMillis()
-        callMessagePrint("_sendMessage to '$userId', message: $message")
-        rtmClient.publish(userId, message.toByteArray(), options, object : ResultCallback<Void> {
+        callMessagePrint("_sendMessage to '$userId', message: $description")
+        rtmClient.publish(userId, message, options, object : ResultCallback<Void> {
             override fun onSuccess(p0: Void?) {
                 callMessagePrint("_sendMessage publish cost ${startTime.getCostMilliseconds()} ms")
                 runOnUiThread { completion?.invoke(null) }
@@ -12,6 +12,14 @@ interface ISignalClientListener {
      */
     fun onMessageReceive(message: String)
 
+    /**
+     * Callback for receiving raw messages, binary (message_version 2.0) messages are only delivered here
+     * @param message The raw bytes of the message
+     */
+    fun onMessageReceive(message: ByteArray) {
+        onMessageReceive(String(message, Charsets.UTF_8))
+    }
+
     /**
      * Signaling log callback
      * @param message The content of the log message
@@ -32,6 +40,21 @@ interface ISignalClient {
      */
     fun sendMessage(userId: String, message: String, completion: ((AGError?) -> Unit)?)
 
+    /**
+     * Whether raw binary messages can be sent, CallApi falls back to 1.0 JSON messages if not
+     */
+    fun isBinaryMessageSupported(): Boolean = false
+
+    /**
+     * Send a binary message (message_version 2.0) to the signaling system from CallApi
+     * @param userId The target user's ID
+     * @param message The encoded message
+     * @param completion Completion callback
+     */
+    fun sendMessage(userId: String, message: ByteArray, completion: ((AGError?) -> Unit)?) {
+        completion?.invoke(AGError("binary message is not supported", -1))
+    }
+
     /**
      * Register a callback for the signaling system
      * @param listener ISignalClientListener object
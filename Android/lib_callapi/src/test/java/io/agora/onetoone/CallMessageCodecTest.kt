@@ -0,0 +1,156 @@
+package io.agora.onetoone
+
+import org.json.JSONObject
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CallMessageCodecTest {
+    companion object {
+        private const val TIMESTAMP = 1700000000000L
+
+        // Same bytes as the backend BinaryMessageCodecTest, update both sides when the format changes
+        // 与后端 BinaryMessageCodecTest 中的字节一致，修改格式时两端需同时更新
+        val GOLDEN_CALL = bytes(
+            0x02,                                           // MAGIC
+            0x08, 0x00,                                     // 1 message_action 0
+            0x3A, 0x09, 0x7B, 0x22, 0x6B, 0x22, 0x3A, 0x22, 0x76, 0x22, 0x7D, // 7 fromUserExtension {"k":"v"}
+            0x10, 0x80, 0xA0, 0xAB, 0xFE, 0xF9, 0x62,       // 2 message_timestamp 1700000000000
+            0x18, 0x09,                                     // 3 fromUserId -5
+            0x2A, 0x06, 0x72, 0x6F, 0x6F, 0x6D, 0x5F, 0x31, // 5 fromRoomId "room_1"
+            0x32, 0x06, 0x63, 0x61, 0x6C, 0x6C, 0x5F, 0x31, // 6 callId "call_1"
+            0x20, 0xFE, 0xFF, 0xFF, 0xFF, 0x0F              // 4 remoteUserId 2147483647
+        )
+        val GOLDEN_HANGUP = bytes(
+            0x02,                                           // MAGIC
+            0x08, 0x08,                                     // 1 message_action 4
+            0x10, 0x80, 0xA0, 0xAB, 0xFE, 0xF9, 0x62,       // 2 message_timestamp 1700000000000
+            0x18, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F,             // 3 fromUserId -2147483648
+            0x2A, 0x01, 0x72,                               // 5 fromRoomId "r"
+            0x32, 0x01, 0x63,                               // 6 callId "c"
+            0x42, 0x03, 0xE5, 0xBF, 0x99                    // 8 hangupReason "忙"
+        )
+
+        private fun bytes(vararg values: Int) = ByteArray(values.size) { values[it].toByte() }
+    }
+
+    @Test
+    fun encodesGoldenCall() {
+        val message = linkedMapOf<String, Any>(
+            "message_action" to 0,
+            "message_version" to CallMessageCodec.kMessageVersion,
+            CallApiImpl.kFromUserExtension to mapOf("k" to "v"),
+            "message_timestamp" to TIMESTAMP,
+            CallApiImpl.kFromUserId to -5,
+            CallApiImpl.kFromRoomId to "room_1",
+            "callId" to "call_1",
+            CallApiImpl.kRemoteUserId to Int.MAX_VALUE
+        )
+
+        assertArrayEquals(GOLDEN_CALL, CallMessageCodec.encode(message))
+    }
+
+    @Test
+    fun encodesGoldenHangup() {
+        val message = linkedMapOf<String, Any>(
+            "message_action" to 4,
+            "message_timestamp" to TIMESTAMP,
+            CallApiImpl.kFromUserId to Int.MIN_VALUE,
+            CallApiImpl.kFromRoomId to "r",
+            "callId" to "c",
+            CallApiImpl.kHangupReason to "忙"
+        )
+
+        assertArrayEquals(GOLDEN_HANGUP, CallMessageCodec.encode(message))
+    }
+
+    @Test
+    fun decodesGoldenCall() {
+        val message = CallMessageCodec.decode(GOLDEN_CALL)
+
+        assertEquals(8, message.size)
+        assertEquals("2.0", message["message_version"])
+        assertEquals(0, message["message_action"])
+        assertEquals(TIMESTAMP, message["message_timestamp"])
+        assertEquals(-5, message[CallApiImpl.kFromUserId])
+        assertEquals(Int.MAX_VALUE, message[CallApiImpl.kRemoteUserId])
+        assertEquals("room_1", message[CallApiImpl.kFromRoomId])
+        assertEquals("call_1", message["callId"])
+        assertEquals("v", (message[CallApiImpl.kFromUserExtension] as JSONObject).getString("k"))
+    }
+
+    @Test
+    fun decodesGoldenHangup() {
+        val message = CallMessageCodec.decode(GOLDEN_HANGUP)
+
+        assertEquals(7, message.size)
+        assertEquals(4, message["message_action"])
+        assertEquals(TIMESTAMP, message["message_timestamp"])
+        assertEquals(Int.MIN_VALUE, message[CallApiImpl.kFromUserId])
+        assertEquals("r", message[CallApiImpl.kFromRoomId])
+        assertEquals("c", message["callId"])
+        assertEquals("忙", message[CallApiImpl.kHangupReason])
+    }
+
+    @Test
+    fun roundTripsUserIds() {
+        val userIds = intArrayOf(0, 1, -1, 63, -64, 64, Int.MAX_VALUE, Int.MIN_VALUE, 1_000_000_007)
+        for (fromUserId in userIds) {
+            for (remoteUserId in userIds) {
+                val message = CallMessageCodec.decode(CallMessageCodec.encode(mapOf(
+                    "message_action" to 0,
+                    CallApiImpl.kFromUserId to fromUserId,
+                    CallApiImpl.kRemoteUserId to remoteUserId
+                )))
+
+                assertEquals(fromUserId, message[CallApiImpl.kFromUserId])
+                assertEquals(remoteUserId, message[CallApiImpl.kRemoteUserId])
+            }
+        }
+    }
+
+    @Test
+    fun roundTripsEmptyFields() {
+        val message = CallMessageCodec.decode(CallMessageCodec.encode(mapOf(
+            "message_action" to 4,
+            CallApiImpl.kFromRoomId to "",
+            "callId" to "",
+            CallApiImpl.kFromUserExtension to emptyMap<String, Any>()
+        )))
+
+        assertEquals("", message[CallApiImpl.kFromRoomId])
+        assertEquals("", message["callId"])
+        assertEquals(0, (message[CallApiImpl.kFromUserExtension] as JSONObject).length())
+        assertFalse(message.containsKey(CallApiImpl.kHangupReason))
+    }
+
+    @Test
+    fun roundTripsUnknownKeysAsExtra() {
+        val message = CallMessageCodec.decode(CallMessageCodec.encode(mapOf(
+            "message_action" to 0,
+            "custom" to "value",
+            CallApiImpl.kRejectByInternal to 1
+        )))
+
+        assertEquals("value", message["custom"])
+        assertEquals(1, message[CallApiImpl.kRejectByInternal])
+    }
+
+    @Test
+    fun skipsUnknownFields() {
+        // A varint in field 13 and empty bytes in field 14
+        // 字段 13 的 varint 与字段 14 的字节串
+        val message = GOLDEN_HANGUP + bytes(0x68, 0x02, 0x72, 0x00)
+
+        assertEquals(CallMessageCodec.decode(GOLDEN_HANGUP), CallMessageCodec.decode(message))
+    }
+
+    @Test
+    fun tellsBinaryFromJsonMessages() {
+        assertTrue(CallMessageCodec.isBinaryMessage(GOLDEN_CALL))
+        assertFalse(CallMessageCodec.isBinaryMessage("{}".toByteArray()))
+        assertFalse(CallMessageCodec.isBinaryMessage(ByteArray(0)))
+    }
+}
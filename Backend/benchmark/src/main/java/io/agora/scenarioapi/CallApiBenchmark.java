@@ -0,0 +1,140 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+
+/**
+ * End to end cost of call/hangup on CallApiImpl, payload building, serialization, publish and
+ * callback dispatch, against an RtmClient that completes inline
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CallApiBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    // fromUserExtension 的字段数
+    @Param({"0", "4", "32"})
+    public int extensionSize;
+
+    @Param({"1.0", "2.0"})
+    public String messageVersion;
+
+    private CallApiImpl callApi;
+    private LocalRtmClient rtmClient;
+    private String roomId;
+    private String callId;
+    private List<CallPair> callPairs;
+    private int userId;
+    private Blackhole blackhole;
+    private ResultCallback<Void> resultCallback;
+    private ResultCallback<List<CallResult>> batchResultCallback;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) throws Exception {
+        this.blackhole = blackhole;
+        // 默认配置下在调用线程直接回调
+        this.rtmClient = new LocalRtmClient();
+
+        Map<String, Object> fromUserExtension = null;
+        if (extensionSize > 0) {
+            fromUserExtension = new HashMap<>();
+            for (int i = 0; i < extensionSize; i++) {
+                fromUserExtension.put("key" + i, "value" + i);
+            }
+        }
+
+        CallApiConfig callApiConfig = new CallApiConfig();
+        callApiConfig.setRtmClient(rtmClient);
+        callApiConfig.setFromUserExtension(fromUserExtension);
+        callApiConfig.setMessageVersion(messageVersion);
+        callApi = new CallApiImpl();
+        callApi.initialize(callApiConfig, null);
+
+        roomId = "room_" + UUID.randomUUID();
+        callId = UUID.randomUUID().toString();
+        callPairs = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            callPairs.add(new CallPair(10000 + i, 20000 + i, roomId, UUID.randomUUID().toString(), "reasonA", "reasonB"));
+        }
+
+        resultCallback = new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                CallApiBenchmark.this.blackhole.consume(responseInfo);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                CallApiBenchmark.this.blackhole.consume(errorInfo);
+            }
+        };
+        batchResultCallback = new ResultCallback<List<CallResult>>() {
+            @Override
+            public void onSuccess(List<CallResult> callResults) {
+                CallApiBenchmark.this.blackhole.consume(callResults);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                CallApiBenchmark.this.blackhole.consume(errorInfo);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        callApi.deinitialize(null);
+        rtmClient.shutdown();
+    }
+
+    @Benchmark
+    public void call() {
+        userId++;
+        callApi.call(userId, userId + 1, roomId, callId, resultCallback, resultCallback);
+    }
+
+    @Benchmark
+    public void hangup() {
+        userId++;
+        callApi.hangup(userId, "reasonA", userId + 1, "reasonB", roomId, callId, resultCallback, resultCallback);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void callBatch() {
+        callApi.callBatch(callPairs, batchResultCallback);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void hangupBatch() {
+        callApi.hangupBatch(callPairs, batchResultCallback);
+    }
+}
@@ -0,0 +1,85 @@
+package io.agora.scenarioapi;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.fastjson2.JSON;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Payload building only, the HashMap + fastjson2 path used before the templates against the encoders
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageEncodingBenchmark {
+    // fromUserExtension 的字段数
+    @Param({"0", "4", "32"})
+    public int extensionSize;
+
+    private Map<String, Object> fromUserExtension;
+    private CallMessageEncoder jsonEncoder;
+    private CallMessageEncoder binaryEncoder;
+    private String roomId;
+    private String callId;
+    private long messageTimestamp;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (extensionSize > 0) {
+            fromUserExtension = new HashMap<>();
+            for (int i = 0; i < extensionSize; i++) {
+                fromUserExtension.put("key" + i, "value" + i);
+            }
+        }
+
+        jsonEncoder = CallMessageEncoder.create(CallAction.CALL.getValue(), "1.0", fromUserExtension);
+        binaryEncoder = CallMessageEncoder.create(CallAction.CALL.getValue(), "2.0", fromUserExtension);
+        roomId = "room_" + UUID.randomUUID();
+        callId = UUID.randomUUID().toString();
+        messageTimestamp = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public byte[] hashMapJson() {
+        Map<String, Object> messageMap = new HashMap<>();
+        messageMap.put("message_action", CallAction.CALL.getValue());
+        messageMap.put("message_version", "1.0");
+        messageMap.put("message_timestamp", messageTimestamp);
+        messageMap.put("fromUserId", 4111);
+        messageMap.put("remoteUserId", 4222);
+        messageMap.put("fromRoomId", roomId);
+        messageMap.put("callId", callId);
+        if (fromUserExtension != null) {
+            messageMap.put("fromUserExtension", fromUserExtension);
+        }
+        return JSON.toJSONBytes(messageMap);
+    }
+
+    @Benchmark
+    public byte[] templateJson() {
+        return jsonEncoder.encodeCall(messageTimestamp, 4111, 4222, roomId, callId);
+    }
+
+    @Benchmark
+    public byte[] templateBinary() {
+        return binaryEncoder.encodeCall(messageTimestamp, 4111, 4222, roomId, callId);
+    }
+}
@@ -0,0 +1,275 @@
+package io.agora.scenarioapi;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+
+/**
+ * CompletableFuture facade of ICallApi, the results of both users are combined into one CallResult
+ * so that calls can be composed without blocking any thread.
+ * Failures of RTM operations complete the future exceptionally with CallApiException,
+ * failures of call/hangup messages are reported in CallResult.
+ */
+public class AsyncCallApi {
+    private final ICallApi callApi;
+
+    public AsyncCallApi(ICallApi callApi) {
+        this.callApi = callApi;
+    }
+
+    /**
+     * Initialize
+     *
+     * @param callApiConfig
+     * @return
+     */
+    public CompletableFuture<Void> initialize(CallApiConfig callApiConfig) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            callApi.initialize(callApiConfig, _voidCallback(future));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Deinitialize
+     *
+     * @return
+     */
+    public CompletableFuture<Void> deinitialize() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            callApi.deinitialize(_voidCallback(future));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Call
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @param callId
+     * @return
+     */
+    public CompletableFuture<CallResult> call(Integer userIdA, Integer userIdB, String roomId, String callId) {
+        CompletableFuture<CallResult> future = new CompletableFuture<>();
+        CallBatchCallback batchCallback = new CallBatchCallback(1, _singleCallback(future));
+        CallResult callResult = batchCallback.add(new CallPair(userIdA, userIdB, roomId, callId));
+
+        // resultCallbackUserIdA reports the message published to userIdB and vice versa
+        callApi.call(userIdA, userIdB, roomId, callId,
+                batchCallback.callbackB(callResult), batchCallback.callbackA(callResult));
+        return future;
+    }
+
+    /**
+     * Call both users as one operation, a user that got the only delivered invitation is hung up again
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @param callId
+     * @return
+     */
+    public CompletableFuture<CallResult> callPaired(int userIdA, int userIdB, String roomId, String callId) {
+        CompletableFuture<CallResult> future = new CompletableFuture<>();
+        callApi.callPaired(userIdA, userIdB, roomId, callId, new ResultCallback<CallResult>() {
+            @Override
+            public void onSuccess(CallResult callResult) {
+                future.complete(callResult);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                future.completeExceptionally(new CallApiException(errorInfo));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * hangup
+     *
+     * @param userIdA
+     * @param reasonA
+     * @param userIdB
+     * @param reasonB
+     * @param roomId
+     * @param callId
+     * @return
+     */
+    public CompletableFuture<CallResult> hangup(Integer userIdA, String reasonA, Integer userIdB, String reasonB,
+                                                String roomId, String callId) {
+        CompletableFuture<CallResult> future = new CompletableFuture<>();
+        CallBatchCallback batchCallback = new CallBatchCallback(1, _singleCallback(future));
+        CallResult callResult = batchCallback.add(new CallPair(userIdA, userIdB, roomId, callId, reasonA, reasonB));
+
+        // resultCallbackUserIdA reports the message published to userIdB and vice versa
+        callApi.hangup(userIdA, reasonA, userIdB, reasonB, roomId, callId,
+                batchCallback.callbackB(callResult), batchCallback.callbackA(callResult));
+        return future;
+    }
+
+    /**
+     * hangup by callId, requires callSessionConfig, the users and room of the returned CallResult are taken
+     * from the call session
+     *
+     * @param callId
+     * @param reasonA
+     * @param reasonB
+     * @return
+     */
+    public CompletableFuture<CallResult> hangup(String callId, String reasonA, String reasonB) {
+        CompletableFuture<CallResult> future = new CompletableFuture<>();
+        CallBatchCallback batchCallback = new CallBatchCallback(1, _singleCallback(future));
+        CallSession session = _session(callId);
+        CallResult callResult = batchCallback.add(session == null
+                ? new CallPair(null, null, null, callId, reasonA, reasonB)
+                : new CallPair(session.getUserIdA(), session.getUserIdB(), session.getRoomId(), callId, reasonA,
+                reasonB));
+
+        // resultCallbackUserIdA reports the message published to userIdB and vice versa
+        callApi.hangup(callId, reasonA, reasonB, batchCallback.callbackB(callResult), batchCallback.callbackA(callResult));
+        return future;
+    }
+
+    /**
+     * Hang up every active call of a room, requires callSessionConfig
+     *
+     * @param roomId
+     * @param reason
+     * @return
+     */
+    public CompletableFuture<List<CallResult>> hangupRoom(String roomId, String reason) {
+        CompletableFuture<List<CallResult>> future = new CompletableFuture<>();
+        callApi.hangupRoom(roomId, reason, _listCallback(future));
+        return future;
+    }
+
+    /**
+     * Hang up the active call of a user, requires callSessionConfig
+     *
+     * @param userId
+     * @param reason
+     * @return
+     */
+    public CompletableFuture<List<CallResult>> hangupUser(int userId, String reason) {
+        CompletableFuture<List<CallResult>> future = new CompletableFuture<>();
+        callApi.hangupUser(userId, reason, _listCallback(future));
+        return future;
+    }
+
+    /**
+     * Call in batch
+     *
+     * @param callPairs
+     * @return
+     */
+    public CompletableFuture<List<CallResult>> callBatch(Collection<CallPair> callPairs) {
+        CompletableFuture<List<CallResult>> future = new CompletableFuture<>();
+        callApi.callBatch(callPairs, _listCallback(future));
+        return future;
+    }
+
+    /**
+     * Hangup in batch
+     *
+     * @param callPairs
+     * @return
+     */
+    public CompletableFuture<List<CallResult>> hangupBatch(Collection<CallPair> callPairs) {
+        CompletableFuture<List<CallResult>> future = new CompletableFuture<>();
+        callApi.hangupBatch(callPairs, _listCallback(future));
+        return future;
+    }
+
+    /**
+     * Renew token
+     *
+     * @param rtmToken
+     * @return
+     */
+    public CompletableFuture<Void> renewToken(String rtmToken) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        callApi.renewToken(rtmToken, _voidCallback(future));
+        return future;
+    }
+
+    /**
+     * Renew token of the given rtm identity
+     *
+     * @param userId
+     * @param rtmToken
+     * @return
+     */
+    public CompletableFuture<Void> renewToken(String userId, String rtmToken) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        callApi.renewToken(userId, rtmToken, _voidCallback(future));
+        return future;
+    }
+
+    /**
+     * Session of a callId, looked up before hangup ends it
+     *
+     * @param callId
+     * @return null if not found or the call api keeps no sessions
+     */
+    private CallSession _session(String callId) {
+        if (!(callApi instanceof CallApiImpl)) {
+            return null;
+        }
+        CallSessionRegistry registry = ((CallApiImpl) callApi).getCallSessionRegistry();
+        return registry == null ? null : registry.getSession(callId);
+    }
+
+    private static ResultCallback<Void> _voidCallback(CompletableFuture<Void> future) {
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                future.complete(null);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                future.completeExceptionally(new CallApiException(errorInfo));
+            }
+        };
+    }
+
+    private static ResultCallback<List<CallResult>> _listCallback(CompletableFuture<List<CallResult>> future) {
+        return new ResultCallback<List<CallResult>>() {
+            @Override
+            public void onSuccess(List<CallResult> callResults) {
+                future.complete(callResults);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                future.completeExceptionally(new CallApiException(errorInfo));
+            }
+        };
+    }
+
+    private static ResultCallback<List<CallResult>> _singleCallback(CompletableFuture<CallResult> future) {
+        return new ResultCallback<List<CallResult>>() {
+            @Override
+            public void onSuccess(List<CallResult> callResults) {
+                future.complete(callResults.get(0));
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                future.completeExceptionally(new CallApiException(errorInfo));
+            }
+        };
+    }
+}
@@ -0,0 +1,244 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * Compact binary signaling format, message_version 2.0, shared with the Android CallMessageCodec.
+ * <p>
+ * The first byte is {@link #MAGIC}, which never starts a 1.0 JSON message ('{'), followed by fields.
+ * Each field is a varint key (field number &lt;&lt; 3 | wire type) and a value, wire type 0 is a
+ * zigzag varint, wire type 2 is a varint length followed by UTF-8 bytes. Unknown fields are skipped.
+ * fromUserExtension and keys without a field number are carried as JSON objects.
+ */
+public class BinaryMessageCodec {
+    public static final String MESSAGE_VERSION = "2.0";
+    public static final byte MAGIC = 0x02;
+
+    static final int WIRE_VARINT = 0;
+    static final int WIRE_BYTES = 2;
+
+    static final int FIELD_MESSAGE_ACTION = 1;
+    static final int FIELD_MESSAGE_TIMESTAMP = 2;
+    static final int FIELD_FROM_USER_ID = 3;
+    static final int FIELD_REMOTE_USER_ID = 4;
+    static final int FIELD_FROM_ROOM_ID = 5;
+    static final int FIELD_CALL_ID = 6;
+    static final int FIELD_FROM_USER_EXTENSION = 7;
+    static final int FIELD_HANGUP_REASON = 8;
+    static final int FIELD_REJECT_REASON = 9;
+    static final int FIELD_REJECT_BY_INTERNAL = 10;
+    static final int FIELD_CANCEL_CALL_BY_INTERNAL = 11;
+    static final int FIELD_MESSAGE_ID = 12;
+    static final int FIELD_EXTRA = 15;
+
+    private static final String KEY_MESSAGE_VERSION = "message_version";
+    private static final String[] FIELD_KEYS = new String[FIELD_EXTRA + 1];
+    // 按字段号区分数值类型, true 为 long, false 为 int
+    private static final boolean[] FIELD_IS_LONG = new boolean[FIELD_EXTRA + 1];
+    private static final Map<String, Integer> KEY_FIELDS = new HashMap<>();
+
+    static {
+        _field(FIELD_MESSAGE_ACTION, "message_action");
+        _field(FIELD_MESSAGE_TIMESTAMP, "message_timestamp");
+        _field(FIELD_FROM_USER_ID, "fromUserId");
+        _field(FIELD_REMOTE_USER_ID, "remoteUserId");
+        _field(FIELD_FROM_ROOM_ID, "fromRoomId");
+        _field(FIELD_CALL_ID, "callId");
+        _field(FIELD_FROM_USER_EXTENSION, "fromUserExtension");
+        _field(FIELD_HANGUP_REASON, "hangupReason");
+        _field(FIELD_REJECT_REASON, "rejectReason");
+        _field(FIELD_REJECT_BY_INTERNAL, "rejectByInternal");
+        _field(FIELD_CANCEL_CALL_BY_INTERNAL, "cancelCallByInternal");
+        _field(FIELD_MESSAGE_ID, "messageId");
+        FIELD_IS_LONG[FIELD_MESSAGE_TIMESTAMP] = true;
+    }
+
+    private BinaryMessageCodec() {
+    }
+
+    /**
+     * Whether the message is encoded in the binary format
+     *
+     * @param message
+     * @return
+     */
+    public static boolean isBinaryMessage(byte[] message) {
+        return message != null && message.length > 0 && message[0] == MAGIC;
+    }
+
+    /**
+     * Encode a message map, message_version is implied by the format and not written
+     *
+     * @param messageMap
+     * @return
+     */
+    public static byte[] encode(Map<String, Object> messageMap) {
+        Writer writer = new Writer(128);
+        writer.writeByte(MAGIC);
+
+        Map<String, Object> extra = null;
+        for (Map.Entry<String, Object> entry : messageMap.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null || KEY_MESSAGE_VERSION.equals(key)) {
+                continue;
+            }
+
+            Integer field = KEY_FIELDS.get(key);
+            if (field == null) {
+                if (extra == null) {
+                    extra = new LinkedHashMap<>();
+                }
+                extra.put(key, value);
+            } else if (field == FIELD_FROM_USER_EXTENSION) {
+                writer.writeBytesField(field, JSON.toJSONBytes(value));
+            } else if (value instanceof Number) {
+                writer.writeVarintField(field, ((Number) value).longValue());
+            } else {
+                writer.writeStringField(field, value.toString());
+            }
+        }
+
+        if (extra != null) {
+            writer.writeBytesField(FIELD_EXTRA, JSON.toJSONBytes(extra));
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decode a binary message into the same map as the 1.0 JSON message
+     *
+     * @param message
+     * @return
+     */
+    public static Map<String, Object> decode(byte[] message) {
+        if (!isBinaryMessage(message)) {
+            throw new IllegalArgumentException("not a binary message");
+        }
+
+        Map<String, Object> messageMap = new HashMap<>();
+        messageMap.put(KEY_MESSAGE_VERSION, MESSAGE_VERSION);
+
+        int[] position = {1};
+        while (position[0] < message.length) {
+            long key = _readVarint(message, position);
+            int field = (int) (key >>> 3);
+            int wireType = (int) (key & 0x7);
+
+            if (wireType == WIRE_VARINT) {
+                long raw = _readVarint(message, position);
+                long value = (raw >>> 1) ^ -(raw & 1);
+                if (field < FIELD_KEYS.length && FIELD_KEYS[field] != null) {
+                    messageMap.put(FIELD_KEYS[field], FIELD_IS_LONG[field] ? (Object) value : (Object) (int) value);
+                }
+            } else if (wireType == WIRE_BYTES) {
+                int length = (int) _readVarint(message, position);
+                if (length < 0 || position[0] + length > message.length) {
+                    throw new IllegalArgumentException("truncated binary message");
+                }
+
+                int offset = position[0];
+                position[0] += length;
+                if (field == FIELD_EXTRA) {
+                    messageMap.putAll(JSON.parseObject(message, offset, length, StandardCharsets.UTF_8));
+                } else if (field == FIELD_FROM_USER_EXTENSION) {
+                    JSONObject fromUserExtension = JSON.parseObject(message, offset, length, StandardCharsets.UTF_8);
+                    messageMap.put(FIELD_KEYS[field], fromUserExtension);
+                } else if (field < FIELD_KEYS.length && FIELD_KEYS[field] != null) {
+                    messageMap.put(FIELD_KEYS[field], new String(message, offset, length, StandardCharsets.UTF_8));
+                }
+            } else {
+                throw new IllegalArgumentException("unsupported wire type " + wireType);
+            }
+        }
+        return messageMap;
+    }
+
+    private static void _field(int field, String key) {
+        FIELD_KEYS[field] = key;
+        KEY_FIELDS.put(key, field);
+    }
+
+    private static long _readVarint(byte[] message, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= message.length) {
+                throw new IllegalArgumentException("truncated binary message");
+            }
+            byte b = message[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    /**
+     * Growable output buffer of the binary format
+     */
+    static class Writer {
+        private byte[] bytes;
+        private int size;
+
+        Writer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeByte(byte b) {
+            _ensure(1);
+            bytes[size++] = b;
+        }
+
+        void writeRaw(byte[] src) {
+            _ensure(src.length);
+            System.arraycopy(src, 0, bytes, size, src.length);
+            size += src.length;
+        }
+
+        void writeVarintField(int field, long value) {
+            _writeVarint((long) field << 3 | WIRE_VARINT);
+            _writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeBytesField(int field, byte[] value) {
+            _writeVarint((long) field << 3 | WIRE_BYTES);
+            _writeVarint(value.length);
+            writeRaw(value);
+        }
+
+        void writeStringField(int field, String value) {
+            writeBytesField(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void _writeVarint(long value) {
+            _ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void _ensure(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+    }
+}
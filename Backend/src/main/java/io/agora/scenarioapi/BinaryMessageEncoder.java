@@ -0,0 +1,71 @@
+package io.agora.scenarioapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.alibaba.fastjson2.JSON;
+
+/**
+ * Template based encoder of the binary signaling messages, message_version 2.0.
+ * The magic byte, message_action and fromUserExtension are encoded once.
+ */
+class BinaryMessageEncoder implements CallMessageEncoder {
+    private static final ThreadLocal<BinaryMessageCodec.Writer> WRITER =
+            ThreadLocal.withInitial(() -> new BinaryMessageCodec.Writer(128));
+
+    // 构建模板时的副本, 调用方原地修改 fromUserExtension 后不再相等, 模板随之重建
+    private final Map<String, Object> fromUserExtension;
+    private final byte[] prefix;
+
+    BinaryMessageEncoder(Integer messageAction, Map<String, Object> fromUserExtension) {
+        BinaryMessageCodec.Writer writer = new BinaryMessageCodec.Writer(64);
+        writer.writeByte(BinaryMessageCodec.MAGIC);
+        writer.writeVarintField(BinaryMessageCodec.FIELD_MESSAGE_ACTION, messageAction);
+        if (fromUserExtension != null) {
+            writer.writeBytesField(BinaryMessageCodec.FIELD_FROM_USER_EXTENSION, JSON.toJSONBytes(fromUserExtension));
+        }
+
+        this.prefix = writer.toByteArray();
+        this.fromUserExtension = fromUserExtension == null ? null : new LinkedHashMap<>(fromUserExtension);
+    }
+
+    @Override
+    public boolean isEncodedWith(String messageVersion, Map<String, Object> fromUserExtension) {
+        if (!BinaryMessageCodec.MESSAGE_VERSION.equals(messageVersion)) {
+            return false;
+        }
+        return this.fromUserExtension == null ? fromUserExtension == null
+                : this.fromUserExtension.equals(fromUserExtension);
+    }
+
+    @Override
+    public byte[] encodeCall(long messageTimestamp, int fromUserId, int remoteUserId, String roomId, String callId) {
+        BinaryMessageCodec.Writer writer = _begin(messageTimestamp, fromUserId, roomId, callId);
+        writer.writeVarintField(BinaryMessageCodec.FIELD_REMOTE_USER_ID, remoteUserId);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeHangup(long messageTimestamp, int fromUserId, String roomId, String callId, String hangupReason) {
+        BinaryMessageCodec.Writer writer = _begin(messageTimestamp, fromUserId, roomId, callId);
+        if (hangupReason != null) {
+            writer.writeStringField(BinaryMessageCodec.FIELD_HANGUP_REASON, hangupReason);
+        }
+        return writer.toByteArray();
+    }
+
+    private BinaryMessageCodec.Writer _begin(long messageTimestamp, int fromUserId, String roomId, String callId) {
+        BinaryMessageCodec.Writer writer = WRITER.get();
+        writer.reset();
+        writer.writeRaw(prefix);
+        writer.writeVarintField(BinaryMessageCodec.FIELD_MESSAGE_TIMESTAMP, messageTimestamp);
+        writer.writeVarintField(BinaryMessageCodec.FIELD_FROM_USER_ID, fromUserId);
+        if (roomId != null) {
+            writer.writeStringField(BinaryMessageCodec.FIELD_FROM_ROOM_ID, roomId);
+        }
+        if (callId != null) {
+            writer.writeStringField(BinaryMessageCodec.FIELD_CALL_ID, callId);
+        }
+        return writer;
+    }
+}
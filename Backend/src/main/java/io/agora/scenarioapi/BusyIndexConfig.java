@@ -0,0 +1,11 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class BusyIndexConfig {
+    // 用户忙碌标记的最长保留时间, 客户端自行挂断时后端无法感知, 超过后标记失效, 实际在 maxBusyMillis/2 到 maxBusyMillis 之间失效
+    private long maxBusyMillis = 600000;
+    // 用户忙碌时回调给 call 的错误信息, 与客户端忙碌拒绝原因一致
+    private String busyReason = "The user is currently busy";
+}
@@ -0,0 +1,227 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact index of the users in a call, one int per userId holding a 32-bit tag of the callId that
+ * made the user busy, 0 when idle. The tags live in pages of 4096 userIds allocated on first use under
+ * a two level directory, so memory follows the spread of the userIds: a million consecutive userIds
+ * take about 4MB. Tags are set and cleared with CAS, acquiring a pair takes no lock, and releasing a
+ * call only clears the users still tagged with its callId, so the late hangup or failure of an old
+ * call does not free a user already in a new one. Two callIds share a tag with a chance of 2^-32.
+ * <p>
+ * Calls ended by the clients are never seen by the backend, so tags expire: they are set in the
+ * current generation, a busy user is one set in the current or previous generation, and every
+ * maxBusyMillis/2 the previous generation is dropped. A user stays busy for at most maxBusyMillis
+ * unless released by hangup.
+ */
+public class BusyUserIndex {
+    private static final int PAGE_BITS = 12;
+    private static final int DIRECTORY_BITS = 10;
+    private static final int DIRECTORY_SIZE = 1 << DIRECTORY_BITS;
+    private static final int DIRECTORY_MASK = DIRECTORY_SIZE - 1;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final long generationMillis;
+    private final AtomicReference<Generation[]> generations;
+    private final AtomicLong nextRotateMillis;
+
+    BusyUserIndex(BusyIndexConfig config) {
+        this.generationMillis = Math.max(config.getMaxBusyMillis() / 2, 1);
+        this.generations = new AtomicReference<>(new Generation[]{new Generation(), new Generation()});
+        this.nextRotateMillis = new AtomicLong(System.currentTimeMillis() + generationMillis);
+    }
+
+    /**
+     * Mark both users busy on behalf of a call
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param callId
+     * @return false if either user is already busy or both are the same user, nothing is marked then
+     */
+    boolean tryAcquire(int userIdA, int userIdB, String callId) {
+        if (userIdA == userIdB) {
+            return false;
+        }
+
+        Generation[] current = _rotateIfDue();
+        if (current[1].get(userIdA) != 0 || current[1].get(userIdB) != 0) {
+            return false;
+        }
+        int tag = _tag(callId);
+        if (!current[0].trySet(userIdA, tag)) {
+            return false;
+        }
+        if (!current[0].trySet(userIdB, tag)) {
+            current[0].clear(userIdA, tag);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether a user is in a call
+     *
+     * @param userId
+     * @return
+     */
+    public boolean isBusy(int userId) {
+        Generation[] current = _rotateIfDue();
+        return current[0].get(userId) != 0 || current[1].get(userId) != 0;
+    }
+
+    /**
+     * Mark a user idle whatever call made it busy, e.g. when the business learns that the client has
+     * hung up
+     *
+     * @param userId
+     * @return
+     */
+    public Void release(int userId) {
+        Generation[] current = generations.get();
+        current[0].clear(userId);
+        current[1].clear(userId);
+        return null;
+    }
+
+    /**
+     * Mark both users of a call idle, a user already busy with another call stays busy
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param callId
+     * @return
+     */
+    Void release(int userIdA, int userIdB, String callId) {
+        Generation[] current = generations.get();
+        int tag = _tag(callId);
+        for (Generation generation : current) {
+            generation.clear(userIdA, tag);
+            generation.clear(userIdB, tag);
+        }
+        return null;
+    }
+
+    /**
+     * Bytes allocated by the pages and directories
+     *
+     * @return
+     */
+    public long getMemoryBytes() {
+        Generation[] current = generations.get();
+        return current[0].memoryBytes.sum() + current[1].memoryBytes.sum();
+    }
+
+    /**
+     * Drop the previous generation once due, the bits of the current one move to the previous
+     *
+     * @return current and previous generation
+     */
+    private Generation[] _rotateIfDue() {
+        Generation[] current = generations.get();
+        long now = System.currentTimeMillis();
+        long rotateMillis = nextRotateMillis.get();
+        if (now < rotateMillis) {
+            return current;
+        }
+
+        // 只有一个线程完成切换, 长时间无调用时一次丢弃两代
+        if (nextRotateMillis.compareAndSet(rotateMillis, now + generationMillis)) {
+            Generation[] rotated = now - rotateMillis >= generationMillis
+                    ? new Generation[]{new Generation(), new Generation()}
+                    : new Generation[]{new Generation(), current[0]};
+            generations.set(rotated);
+            return rotated;
+        }
+        return generations.get();
+    }
+
+    /**
+     * Non zero tag of a callId, a null callId has a tag too
+     *
+     * @param callId
+     * @return
+     */
+    private static int _tag(String callId) {
+        int hash = callId == null ? 0 : callId.hashCode();
+        hash ^= hash >>> 16;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * A tag per unsigned 32-bit userId, [10 bits directory][10 bits page][12 bits in page]
+     */
+    private static class Generation {
+        private final AtomicReferenceArray<AtomicReferenceArray<AtomicIntegerArray>> directory =
+                new AtomicReferenceArray<>(DIRECTORY_SIZE);
+        private final LongAdder memoryBytes = new LongAdder();
+
+        int get(int userId) {
+            AtomicIntegerArray page = _page(userId, false);
+            return page == null ? 0 : page.get(userId & PAGE_MASK);
+        }
+
+        /**
+         * @return false if the user already has a tag
+         */
+        boolean trySet(int userId, int tag) {
+            return _page(userId, true).compareAndSet(userId & PAGE_MASK, 0, tag);
+        }
+
+        /**
+         * Clear the tag of a user only if it is the given one
+         */
+        void clear(int userId, int tag) {
+            AtomicIntegerArray page = _page(userId, false);
+            if (page != null) {
+                page.compareAndSet(userId & PAGE_MASK, tag, 0);
+            }
+        }
+
+        void clear(int userId) {
+            AtomicIntegerArray page = _page(userId, false);
+            if (page != null) {
+                page.set(userId & PAGE_MASK, 0);
+            }
+        }
+
+        private AtomicIntegerArray _page(int userId, boolean isCreate) {
+            int directoryIndex = userId >>> (PAGE_BITS + DIRECTORY_BITS);
+            AtomicReferenceArray<AtomicIntegerArray> pages = directory.get(directoryIndex);
+            if (pages == null) {
+                if (!isCreate) {
+                    return null;
+                }
+                AtomicReferenceArray<AtomicIntegerArray> created = new AtomicReferenceArray<>(DIRECTORY_SIZE);
+                if (directory.compareAndSet(directoryIndex, null, created)) {
+                    memoryBytes.add(4L * DIRECTORY_SIZE);
+                    pages = created;
+                } else {
+                    pages = directory.get(directoryIndex);
+                }
+            }
+
+            int pageIndex = (userId >>> PAGE_BITS) & DIRECTORY_MASK;
+            AtomicIntegerArray page = pages.get(pageIndex);
+            if (page == null) {
+                if (!isCreate) {
+                    return null;
+                }
+                AtomicIntegerArray created = new AtomicIntegerArray(PAGE_SIZE);
+                if (pages.compareAndSet(pageIndex, null, created)) {
+                    memoryBytes.add(4L * PAGE_SIZE);
+                    page = created;
+                } else {
+                    page = pages.get(pageIndex);
+                }
+            }
+            return page;
+        }
+    }
+}
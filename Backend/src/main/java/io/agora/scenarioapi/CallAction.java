@@ -0,0 +1,38 @@
+package io.agora.scenarioapi;
+
+/**
+ * Signaling message action, same values as CallAction of the clients
+ */
+public enum CallAction {
+    CALL(0),
+    CANCEL_CALL(1),
+    ACCEPT(2),
+    REJECT(3),
+    HANGUP(4),
+    AUDIO_CALL(10);
+
+    private final int value;
+
+    CallAction(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Action of the value, null if unknown
+     *
+     * @param value
+     * @return
+     */
+    public static CallAction fromValue(int value) {
+        for (CallAction action : values()) {
+            if (action.value == value) {
+                return action;
+            }
+        }
+        return null;
+    }
+}
@@ -4,7 +4,10 @@ import io.agora.rtm.RtmClient;
 import io.agora.rtm.RtmEventListener;
 import lombok.Data;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Data
 public class CallApiConfig {
@@ -12,12 +15,47 @@ public class CallApiConfig {
     private String appId;
     // [可选]rtm client实例, 如果设置则需要负责rtmClient的login和logout, 需要使用appId和userId创建
     private RtmClient rtmClient;
-    // 事件监听
+    // 事件监听, 不转发外部传入的 rtmClient 的事件, 需在该 rtmClient 上自行监听
     private RtmEventListener rtmEventListener;
     // RTM token
     private String rtmToken;
     // 用户Id, 通过该用户Id来发送信令消息
     private String userId;
-    // [可选]用户自定义的扩展信息, 会在信令消息中携带
+    // [可选]连接池模式, 每个身份对应一个rtm client, 信令按目标用户Id一致性哈希分发到不同的client, 设置后忽略 rtmClient/rtmToken/userId
+    // RTM Java SDK 的 RtmClient.create 为进程内单例, 最多一个身份可由 CallApi 创建 client, 其余身份需设置 rtmClient
+    private List<RtmIdentity> rtmIdentities;
+    // [可选]用户自定义的扩展信息, 会在信令消息中携带, 可整体替换或增删其中的条目; 条目的值为嵌套对象时需替换为新对象, 原地修改嵌套对象不会被检测到
     private Map<String, Object> fromUserExtension;
+    // [可选]信令消息版本, 默认 1.0 为 JSON 格式, 2.0 为紧凑二进制格式, 需确保所有接收端已支持 2.0
+    private String messageVersion = "1.0";
+    // [可选]发送限流配置, 包括全局和每个 rtm client 的令牌桶以及有界等待队列, 为空则不限流
+    private PublishRateLimitConfig publishRateLimitConfig;
+    // [可选]发送失败重试配置, 按 callId + 接收方只重试失败的一侧, 为空则不重试
+    private PublishRetryConfig publishRetryConfig;
+    // [可选]呼叫会话配置, 设置后记录进行中的呼叫, 可按 callId 挂断及查询用户是否在通话中, 为空则不记录; callId 为空的呼叫不记录
+    private CallSessionConfig callSessionConfig;
+    // [可选]发送耗时统计配置, 设置后按信令类型记录发送到回调的耗时分布及按错误码的结果计数, 为空则不统计
+    private PublishMetricsConfig publishMetricsConfig;
+    // [可选]token 自动续期配置, 设置后在过期前及 onTokenPrivilegeWillExpire 时通过 tokenSupplier 获取新 token 续期, 为空则需自行调用 renewToken
+    private TokenRefreshConfig tokenRefreshConfig;
+    // [可选]执行 ResultCallback 的线程池, 可在多个 CallApi 间共享, 为空则在 RTM SDK 回调线程中直接执行
+    private Executor callbackExecutor;
+    // [可选]重试、会话清理、token 续期使用的定时任务线程池, 可在多个 CallApi 间共享且不会被 deinitialize 关闭, 为空则各自创建线程
+    private ScheduledExecutorService scheduler;
+    // [可选]待发送消息日志配置, 发送前写入内存映射文件, 回调后确认, 进程重启后 initialize 时重发未确认的消息, 为空则不记录
+    private OutboxConfig outboxConfig;
+    // [可选]振铃超时配置, 需同时设置 callSessionConfig, 呼叫超时未接通(CallSessionRegistry.connect)时自动挂断, 为空则由客户端处理超时
+    private RingTimeoutConfig ringTimeoutConfig;
+    // [可选]忙碌用户索引配置, 设置后 call 的任一用户已在通话中时直接回调失败而不发送信令, hangup 时释放, 为空则由客户端拒绝
+    private BusyIndexConfig busyIndexConfig;
+    // [可选]目标用户Id到频道名字符串的缓存条目数, 取 2 的幂, 避免每条信令重新生成字符串, 0 表示不缓存
+    private int userChannelCacheSize = 65536;
+    // [可选]callPaired 只有一侧收到邀请时, 发给该侧的补偿挂断原因
+    private String compensationHangupReason = "CallFailed";
+    // [可选]发送窗口配置, 限制已发送未回调的消息数, 超出后阻塞或直接回调失败, 为空则不限制(仍会统计, 供 deinitialize 等待)
+    private PublishWindowConfig publishWindowConfig;
+    // [可选]话单配置, 设置后每次 call/hangup 写入一条定长话单, 可按用户和时间范围查询(CallApiImpl.getCdrStore), 为空则不记录
+    private CdrConfig cdrConfig;
+    // [可选]按用户有序发送配置, 发给同一用户的信令按用户Id哈希固定在同一发送线程上, 按调用顺序发出, 调用方无需再为 call/hangup 加全局锁, 为空则在调用线程中发送
+    private OrderedExecutionConfig orderedExecutionConfig;
 }
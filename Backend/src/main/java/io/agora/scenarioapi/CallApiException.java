@@ -0,0 +1,17 @@
+package io.agora.scenarioapi;
+
+import io.agora.rtm.ErrorInfo;
+import lombok.Getter;
+
+@Getter
+public class CallApiException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    // RTM 返回的错误信息
+    private final ErrorInfo errorInfo;
+
+    public CallApiException(ErrorInfo errorInfo) {
+        super(String.valueOf(errorInfo));
+        this.errorInfo = errorInfo;
+    }
+}
@@ -1,24 +1,57 @@
 package io.agora.scenarioapi;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
-import com.alibaba.fastjson2.JSON;
-
-import io.agora.rtm.PublishOptions;
+import io.agora.rtm.ErrorInfo;
 import io.agora.rtm.ResultCallback;
-import io.agora.rtm.RtmClient;
-import io.agora.rtm.RtmConfig;
-import io.agora.rtm.RtmConstants.RtmChannelType;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CallApiImpl implements ICallApi {
+    private static final long PUBLISH_TIME_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private CallApiConfig callApiConfig;
-    private AtomicBoolean isExternalRtmClient = new AtomicBoolean(false);
-    private AtomicBoolean isRtmLogined = new AtomicBoolean(false);
+    private RtmClientPool rtmClientPool;
+    // 发送限流, 未配置时为 null
+    private PublishRateLimiter publishRateLimiter;
+    // 失败重试, 未配置时为 null
+    private PublishRetrier publishRetrier;
+    // 呼叫会话, 未配置时为 null
+    private CallSessionRegistry callSessionRegistry;
+    // 发送耗时统计, 未配置时为 null
+    private PublishMetrics publishMetrics;
+    // token 自动续期, 未配置时为 null
+    private TokenRefresher tokenRefresher;
+    // 待发送消息日志, 未配置时为 null
+    private PublishOutbox publishOutbox;
+    // 振铃超时, 未配置时为 null
+    private RingTimeoutService ringTimeoutService;
+    // 忙碌用户索引, 未配置时为 null
+    private BusyUserIndex busyUserIndex;
+    // 目标用户Id到频道名的缓存
+    private UserChannelCache userChannelCache;
+    // 已发送未回调的消息
+    private PublishWindow publishWindow;
+    // 话单, 未配置时为 null
+    private CdrStore cdrStore;
+    // 按目标用户分区的发送线程, 未配置时在调用线程中发送
+    private UserOrderedExecutor userOrderedExecutor;
+    // 预编码的信令模板, messageVersion 或 fromUserExtension 变化时重建
+    private volatile CallMessageEncoder callMessageEncoder;
+    private volatile CallMessageEncoder hangupMessageEncoder;
+    // 最近一次发送的时间, 精度为 PUBLISH_TIME_RESOLUTION_NANOS, 供 CallApiRegistry 判断租户是否空闲
+    private volatile long lastPublishNanos = System.nanoTime();
 
     /**
      * Initialize
@@ -29,16 +62,84 @@ public class CallApiImpl implements ICallApi {
      */
     @Override
     public Void initialize(CallApiConfig callApiConfig, ResultCallback<Void> resultCallbackLogin) throws Exception {
-        if (callApiConfig.getRtmClient() == null) {
-            RtmClient rtmClient = _createClient(callApiConfig);
-            callApiConfig.setRtmClient(rtmClient);
+        if (callApiConfig.getRingTimeoutConfig() != null && callApiConfig.getCallSessionConfig() == null) {
+            throw new IllegalArgumentException("ringTimeoutConfig requires callSessionConfig");
+        }
 
-            _login(callApiConfig, resultCallbackLogin);
-        } else {
-            isExternalRtmClient.set(true);
+        RtmClientPool rtmClientPool = RtmClientPool.create(callApiConfig);
+        if (callApiConfig.getRtmIdentities() == null || callApiConfig.getRtmIdentities().isEmpty()) {
+            callApiConfig.setRtmClient(rtmClientPool.getMembers().get(0).getRtmClient());
+        }
+
+        // 上次运行未确认的消息, 登录成功后重发
+        List<PublishOutbox.Entry> recoveredEntries = null;
+        if (callApiConfig.getOutboxConfig() != null) {
+            this.publishOutbox = new PublishOutbox(callApiConfig.getOutboxConfig());
+            recoveredEntries = publishOutbox.recover();
+        }
+
+        if (callApiConfig.getCdrConfig() != null) {
+            this.cdrStore = new CdrStore(callApiConfig.getCdrConfig());
+        }
+
+        if (callApiConfig.getPublishRateLimitConfig() != null) {
+            this.publishRateLimiter = new PublishRateLimiter(callApiConfig.getPublishRateLimitConfig(),
+                    rtmClientPool.getMembers());
+        }
+
+        if (callApiConfig.getPublishRetryConfig() != null) {
+            this.publishRetrier = new PublishRetrier(callApiConfig.getPublishRetryConfig(), rtmClientPool,
+                    this::_dispatch, this::_executeRetry, callApiConfig.getScheduler());
+        }
+
+        if (callApiConfig.getCallSessionConfig() != null) {
+            this.callSessionRegistry = new CallSessionRegistry(callApiConfig.getCallSessionConfig(),
+                    callApiConfig.getScheduler());
+        }
+
+        if (callApiConfig.getRingTimeoutConfig() != null) {
+            this.ringTimeoutService = new RingTimeoutService(callApiConfig.getRingTimeoutConfig(),
+                    this::_hangupOnRingTimeout, callApiConfig.getScheduler());
+        }
+
+        this.userChannelCache = new UserChannelCache(callApiConfig.getUserChannelCacheSize());
+        this.publishWindow = new PublishWindow(callApiConfig.getPublishWindowConfig());
+
+        if (callApiConfig.getOrderedExecutionConfig() != null) {
+            this.userOrderedExecutor = new UserOrderedExecutor(callApiConfig.getOrderedExecutionConfig());
+        }
+
+        if (callApiConfig.getBusyIndexConfig() != null) {
+            this.busyUserIndex = new BusyUserIndex(callApiConfig.getBusyIndexConfig());
+        }
+
+        if (callApiConfig.getPublishMetricsConfig() != null) {
+            this.publishMetrics = new PublishMetrics(callApiConfig.getPublishMetricsConfig());
         }
 
+        this.rtmClientPool = rtmClientPool;
         this.callApiConfig = callApiConfig;
+
+        if (callApiConfig.getTokenRefreshConfig() != null) {
+            List<String> userIds = new ArrayList<>();
+            for (RtmClientPool.Member member : rtmClientPool.getMembers()) {
+                userIds.add(member.getIdentity().getUserId());
+            }
+            TokenRefresher tokenRefresher = new TokenRefresher(this, userIds, callApiConfig.getTokenRefreshConfig(),
+                    callApiConfig.getScheduler());
+            for (RtmClientPool.Member member : rtmClientPool.getMembers()) {
+                member.setTokenWillExpireHandler(() -> tokenRefresher.refresh(member.getIdentity().getUserId()));
+            }
+            tokenRefresher.start();
+            this.tokenRefresher = tokenRefresher;
+        }
+
+        ResultCallback<Void> loginCallback = _callbackOnExecutor(callApiConfig.getCallbackExecutor(),
+                resultCallbackLogin);
+        if (recoveredEntries != null) {
+            loginCallback = _replayAfterLogin(recoveredEntries, loginCallback);
+        }
+        rtmClientPool.login(loginCallback);
         return null;
     }
 
@@ -50,15 +151,145 @@ public class CallApiImpl implements ICallApi {
      */
     @Override
     public Void deinitialize(ResultCallback<Void> resultCallbackLogout) {
-        if (!isExternalRtmClient.get()) {
-            _logout(resultCallbackLogout);
+        if (ringTimeoutService != null) {
+            ringTimeoutService.stop();
+            ringTimeoutService = null;
+        }
+        if (tokenRefresher != null) {
+            for (RtmClientPool.Member member : rtmClientPool.getMembers()) {
+                member.setTokenWillExpireHandler(null);
+            }
+            tokenRefresher.stop();
+            tokenRefresher = null;
+        }
+        if (callSessionRegistry != null) {
+            callSessionRegistry.stop();
+            callSessionRegistry = null;
+        }
+        if (userOrderedExecutor != null) {
+            // 先发出已排队的消息, 再停止重试和限流
+            userOrderedExecutor.stop();
+            userOrderedExecutor = null;
+        }
+        if (publishRetrier != null) {
+            publishRetrier.stop();
+            publishRetrier = null;
+        }
+        if (publishRateLimiter != null) {
+            publishRateLimiter.stop();
+            publishRateLimiter = null;
         }
 
-        isRtmLogined.set(false);
-        isExternalRtmClient.set(false);
+        if (publishOutbox != null) {
+            // 仍未确认的消息留待下次 initialize 重发
+            publishOutbox.close();
+            publishOutbox = null;
+        }
+        if (cdrStore != null) {
+            cdrStore.close();
+            cdrStore = null;
+        }
+        // 全部为外部 rtmClient 时立即回调, 回调前先关闭日志文件, 以便回调中重新 initialize
+        rtmClientPool.logout(_callbackOnExecutor(callApiConfig.getCallbackExecutor(), resultCallbackLogout));
         return null;
     }
 
+    /**
+     * Deinitialize once the outstanding messages are called back
+     *
+     * @param drainTimeoutMillis
+     * @param resultCallbackLogout
+     * @return
+     */
+    @Override
+    public Void deinitialize(long drainTimeoutMillis, ResultCallback<Void> resultCallbackLogout) {
+        publishWindow.close();
+        log.info("deinitialize, drain, inFlight:{}", publishWindow.getInFlightCount());
+        if (!publishWindow.awaitDrained(drainTimeoutMillis)) {
+            // 登出后 rtm client 不再回调, 未完成的消息在此回调失败
+            int abandonedCount = publishWindow.abandon(new ErrorInfo(RtmErrorCode.NOT_INITIALIZED,
+                    "call api deinitialized", "publish"));
+            log.warn("deinitialize, drain timeout, abandoned:{}", abandonedCount);
+        }
+        return deinitialize(resultCallbackLogout);
+    }
+
+    /**
+     * Number of messages published but not called back, including queued and retrying ones
+     *
+     * @return
+     */
+    public int getInFlightPublishCount() {
+        return publishWindow.getInFlightCount();
+    }
+
+    /**
+     * System.nanoTime of the latest publish, or of the creation if nothing was published
+     *
+     * @return
+     */
+    long getLastPublishNanos() {
+        return lastPublishNanos;
+    }
+
+    /**
+     * Registry of the active call sessions, null if callSessionConfig is not set
+     *
+     * @return
+     */
+    public CallSessionRegistry getCallSessionRegistry() {
+        return callSessionRegistry;
+    }
+
+    /**
+     * Index of the users in a call, null if busyIndexConfig is not set
+     *
+     * @return
+     */
+    public BusyUserIndex getBusyUserIndex() {
+        return busyUserIndex;
+    }
+
+    /**
+     * Call detail records, null if cdrConfig is not set
+     *
+     * @return
+     */
+    public CdrStore getCdrStore() {
+        return cdrStore;
+    }
+
+    /**
+     * Token refresher, null if tokenRefreshConfig is not set
+     *
+     * @return
+     */
+    public TokenRefresher getTokenRefresher() {
+        return tokenRefresher;
+    }
+
+    /**
+     * Publish latency and result counters, null if publishMetricsConfig is not set
+     *
+     * @return
+     */
+    public PublishMetrics getPublishMetrics() {
+        return publishMetrics;
+    }
+
+    /**
+     * Login state of each rtm identity
+     *
+     * @return
+     */
+    public Map<String, Boolean> getRtmLoginStates() {
+        Map<String, Boolean> loginStates = new LinkedHashMap<>();
+        for (RtmClientPool.Member member : rtmClientPool.getMembers()) {
+            loginStates.put(member.getIdentity().getUserId(), member.isLogined());
+        }
+        return loginStates;
+    }
+
     /**
      * Call
      *
@@ -76,37 +307,85 @@ public class CallApiImpl implements ICallApi {
                      ResultCallback<Void> resultCallbackUserIdB) {
         log.info("call, start, userIdA:{}, userIdB:{}, roomId:{}", userIdA, userIdB, roomId);
 
-        Integer messageAction = 0;
-        String messageVersion = "1.0";
-        long messageTimestamp = System.currentTimeMillis();
+        _call(userIdA, userIdB, roomId, callId, resultCallbackUserIdA, resultCallbackUserIdB);
+
+        log.info("call, end, userIdA:{}, userIdB:{}, roomId:{}", userIdA, userIdB, roomId);
+        return null;
+    }
 
-        Map<String, Object> messageMap = new HashMap<>();
-        messageMap.put("message_action", messageAction);
-        messageMap.put("message_version", messageVersion);
-        messageMap.put("message_timestamp", messageTimestamp);
-        messageMap.put("fromUserId", userIdA);
-        messageMap.put("remoteUserId", userIdB);
-        messageMap.put("fromRoomId", roomId);
-        messageMap.put("callId", callId);
-        if (callApiConfig.getFromUserExtension() != null) {
-            messageMap.put("fromUserExtension", callApiConfig.getFromUserExtension());
+    /**
+     * Mark both users busy and publish the call messages, the userIds are unboxed once here so nothing
+     * is boxed again on the way to publish
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @param callId
+     * @param resultCallbackUserIdA
+     * @param resultCallbackUserIdB
+     * @return
+     */
+    private Void _call(int userIdA, int userIdB, String roomId, String callId,
+                       ResultCallback<Void> resultCallbackUserIdA,
+                       ResultCallback<Void> resultCallbackUserIdB) {
+        if (busyUserIndex != null && !busyUserIndex.tryAcquire(userIdA, userIdB, callId)) {
+            _rejectBusy(userIdA, userIdB, callId, resultCallbackUserIdA, resultCallbackUserIdB);
+            return null;
         }
 
-        byte[] jsonByte = JSON.toJSONBytes(messageMap);
+        return _sendCall(userIdA, userIdB, roomId, callId,
+                _releaseBusyOnFailure(userIdA, userIdB, callId, resultCallbackUserIdA),
+                _releaseBusyOnFailure(userIdA, userIdB, callId, resultCallbackUserIdB));
+    }
 
-        _publish(userIdB.toString(), jsonByte, resultCallbackUserIdA);
+    /**
+     * Call both users and wait for both messages, if only one of them was delivered a compensating hangup
+     * is sent to that user, so no client is left ringing for a call the other side never got
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @param callId
+     * @param resultCallback
+     * @return
+     */
+    @Override
+    public Void callPaired(int userIdA, int userIdB, String roomId, String callId,
+                           ResultCallback<CallResult> resultCallback) {
+        if (log.isInfoEnabled()) {
+            log.info("callPaired, start, userIdA:{}, userIdB:{}, roomId:{}, callId:{}", userIdA, userIdB, roomId, callId);
+        }
 
-        messageMap.put("fromUserId", userIdB);
-        messageMap.put("remoteUserId", userIdA);
-        jsonByte = JSON.toJSONBytes(messageMap);
+        // 忙碌拒绝时未发送任何消息, 无需补偿, 也不能释放另一通话中的用户
+        boolean isAcquired = busyUserIndex == null || busyUserIndex.tryAcquire(userIdA, userIdB, callId);
+        CallBatchCallback batchCallback = new CallBatchCallback(1, new ResultCallback<List<CallResult>>() {
+            @Override
+            public void onSuccess(List<CallResult> callResults) {
+                if (isAcquired) {
+                    _compensate(callResults.get(0), resultCallback);
+                } else if (resultCallback != null) {
+                    resultCallback.onSuccess(callResults.get(0));
+                }
+            }
 
-        _publish(userIdA.toString(), jsonByte, resultCallbackUserIdB);
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                if (resultCallback != null) {
+                    resultCallback.onFailure(errorInfo);
+                }
+            }
+        });
+        CallResult callResult = batchCallback.add(new CallPair(userIdA, userIdB, roomId, callId));
 
-        log.info("call, end, userIdA:{}, userIdB:{}, roomId:{}", userIdA, userIdB, roomId);
+        // resultCallbackUserIdA reports the message published to userIdB and vice versa
+        if (!isAcquired) {
+            _rejectBusy(userIdA, userIdB, callId, batchCallback.callbackB(callResult), batchCallback.callbackA(callResult));
+            return null;
+        }
+        _sendCall(userIdA, userIdB, roomId, callId, batchCallback.callbackB(callResult), batchCallback.callbackA(callResult));
         return null;
     }
 
-
     /**
      * hangup
      *
@@ -124,95 +403,848 @@ public class CallApiImpl implements ICallApi {
     public Void hangup(Integer userIdA, String reasonA, Integer userIdB, String reasonB, String roomId, String callId,
                        ResultCallback<Void> resultCallbackUserIdA,
                        ResultCallback<Void> resultCallbackUserIdB) {
-        Integer messageAction = 4;  //挂断的命令
-        String messageVersion = "1.0";
+        return _hangup(userIdA, reasonA, userIdB, reasonB, roomId, callId, resultCallbackUserIdA,
+                resultCallbackUserIdB);
+    }
+
+    /**
+     * End the session, release the busy marks and publish the hangup messages
+     *
+     * @param userIdA
+     * @param reasonA
+     * @param userIdB
+     * @param reasonB
+     * @param roomId
+     * @param callId
+     * @param resultCallbackUserIdA
+     * @param resultCallbackUserIdB
+     * @return
+     */
+    private Void _hangup(int userIdA, String reasonA, int userIdB, String reasonB, String roomId, String callId,
+                         ResultCallback<Void> resultCallbackUserIdA,
+                         ResultCallback<Void> resultCallbackUserIdB) {
+        if (callSessionRegistry != null) {
+            callSessionRegistry.end(callId);
+        }
+        if (busyUserIndex != null) {
+            busyUserIndex.release(userIdA, userIdB, callId);
+        }
+
+        CallMessageEncoder encoder = _hangupMessageEncoder();
         long messageTimestamp = System.currentTimeMillis();
+        _appendCdr(CallAction.HANGUP, messageTimestamp, userIdA, userIdB, roomId, callId, reasonA, reasonB);
+
+        byte[] jsonByte = encoder.encodeHangup(messageTimestamp, userIdA, roomId, callId, reasonB);
+        _publish(userChannelCache.get(userIdB), jsonByte, CallAction.HANGUP, callId, resultCallbackUserIdA);
+
+        jsonByte = encoder.encodeHangup(messageTimestamp, userIdB, roomId, callId, reasonA);
+        _publish(userChannelCache.get(userIdA), jsonByte, CallAction.HANGUP, callId, resultCallbackUserIdB);
+
+        if (log.isInfoEnabled()) {
+            log.info("hangup, end, userIdA:{}, userIdB:{}, roomId:{}, callId:{}", userIdA, userIdB, roomId, callId);
+        }
+
+        return null;
+    }
+
+    /**
+     * hangup by callId, the users and room are looked up from the call session
+     *
+     * @param callId
+     * @param reasonA
+     * @param reasonB
+     * @param resultCallbackUserIdA
+     * @param resultCallbackUserIdB
+     * @return
+     */
+    @Override
+    public Void hangup(String callId, String reasonA, String reasonB,
+                       ResultCallback<Void> resultCallbackUserIdA,
+                       ResultCallback<Void> resultCallbackUserIdB) {
+        CallSession session = callSessionRegistry == null ? null : callSessionRegistry.getSession(callId);
+        if (session == null) {
+            log.warn("hangup, call session not found, callId:{}", callId);
+            ErrorInfo errorInfo = new ErrorInfo(RtmErrorCode.INVALID_PARAMETER, "call session not found", "hangup");
+            if (resultCallbackUserIdA != null) {
+                resultCallbackUserIdA.onFailure(errorInfo);
+            }
+            if (resultCallbackUserIdB != null) {
+                resultCallbackUserIdB.onFailure(errorInfo);
+            }
+            return null;
+        }
+
+        return _hangup(session.getUserIdA(), reasonA, session.getUserIdB(), reasonB, session.getRoomId(), callId,
+                resultCallbackUserIdA, resultCallbackUserIdB);
+    }
+
+    /**
+     * Hang up every active call of a room in batches
+     *
+     * @param roomId
+     * @param reason
+     * @param resultCallback
+     * @return
+     */
+    @Override
+    public Void hangupRoom(String roomId, String reason, ResultCallback<List<CallResult>> resultCallback) {
+        CallSessionRegistry registry = callSessionRegistry;
+        if (registry == null) {
+            return _failWithoutSessions("hangupRoom", resultCallback);
+        }
+
+        List<CallSession> sessions = registry.getSessionsByRoomId(roomId);
+        log.info("hangupRoom, roomId:{}, size:{}", roomId, sessions.size());
+        return _hangupSessions(registry, sessions, reason, resultCallback);
+    }
 
-        Map<String, Object> messageMap = new HashMap<>();
-        messageMap.put("message_action", messageAction);
-        messageMap.put("message_version", messageVersion);
-        messageMap.put("message_timestamp", messageTimestamp);
-        messageMap.put("fromUserId", userIdA);
-        messageMap.put("fromRoomId", roomId);
-        messageMap.put("callId", callId);
-        messageMap.put("hangupReason", reasonB);
-        if (callApiConfig.getFromUserExtension() != null) {
-            messageMap.put("fromUserExtension", callApiConfig.getFromUserExtension());
+    /**
+     * Hang up the active call of a user
+     *
+     * @param userId
+     * @param reason
+     * @param resultCallback
+     * @return
+     */
+    @Override
+    public Void hangupUser(int userId, String reason, ResultCallback<List<CallResult>> resultCallback) {
+        CallSessionRegistry registry = callSessionRegistry;
+        if (registry == null) {
+            return _failWithoutSessions("hangupUser", resultCallback);
         }
 
-        byte[] jsonByte = JSON.toJSONBytes(messageMap);
+        CallSession session = registry.getSessionByUserId(userId);
+        log.info("hangupUser, userId:{}, callId:{}", userId, session == null ? null : session.getCallId());
+        return _hangupSessions(registry, session == null ? Collections.emptyList() : Collections.singletonList(session),
+                reason, resultCallback);
+    }
 
-        _publish(userIdB.toString(), jsonByte, resultCallbackUserIdA);
+    /**
+     * Call in batch
+     *
+     * @param callPairs
+     * @param resultCallback
+     * @return
+     */
+    @Override
+    public Void callBatch(Collection<CallPair> callPairs, ResultCallback<List<CallResult>> resultCallback) {
+        log.info("callBatch, start, size:{}", callPairs.size());
+        if (_rejectInvalidCallPairs(callPairs, "callBatch", resultCallback)) {
+            return null;
+        }
 
-        messageMap.put("fromUserId", userIdB);
-        messageMap.put("hangupReason", reasonA);
-        jsonByte = JSON.toJSONBytes(messageMap);
+        CallBatchCallback batchCallback = new CallBatchCallback(callPairs.size(), resultCallback);
+        if (batchCallback.completeIfEmpty()) {
+            return null;
+        }
 
-        _publish(userIdA.toString(), jsonByte, resultCallbackUserIdB);
+        List<CallResult> callResults = new ArrayList<>(callPairs.size());
+        for (CallPair callPair : callPairs) {
+            callResults.add(batchCallback.add(callPair));
+        }
 
-        log.info("hangup, end, userIdA:{}, userIdB:{}, roomId:{}, callId:{}", userIdA, userIdB, roomId, callId);
+        int index = 0;
+        try {
+            for (; index < callResults.size(); index++) {
+                CallResult callResult = callResults.get(index);
+                CallPair callPair = callResult.getCallPair();
+                // resultCallbackUserIdA reports the message published to userIdB and vice versa
+                _call(callPair.getUserIdA(), callPair.getUserIdB(), callPair.getRoomId(), callPair.getCallId(),
+                        batchCallback.callbackB(callResult), batchCallback.callbackA(callResult));
+            }
+        } catch (RuntimeException e) {
+            log.error("callBatch, publish failed, index:{}, size:{}, error:{}", index, callResults.size(),
+                    e.getMessage());
+            batchCallback.failPending(index, new ErrorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED,
+                    e.getMessage(), "callBatch"));
+            return null;
+        }
 
+        log.info("callBatch, end, size:{}", callPairs.size());
         return null;
     }
 
     /**
-     * Create client
+     * Hangup in batch
      *
-     * @param callApiConfig
+     * @param callPairs
+     * @param resultCallback
      * @return
      */
-    private RtmClient _createClient(CallApiConfig callApiConfig) throws Exception {
-        RtmConfig rtmConfig = new RtmConfig.Builder(callApiConfig.getAppId(), callApiConfig.getUserId())
-                .eventListener(callApiConfig.getRtmEventListener())
-                .build();
+    @Override
+    public Void hangupBatch(Collection<CallPair> callPairs, ResultCallback<List<CallResult>> resultCallback) {
+        log.info("hangupBatch, start, size:{}", callPairs.size());
+        if (_rejectInvalidCallPairs(callPairs, "hangupBatch", resultCallback)) {
+            return null;
+        }
 
-        return RtmClient.create(rtmConfig);
+        CallBatchCallback batchCallback = new CallBatchCallback(callPairs.size(), resultCallback);
+        if (batchCallback.completeIfEmpty()) {
+            return null;
+        }
+
+        List<CallResult> callResults = new ArrayList<>(callPairs.size());
+        for (CallPair callPair : callPairs) {
+            callResults.add(batchCallback.add(callPair));
+        }
+
+        CallMessageEncoder encoder = _hangupMessageEncoder();
+        long messageTimestamp = System.currentTimeMillis();
+
+        int index = 0;
+        try {
+            for (; index < callResults.size(); index++) {
+                CallResult callResult = callResults.get(index);
+                CallPair callPair = callResult.getCallPair();
+                int userIdA = callPair.getUserIdA();
+                int userIdB = callPair.getUserIdB();
+                if (callSessionRegistry != null) {
+                    callSessionRegistry.end(callPair.getCallId());
+                }
+                if (busyUserIndex != null) {
+                    busyUserIndex.release(userIdA, userIdB, callPair.getCallId());
+                }
+                _appendCdr(CallAction.HANGUP, messageTimestamp, userIdA, userIdB, callPair.getRoomId(),
+                        callPair.getCallId(), callPair.getReasonA(), callPair.getReasonB());
+
+                byte[] jsonByte = encoder.encodeHangup(messageTimestamp, userIdA,
+                        callPair.getRoomId(), callPair.getCallId(), callPair.getReasonB());
+                _publish(userChannelCache.get(userIdB), jsonByte, CallAction.HANGUP, callPair.getCallId(),
+                        batchCallback.callbackB(callResult));
+
+                jsonByte = encoder.encodeHangup(messageTimestamp, userIdB,
+                        callPair.getRoomId(), callPair.getCallId(), callPair.getReasonA());
+                _publish(userChannelCache.get(userIdA), jsonByte, CallAction.HANGUP, callPair.getCallId(),
+                        batchCallback.callbackA(callResult));
+            }
+        } catch (RuntimeException e) {
+            log.error("hangupBatch, publish failed, index:{}, size:{}, error:{}", index, callResults.size(),
+                    e.getMessage());
+            batchCallback.failPending(index, new ErrorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED,
+                    e.getMessage(), "hangupBatch"));
+            return null;
+        }
+
+        log.info("hangupBatch, end, size:{}", callPairs.size());
+        return null;
     }
 
     /**
-     * Login
+     * Fail a batch without publishing anything if any pair lacks a userId or callId
      *
-     * @param callApiConfig
+     * @param callPairs
+     * @param operation
      * @param resultCallback
+     * @return true if rejected
+     */
+    private static boolean _rejectInvalidCallPairs(Collection<CallPair> callPairs, String operation,
+                                                   ResultCallback<List<CallResult>> resultCallback) {
+        int index = 0;
+        for (CallPair callPair : callPairs) {
+            if (callPair == null || callPair.getUserIdA() == null || callPair.getUserIdB() == null
+                    || callPair.getCallId() == null) {
+                log.warn("{}, invalid call pair, index:{}, callPair:{}", operation, index, callPair);
+                if (resultCallback != null) {
+                    resultCallback.onFailure(new ErrorInfo(RtmErrorCode.INVALID_PARAMETER,
+                            "callPairs[" + index + "] requires userIdA, userIdB and callId", operation));
+                }
+                return true;
+            }
+            index++;
+        }
+        return false;
+    }
+
+    /**
+     * Start the session and publish the call messages of a pair whose users are already marked busy
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @param callId
+     * @param resultCallbackUserIdA
+     * @param resultCallbackUserIdB
      * @return
      */
-    private Void _login(CallApiConfig callApiConfig, ResultCallback<Void> resultCallback) {
-        if (isRtmLogined.get()) {
-            resultCallback.onSuccess(null);
+    private Void _sendCall(int userIdA, int userIdB, String roomId, String callId,
+                           ResultCallback<Void> resultCallbackUserIdA,
+                           ResultCallback<Void> resultCallbackUserIdB) {
+        if (callSessionRegistry != null) {
+            _startSession(callId, userIdA, userIdB, roomId);
+        }
+
+        CallMessageEncoder encoder = _callMessageEncoder();
+        long messageTimestamp = System.currentTimeMillis();
+        _appendCdr(CallAction.CALL, messageTimestamp, userIdA, userIdB, roomId, callId, null, null);
+
+        byte[] jsonByte = encoder.encodeCall(messageTimestamp, userIdA, userIdB, roomId, callId);
+        _publish(userChannelCache.get(userIdB), jsonByte, CallAction.CALL, callId, resultCallbackUserIdA);
+
+        jsonByte = encoder.encodeCall(messageTimestamp, userIdB, userIdA, roomId, callId);
+        _publish(userChannelCache.get(userIdA), jsonByte, CallAction.CALL, callId, resultCallbackUserIdB);
+        return null;
+    }
+
+    /**
+     * Undo a paired call that failed on any side: the session and busy marks are released, and if only
+     * one user got the invitation a hangup from the other user is sent to it, the result is reported
+     * once that hangup completed
+     *
+     * @param callResult
+     * @param resultCallback
+     * @return
+     */
+    private Void _compensate(CallResult callResult, ResultCallback<CallResult> resultCallback) {
+        if (callResult.isSuccess()) {
+            if (resultCallback != null) {
+                resultCallback.onSuccess(callResult);
+            }
             return null;
         }
 
-        callApiConfig.getRtmClient().login(callApiConfig.getRtmToken(), resultCallback);
+        CallPair callPair = callResult.getCallPair();
+        int userIdA = callPair.getUserIdA();
+        int userIdB = callPair.getUserIdB();
+        if (callSessionRegistry != null) {
+            callSessionRegistry.end(callPair.getCallId());
+        }
+        if (busyUserIndex != null) {
+            busyUserIndex.release(userIdA, userIdB, callPair.getCallId());
+        }
+        if (callResult.getErrorInfoA() != null && callResult.getErrorInfoB() != null) {
+            log.warn("callPaired, both failed, userIdA:{}, userIdB:{}, callId:{}, errorInfoA:{}, errorInfoB:{}",
+                    userIdA, userIdB, callPair.getCallId(), callResult.getErrorInfoA(), callResult.getErrorInfoB());
+            if (resultCallback != null) {
+                resultCallback.onSuccess(callResult);
+            }
+            return null;
+        }
+
+        // 只有一侧收到了邀请, 以另一侧的身份向其发送挂断
+        int deliveredUserId = callResult.getErrorInfoA() == null ? userIdA : userIdB;
+        int failedUserId = deliveredUserId == userIdA ? userIdB : userIdA;
+        log.warn("callPaired, one side failed, compensating hangup, deliveredUserId:{}, failedUserId:{}, callId:{}",
+                deliveredUserId, failedUserId, callPair.getCallId());
+        long messageTimestamp = System.currentTimeMillis();
+        String reason = callApiConfig.getCompensationHangupReason();
+        _appendCdr(CallAction.HANGUP, messageTimestamp, userIdA, userIdB, callPair.getRoomId(), callPair.getCallId(),
+                reason, reason);
+        byte[] jsonByte = _hangupMessageEncoder().encodeHangup(messageTimestamp, failedUserId,
+                callPair.getRoomId(), callPair.getCallId(), reason);
+        _publish(userChannelCache.get(deliveredUserId), jsonByte, CallAction.HANGUP, callPair.getCallId(),
+                new ResultCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void responseInfo) {
+                        callResult.setCompensated(true);
+                        if (resultCallback != null) {
+                            resultCallback.onSuccess(callResult);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(ErrorInfo errorInfo) {
+                        log.error("callPaired, compensating hangup failed, userId:{}, callId:{}, errorInfo:{}",
+                                deliveredUserId, callPair.getCallId(), errorInfo);
+                        if (resultCallback != null) {
+                            resultCallback.onSuccess(callResult);
+                        }
+                    }
+                });
+        return null;
+    }
+
+    /**
+     * Append the call detail record of a call or hangup, a failed write is logged and does not fail the call
+     *
+     * @param action
+     * @param timestampMillis
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @param callId
+     * @param reasonA
+     * @param reasonB
+     * @return
+     */
+    private Void _appendCdr(CallAction action, long timestampMillis, int userIdA, int userIdB, String roomId,
+                            String callId, String reasonA, String reasonB) {
+        CdrStore store = cdrStore;
+        if (store == null) {
+            return null;
+        }
+        try {
+            store.append(new CdrRecord(action, timestampMillis, userIdA, userIdB, callId, roomId, reasonA, reasonB));
+        } catch (Exception e) {
+            log.error("cdr, append failed, action:{}, callId:{}, error:{}", action, callId, e.getMessage());
+        }
         return null;
     }
 
     /**
-     * Logout
+     * Fail a call to a busy user, or from a user to itself, before anything is published, the clients
+     * never see it
      *
+     * @param userIdA
+     * @param userIdB
+     * @param callId
+     * @param resultCallbackUserIdA
+     * @param resultCallbackUserIdB
+     * @return
+     */
+    private Void _rejectBusy(int userIdA, int userIdB, String callId,
+                             ResultCallback<Void> resultCallbackUserIdA,
+                             ResultCallback<Void> resultCallbackUserIdB) {
+        ErrorInfo errorInfo;
+        if (userIdA == userIdB) {
+            log.warn("call, same user, userId:{}, callId:{}", userIdA, callId);
+            errorInfo = new ErrorInfo(RtmErrorCode.INVALID_PARAMETER, "userIdA equals userIdB", "call");
+        } else {
+            log.info("call, user busy, userIdA:{}, userIdB:{}, callId:{}", userIdA, userIdB, callId);
+            errorInfo = new ErrorInfo(RtmErrorCode.DUPLICATE_OPERATION,
+                    callApiConfig.getBusyIndexConfig().getBusyReason(), "call");
+        }
+        if (resultCallbackUserIdA != null) {
+            resultCallbackUserIdA.onFailure(errorInfo);
+        }
+        if (resultCallbackUserIdB != null) {
+            resultCallbackUserIdB.onFailure(errorInfo);
+        }
+        return null;
+    }
+
+    /**
+     * Release the busy marks of a call once any of its call messages failed, marks taken by a newer
+     * call of the same users are kept
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param callId
+     * @param resultCallback
+     * @return
+     */
+    private ResultCallback<Void> _releaseBusyOnFailure(int userIdA, int userIdB, String callId,
+                                                       ResultCallback<Void> resultCallback) {
+        BusyUserIndex index = busyUserIndex;
+        if (index == null) {
+            return resultCallback;
+        }
+
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                if (resultCallback != null) {
+                    resultCallback.onSuccess(responseInfo);
+                }
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                index.release(userIdA, userIdB, callId);
+                if (resultCallback != null) {
+                    resultCallback.onFailure(errorInfo);
+                }
+            }
+        };
+    }
+
+    /**
+     * Hang up sessions in batches of hangupBatchSize, the next batch is sent once every message of the
+     * previous one completed. A session already ended by a concurrent hangup is skipped.
+     *
+     * @param registry
+     * @param sessions
+     * @param reason
      * @param resultCallback
      * @return
      */
-    private Void _logout(ResultCallback<Void> resultCallback) {
-        callApiConfig.getRtmClient().logout(resultCallback);
+    private Void _hangupSessions(CallSessionRegistry registry, List<CallSession> sessions, String reason,
+                                 ResultCallback<List<CallResult>> resultCallback) {
+        List<CallPair> callPairs = new ArrayList<>(sessions.size());
+        for (CallSession session : sessions) {
+            if (registry.end(session.getCallId()) != null) {
+                callPairs.add(new CallPair(session.getUserIdA(), session.getUserIdB(), session.getRoomId(),
+                        session.getCallId(), reason, reason));
+            }
+        }
+
+        int batchSize = Math.max(callApiConfig.getCallSessionConfig().getHangupBatchSize(), 1);
+        return _hangupNextBatch(callPairs, 0, batchSize, new ArrayList<>(callPairs.size()), resultCallback);
+    }
+
+    private Void _hangupNextBatch(List<CallPair> callPairs, int fromIndex, int batchSize, List<CallResult> callResults,
+                                  ResultCallback<List<CallResult>> resultCallback) {
+        if (fromIndex >= callPairs.size()) {
+            if (resultCallback != null) {
+                resultCallback.onSuccess(Collections.unmodifiableList(callResults));
+            }
+            return null;
+        }
+
+        int toIndex = Math.min(fromIndex + batchSize, callPairs.size());
+        return hangupBatch(callPairs.subList(fromIndex, toIndex), new ResultCallback<List<CallResult>>() {
+            @Override
+            public void onSuccess(List<CallResult> batchResults) {
+                callResults.addAll(batchResults);
+                _hangupNextBatch(callPairs, toIndex, batchSize, callResults, resultCallback);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                if (resultCallback != null) {
+                    resultCallback.onFailure(errorInfo);
+                }
+            }
+        });
+    }
+
+    private static Void _failWithoutSessions(String operation, ResultCallback<List<CallResult>> resultCallback) {
+        log.warn("{}, callSessionConfig not set", operation);
+        if (resultCallback != null) {
+            resultCallback.onFailure(new ErrorInfo(RtmErrorCode.INVALID_PARAMETER, "callSessionConfig not set",
+                    operation));
+        }
+        return null;
+    }
+
+    /**
+     * Start the call session and its ring timeout
+     *
+     * @param callId
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @return
+     */
+    private Void _startSession(String callId, Integer userIdA, Integer userIdB, String roomId) {
+        CallSession session = callSessionRegistry.start(callId, userIdA, userIdB, roomId);
+        if (session == null) {
+            log.warn("call without callId, session not tracked, userIdA:{}, userIdB:{}", userIdA, userIdB);
+            return null;
+        }
+        RingTimeoutService service = ringTimeoutService;
+        if (service != null) {
+            service.schedule(session);
+        }
         return null;
     }
 
+    /**
+     * Hang up a call that was not connected within the ring timeout
+     *
+     * @param session
+     * @return
+     */
+    private Void _hangupOnRingTimeout(CallSession session) {
+        String reason = callApiConfig.getRingTimeoutConfig().getHangupReason();
+        log.info("ring timeout, hangup, userIdA:{}, userIdB:{}, roomId:{}, callId:{}",
+                session.getUserIdA(), session.getUserIdB(), session.getRoomId(), session.getCallId());
+        hangup(session.getCallId(), reason, reason, null, null);
+        return null;
+    }
+
+    /**
+     * Number of calls waiting for their ring timeout
+     *
+     * @return
+     */
+    public long getPendingRingTimeoutCount() {
+        RingTimeoutService service = ringTimeoutService;
+        return service == null ? 0 : service.size();
+    }
+
+    /**
+     * Call message encoder, rebuilt when messageVersion or the content of fromUserExtension changes
+     *
+     * @return
+     */
+    private CallMessageEncoder _callMessageEncoder() {
+        CallMessageEncoder encoder = callMessageEncoder;
+        String messageVersion = callApiConfig.getMessageVersion();
+        Map<String, Object> fromUserExtension = callApiConfig.getFromUserExtension();
+        if (encoder == null || !encoder.isEncodedWith(messageVersion, fromUserExtension)) {
+            encoder = CallMessageEncoder.create(CallAction.CALL.getValue(), messageVersion, fromUserExtension);
+            callMessageEncoder = encoder;
+        }
+        return encoder;
+    }
+
+    /**
+     * Hangup message encoder, rebuilt when messageVersion or the content of fromUserExtension changes
+     *
+     * @return
+     */
+    private CallMessageEncoder _hangupMessageEncoder() {
+        CallMessageEncoder encoder = hangupMessageEncoder;
+        String messageVersion = callApiConfig.getMessageVersion();
+        Map<String, Object> fromUserExtension = callApiConfig.getFromUserExtension();
+        if (encoder == null || !encoder.isEncodedWith(messageVersion, fromUserExtension)) {
+            encoder = CallMessageEncoder.create(CallAction.HANGUP.getValue(), messageVersion, fromUserExtension);
+            hangupMessageEncoder = encoder;
+        }
+        return encoder;
+    }
+
     /**
      * Publish
      *
      * @param userId
      * @param message
+     * @param action
+     * @param callId
+     * @param timestampMillis first send time journaled in the outbox, 0 for now
      * @param resultCallback
      * @return
      */
-    private Void _publish(String userId, byte[] message, ResultCallback<Void> resultCallback) {
-        PublishOptions options = new PublishOptions();
-        options.setChannelType(RtmChannelType.USER);
+    private Void _publish(String userId, byte[] message, CallAction action, String callId, long timestampMillis,
+                          ResultCallback<Void> resultCallback) {
+        int targetHash = RtmClientPool.hash(userId);
+        return _publish(userId, targetHash, rtmClientPool.select(targetHash), message, action, callId,
+                timestampMillis, resultCallback);
+    }
 
-        callApiConfig.getRtmClient().publish(userId, message, options, resultCallback);
+    /**
+     * Publish to the cached channel of a userId
+     *
+     * @param userChannel
+     * @param message
+     * @param action
+     * @param callId
+     * @param resultCallback
+     * @return
+     */
+    private Void _publish(UserChannelCache.UserChannel userChannel, byte[] message, CallAction action, String callId,
+                          ResultCallback<Void> resultCallback) {
+        return _publish(userChannel.channelName, userChannel.ringHash, rtmClientPool.select(userChannel.ringHash),
+                message, action, callId, 0, resultCallback);
+    }
+
+    /**
+     * Publish through the selected rtm client, on the lane of the target if ordered execution is configured
+     *
+     * @param userId
+     * @param targetHash
+     * @param member
+     * @param message
+     * @param action
+     * @param callId
+     * @param timestampMillis first send time journaled in the outbox, 0 for now
+     * @param resultCallback
+     * @return
+     */
+    private Void _publish(String userId, int targetHash, RtmClientPool.Member member, byte[] message,
+                          CallAction action, String callId, long timestampMillis,
+                          ResultCallback<Void> resultCallback) {
+        long nowNanos = System.nanoTime();
+        if (nowNanos - lastPublishNanos > PUBLISH_TIME_RESOLUTION_NANOS) {
+            // 只在跨过精度时写入, 避免每条消息都写同一个 volatile
+            lastPublishNanos = nowNanos;
+        }
+        resultCallback = _callbackOnExecutor(callApiConfig.getCallbackExecutor(), resultCallback);
+        if (!publishWindow.acquire()) {
+            ErrorInfo errorInfo = publishWindow.rejectedErrorInfo();
+            log.warn("publish rejected, action:{}, callId:{}, userId:{}, errorInfo:{}", action, callId, userId,
+                    errorInfo);
+            if (resultCallback != null) {
+                resultCallback.onFailure(errorInfo);
+            }
+            return null;
+        }
+        if (publishMetrics != null) {
+            resultCallback = publishMetrics.wrap(action, resultCallback);
+        }
+        if (publishOutbox != null) {
+            long outboxId;
+            try {
+                outboxId = publishOutbox.append(userId, message, action, callId,
+                        timestampMillis > 0 ? timestampMillis : System.currentTimeMillis());
+            } catch (IOException e) {
+                log.error("publish failed, outbox append failed, action:{}, callId:{}, userId:{}, error:{}", action,
+                        callId, userId, e.getMessage());
+                publishWindow.wrap(resultCallback).onFailure(new ErrorInfo(
+                        RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, "outbox append failed", "publish"));
+                return null;
+            }
+            if (outboxId != 0) {
+                resultCallback = _ackOutbox(publishOutbox, outboxId, resultCallback);
+            }
+        }
+        resultCallback = publishWindow.wrap(resultCallback);
+
+        PublishTask task = new PublishTask(member, userId, message, action, callId, resultCallback);
+        UserOrderedExecutor executor = userOrderedExecutor;
+        if (executor != null) {
+            if (!executor.execute(targetHash, task, () -> _send(task))) {
+                log.warn("publish rejected, ordered lane is full, action:{}, callId:{}, userId:{}", action, callId,
+                        userId);
+                task.fail(new ErrorInfo(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                        "ordered lane is full", "publish"));
+            }
+            return null;
+        }
+
+        _send(task);
+        return null;
+    }
+
+    /**
+     * Send a message, through the retrier if configured
+     *
+     * @param task
+     * @return
+     */
+    private Void _send(PublishTask task) {
+        if (publishRetrier != null) {
+            publishRetrier.submit(task);
+            return null;
+        }
+
+        _dispatch(task);
         return null;
     }
 
+    /**
+     * Run a retry on the ordered lane of its target, right away if ordered execution is not configured
+     *
+     * @param task
+     * @param attempt
+     * @return false if the lane is full or stopped
+     */
+    private boolean _executeRetry(PublishTask task, Runnable attempt) {
+        UserOrderedExecutor executor = userOrderedExecutor;
+        if (executor == null) {
+            attempt.run();
+            return true;
+        }
+        return executor.execute(RtmClientPool.hash(task.getUserId()), attempt);
+    }
+
+    /**
+     * Replay the recovered messages once logged in
+     *
+     * @param recoveredEntries
+     * @param resultCallbackLogin
+     * @return
+     */
+    private ResultCallback<Void> _replayAfterLogin(List<PublishOutbox.Entry> recoveredEntries,
+                                                   ResultCallback<Void> resultCallbackLogin) {
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                _replay(recoveredEntries);
+                if (resultCallbackLogin != null) {
+                    resultCallbackLogin.onSuccess(responseInfo);
+                }
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                // 未重发的消息保留在日志中, 下次 initialize 时再恢复
+                if (resultCallbackLogin != null) {
+                    resultCallbackLogin.onFailure(errorInfo);
+                }
+            }
+        };
+    }
+
+    /**
+     * Publish the recovered messages again, their results have no callback
+     *
+     * @param recoveredEntries
+     * @return
+     */
+    private Void _replay(List<PublishOutbox.Entry> recoveredEntries) {
+        PublishOutbox outbox = publishOutbox;
+        if (outbox == null) {
+            return null;
+        }
+
+        log.info("outbox, replay, count:{}", recoveredEntries.size());
+        for (PublishOutbox.Entry entry : recoveredEntries) {
+            _publish(entry.getUserId(), entry.getMessage(), entry.getAction(), entry.getCallId(),
+                    entry.getTimestampMillis(), null);
+        }
+        // 重发的消息已重新写入日志
+        outbox.deleteRecoveredSegments();
+        return null;
+    }
+
+    /**
+     * Ack the outbox entry once the result of the message is known, a failure is reported to the caller
+     * so it is not replayed either
+     *
+     * @param outbox
+     * @param outboxId
+     * @param resultCallback
+     * @return
+     */
+    private static ResultCallback<Void> _ackOutbox(PublishOutbox outbox, long outboxId,
+                                                   ResultCallback<Void> resultCallback) {
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                outbox.ack(outboxId);
+                if (resultCallback != null) {
+                    resultCallback.onSuccess(responseInfo);
+                }
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                outbox.ack(outboxId);
+                if (resultCallback != null) {
+                    resultCallback.onFailure(errorInfo);
+                }
+            }
+        };
+    }
+
+    /**
+     * Send one attempt of a message, through the rate limiter if configured
+     *
+     * @param task
+     * @return
+     */
+    private Void _dispatch(PublishTask task) {
+        if (publishRateLimiter != null) {
+            publishRateLimiter.submit(task);
+            return null;
+        }
+
+        task.run();
+        return null;
+    }
+
+    /**
+     * Number of messages waiting for publish permits
+     *
+     * @return
+     */
+    public int getQueuedPublishCount() {
+        PublishRateLimiter limiter = publishRateLimiter;
+        return limiter == null ? 0 : limiter.getQueuedCount();
+    }
+
+    /**
+     * Number of messages of a priority waiting for publish permits
+     *
+     * @param priority
+     * @return
+     */
+    public int getQueuedPublishCount(PublishPriority priority) {
+        PublishRateLimiter limiter = publishRateLimiter;
+        return limiter == null ? 0 : limiter.getQueuedCount(priority);
+    }
+
+    /**
+     * Number of messages waiting in the ordered execution lanes
+     *
+     * @return
+     */
+    public int getLaneQueuedPublishCount() {
+        UserOrderedExecutor executor = userOrderedExecutor;
+        return executor == null ? 0 : executor.getQueuedCount();
+    }
+
     /**
      * Renew token
      *
@@ -221,7 +1253,67 @@ public class CallApiImpl implements ICallApi {
      */
     @Override
     public Void renewToken(String rtmToken, ResultCallback<Void> resultCallback) {
-        callApiConfig.getRtmClient().renewToken(rtmToken, resultCallback);
+        rtmClientPool.getMembers().get(0).getRtmClient().renewToken(rtmToken,
+                _callbackOnExecutor(callApiConfig.getCallbackExecutor(), resultCallback));
         return null;
     }
+
+    /**
+     * Renew token of the given rtm identity
+     *
+     * @param userId
+     * @param rtmToken
+     * @param resultCallback
+     * @return
+     */
+    @Override
+    public Void renewToken(String userId, String rtmToken, ResultCallback<Void> resultCallback) {
+        RtmClientPool.Member member = rtmClientPool.getMember(userId);
+        if (member == null) {
+            if (resultCallback != null) {
+                resultCallback.onFailure(new ErrorInfo(RtmErrorCode.INVALID_USER_ID, "unknown rtm identity",
+                        "renewToken"));
+            }
+            return null;
+        }
+
+        member.getIdentity().setRtmToken(rtmToken);
+        member.getRtmClient().renewToken(rtmToken,
+                _callbackOnExecutor(callApiConfig.getCallbackExecutor(), resultCallback));
+        return null;
+    }
+
+    /**
+     * Run the callback on callbackExecutor if configured, inline if the executor rejects it
+     *
+     * @param callbackExecutor
+     * @param resultCallback
+     * @return
+     */
+    private static ResultCallback<Void> _callbackOnExecutor(Executor callbackExecutor,
+                                                            ResultCallback<Void> resultCallback) {
+        if (callbackExecutor == null || resultCallback == null) {
+            return resultCallback;
+        }
+
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                _execute(callbackExecutor, () -> resultCallback.onSuccess(responseInfo));
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                _execute(callbackExecutor, () -> resultCallback.onFailure(errorInfo));
+            }
+        };
+    }
+
+    private static void _execute(Executor executor, Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            runnable.run();
+        }
+    }
 }
@@ -0,0 +1,276 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CallApi instances of many tenants (appIds) in one JVM. A tenant is created and logged in on first use
+ * and deinitialized once idle, that is neither got nor published through nor waiting for a publish result
+ * within idleTimeoutMillis. All tenants share one bounded callback executor, one scheduler and one token
+ * supplier executor, so the thread count does not grow with the tenants.
+ * <p>
+ * Note: RtmClient.create of the RTM Java SDK returns a process wide instance, so the configs should
+ * provide rtmClient (or rtmIdentities with rtmClient) for all but one tenant.
+ */
+@Slf4j
+public class CallApiRegistry {
+    private final CallApiRegistryConfig config;
+    private final ConfigSupplier configSupplier;
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor callbackExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor tokenSupplierExecutor;
+
+    /**
+     * Config of a tenant, called once each time the tenant is created
+     */
+    @FunctionalInterface
+    public interface ConfigSupplier {
+        /**
+         * @param appId
+         * @return
+         * @throws Exception get fails with the exception
+         */
+        CallApiConfig getConfig(String appId) throws Exception;
+    }
+
+    public CallApiRegistry(CallApiRegistryConfig config, ConfigSupplier configSupplier) {
+        this.config = config;
+        this.configSupplier = configSupplier;
+        // 队列满或 shutdown 后在 RTM SDK 回调线程执行, 反压而不丢弃回调, CallerRunsPolicy 在 shutdown 后会丢弃
+        this.callbackExecutor = new ThreadPoolExecutor(config.getCallbackThreads(), config.getCallbackThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getCallbackQueueSize()),
+                _threadFactory("callapi-callback"), (runnable, executor) -> runnable.run());
+        this.scheduler = Executors.newScheduledThreadPool(config.getSchedulerThreads(),
+                _threadFactory("callapi-scheduler"));
+        // tokenSupplier 可能阻塞, 不占用共享的 scheduler
+        this.tokenSupplierExecutor = new ThreadPoolExecutor(config.getTokenSupplierThreads(),
+                config.getTokenSupplierThreads(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                _threadFactory("callapi-token-supplier"));
+        this.tokenSupplierExecutor.allowCoreThreadTimeOut(true);
+        if (config.getIdleTimeoutMillis() > 0) {
+            this.scheduler.scheduleWithFixedDelay(this::_evictIdle, config.getIdleCheckIntervalMillis(),
+                    config.getIdleCheckIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * CallApi of the tenant, created and logged in on first use, concurrent gets share the same login.
+     * Completes exceptionally if the config or login fails, the next get tries again.
+     * A kept instance stays alive as long as it publishes, once idle it is deinitialized and get creates
+     * a new one.
+     *
+     * @param appId
+     * @return
+     */
+    public CompletableFuture<CallApiImpl> get(String appId) {
+        Tenant tenant = tenants.computeIfAbsent(appId, Tenant::new);
+        tenant.lastAccessNanos = System.nanoTime();
+        if (tenant.isCreator()) {
+            _create(tenant);
+            _evictOverflow(appId);
+        }
+        return tenant.future;
+    }
+
+    /**
+     * Deinitialize and remove a tenant
+     *
+     * @param appId
+     * @return
+     */
+    public CompletableFuture<Void> remove(String appId) {
+        Tenant tenant = tenants.remove(appId);
+        if (tenant == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return _deinitialize(tenant);
+    }
+
+    /**
+     * Number of tenants, including the ones logging in
+     *
+     * @return
+     */
+    public int size() {
+        return tenants.size();
+    }
+
+    /**
+     * Number of callbacks waiting for the shared callback executor
+     *
+     * @return
+     */
+    public int getQueuedCallbackCount() {
+        return callbackExecutor.getQueue().size();
+    }
+
+    /**
+     * Deinitialize all tenants and stop the shared executors
+     *
+     * @return
+     */
+    public Void shutdown() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String appId : new ArrayList<>(tenants.keySet())) {
+            futures.add(remove(appId));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("shutdown, deinitialize not completed, error:{}", e.getMessage());
+        }
+        scheduler.shutdownNow();
+        tokenSupplierExecutor.shutdownNow();
+        callbackExecutor.shutdown();
+        return null;
+    }
+
+    private void _create(Tenant tenant) {
+        CallApiConfig callApiConfig;
+        try {
+            callApiConfig = configSupplier.getConfig(tenant.appId);
+        } catch (Exception e) {
+            tenants.remove(tenant.appId, tenant);
+            tenant.future.completeExceptionally(e);
+            return;
+        }
+        callApiConfig.setCallbackExecutor(callbackExecutor);
+        callApiConfig.setScheduler(scheduler);
+        if (callApiConfig.getTokenRefreshConfig() != null
+                && callApiConfig.getTokenRefreshConfig().getTokenSupplierExecutor() == null) {
+            callApiConfig.getTokenRefreshConfig().setTokenSupplierExecutor(tokenSupplierExecutor);
+        }
+
+        CallApiImpl callApi = new CallApiImpl();
+        tenant.asyncCallApi = new AsyncCallApi(callApi);
+        tenant.asyncCallApi.initialize(callApiConfig).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                log.error("tenant login failed, appId:{}, error:{}", tenant.appId, throwable.getMessage());
+                tenants.remove(tenant.appId, tenant);
+                try {
+                    // 停止已创建的限流/重试等组件, initialize 抛出异常时可能尚未创建
+                    callApi.deinitialize(null);
+                } catch (RuntimeException e) {
+                    log.warn("tenant deinitialize failed, appId:{}, error:{}", tenant.appId, e.getMessage());
+                }
+                tenant.future.completeExceptionally(throwable);
+                return;
+            }
+            log.info("tenant created, appId:{}, size:{}", tenant.appId, tenants.size());
+            tenant.future.complete(callApi);
+        });
+    }
+
+    private CompletableFuture<Void> _deinitialize(Tenant tenant) {
+        // 登录完成后再退出, 登录失败时已自行清理
+        return tenant.future.handle((callApi, throwable) -> callApi).thenCompose(callApi -> {
+            if (callApi == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            log.info("tenant removed, appId:{}", tenant.appId);
+            return tenant.asyncCallApi.deinitialize().exceptionally(throwable -> {
+                log.warn("tenant deinitialize failed, appId:{}, error:{}", tenant.appId, throwable.getMessage());
+                return null;
+            });
+        });
+    }
+
+    private void _evictIdle() {
+        long idleBeforeNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        for (Tenant tenant : tenants.values()) {
+            if (_lastActiveNanos(tenant) - idleBeforeNanos < 0 && tenants.remove(tenant.appId, tenant)) {
+                log.info("tenant idle, appId:{}", tenant.appId);
+                _deinitialize(tenant);
+            }
+        }
+    }
+
+    private void _evictOverflow(String createdAppId) {
+        if (config.getMaxTenants() <= 0 || tenants.size() <= config.getMaxTenants()) {
+            return;
+        }
+
+        Tenant eldest = null;
+        long eldestActiveNanos = 0;
+        for (Tenant tenant : tenants.values()) {
+            if (tenant.appId.equals(createdAppId)) {
+                continue;
+            }
+            long activeNanos = _lastActiveNanos(tenant);
+            if (eldest == null || activeNanos - eldestActiveNanos < 0) {
+                eldest = tenant;
+                eldestActiveNanos = activeNanos;
+            }
+        }
+        if (eldest != null && tenants.remove(eldest.appId, eldest)) {
+            log.info("tenant evicted, appId:{}, maxTenants:{}", eldest.appId, config.getMaxTenants());
+            _deinitialize(eldest);
+        }
+    }
+
+    /**
+     * Latest get or publish of a tenant, now if a publish is waiting for its result
+     *
+     * @param tenant
+     * @return
+     */
+    private static long _lastActiveNanos(Tenant tenant) {
+        long lastActiveNanos = tenant.lastAccessNanos;
+        if (!tenant.future.isDone() || tenant.future.isCompletedExceptionally()) {
+            return lastActiveNanos;
+        }
+
+        CallApiImpl callApi = tenant.future.join();
+        if (callApi.getInFlightPublishCount() > 0) {
+            return System.nanoTime();
+        }
+        long lastPublishNanos = callApi.getLastPublishNanos();
+        return lastPublishNanos - lastActiveNanos > 0 ? lastPublishNanos : lastActiveNanos;
+    }
+
+    private static ThreadFactory _threadFactory(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Tenant {
+        private final String appId;
+        private final CompletableFuture<CallApiImpl> future = new CompletableFuture<>();
+        private final AtomicBoolean isCreated = new AtomicBoolean();
+        // 创建租户的线程写入, future 完成后读取
+        private AsyncCallApi asyncCallApi;
+        private volatile long lastAccessNanos = System.nanoTime();
+
+        Tenant(String appId) {
+            this.appId = appId;
+        }
+
+        /**
+         * The first get of a tenant creates it
+         *
+         * @return
+         */
+        boolean isCreator() {
+            return isCreated.compareAndSet(false, true);
+        }
+    }
+}
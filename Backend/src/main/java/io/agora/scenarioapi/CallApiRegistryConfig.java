@@ -0,0 +1,21 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class CallApiRegistryConfig {
+    // 租户空闲(未 get, 未发送且没有等待回调的消息)多久后被回收(deinitialize), 0 为不回收
+    private long idleTimeoutMillis = 10 * 60 * 1000L;
+    // 检查空闲租户的间隔
+    private long idleCheckIntervalMillis = 60 * 1000L;
+    // 最大租户数, 超出后回收最久未使用的租户, 0 为不限制
+    private int maxTenants = 0;
+    // 共享回调线程池的线程数
+    private int callbackThreads = 4;
+    // 共享回调线程池的队列长度, 队列满时在 RTM SDK 回调线程中直接执行
+    private int callbackQueueSize = 10000;
+    // 共享定时任务线程池的线程数
+    private int schedulerThreads = 2;
+    // 共享的执行 tokenSupplier 的线程数, 仅用于未配置 tokenSupplierExecutor 的租户
+    private int tokenSupplierThreads = 2;
+}
@@ -0,0 +1,153 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+
+/**
+ * Collects the per-user publish results of a batch and reports them together
+ * once every message of the batch has completed. Each message completes at most once,
+ * so the slots of pairs that were never published can be failed with failPending.
+ */
+class CallBatchCallback {
+    private final List<CallResult> callResults;
+    private final List<Slot> slots;
+    // 只在添加呼叫对和发送的调用线程中访问
+    private final Map<CallResult, Slot> slotsByCallResult = new IdentityHashMap<>();
+    private final AtomicInteger pendingCount;
+    private final ResultCallback<List<CallResult>> resultCallback;
+
+    CallBatchCallback(int size, ResultCallback<List<CallResult>> resultCallback) {
+        this.callResults = new ArrayList<>(size);
+        this.slots = new ArrayList<>(size);
+        this.pendingCount = new AtomicInteger(size * 2);
+        this.resultCallback = resultCallback;
+    }
+
+    /**
+     * Add a call pair, must be called for every pair before any message is published
+     *
+     * @param callPair
+     * @return
+     */
+    CallResult add(CallPair callPair) {
+        CallResult callResult = new CallResult(callPair);
+        Slot slot = new Slot(callResult);
+        callResults.add(callResult);
+        slots.add(slot);
+        slotsByCallResult.put(callResult, slot);
+        return callResult;
+    }
+
+    /**
+     * Report an empty batch immediately
+     *
+     * @return
+     */
+    boolean completeIfEmpty() {
+        if (pendingCount.get() != 0) {
+            return false;
+        }
+
+        _complete();
+        return true;
+    }
+
+    /**
+     * Callback of the message sent to userIdA
+     *
+     * @param callResult
+     * @return
+     */
+    ResultCallback<Void> callbackA(CallResult callResult) {
+        return slotsByCallResult.get(callResult).callbackA;
+    }
+
+    /**
+     * Callback of the message sent to userIdB
+     *
+     * @param callResult
+     * @return
+     */
+    ResultCallback<Void> callbackB(CallResult callResult) {
+        return slotsByCallResult.get(callResult).callbackB;
+    }
+
+    /**
+     * Fail the messages not completed yet of the pairs from an index on, in add order,
+     * used when publishing stopped partway through the batch
+     *
+     * @param fromIndex
+     * @param errorInfo
+     * @return
+     */
+    Void failPending(int fromIndex, ErrorInfo errorInfo) {
+        for (int i = fromIndex; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            slot.callbackA.onFailure(errorInfo);
+            slot.callbackB.onFailure(errorInfo);
+        }
+        return null;
+    }
+
+    private void _countDown() {
+        if (pendingCount.decrementAndGet() == 0) {
+            _complete();
+        }
+    }
+
+    private void _complete() {
+        if (resultCallback != null) {
+            resultCallback.onSuccess(Collections.unmodifiableList(callResults));
+        }
+    }
+
+    private class Slot {
+        private final ResultCallback<Void> callbackA;
+        private final ResultCallback<Void> callbackB;
+
+        Slot(CallResult callResult) {
+            AtomicBoolean isCompletedA = new AtomicBoolean();
+            AtomicBoolean isCompletedB = new AtomicBoolean();
+            this.callbackA = new ResultCallback<Void>() {
+                @Override
+                public void onSuccess(Void responseInfo) {
+                    if (isCompletedA.compareAndSet(false, true)) {
+                        _countDown();
+                    }
+                }
+
+                @Override
+                public void onFailure(ErrorInfo errorInfo) {
+                    if (isCompletedA.compareAndSet(false, true)) {
+                        callResult.setErrorInfoA(errorInfo);
+                        _countDown();
+                    }
+                }
+            };
+            this.callbackB = new ResultCallback<Void>() {
+                @Override
+                public void onSuccess(Void responseInfo) {
+                    if (isCompletedB.compareAndSet(false, true)) {
+                        _countDown();
+                    }
+                }
+
+                @Override
+                public void onFailure(ErrorInfo errorInfo) {
+                    if (isCompletedB.compareAndSet(false, true)) {
+                        callResult.setErrorInfoB(errorInfo);
+                        _countDown();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.agora.scenarioapi;
+
+import java.util.Map;
+
+/**
+ * Encoder of the call/hangup signaling messages, the constant part of a message is prepared once per encoder.
+ */
+interface CallMessageEncoder {
+    /**
+     * Create encoder for the given message version, 2.0 is the compact binary format, others are 1.0 JSON
+     *
+     * @param messageAction
+     * @param messageVersion
+     * @param fromUserExtension
+     * @return
+     */
+    static CallMessageEncoder create(Integer messageAction, String messageVersion,
+                                     Map<String, Object> fromUserExtension) {
+        if (BinaryMessageCodec.MESSAGE_VERSION.equals(messageVersion)) {
+            return new BinaryMessageEncoder(messageAction, fromUserExtension);
+        }
+        return new JsonMessageEncoder(messageAction, JsonMessageEncoder.MESSAGE_VERSION, fromUserExtension);
+    }
+
+    /**
+     * Whether the encoder was built from the given version and an extension equal to the given one, so a
+     * map changed in place is detected as well
+     *
+     * @param messageVersion
+     * @param fromUserExtension
+     * @return
+     */
+    boolean isEncodedWith(String messageVersion, Map<String, Object> fromUserExtension);
+
+    /**
+     * Encode call message
+     *
+     * @param messageTimestamp
+     * @param fromUserId
+     * @param remoteUserId
+     * @param roomId
+     * @param callId
+     * @return
+     */
+    byte[] encodeCall(long messageTimestamp, int fromUserId, int remoteUserId, String roomId, String callId);
+
+    /**
+     * Encode hangup message
+     *
+     * @param messageTimestamp
+     * @param fromUserId
+     * @param roomId
+     * @param callId
+     * @param hangupReason
+     * @return
+     */
+    byte[] encodeHangup(long messageTimestamp, int fromUserId, String roomId, String callId, String hangupReason);
+}
@@ -0,0 +1,27 @@
+package io.agora.scenarioapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CallPair {
+    // 呼叫用户Id
+    private Integer userIdA;
+    // 被呼叫用户Id
+    private Integer userIdB;
+    // 房间Id
+    private String roomId;
+    // 呼叫Id
+    private String callId;
+    // [可选]挂断时发送给 userIdA 的原因, 仅 hangupBatch 使用
+    private String reasonA;
+    // [可选]挂断时发送给 userIdB 的原因, 仅 hangupBatch 使用
+    private String reasonB;
+
+    public CallPair(Integer userIdA, Integer userIdB, String roomId, String callId) {
+        this(userIdA, userIdB, roomId, callId, null, null);
+    }
+}
@@ -0,0 +1,29 @@
+package io.agora.scenarioapi;
+
+import io.agora.rtm.ErrorInfo;
+import lombok.Data;
+
+@Data
+public class CallResult {
+    // 对应的呼叫对
+    private CallPair callPair;
+    // 发送给 userIdA 的信令结果, 成功为 null
+    private ErrorInfo errorInfoA;
+    // 发送给 userIdB 的信令结果, 成功为 null
+    private ErrorInfo errorInfoB;
+    // callPaired 只有一侧收到邀请时, 是否已向该侧成功发送补偿挂断
+    private boolean compensated;
+
+    public CallResult(CallPair callPair) {
+        this.callPair = callPair;
+    }
+
+    /**
+     * Whether both users received the message
+     *
+     * @return
+     */
+    public boolean isSuccess() {
+        return errorInfoA == null && errorInfoB == null;
+    }
+}
@@ -0,0 +1,107 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A call placed through the backend
+ */
+@Getter
+public class CallSession {
+    // 呼叫Id
+    private final String callId;
+    // 呼叫用户Id
+    private final Integer userIdA;
+    // 被呼叫用户Id
+    private final Integer userIdB;
+    // 房间Id
+    private final String roomId;
+    // 发起呼叫的时间戳
+    private final long startTimestamp;
+    // 接通的时间戳, 未接通为 0
+    private volatile long connectedTimestamp;
+    // 结束的时间戳, 未结束为 0
+    private volatile long endTimestamp;
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<CallSessionState> state = new AtomicReference<>(CallSessionState.CALLING);
+    // 振铃超时, 接通或结束时取消
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<HashedWheelTimer.Timeout> ringTimeout = new AtomicReference<>();
+
+    CallSession(String callId, Integer userIdA, Integer userIdB, String roomId, long startTimestamp) {
+        this.callId = callId;
+        this.userIdA = userIdA;
+        this.userIdB = userIdB;
+        this.roomId = roomId;
+        this.startTimestamp = startTimestamp;
+    }
+
+    public CallSessionState getState() {
+        return state.get();
+    }
+
+    /**
+     * The other user of the call
+     *
+     * @param userId
+     * @return
+     */
+    public Integer getPeerUserId(Integer userId) {
+        return userIdA.equals(userId) ? userIdB : userIdA;
+    }
+
+    boolean connect(long timestamp) {
+        if (!state.compareAndSet(CallSessionState.CALLING, CallSessionState.CONNECTED)) {
+            return false;
+        }
+        connectedTimestamp = timestamp;
+        _cancelRingTimeout();
+        return true;
+    }
+
+    /**
+     * Mark a CALLING session as timed out, so a concurrent connect fails and only one side wins
+     *
+     * @return false if the session is no longer CALLING
+     */
+    boolean timeout() {
+        return state.compareAndSet(CallSessionState.CALLING, CallSessionState.TIMEOUT);
+    }
+
+    boolean end(long timestamp) {
+        CallSessionState prevState = state.getAndSet(CallSessionState.ENDED);
+        if (prevState == CallSessionState.ENDED) {
+            return false;
+        }
+        endTimestamp = timestamp;
+        _cancelRingTimeout();
+        return true;
+    }
+
+    /**
+     * Attach the ring timeout, only the first one is kept
+     *
+     * @param timeout
+     * @return false if the session already has one or is no longer CALLING
+     */
+    boolean setRingTimeout(HashedWheelTimer.Timeout timeout) {
+        if (!ringTimeout.compareAndSet(null, timeout)) {
+            return false;
+        }
+        if (state.get() != CallSessionState.CALLING) {
+            // 并发接通或结束时不再计时
+            ringTimeout.set(null);
+            return false;
+        }
+        return true;
+    }
+
+    private void _cancelRingTimeout() {
+        HashedWheelTimer.Timeout timeout = ringTimeout.get();
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
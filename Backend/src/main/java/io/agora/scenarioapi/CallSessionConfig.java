@@ -0,0 +1,13 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class CallSessionConfig {
+    // 会话最长保留时间, 超时未挂断的会话会被清理, 避免客户端自行挂断后会话残留
+    private long maxLifetimeMillis = 2 * 60 * 60 * 1000L;
+    // 清理过期会话的间隔
+    private long purgeIntervalMillis = 60 * 1000L;
+    // hangupRoom/hangupUser 每批挂断的会话数, 上一批全部回调后再发送下一批, 避免瞬间占满发送队列
+    private int hangupBatchSize = 500;
+}
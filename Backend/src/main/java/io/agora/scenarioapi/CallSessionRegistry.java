@@ -0,0 +1,197 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of the active call sessions, keyed by callId with secondary indexes by userId and roomId.
+ * A session starts in CALLING on call, may move to CONNECTED, and is removed once ENDED by hangup
+ * or after maxLifetimeMillis. A user maps to the latest session it joined.
+ */
+@Slf4j
+public class CallSessionRegistry {
+    private final Map<String, CallSession> sessionsByCallId = new ConcurrentHashMap<>();
+    private final Map<Integer, CallSession> sessionsByUserId = new ConcurrentHashMap<>();
+    // 同一房间可有多个呼叫, 房间内无会话时移除
+    private final Map<String, Set<CallSession>> sessionsByRoomId = new ConcurrentHashMap<>();
+    private final long maxLifetimeMillis;
+    private final ScheduledExecutorService scheduler;
+    private final boolean isSharedScheduler;
+    private final ScheduledFuture<?> purgeFuture;
+
+    /**
+     * @param config
+     * @param sharedScheduler not shut down on stop, a purge thread is created if null
+     */
+    CallSessionRegistry(CallSessionConfig config, ScheduledExecutorService sharedScheduler) {
+        this.maxLifetimeMillis = config.getMaxLifetimeMillis();
+        this.isSharedScheduler = sharedScheduler != null;
+        this.scheduler = isSharedScheduler ? sharedScheduler : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "callapi-session-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.purgeFuture = this.scheduler.scheduleWithFixedDelay(this::_purge, config.getPurgeIntervalMillis(),
+                config.getPurgeIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start a session in CALLING, an existing session with the same callId is returned as is
+     *
+     * @param callId
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @return null if callId is null, such a call is not tracked
+     */
+    CallSession start(String callId, Integer userIdA, Integer userIdB, String roomId) {
+        if (callId == null) {
+            return null;
+        }
+        CallSession session = new CallSession(callId, userIdA, userIdB, roomId, System.currentTimeMillis());
+        CallSession existing = sessionsByCallId.putIfAbsent(callId, session);
+        if (existing != null) {
+            return existing;
+        }
+
+        sessionsByUserId.put(userIdA, session);
+        sessionsByUserId.put(userIdB, session);
+        if (roomId != null) {
+            sessionsByRoomId.compute(roomId, (key, sessions) -> {
+                Set<CallSession> roomSessions = sessions == null ? ConcurrentHashMap.newKeySet() : sessions;
+                roomSessions.add(session);
+                return roomSessions;
+            });
+        }
+        return session;
+    }
+
+    /**
+     * Mark a session CONNECTED
+     *
+     * @param callId
+     * @return false if the session is not found or not CALLING
+     */
+    public boolean connect(String callId) {
+        CallSession session = callId == null ? null : sessionsByCallId.get(callId);
+        return session != null && session.connect(System.currentTimeMillis());
+    }
+
+    /**
+     * End and remove a session
+     *
+     * @param callId
+     * @return the ended session, null if not found
+     */
+    CallSession end(String callId) {
+        CallSession session = callId == null ? null : sessionsByCallId.remove(callId);
+        if (session == null) {
+            return null;
+        }
+
+        session.end(System.currentTimeMillis());
+        sessionsByUserId.remove(session.getUserIdA(), session);
+        sessionsByUserId.remove(session.getUserIdB(), session);
+        if (session.getRoomId() != null) {
+            sessionsByRoomId.computeIfPresent(session.getRoomId(), (key, sessions) -> {
+                sessions.remove(session);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+        return session;
+    }
+
+    /**
+     * Session by callId
+     *
+     * @param callId
+     * @return
+     */
+    public CallSession getSession(String callId) {
+        return callId == null ? null : sessionsByCallId.get(callId);
+    }
+
+    /**
+     * Current session of a user
+     *
+     * @param userId
+     * @return
+     */
+    public CallSession getSessionByUserId(Integer userId) {
+        return sessionsByUserId.get(userId);
+    }
+
+    /**
+     * Active sessions of a room
+     *
+     * @param roomId
+     * @return
+     */
+    public List<CallSession> getSessionsByRoomId(String roomId) {
+        Set<CallSession> sessions = sessionsByRoomId.get(roomId);
+        return sessions == null ? Collections.emptyList() : new ArrayList<>(sessions);
+    }
+
+    /**
+     * State of a user, IDLE if not in any session
+     *
+     * @param userId
+     * @return
+     */
+    public CallSessionState getUserState(Integer userId) {
+        CallSession session = sessionsByUserId.get(userId);
+        return session == null ? CallSessionState.IDLE : session.getState();
+    }
+
+    /**
+     * Whether a user is calling or connected
+     *
+     * @param userId
+     * @return
+     */
+    public boolean isInCall(Integer userId) {
+        return sessionsByUserId.containsKey(userId);
+    }
+
+    /**
+     * Number of active sessions
+     *
+     * @return
+     */
+    public int size() {
+        return sessionsByCallId.size();
+    }
+
+    void stop() {
+        purgeFuture.cancel(false);
+        if (!isSharedScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void _purge() {
+        long expireBefore = System.currentTimeMillis() - maxLifetimeMillis;
+        int purgedCount = 0;
+        Iterator<CallSession> iterator = sessionsByCallId.values().iterator();
+        while (iterator.hasNext()) {
+            CallSession session = iterator.next();
+            if (session.getStartTimestamp() < expireBefore && end(session.getCallId()) != null) {
+                purgedCount++;
+            }
+        }
+        if (purgedCount > 0) {
+            log.info("purge expired call sessions, count:{}, size:{}", purgedCount, size());
+        }
+    }
+}
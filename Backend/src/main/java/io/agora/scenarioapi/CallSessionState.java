@@ -0,0 +1,13 @@
+package io.agora.scenarioapi;
+
+/**
+ * State of a call session tracked by the backend
+ */
+public enum CallSessionState {
+    IDLE,
+    CALLING,
+    CONNECTED,
+    // 振铃超时, 正在挂断
+    TIMEOUT,
+    ENDED
+}
@@ -0,0 +1,17 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class CdrConfig {
+    // 话单文件目录, 每个 CallApi 实例需使用单独的目录
+    private String directory;
+    // 单个话单文件大小, 写满后切换到新文件, 向下取整为记录大小(256 字节)的整数倍
+    private int segmentSizeBytes = 128 * 1024 * 1024;
+    // 稀疏索引每块的记录数, 每块记录时间范围和用户Id的布隆过滤器
+    private int blockRecords = 4096;
+    // 布隆过滤器每条记录的位数, 约为每条记录 bloomBitsPerRecord/8 字节, 16 位时按用户查询约 2% 的块需要误读; 只有写入中的文件的过滤器在堆上, 已封存文件的过滤器在 .idx 中按需映射读取
+    private int bloomBitsPerRecord = 16;
+    // 保留的话单文件数, 超出时删除最旧的话单文件及其 .idx, 0 表示不删除, 由运维自行清理
+    private int maxSegments = 0;
+}
@@ -0,0 +1,30 @@
+package io.agora.scenarioapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A call detail record, written for every call and hangup placed by the backend
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CdrRecord {
+    // 信令类型, CALL 或 HANGUP
+    private final CallAction action;
+    // 发送信令的时间戳
+    private final long timestampMillis;
+    // 呼叫用户Id
+    private final int userIdA;
+    // 被呼叫用户Id
+    private final int userIdB;
+    // 呼叫Id, 超出 63 字节的部分被截断, 下同
+    private final String callId;
+    // 房间Id
+    private final String roomId;
+    // 挂断时发送给 userIdA 的原因, 最多 51 字节
+    private final String reasonA;
+    // 挂断时发送给 userIdB 的原因, 最多 51 字节
+    private final String reasonB;
+}
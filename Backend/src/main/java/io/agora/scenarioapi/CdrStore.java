@@ -0,0 +1,570 @@
+package io.agora.scenarioapi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append only store of call detail records on memory mapped segment files. Records are fixed width, so a
+ * record is found by its index without reading the ones before it. Every blockRecords records of a
+ * segment form a block with a time range and a Bloom filter of userIds, a query only reads the blocks
+ * that overlap its time range and may contain its user. The index of a segment is written to a .idx file
+ * next to it when the segment is sealed, an unsealed segment is scanned on open.
+ * <p>
+ * Only the time ranges stay on the heap, 16 bytes per block. The Bloom filters of the segment being
+ * written are on the heap until it is sealed, those of sealed segments are read from the memory mapped
+ * .idx files, so they live in the page cache rather than the heap. Segments are kept until maxSegments
+ * is exceeded, the oldest sealed segment and its index are then deleted; with maxSegments 0 nothing is
+ * deleted and the files grow until removed by the operator.
+ * <p>
+ * Record, 256 bytes: int crc32 of the rest, byte magic, byte action, 2 bytes padding, long timestampMillis,
+ * int userIdA, int userIdB, then callId (64), roomId (64), reasonA (52), reasonB (52), each as byte
+ * length and UTF-8 bytes, -1 for null.
+ */
+@Slf4j
+public class CdrStore {
+    static final int RECORD_SIZE = 256;
+    private static final String SEGMENT_PREFIX = "cdr-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_MAGIC = 0x43445249;
+    private static final byte RECORD_MAGIC = 0x43;
+    private static final int CALL_ID_OFFSET = 24;
+    private static final int ROOM_ID_OFFSET = 88;
+    private static final int REASON_A_OFFSET = 152;
+    private static final int REASON_B_OFFSET = 204;
+    private static final int BLOOM_HASHES = 4;
+    private static final int INDEX_HEADER_SIZE = 16;
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final int blockRecords;
+    private final int bloomWords;
+    private final int maxSegments;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final CRC32 crc32 = new CRC32();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private Segment current;
+    private long nextSegmentSeq;
+    private boolean isClosed;
+
+    /**
+     * Open the store, the index of the existing segments is loaded and new records go to a new segment
+     *
+     * @param config
+     */
+    public CdrStore(CdrConfig config) throws IOException {
+        if (config.getDirectory() == null) {
+            throw new IllegalArgumentException("directory of CdrConfig is required");
+        }
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentRecords = Math.max(config.getSegmentSizeBytes() / RECORD_SIZE, 1);
+        this.blockRecords = Math.max(config.getBlockRecords(), 1);
+        this.bloomWords = Math.max((int) ((long) blockRecords * config.getBloomBitsPerRecord() / 64), 1);
+        this.maxSegments = Math.max(config.getMaxSegments(), 0);
+        Files.createDirectories(directory);
+        _open();
+    }
+
+    /**
+     * Append a record
+     *
+     * @param record
+     * @return
+     */
+    public synchronized Void append(CdrRecord record) {
+        if (isClosed) {
+            return null;
+        }
+        if (current == null || current.recordCount == segmentRecords) {
+            _roll();
+        }
+
+        ByteBuffer buffer = recordBuffer;
+        buffer.clear();
+        buffer.putInt(0);
+        buffer.put(RECORD_MAGIC);
+        buffer.put((byte) record.getAction().getValue());
+        buffer.putShort((short) 0);
+        buffer.putLong(record.getTimestampMillis());
+        buffer.putInt(record.getUserIdA());
+        buffer.putInt(record.getUserIdB());
+        _putString(buffer, CALL_ID_OFFSET, ROOM_ID_OFFSET, record.getCallId());
+        _putString(buffer, ROOM_ID_OFFSET, REASON_A_OFFSET, record.getRoomId());
+        _putString(buffer, REASON_A_OFFSET, REASON_B_OFFSET, record.getReasonA());
+        _putString(buffer, REASON_B_OFFSET, RECORD_SIZE, record.getReasonB());
+        crc32.reset();
+        crc32.update(buffer.array(), 4, RECORD_SIZE - 4);
+        buffer.putInt(0, (int) crc32.getValue());
+
+        Segment segment = current;
+        int recordIndex = segment.recordCount;
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(recordIndex * RECORD_SIZE);
+        target.put(buffer.array(), 0, RECORD_SIZE);
+        segment.index(recordIndex, record.getTimestampMillis(), record.getUserIdA(), record.getUserIdB());
+        // 索引更新后再发布记录数, 查询读到的记录均已建立索引
+        segment.recordCount = recordIndex + 1;
+        return null;
+    }
+
+    /**
+     * Records of a user in a time range, in append order
+     *
+     * @param userId
+     * @param fromMillis inclusive
+     * @param toMillis   exclusive
+     * @return
+     */
+    public List<CdrRecord> queryUser(int userId, long fromMillis, long toMillis) {
+        List<CdrRecord> records = new ArrayList<>();
+        _scan(fromMillis, toMillis, true, userId, records::add);
+        return records;
+    }
+
+    /**
+     * Visit all records in a time range, in append order
+     *
+     * @param fromMillis inclusive
+     * @param toMillis   exclusive
+     * @param consumer
+     * @return number of records visited
+     */
+    public long scan(long fromMillis, long toMillis, Consumer<CdrRecord> consumer) {
+        return _scan(fromMillis, toMillis, false, 0, consumer);
+    }
+
+    /**
+     * Number of records of all segments
+     *
+     * @return
+     */
+    public long getRecordCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.recordCount;
+        }
+        return count;
+    }
+
+    /**
+     * Number of segment files
+     *
+     * @return
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Heap bytes of the index, the time ranges of all blocks and the Bloom filters of the unsealed segment
+     *
+     * @return
+     */
+    public long getIndexBytes() {
+        long indexBytes = 0;
+        for (Segment segment : segments) {
+            for (Block block : segment.blocks) {
+                indexBytes += 16L;
+                if (block.bloom != null) {
+                    indexBytes += 8L * bloomWords;
+                }
+            }
+        }
+        return indexBytes;
+    }
+
+    /**
+     * Seal the current segment and write its index
+     *
+     * @return
+     */
+    public synchronized Void close() {
+        if (isClosed) {
+            return null;
+        }
+        isClosed = true;
+        if (current != null) {
+            _seal(current);
+            current = null;
+        }
+        return null;
+    }
+
+    private long _scan(long fromMillis, long toMillis, boolean isByUser, int userId, Consumer<CdrRecord> consumer) {
+        long count = 0;
+        for (Segment segment : segments) {
+            int recordCount = segment.recordCount;
+            ByteBuffer buffer = null;
+            for (int blockIndex = 0; blockIndex * blockRecords < recordCount; blockIndex++) {
+                Block block = segment.blocks.get(blockIndex);
+                if (block.maxTimestamp < fromMillis || block.minTimestamp >= toMillis
+                        || (isByUser && !segment.mightContain(blockIndex, userId))) {
+                    continue;
+                }
+
+                if (buffer == null) {
+                    buffer = segment.readBuffer();
+                    if (buffer == null) {
+                        // 已被保留策略删除
+                        break;
+                    }
+                }
+                int end = Math.min((blockIndex + 1) * blockRecords, recordCount);
+                for (int recordIndex = blockIndex * blockRecords; recordIndex < end; recordIndex++) {
+                    int position = recordIndex * RECORD_SIZE;
+                    long timestampMillis = buffer.getLong(position + 8);
+                    if (timestampMillis < fromMillis || timestampMillis >= toMillis) {
+                        continue;
+                    }
+                    if (isByUser && buffer.getInt(position + 16) != userId && buffer.getInt(position + 20) != userId) {
+                        continue;
+                    }
+                    consumer.accept(_readRecord(buffer, position));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void _open() throws IOException {
+        List<Path> segmentFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> _segmentSeq(path) >= 0).forEach(segmentFiles::add);
+        }
+        segmentFiles.sort((a, b) -> Long.compare(_segmentSeq(a), _segmentSeq(b)));
+
+        for (Path segmentFile : segmentFiles) {
+            Segment segment = new Segment(segmentFile, null);
+            Path indexFile = _indexFile(segmentFile);
+            if (!Files.exists(indexFile) || !_loadIndex(segment, indexFile)) {
+                // 上次未正常关闭, 扫描记录重建索引
+                _rebuildIndex(segment);
+                _writeIndex(segment);
+            }
+            segments.add(segment);
+            nextSegmentSeq = Math.max(nextSegmentSeq, _segmentSeq(segmentFile) + 1);
+        }
+        _retain(0);
+        log.info("cdr, open, directory:{}, segments:{}, records:{}", directory, segments.size(), getRecordCount());
+    }
+
+    private void _roll() {
+        if (current != null) {
+            _seal(current);
+        }
+
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentSeq++, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            current = new Segment(path,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE));
+        } catch (IOException e) {
+            throw new IllegalStateException("cdr, create segment failed, path:" + path, e);
+        }
+        segments.add(current);
+        _retain(1);
+    }
+
+    /**
+     * Delete the oldest segments beyond maxSegments, the newest unsealed ones are never deleted
+     *
+     * @param unsealedCount
+     */
+    private void _retain(int unsealedCount) {
+        while (maxSegments > 0 && segments.size() > Math.max(maxSegments, unsealedCount)) {
+            Segment segment = segments.remove(0);
+            try {
+                Files.deleteIfExists(_indexFile(segment.path));
+                Files.deleteIfExists(segment.path);
+                log.info("cdr, segment deleted, path:{}, records:{}", segment.path, segment.recordCount);
+            } catch (IOException e) {
+                log.warn("cdr, delete segment failed, path:{}, error:{}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    private void _seal(Segment segment) {
+        segment.buffer.force();
+        _writeIndex(segment);
+    }
+
+    private void _writeIndex(Segment segment) {
+        Path indexFile = _indexFile(segment.path);
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(tempFile))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(segment.recordCount);
+            output.writeInt(blockRecords);
+            output.writeInt(bloomWords);
+            for (Block block : segment.blocks) {
+                output.writeLong(block.minTimestamp);
+                output.writeLong(block.maxTimestamp);
+                for (long word : block.bloom) {
+                    output.writeLong(word);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("cdr, write index failed, path:{}, error:{}", indexFile, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            segment.mapIndex(indexFile);
+        } catch (IOException e) {
+            // 布隆过滤器留在堆上, 查询不受影响
+            log.warn("cdr, write index failed, path:{}, error:{}", indexFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @return false if the index was written with another block layout
+     */
+    private boolean _loadIndex(Segment segment, Path indexFile) throws IOException {
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(indexFile))) {
+            if (input.readInt() != INDEX_MAGIC) {
+                return false;
+            }
+            int recordCount = input.readInt();
+            if (input.readInt() != blockRecords || input.readInt() != bloomWords) {
+                return false;
+            }
+            int blockCount = (recordCount + blockRecords - 1) / blockRecords;
+            if (Files.size(indexFile) != INDEX_HEADER_SIZE + (long) blockCount * _indexBlockSize()) {
+                return false;
+            }
+            for (int i = 0; i < blockCount; i++) {
+                Block block = new Block(null);
+                block.minTimestamp = input.readLong();
+                block.maxTimestamp = input.readLong();
+                // 布隆过滤器不读入堆, 查询时从映射中读取
+                for (int j = 0; j < bloomWords; j++) {
+                    input.readLong();
+                }
+                segment.blocks.add(block);
+            }
+            segment.recordCount = recordCount;
+        }
+        segment.mapIndex(indexFile);
+        return true;
+    }
+
+    private int _indexBlockSize() {
+        return 16 + 8 * bloomWords;
+    }
+
+    private void _rebuildIndex(Segment segment) {
+        segment.blocks.clear();
+        ByteBuffer buffer = segment.readBuffer();
+        CRC32 readCrc32 = new CRC32();
+        int recordIndex = 0;
+        while ((recordIndex + 1) * RECORD_SIZE <= buffer.capacity()) {
+            int position = recordIndex * RECORD_SIZE;
+            if (buffer.get(position + 4) != RECORD_MAGIC) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + 4).limit(position + RECORD_SIZE);
+            readCrc32.reset();
+            readCrc32.update(body);
+            if ((int) readCrc32.getValue() != buffer.getInt(position)) {
+                log.warn("cdr, corrupted record, stop reading, path:{}, index:{}", segment.path, recordIndex);
+                break;
+            }
+            segment.index(recordIndex, buffer.getLong(position + 8), buffer.getInt(position + 16),
+                    buffer.getInt(position + 20));
+            recordIndex++;
+        }
+        segment.recordCount = recordIndex;
+    }
+
+    private static CdrRecord _readRecord(ByteBuffer buffer, int position) {
+        return new CdrRecord(CallAction.fromValue(buffer.get(position + 5)), buffer.getLong(position + 8),
+                buffer.getInt(position + 16), buffer.getInt(position + 20),
+                _getString(buffer, position + CALL_ID_OFFSET), _getString(buffer, position + ROOM_ID_OFFSET),
+                _getString(buffer, position + REASON_A_OFFSET), _getString(buffer, position + REASON_B_OFFSET));
+    }
+
+    /**
+     * Write a string into the field [offset, end), truncated at a character boundary to fit
+     */
+    private static void _putString(ByteBuffer buffer, int offset, int end, String value) {
+        if (value == null) {
+            buffer.put(offset, (byte) -1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, end - offset - 1);
+        // 不截断在 UTF-8 多字节字符中间
+        while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        buffer.put(offset, (byte) length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(offset + 1 + i, bytes[i]);
+        }
+        for (int i = offset + 1 + length; i < end; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private static String _getString(ByteBuffer buffer, int offset) {
+        int length = buffer.get(offset);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Path _indexFile(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return segmentFile.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private static long _segmentSeq(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private class Segment {
+        private final Path path;
+        // 写入中的文件, 已封存的文件为 null
+        private final MappedByteBuffer buffer;
+        private final List<Block> blocks = new CopyOnWriteArrayList<>();
+        private volatile MappedByteBuffer readBuffer;
+        // 封存后的 .idx 映射, 布隆过滤器从中读取
+        private volatile MappedByteBuffer indexBuffer;
+        private volatile int recordCount;
+
+        Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+            this.readBuffer = buffer;
+        }
+
+        void index(int recordIndex, long timestampMillis, int userIdA, int userIdB) {
+            int blockIndex = recordIndex / blockRecords;
+            if (blockIndex == blocks.size()) {
+                blocks.add(new Block(new long[bloomWords]));
+            }
+            Block block = blocks.get(blockIndex);
+            block.minTimestamp = Math.min(block.minTimestamp, timestampMillis);
+            block.maxTimestamp = Math.max(block.maxTimestamp, timestampMillis);
+            block.add(userIdA);
+            block.add(userIdB);
+        }
+
+        /**
+         * Read the Bloom filters from the .idx file from now on and drop the ones on the heap
+         */
+        void mapIndex(Path indexFile) throws IOException {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                indexBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            // indexBuffer 先于清空发布, 读到 null 的查询一定能看到 indexBuffer
+            for (Block block : blocks) {
+                block.bloom = null;
+            }
+        }
+
+        boolean mightContain(int blockIndex, int userId) {
+            long[] bloom = blocks.get(blockIndex).bloom;
+            long hash = _mix(userId);
+            int bits = bloomWords * 64;
+            int offset = INDEX_HEADER_SIZE + blockIndex * _indexBlockSize() + 16;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = _bloomBit(hash, i, bits);
+                long word = bloom != null ? bloom[bit >>> 6] : indexBuffer.getLong(offset + 8 * (bit >>> 6));
+                if ((word & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Mapping for reads, sealed segments are mapped on first read
+         *
+         * @return null if the segment was deleted
+         */
+        ByteBuffer readBuffer() {
+            MappedByteBuffer mapped = readBuffer;
+            if (mapped == null) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (NoSuchFileException e) {
+                    return null;
+                } catch (IOException e) {
+                    throw new IllegalStateException("cdr, map segment failed, path:" + path, e);
+                }
+                readBuffer = mapped;
+            }
+            // 绝对位置读取, duplicate 避免共享 position
+            return mapped.duplicate();
+        }
+    }
+
+    private static int _bloomBit(long hash, int i, int bits) {
+        return (int) ((((hash >>> 32) + i * (hash & 0xFFFFFFFFL)) & Long.MAX_VALUE) % bits);
+    }
+
+    private static long _mix(int userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 31;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Time range and, until its segment is sealed, Bloom filter of the userIds of a block of records
+     */
+    private static class Block {
+        private volatile long[] bloom;
+        private volatile long minTimestamp = Long.MAX_VALUE;
+        private volatile long maxTimestamp = Long.MIN_VALUE;
+
+        Block(long[] bloom) {
+            this.bloom = bloom;
+        }
+
+        void add(int userId) {
+            long hash = _mix(userId);
+            int bits = bloom.length * 64;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = _bloomBit(hash, i, bits);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hashed timing wheel for large numbers of timeouts. A timeout is an intrusive node of a bucket list,
+ * so schedule and cancel are O(1) without allocating anything but the timeout itself, and one worker
+ * thread expires the buckets tick by tick. Timeouts fire up to one tick late.
+ */
+@Slf4j
+class HashedWheelTimer {
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] buckets;
+    private final long startNanos;
+    private final LongAdder pendingCount = new LongAdder();
+    private final Thread worker;
+    // 下一个待处理的 tick, 只由 worker 在持有对应 bucket 锁时更新
+    private volatile long tick;
+    private volatile boolean isStopped;
+
+    /**
+     * @param tickMillis
+     * @param wheelSize  rounded up to a power of two
+     * @param threadName
+     */
+    HashedWheelTimer(long tickMillis, int wheelSize, String threadName) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickMillis, 1));
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::_run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Schedule a timeout, it must not be pending already
+     *
+     * @param timeout
+     * @param delayMillis
+     * @return
+     */
+    Void schedule(Timeout timeout, long delayMillis) {
+        if (!Timeout.STATE.compareAndSet(timeout, Timeout.INIT, Timeout.PENDING)) {
+            throw new IllegalStateException("timeout already scheduled");
+        }
+
+        long deadlineNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+        // 向上取整, 不会提前到期
+        long deadlineTick = (deadlineNanos + tickNanos - 1) / tickNanos;
+        timeout.timer = this;
+        pendingCount.increment();
+        while (true) {
+            long currentTick = tick;
+            long targetTick = Math.max(deadlineTick, currentTick);
+            Bucket bucket = buckets[(int) (targetTick & mask)];
+            synchronized (bucket) {
+                // worker 已处理过 targetTick 时重新选择 bucket
+                if (tick <= targetTick) {
+                    timeout.deadlineTick = targetTick;
+                    bucket.add(timeout);
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancel a pending timeout
+     *
+     * @param timeout
+     * @return false if it already expired or was cancelled
+     */
+    boolean cancel(Timeout timeout) {
+        if (!Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.CANCELLED)) {
+            return false;
+        }
+
+        pendingCount.decrement();
+        while (true) {
+            Bucket bucket = timeout.bucket;
+            if (bucket == null) {
+                // 正在被 schedule 加入或 worker 取出, worker 会跳过已取消的
+                return true;
+            }
+            synchronized (bucket) {
+                if (timeout.bucket == bucket) {
+                    bucket.remove(timeout);
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of pending timeouts
+     *
+     * @return
+     */
+    long size() {
+        return pendingCount.sum();
+    }
+
+    /**
+     * Stop the worker, pending timeouts never fire
+     *
+     * @return
+     */
+    Void stop() {
+        isStopped = true;
+        LockSupport.unpark(worker);
+        return null;
+    }
+
+    private void _run() {
+        while (!isStopped) {
+            long currentTick = tick;
+            long waitNanos = startNanos + currentTick * tickNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+                continue;
+            }
+
+            Timeout expired;
+            Bucket bucket = buckets[(int) (currentTick & mask)];
+            synchronized (bucket) {
+                expired = bucket.expire(currentTick);
+                tick = currentTick + 1;
+            }
+
+            while (expired != null) {
+                Timeout next = expired.next;
+                expired.next = null;
+                if (Timeout.STATE.compareAndSet(expired, Timeout.PENDING, Timeout.EXPIRED)) {
+                    pendingCount.decrement();
+                    try {
+                        expired.expire();
+                    } catch (Exception e) {
+                        log.error("timeout expire failed, error:{}", e.getMessage(), e);
+                    }
+                }
+                expired = next;
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts hashed to a slot, guarded by its own monitor
+     */
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Unlink the timeouts due at the tick, returned as a list chained by next
+         */
+        Timeout expire(long currentTick) {
+            Timeout expiredHead = null;
+            Timeout expiredTail = null;
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= currentTick) {
+                    remove(timeout);
+                    if (expiredTail == null) {
+                        expiredHead = timeout;
+                    } else {
+                        expiredTail.next = timeout;
+                    }
+                    expiredTail = timeout;
+                }
+                timeout = next;
+            }
+            return expiredHead;
+        }
+    }
+
+    /**
+     * A timeout of the wheel, scheduled at most once
+     */
+    abstract static class Timeout {
+        private static final int INIT = 0;
+        private static final int PENDING = 1;
+        private static final int CANCELLED = 2;
+        private static final int EXPIRED = 3;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private volatile int state;
+        private long deadlineTick;
+        private volatile Bucket bucket;
+        private HashedWheelTimer timer;
+        private Timeout prev;
+        private Timeout next;
+
+        /**
+         * Called on the worker thread once due
+         */
+        abstract void expire();
+
+        boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /**
+         * Cancel if pending
+         *
+         * @return false if not scheduled, expired or already cancelled
+         */
+        boolean cancel() {
+            HashedWheelTimer scheduledTimer = timer;
+            return scheduledTimer != null && scheduledTimer.cancel(this);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package io.agora.scenarioapi;
 
+import java.util.Collection;
+import java.util.List;
+
 import io.agora.rtm.ResultCallback;
 
 public interface ICallApi {
@@ -20,6 +23,16 @@ public interface ICallApi {
      */
     public Void deinitialize(ResultCallback<Void> resultCallbackLogout);
 
+    /**
+     * Deinitialize after the published messages are called back, new messages are rejected meanwhile.
+     * Blocks the caller up to drainTimeoutMillis, the messages still outstanding then fail with NOT_INITIALIZED
+     *
+     * @param drainTimeoutMillis
+     * @param resultCallbackLogout
+     * @return
+     */
+    public Void deinitialize(long drainTimeoutMillis, ResultCallback<Void> resultCallbackLogout);
+
     /**
      * Call
      *
@@ -36,6 +49,20 @@ public interface ICallApi {
                      ResultCallback<Void> resultCallbackUserIdB);
 
 
+    /**
+     * Call both users as one operation, the result is reported once both messages completed, if only one
+     * user got the invitation a compensating hangup is sent to it before reporting
+     *
+     * @param userIdA
+     * @param userIdB
+     * @param roomId
+     * @param callId
+     * @param resultCallback
+     * @return
+     */
+    public Void callPaired(int userIdA, int userIdB, String roomId, String callId,
+                           ResultCallback<CallResult> resultCallback);
+
     /**
      * hangup
      *
@@ -54,6 +81,64 @@ public interface ICallApi {
                        ResultCallback<Void> resultCallbackUserIdA,
                        ResultCallback<Void> resultCallbackUserIdB);
 
+    /**
+     * hangup by callId, the users and room are looked up from the call session, requires callSessionConfig
+     *
+     * @param callId
+     * @param reasonA
+     * @param reasonB
+     * @param resultCallbackUserIdA
+     * @param resultCallbackUserIdB
+     * @return
+     */
+    public Void hangup(String callId, String reasonA, String reasonB,
+                       ResultCallback<Void> resultCallbackUserIdA,
+                       ResultCallback<Void> resultCallbackUserIdB);
+
+    /**
+     * Hang up every active call of a room, the users are looked up from the call sessions, requires
+     * callSessionConfig. The calls are hung up in batches of hangupBatchSize and the results of all of them
+     * are reported together
+     *
+     * @param roomId
+     * @param reason         sent to both users
+     * @param resultCallback
+     * @return
+     */
+    public Void hangupRoom(String roomId, String reason, ResultCallback<List<CallResult>> resultCallback);
+
+    /**
+     * Hang up the active call of a user, requires callSessionConfig
+     *
+     * @param userId
+     * @param reason         sent to both users
+     * @param resultCallback
+     * @return
+     */
+    public Void hangupUser(int userId, String reason, ResultCallback<List<CallResult>> resultCallback);
+
+    /**
+     * Call in batch, the results of all pairs are reported together once every message has completed.
+     * A pair without userIdA, userIdB or callId fails the whole batch with INVALID_PARAMETER before anything
+     * is sent
+     *
+     * @param callPairs
+     * @param resultCallback
+     * @return
+     */
+    public Void callBatch(Collection<CallPair> callPairs, ResultCallback<List<CallResult>> resultCallback);
+
+    /**
+     * Hangup in batch, the results of all pairs are reported together once every message has completed.
+     * A pair without userIdA, userIdB or callId fails the whole batch with INVALID_PARAMETER before anything
+     * is sent
+     *
+     * @param callPairs
+     * @param resultCallback
+     * @return
+     */
+    public Void hangupBatch(Collection<CallPair> callPairs, ResultCallback<List<CallResult>> resultCallback);
+
     /**
      * Renew token
      *
@@ -61,4 +146,14 @@ public interface ICallApi {
      * @return
      */
     public Void renewToken(String rtmToken, ResultCallback<Void> resultCallback);
+
+    /**
+     * Renew token of the given rtm identity, used in pooled mode
+     *
+     * @param userId
+     * @param rtmToken
+     * @param resultCallback
+     * @return
+     */
+    public Void renewToken(String userId, String rtmToken, ResultCallback<Void> resultCallback);
 }
@@ -0,0 +1,273 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.alibaba.fastjson2.JSON;
+
+/**
+ * Template based JSON encoder of the signaling messages, message_version 1.0.
+ * The constant fields of a message (message_action, message_version, fromUserExtension) are encoded once,
+ * only the per-message fields are written into a reusable thread local buffer.
+ * The output is byte for byte JSON.toJSONBytes of the HashMap the messages used to be built from: the fields
+ * follow the iteration order of that HashMap and null values are omitted.
+ */
+class JsonMessageEncoder implements CallMessageEncoder {
+    static final String MESSAGE_VERSION = "1.0";
+
+    private static final int FIELD_MESSAGE_ACTION = 0;
+    private static final int FIELD_MESSAGE_VERSION = 1;
+    private static final int FIELD_MESSAGE_TIMESTAMP = 2;
+    private static final int FIELD_FROM_USER_ID = 3;
+    private static final int FIELD_REMOTE_USER_ID = 4;
+    private static final int FIELD_FROM_ROOM_ID = 5;
+    private static final int FIELD_CALL_ID = 6;
+    private static final int FIELD_HANGUP_REASON = 7;
+    private static final int FIELD_FROM_USER_EXTENSION = 8;
+
+    private static final String[] KEYS = {"message_action", "message_version", "message_timestamp", "fromUserId",
+            "remoteUserId", "fromRoomId", "callId", "hangupReason", "fromUserExtension"};
+    private static final byte[][] KEY_BYTES = new byte[KEYS.length][];
+    // 按原 HashMap 的插入顺序得到其遍历顺序
+    private static final int[] CALL_FIELDS = _hashMapOrder(FIELD_MESSAGE_ACTION, FIELD_MESSAGE_VERSION,
+            FIELD_MESSAGE_TIMESTAMP, FIELD_FROM_USER_ID, FIELD_REMOTE_USER_ID, FIELD_FROM_ROOM_ID, FIELD_CALL_ID,
+            FIELD_FROM_USER_EXTENSION);
+    private static final int[] HANGUP_FIELDS = _hashMapOrder(FIELD_MESSAGE_ACTION, FIELD_MESSAGE_VERSION,
+            FIELD_MESSAGE_TIMESTAMP, FIELD_FROM_USER_ID, FIELD_FROM_ROOM_ID, FIELD_CALL_ID, FIELD_HANGUP_REASON,
+            FIELD_FROM_USER_EXTENSION);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SHORT_ESCAPES = new byte[0x20];
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    static {
+        SHORT_ESCAPES['\b'] = 'b';
+        SHORT_ESCAPES['\t'] = 't';
+        SHORT_ESCAPES['\n'] = 'n';
+        SHORT_ESCAPES['\f'] = 'f';
+        SHORT_ESCAPES['\r'] = 'r';
+        for (int field = 0; field < KEYS.length; field++) {
+            KEY_BYTES[field] = ("\"" + KEYS[field] + "\":").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // 构建模板时的副本, 调用方原地修改 fromUserExtension 后不再相等, 模板随之重建
+    private final Map<String, Object> fromUserExtension;
+    // 常量字段的 "key":value, 不输出的为 null
+    private final byte[][] constantFields = new byte[KEYS.length][];
+
+    JsonMessageEncoder(Integer messageAction, String messageVersion, Map<String, Object> fromUserExtension) {
+        this.constantFields[FIELD_MESSAGE_ACTION] = _constantField(FIELD_MESSAGE_ACTION, messageAction);
+        this.constantFields[FIELD_MESSAGE_VERSION] = _constantField(FIELD_MESSAGE_VERSION, messageVersion);
+        if (fromUserExtension != null) {
+            this.fromUserExtension = new LinkedHashMap<>(fromUserExtension);
+            this.constantFields[FIELD_FROM_USER_EXTENSION] = _constantField(FIELD_FROM_USER_EXTENSION,
+                    this.fromUserExtension);
+        } else {
+            this.fromUserExtension = null;
+        }
+    }
+
+    @Override
+    public boolean isEncodedWith(String messageVersion, Map<String, Object> fromUserExtension) {
+        if (BinaryMessageCodec.MESSAGE_VERSION.equals(messageVersion)) {
+            return false;
+        }
+        return this.fromUserExtension == null ? fromUserExtension == null
+                : this.fromUserExtension.equals(fromUserExtension);
+    }
+
+    @Override
+    public byte[] encodeCall(long messageTimestamp, int fromUserId, int remoteUserId, String roomId, String callId) {
+        return _encode(CALL_FIELDS, messageTimestamp, fromUserId, remoteUserId, roomId, callId, null);
+    }
+
+    @Override
+    public byte[] encodeHangup(long messageTimestamp, int fromUserId, String roomId, String callId, String hangupReason) {
+        return _encode(HANGUP_FIELDS, messageTimestamp, fromUserId, 0, roomId, callId, hangupReason);
+    }
+
+    private byte[] _encode(int[] fields, long messageTimestamp, int fromUserId, int remoteUserId, String roomId,
+                           String callId, String hangupReason) {
+        Buffer buffer = BUFFER.get();
+        buffer.reset();
+        buffer.writeByte((byte) '{');
+        for (int field : fields) {
+            switch (field) {
+                case FIELD_MESSAGE_TIMESTAMP:
+                    buffer.writeKey(field);
+                    buffer.writeLong(messageTimestamp);
+                    break;
+                case FIELD_FROM_USER_ID:
+                    buffer.writeKey(field);
+                    buffer.writeLong(fromUserId);
+                    break;
+                case FIELD_REMOTE_USER_ID:
+                    buffer.writeKey(field);
+                    buffer.writeLong(remoteUserId);
+                    break;
+                case FIELD_FROM_ROOM_ID:
+                    buffer.writeStringField(field, roomId);
+                    break;
+                case FIELD_CALL_ID:
+                    buffer.writeStringField(field, callId);
+                    break;
+                case FIELD_HANGUP_REASON:
+                    buffer.writeStringField(field, hangupReason);
+                    break;
+                default:
+                    if (constantFields[field] != null) {
+                        buffer.writeSeparator();
+                        buffer.write(constantFields[field]);
+                    }
+                    break;
+            }
+        }
+        return buffer.finish();
+    }
+
+    private static byte[] _constantField(int field, Object value) {
+        byte[] valueBytes = JSON.toJSONBytes(value);
+        byte[] bytes = Arrays.copyOf(KEY_BYTES[field], KEY_BYTES[field].length + valueBytes.length);
+        System.arraycopy(valueBytes, 0, bytes, KEY_BYTES[field].length, valueBytes.length);
+        return bytes;
+    }
+
+    private static int[] _hashMapOrder(int... insertionOrder) {
+        Map<String, Integer> fieldMap = new HashMap<>();
+        for (int field : insertionOrder) {
+            fieldMap.put(KEYS[field], field);
+        }
+
+        int[] fields = new int[fieldMap.size()];
+        int index = 0;
+        for (Integer field : fieldMap.values()) {
+            fields[index++] = field;
+        }
+        return fields;
+    }
+
+    private static class Buffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeByte(byte b) {
+            _ensure(1);
+            bytes[size++] = b;
+        }
+
+        /**
+         * Write the comma before every field but the first
+         */
+        void writeSeparator() {
+            if (size > 1) {
+                writeByte((byte) ',');
+            }
+        }
+
+        void writeKey(int field) {
+            writeSeparator();
+            write(KEY_BYTES[field]);
+        }
+
+        void writeStringField(int field, String value) {
+            if (value != null) {
+                writeKey(field);
+                writeString(value);
+            }
+        }
+
+        void write(byte[] src) {
+            _ensure(src.length);
+            System.arraycopy(src, 0, bytes, size, src.length);
+            size += src.length;
+        }
+
+        void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+
+            _ensure(20);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+
+            int start = size;
+            do {
+                bytes[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte b = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = b;
+            }
+        }
+
+        void writeString(String value) {
+            // 最坏情况下每个字符编码为 \\uXXXX
+            _ensure(value.length() * 6 + 2);
+            bytes[size++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    bytes[size++] = '\\';
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x20 && SHORT_ESCAPES[c] != 0) {
+                    // 与 fastjson2 一致, \b \t \n \f \r 使用短转义
+                    bytes[size++] = '\\';
+                    bytes[size++] = SHORT_ESCAPES[c];
+                } else if (c < 0x20) {
+                    bytes[size++] = '\\';
+                    bytes[size++] = 'u';
+                    bytes[size++] = '0';
+                    bytes[size++] = '0';
+                    bytes[size++] = HEX[c >> 4];
+                    bytes[size++] = HEX[c & 0xF];
+                } else if (c < 0x80) {
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xC0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[size++] = '?';
+                } else {
+                    bytes[size++] = (byte) (0xE0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            bytes[size++] = '"';
+        }
+
+        byte[] finish() {
+            _ensure(1);
+            bytes[size++] = '}';
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void _ensure(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent latency histogram with HDR style log linear buckets, by default each power of two range is
+ * split into 128 sub buckets so the recorded values keep 2 significant digits (under 1% error)
+ */
+class LatencyHistogram {
+    private static final int DEFAULT_SUB_BUCKET_HALF_COUNT_MAGNITUDE = 7;
+
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param highestTrackableValue larger values are recorded as this value
+     */
+    LatencyHistogram(long highestTrackableValue) {
+        this(highestTrackableValue, DEFAULT_SUB_BUCKET_HALF_COUNT_MAGNITUDE);
+    }
+
+    /**
+     * @param highestTrackableValue larger values are recorded as this value
+     * @param subBucketHalfCountMagnitude each power of two range is split into 2^magnitude sub buckets, the
+     *                                    relative error is under 2^-magnitude, fewer sub buckets use less memory
+     */
+    LatencyHistogram(long highestTrackableValue, int subBucketHalfCountMagnitude) {
+        this.subBucketHalfCountMagnitude = subBucketHalfCountMagnitude;
+        this.subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+        this.subBucketMask = (subBucketHalfCount << 1) - 1;
+        this.highestTrackableValue = Math.max(highestTrackableValue, subBucketMask);
+        this.counts = new AtomicLongArray(_countsIndex(this.highestTrackableValue) + 1);
+    }
+
+    /**
+     * Record one value
+     *
+     * @param value
+     * @return
+     */
+    Void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), highestTrackableValue);
+        counts.incrementAndGet(_countsIndex(clamped));
+        totalValue.add(clamped);
+        maxValue.accumulate(clamped);
+        return null;
+    }
+
+    /**
+     * Point in time view of the histogram, counts recorded concurrently may be partially included
+     *
+     * @return
+     */
+    LatencySnapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+
+        long max = maxValue.get();
+        long sum = totalValue.sum();
+        return new LatencySnapshot(count, sum,
+                count == 0 ? 0 : sum / count,
+                _valueAtPercentile(copy, count, 50.0, max),
+                _valueAtPercentile(copy, count, 90.0, max),
+                _valueAtPercentile(copy, count, 99.0, max),
+                _valueAtPercentile(copy, count, 99.9, max),
+                max);
+    }
+
+    private long _bucketUpperBound(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        long subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            bucketIndex = 0;
+            subBucketIndex -= subBucketHalfCount;
+        }
+        return (subBucketIndex << bucketIndex) + (1L << bucketIndex) - 1;
+    }
+
+    private int _countsIndex(long value) {
+        int bucketIndex = 63 - Long.numberOfLeadingZeros(value | subBucketMask) - subBucketHalfCountMagnitude;
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    private long _valueAtPercentile(long[] counts, long totalCount, double percentile, long max) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long countAtPercentile = Math.max((long) Math.ceil(percentile / 100.0 * totalCount), 1);
+        long running = 0;
+        for (int i = 0; i < counts.length; i++) {
+            running += counts[i];
+            if (running >= countAtPercentile) {
+                return Math.min(_bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
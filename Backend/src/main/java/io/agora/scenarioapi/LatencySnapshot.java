@@ -0,0 +1,23 @@
+package io.agora.scenarioapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Latency distribution of a LatencyHistogram, in the unit of the recorded values: microseconds for
+ * PublishMetrics, milliseconds for ReportAggregator
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class LatencySnapshot {
+    private final long count;
+    private final long sum;
+    private final long mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+}
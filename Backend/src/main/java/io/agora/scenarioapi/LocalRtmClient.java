@@ -0,0 +1,258 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.PublishOptions;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmClient;
+import io.agora.rtm.RtmConfig;
+import io.agora.rtm.RtmConstants;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import io.agora.rtm.RtmEventListener;
+import io.agora.rtm.RtmLock;
+import io.agora.rtm.RtmPresence;
+import io.agora.rtm.RtmStorage;
+import io.agora.rtm.StreamChannel;
+import io.agora.rtm.SubscribeOptions;
+
+/**
+ * In memory RtmClient for load tests without the RTM service, covers the login/logout/renewToken/publish
+ * surface used by CallApiImpl, with configurable latency, failure rate and throughput cap.
+ * Pass it as CallApiConfig.rtmClient or RtmIdentity.rtmClient, published messages are only counted.
+ */
+public class LocalRtmClient extends RtmClient {
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+    private final LocalRtmClientConfig config;
+    private final TokenBucket tokenBucket;
+    private final ScheduledExecutorService scheduler;
+    private final List<RtmEventListener> eventListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder publishedBytes = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public LocalRtmClient() {
+        this(new LocalRtmClientConfig());
+    }
+
+    public LocalRtmClient(LocalRtmClientConfig config) {
+        this.config = config;
+        this.tokenBucket = config.getMaxPublishesPerSecond() > 0
+                ? new TokenBucket(config.getMaxPublishesPerSecond(), config.getMaxPublishesPerSecond())
+                : null;
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(config.getCallbackThreads(), 1), runnable -> {
+            Thread thread = new Thread(runnable, "local-rtm-client-" + THREAD_INDEX.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Number of successful publishes
+     *
+     * @return
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * Bytes of the successful publishes
+     *
+     * @return
+     */
+    public long getPublishedBytes() {
+        return publishedBytes.sum();
+    }
+
+    /**
+     * Number of failed publishes, including the ones over the throughput cap
+     *
+     * @return
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Stop the callback threads, pending callbacks are dropped
+     *
+     * @return
+     */
+    public Void shutdown() {
+        scheduler.shutdownNow();
+        return null;
+    }
+
+    @Override
+    protected RtmErrorCode initialize(RtmConfig config) {
+        return RtmErrorCode.OK;
+    }
+
+    @Override
+    protected RtmErrorCode releaseClient() {
+        shutdown();
+        return RtmErrorCode.OK;
+    }
+
+    @Override
+    public void addEventListener(RtmEventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    @Override
+    public void removeEventListener(RtmEventListener listener) {
+        eventListeners.remove(listener);
+    }
+
+    @Override
+    public void login(String token, ResultCallback<Void> resultCallback) {
+        _complete(config.getLoginLatencyMillis(), () -> {
+            _notifyConnectionState(RtmConstants.RtmConnectionState.CONNECTED,
+                    RtmConstants.RtmConnectionChangeReason.LOGIN_SUCCESS);
+            if (resultCallback != null) {
+                resultCallback.onSuccess(null);
+            }
+        });
+    }
+
+    @Override
+    public void logout(ResultCallback<Void> resultCallback) {
+        _complete(config.getLoginLatencyMillis(), () -> {
+            _notifyConnectionState(RtmConstants.RtmConnectionState.DISCONNECTED,
+                    RtmConstants.RtmConnectionChangeReason.LOGOUT);
+            if (resultCallback != null) {
+                resultCallback.onSuccess(null);
+            }
+        });
+    }
+
+    @Override
+    public void renewToken(String token, ResultCallback<Void> resultCallback) {
+        _complete(config.getLoginLatencyMillis(), () -> {
+            if (resultCallback != null) {
+                resultCallback.onSuccess(null);
+            }
+        });
+    }
+
+    @Override
+    public void publish(String channelName, String message, PublishOptions options,
+                        ResultCallback<Void> resultCallback) {
+        publish(channelName, message.getBytes(StandardCharsets.UTF_8), options, resultCallback);
+    }
+
+    @Override
+    public void publish(String channelName, byte[] message, PublishOptions options,
+                        ResultCallback<Void> resultCallback) {
+        if (tokenBucket != null && tokenBucket.tryAcquire(System.nanoTime()) != 0) {
+            failedCount.increment();
+            _fail(resultCallback, RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION);
+            return;
+        }
+
+        long latencyMillis = config.getPublishLatencyMillis();
+        if (config.getPublishLatencyJitterMillis() > 0) {
+            latencyMillis += ThreadLocalRandom.current().nextLong(config.getPublishLatencyJitterMillis() + 1);
+        }
+        boolean isFailure = config.getPublishFailureRate() > 0
+                && ThreadLocalRandom.current().nextDouble() < config.getPublishFailureRate();
+        _complete(latencyMillis, () -> {
+            if (isFailure) {
+                failedCount.increment();
+                _fail(resultCallback, config.getPublishFailureErrorCode());
+                return;
+            }
+
+            publishedCount.increment();
+            publishedBytes.add(message.length);
+            if (resultCallback != null) {
+                resultCallback.onSuccess(null);
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(String channelName, SubscribeOptions options, ResultCallback<Void> resultCallback) {
+        if (resultCallback != null) {
+            resultCallback.onSuccess(null);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String channelName, ResultCallback<Void> resultCallback) {
+        if (resultCallback != null) {
+            resultCallback.onSuccess(null);
+        }
+    }
+
+    @Override
+    public RtmStorage getStorage() {
+        return null;
+    }
+
+    @Override
+    public RtmLock getLock() {
+        return null;
+    }
+
+    @Override
+    public RtmPresence getPresence() {
+        return null;
+    }
+
+    @Override
+    public String getErrorReason(RtmErrorCode errorCode) {
+        return errorCode.name();
+    }
+
+    @Override
+    public RtmErrorCode setParameters(String parameters) {
+        return RtmErrorCode.OK;
+    }
+
+    @Override
+    public StreamChannel createStreamChannel(String channelName) {
+        return null;
+    }
+
+    @Override
+    public String getVersion() {
+        return "local";
+    }
+
+    private void _complete(long latencyMillis, Runnable callback) {
+        if (latencyMillis <= 0) {
+            callback.run();
+            return;
+        }
+        try {
+            scheduler.schedule(callback, latencyMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已 shutdown
+        }
+    }
+
+    private void _fail(ResultCallback<Void> resultCallback, RtmErrorCode errorCode) {
+        if (resultCallback != null) {
+            resultCallback.onFailure(new ErrorInfo(errorCode, errorCode.name(), "publish"));
+        }
+    }
+
+    private void _notifyConnectionState(RtmConstants.RtmConnectionState state,
+                                        RtmConstants.RtmConnectionChangeReason reason) {
+        for (RtmEventListener listener : eventListeners) {
+            listener.onConnectionStateChanged(null, state, reason);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.agora.scenarioapi;
+
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import lombok.Data;
+
+@Data
+public class LocalRtmClientConfig {
+    // 发送耗时, 0 为在调用线程直接回调
+    private long publishLatencyMillis = 0;
+    // 发送耗时的随机抖动, 实际耗时在 [publishLatencyMillis, publishLatencyMillis + publishLatencyJitterMillis] 之间
+    private long publishLatencyJitterMillis = 0;
+    // 发送失败的概率, 0 ~ 1
+    private double publishFailureRate = 0;
+    // 随机失败时回调的错误码
+    private RtmErrorCode publishFailureErrorCode = RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED;
+    // 每秒最大发送条数, 超出回调 RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION, 0 为不限制
+    private int maxPublishesPerSecond = 0;
+    // login/logout/renewToken 的耗时
+    private long loginLatencyMillis = 0;
+    // 延迟回调的线程数
+    private int callbackThreads = 4;
+}
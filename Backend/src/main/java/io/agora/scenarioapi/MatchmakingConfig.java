@@ -0,0 +1,17 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class MatchmakingConfig {
+    // 匹配成功后生成的房间Id前缀, 房间Id为前缀 + 呼叫Id
+    private String roomIdPrefix = "match_";
+    // 最长等待时间, 超时未匹配则移出等待池并回调 onWaitTimeout, 0 表示不超时
+    private long maxWaitMillis = 30000;
+    // 空闲桶的保留时间, 桶内无人等待且超过该时间无人入队时移除, 实际在 1~2 倍该时间后移除, 0 表示不移除
+    private long bucketIdleMillis = 60000;
+    // 等待超时时间轮每格的时长, 即超时的精度
+    private long tickMillis = 100;
+    // 等待超时时间轮格数, 取 2 的幂
+    private int wheelSize = 512;
+}
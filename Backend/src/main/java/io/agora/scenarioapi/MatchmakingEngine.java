@@ -0,0 +1,392 @@
+package io.agora.scenarioapi;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Random 1v1 matchmaking on top of ICallApi. Users wait in buckets keyed by their attributes and are
+ * paired with the next user enqueued into the same bucket, every pair is then called with a new
+ * roomId and callId, the user that waited is userIdA.
+ * <p>
+ * A bucket never holds more than one waiting user, since any later user is paired with it at once,
+ * so a bucket is a single CAS slot and enqueue, cancel and pairing take no lock. Buckets with
+ * different attributes never contend. A bucket stays in place while it is used, so a busy bucket is
+ * never recreated, and one that nobody entered for bucketIdleMillis is removed by a sweep on the
+ * timer so one-off attributes do not accumulate.
+ */
+@Slf4j
+public class MatchmakingEngine {
+    private static final AtomicIntegerFieldUpdater<Ticket> MATCH_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Ticket.class, "matchState");
+
+    private final ICallApi callApi;
+    private final MatchmakingConfig config;
+    private final MatchListener listener;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<Integer, Ticket> ticketsByUserId = new ConcurrentHashMap<>();
+    // 已清空的桶的等待位标记, 不是真实用户
+    private final Ticket retired = new Ticket(null, null);
+    private final HashedWheelTimer timer;
+    private final LongAdder matchedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder retiredBucketCount = new LongAdder();
+
+    /**
+     * Listener of the matchmaking results, called on the thread that completed the event
+     */
+    public interface MatchListener {
+        /**
+         * Both call messages of a matched pair have completed
+         *
+         * @param callResult
+         */
+        default void onMatched(CallResult callResult) {
+        }
+
+        /**
+         * A user waited longer than maxWaitMillis and left the pool
+         *
+         * @param userId
+         */
+        default void onWaitTimeout(Integer userId) {
+        }
+    }
+
+    public MatchmakingEngine(ICallApi callApi, MatchmakingConfig config, MatchListener listener) {
+        this.callApi = callApi;
+        this.config = config;
+        this.listener = listener == null ? new MatchListener() {
+        } : listener;
+        this.timer = config.getMaxWaitMillis() > 0 || config.getBucketIdleMillis() > 0
+                ? new HashedWheelTimer(config.getTickMillis(), config.getWheelSize(), "callapi-match-timeout")
+                : null;
+        if (config.getBucketIdleMillis() > 0) {
+            timer.schedule(new BucketSweep(), config.getBucketIdleMillis());
+        }
+    }
+
+    /**
+     * Enqueue a user without attributes
+     *
+     * @param userId
+     * @return
+     */
+    public boolean enqueue(Integer userId) {
+        return enqueue(userId, null);
+    }
+
+    /**
+     * Enqueue a user, it is paired with the user waiting in the bucket of the same attributes if any,
+     * otherwise it waits until the next one arrives, it is cancelled or maxWaitMillis elapses
+     *
+     * @param userId
+     * @param attributes [可选] users are only paired when their attributes are equal
+     * @return false if the user is already waiting
+     */
+    public boolean enqueue(Integer userId, Map<String, String> attributes) {
+        Ticket ticket = new Ticket(userId, _bucketKey(attributes));
+        if (ticketsByUserId.putIfAbsent(userId, ticket) != null) {
+            return false;
+        }
+
+        if (_offer(ticket) && config.getMaxWaitMillis() > 0) {
+            timer.schedule(ticket, config.getMaxWaitMillis());
+        }
+        return true;
+    }
+
+    /**
+     * Remove a waiting user from the pool
+     *
+     * @param userId
+     * @return false if the user is not waiting
+     */
+    public boolean cancel(Integer userId) {
+        Ticket ticket = ticketsByUserId.get(userId);
+        if (ticket == null || !ticket.settle(Ticket.CANCELLED)) {
+            return false;
+        }
+
+        ticket.cancel();
+        ticketsByUserId.remove(userId, ticket);
+        _release(ticket);
+        return true;
+    }
+
+    /**
+     * Whether a user is waiting
+     *
+     * @param userId
+     * @return
+     */
+    public boolean isWaiting(Integer userId) {
+        return ticketsByUserId.containsKey(userId);
+    }
+
+    /**
+     * Number of waiting users
+     *
+     * @return
+     */
+    public int getWaitingCount() {
+        return ticketsByUserId.size();
+    }
+
+    /**
+     * Number of matched pairs
+     *
+     * @return
+     */
+    public long getMatchedCount() {
+        return matchedCount.sum();
+    }
+
+    /**
+     * Number of users that left the pool on maxWaitMillis
+     *
+     * @return
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * Number of buckets, a bucket is removed once it stayed empty for bucketIdleMillis
+     *
+     * @return
+     */
+    int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Number of buckets removed for being idle
+     *
+     * @return
+     */
+    long getRetiredBucketCount() {
+        return retiredBucketCount.sum();
+    }
+
+    /**
+     * Stop the wait timeouts and the bucket sweep, waiting users stay in the pool
+     *
+     * @return
+     */
+    public Void stop() {
+        if (timer != null) {
+            timer.stop();
+        }
+        return null;
+    }
+
+    /**
+     * Park a ticket in its bucket, or pair it with the ticket waiting there
+     *
+     * @param ticket
+     * @return true if the ticket was parked, false if it was paired or cancelled meanwhile
+     */
+    private boolean _offer(Ticket ticket) {
+        while (true) {
+            Bucket bucket = buckets.get(ticket.bucketKey);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(ticket.bucketKey, Bucket::new);
+            }
+            if (bucket.isIdle) {
+                // 只在清理标记后写一次, 热点桶上不重复写
+                bucket.isIdle = false;
+            }
+            Ticket waiting = bucket.waiting.get();
+            if (waiting == retired) {
+                // 桶已空闲待移除, 帮忙移除后取新桶
+                buckets.remove(ticket.bucketKey, bucket);
+                continue;
+            }
+            if (waiting == null) {
+                if (!bucket.waiting.compareAndSet(null, ticket)) {
+                    continue;
+                }
+                // 入队期间被取消时 cancel 看不到等待位, 由入队方清空
+                if (ticket.matchState == Ticket.CANCELLED) {
+                    _release(ticket);
+                    return false;
+                }
+                return true;
+            }
+
+            if (!bucket.waiting.compareAndSet(waiting, null)) {
+                continue;
+            }
+            // 取出的用户可能已取消或超时, 丢弃后重试
+            if (!waiting.settle(Ticket.MATCHED)) {
+                continue;
+            }
+            // 入队的用户在配对前已被取消, 把等待的用户放回去
+            if (!ticket.settle(Ticket.MATCHED)) {
+                waiting.unsettle();
+                _offer(waiting);
+                return false;
+            }
+
+            waiting.cancel();
+            ticketsByUserId.remove(waiting.userId, waiting);
+            ticketsByUserId.remove(ticket.userId, ticket);
+            _call(waiting.userId, ticket.userId);
+            return false;
+        }
+    }
+
+    /**
+     * Empty the slot of a ticket that left the pool, the bucket is kept for the next user
+     *
+     * @param ticket
+     */
+    private void _release(Ticket ticket) {
+        Bucket bucket = buckets.get(ticket.bucketKey);
+        if (bucket != null) {
+            bucket.waiting.compareAndSet(ticket, null);
+        }
+    }
+
+    /**
+     * Remove the buckets that stayed empty since the previous sweep and mark the others idle, the
+     * retired marker keeps enqueue from parking in a removed bucket
+     */
+    private void _sweep() {
+        int retiredCount = 0;
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.isIdle && bucket.waiting.compareAndSet(null, retired)) {
+                buckets.remove(bucket.key, bucket);
+                retiredCount++;
+            } else {
+                bucket.isIdle = true;
+            }
+        }
+        if (retiredCount > 0) {
+            retiredBucketCount.add(retiredCount);
+            log.debug("matchmaking, idle buckets removed, count:{}, size:{}", retiredCount, buckets.size());
+        }
+    }
+
+    private void _call(Integer userIdA, Integer userIdB) {
+        matchedCount.increment();
+        String callId = UUID.randomUUID().toString();
+        String roomId = config.getRoomIdPrefix() + callId;
+        CallBatchCallback batchCallback = new CallBatchCallback(1, new ResultCallback<List<CallResult>>() {
+            @Override
+            public void onSuccess(List<CallResult> callResults) {
+                listener.onMatched(callResults.get(0));
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                log.error("match call failed, errorInfo:{}", errorInfo);
+            }
+        });
+        CallResult callResult = batchCallback.add(new CallPair(userIdA, userIdB, roomId, callId));
+
+        // resultCallbackUserIdA reports the message published to userIdB and vice versa
+        callApi.call(userIdA, userIdB, roomId, callId,
+                batchCallback.callbackB(callResult), batchCallback.callbackA(callResult));
+    }
+
+    private void _onWaitTimeout(Ticket ticket) {
+        if (!ticket.settle(Ticket.TIMEOUT)) {
+            return;
+        }
+
+        timeoutCount.increment();
+        ticketsByUserId.remove(ticket.userId, ticket);
+        _release(ticket);
+        listener.onWaitTimeout(ticket.userId);
+    }
+
+    private static String _bucketKey(Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(attributes).entrySet()) {
+            if (builder.length() > 0) {
+                builder.append('&');
+            }
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Waiting slot of the users with the same attributes
+     */
+    private class Bucket {
+        private final String key;
+        // 等待的用户, 桶移除前置为 retired
+        private final AtomicReference<Ticket> waiting = new AtomicReference<>();
+        // 上次清理后无人入队
+        private volatile boolean isIdle;
+
+        Bucket(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Periodic removal of the idle buckets, rescheduled after every run until the timer stops
+     */
+    private class BucketSweep extends HashedWheelTimer.Timeout {
+        @Override
+        void expire() {
+            try {
+                _sweep();
+            } finally {
+                timer.schedule(new BucketSweep(), config.getBucketIdleMillis());
+            }
+        }
+    }
+
+    /**
+     * A user in the pool, settled exactly once by a match, cancel or wait timeout
+     */
+    private class Ticket extends HashedWheelTimer.Timeout {
+        private static final int WAITING = 0;
+        private static final int MATCHED = 1;
+        private static final int CANCELLED = 2;
+        private static final int TIMEOUT = 3;
+
+        private final Integer userId;
+        private final String bucketKey;
+        private volatile int matchState;
+
+        Ticket(Integer userId, String bucketKey) {
+            this.userId = userId;
+            this.bucketKey = bucketKey;
+        }
+
+        boolean settle(int newState) {
+            return MATCH_STATE.compareAndSet(this, WAITING, newState);
+        }
+
+        /**
+         * Undo a match whose other side could not be settled, only by the thread that settled it
+         */
+        void unsettle() {
+            MATCH_STATE.set(this, WAITING);
+        }
+
+        @Override
+        void expire() {
+            _onWaitTimeout(this);
+        }
+    }
+}
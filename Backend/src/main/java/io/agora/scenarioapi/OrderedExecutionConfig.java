@@ -0,0 +1,13 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class OrderedExecutionConfig {
+    // 发送线程数, 发给同一用户的信令按用户Id哈希固定在同一线程上按调用顺序发送
+    private int laneCount = Runtime.getRuntime().availableProcessors();
+    // 每个线程等待发送的最大消息数, 超出后直接回调 RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION
+    private int laneQueueSize = 10000;
+    // deinitialize 时等待已排队的消息发出的最长时间, 超时后仍在排队的消息回调 NOT_INITIALIZED
+    private long stopTimeoutMillis = 5000;
+}
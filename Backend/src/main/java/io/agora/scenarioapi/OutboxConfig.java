@@ -0,0 +1,15 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class OutboxConfig {
+    // 日志文件目录, 每个 CallApi 实例需使用单独的目录
+    private String directory;
+    // 单个日志文件大小, 写满后切换到新文件, 其中消息全部确认后删除
+    private int segmentSizeBytes = 16 * 1024 * 1024;
+    // 重启后只重发该时间内的消息, 更早的呼叫已无意义
+    private long maxReplayAgeMillis = 60000;
+    // 每次写入后 force 到磁盘, 可应对系统崩溃, 默认只保证进程退出时不丢失
+    private boolean forceOnWrite = false;
+}
@@ -0,0 +1,176 @@
+package io.agora.scenarioapi;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+/**
+ * Publish instrumentation, every publish is timed from send to its result callback, including
+ * rate limiter queueing and retries, and recorded per action with success and failure counters
+ * by RTM error code
+ */
+public class PublishMetrics {
+    private final String metricPrefix;
+    private final Map<CallAction, ActionMetrics> actionMetrics = new EnumMap<>(CallAction.class);
+    private final LongAdder inFlightCount = new LongAdder();
+
+    PublishMetrics(PublishMetricsConfig config) {
+        this.metricPrefix = config.getMetricPrefix();
+        long highestTrackableMicros = TimeUnit.MILLISECONDS.toMicros(config.getHighestTrackableLatencyMillis());
+        for (CallAction action : CallAction.values()) {
+            actionMetrics.put(action, new ActionMetrics(highestTrackableMicros));
+        }
+    }
+
+    /**
+     * Time a publish, the returned callback records the outcome and then calls the given one
+     *
+     * @param action
+     * @param resultCallback
+     * @return
+     */
+    ResultCallback<Void> wrap(CallAction action, ResultCallback<Void> resultCallback) {
+        ActionMetrics metrics = actionMetrics.get(action);
+        long startNanos = System.nanoTime();
+        inFlightCount.increment();
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                metrics.record(startNanos, null);
+                inFlightCount.decrement();
+                if (resultCallback != null) {
+                    resultCallback.onSuccess(responseInfo);
+                }
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                metrics.record(startNanos, errorInfo.getErrorCode());
+                inFlightCount.decrement();
+                if (resultCallback != null) {
+                    resultCallback.onFailure(errorInfo);
+                }
+            }
+        };
+    }
+
+    /**
+     * Latency of the finished publishes of an action, in microseconds
+     *
+     * @param action
+     * @return
+     */
+    public LatencySnapshot getLatency(CallAction action) {
+        return actionMetrics.get(action).histogram.snapshot();
+    }
+
+    /**
+     * Number of successful publishes of an action
+     *
+     * @param action
+     * @return
+     */
+    public long getSuccessCount(CallAction action) {
+        return actionMetrics.get(action).successCount.sum();
+    }
+
+    /**
+     * Number of failed publishes of an action by RTM error code
+     *
+     * @param action
+     * @return
+     */
+    public Map<RtmErrorCode, Long> getFailureCounts(CallAction action) {
+        Map<RtmErrorCode, Long> failureCounts = new EnumMap<>(RtmErrorCode.class);
+        actionMetrics.get(action).failureCounts.forEach((errorCode, count) -> failureCounts.put(errorCode, count.sum()));
+        return failureCounts;
+    }
+
+    /**
+     * Number of publishes waiting for their result callback
+     *
+     * @return
+     */
+    public long getInFlightCount() {
+        return inFlightCount.sum();
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format, actions without publishes are omitted
+     *
+     * @return
+     */
+    public String scrape() {
+        StringBuilder latency = new StringBuilder();
+        StringBuilder total = new StringBuilder();
+        for (Map.Entry<CallAction, ActionMetrics> entry : actionMetrics.entrySet()) {
+            ActionMetrics metrics = entry.getValue();
+            LatencySnapshot snapshot = metrics.histogram.snapshot();
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+
+            String action = entry.getKey().name();
+            String name = metricPrefix + "_latency_microseconds";
+            _sample(latency, name, action, "quantile=\"0.5\"", snapshot.getP50());
+            _sample(latency, name, action, "quantile=\"0.9\"", snapshot.getP90());
+            _sample(latency, name, action, "quantile=\"0.99\"", snapshot.getP99());
+            _sample(latency, name, action, "quantile=\"0.999\"", snapshot.getP999());
+            _sample(latency, name + "_sum", action, null, snapshot.getSum());
+            _sample(latency, name + "_count", action, null, snapshot.getCount());
+
+            _sample(total, metricPrefix + "_total", action, "result=\"success\",error_code=\"OK\"",
+                    metrics.successCount.sum());
+            for (Map.Entry<RtmErrorCode, Long> failure : getFailureCounts(entry.getKey()).entrySet()) {
+                _sample(total, metricPrefix + "_total", action,
+                        "result=\"failure\",error_code=\"" + failure.getKey().name() + "\"", failure.getValue());
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("# HELP ").append(metricPrefix)
+                .append("_latency_microseconds Publish latency from send to result callback\n");
+        builder.append("# TYPE ").append(metricPrefix).append("_latency_microseconds summary\n");
+        builder.append(latency);
+        builder.append("# HELP ").append(metricPrefix).append("_total Finished publishes by result\n");
+        builder.append("# TYPE ").append(metricPrefix).append("_total counter\n");
+        builder.append(total);
+        builder.append("# HELP ").append(metricPrefix).append("_in_flight Publishes waiting for result callback\n");
+        builder.append("# TYPE ").append(metricPrefix).append("_in_flight gauge\n");
+        builder.append(metricPrefix).append("_in_flight ").append(inFlightCount.sum()).append('\n');
+        return builder.toString();
+    }
+
+    private static void _sample(StringBuilder builder, String name, String action, String labels, long value) {
+        builder.append(name).append("{action=\"").append(action).append('"');
+        if (labels != null) {
+            builder.append(',').append(labels);
+        }
+        builder.append("} ").append(value).append('\n');
+    }
+
+    private static class ActionMetrics {
+        private final LatencyHistogram histogram;
+        private final LongAdder successCount = new LongAdder();
+        private final Map<RtmErrorCode, LongAdder> failureCounts = new ConcurrentHashMap<>();
+
+        ActionMetrics(long highestTrackableMicros) {
+            this.histogram = new LatencyHistogram(highestTrackableMicros);
+        }
+
+        void record(long startNanos, RtmErrorCode errorCode) {
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            if (errorCode == null) {
+                successCount.increment();
+                return;
+            }
+            failureCounts.computeIfAbsent(errorCode, key -> new LongAdder()).increment();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class PublishMetricsConfig {
+    // 直方图可记录的最大耗时, 超出按最大值记录
+    private long highestTrackableLatencyMillis = 60000;
+    // scrape 输出的指标名前缀
+    private String metricPrefix = "callapi_publish";
+}
@@ -0,0 +1,378 @@
+package io.agora.scenarioapi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append only journal of the outgoing messages on memory mapped segment files. A message is appended
+ * before it is published and an ack record is appended once its result is known, the messages without
+ * ack are recovered on the next start. Writes go to the page cache, so they survive a process crash
+ * but not an OS crash unless forceOnWrite is set.
+ * <p>
+ * Record: int bodyLength, int crc32 of body, body. Body: byte type, long id, and for a message
+ * long timestampMillis, int action, userId, callId, message. A zero bodyLength ends the segment.
+ */
+@Slf4j
+class PublishOutbox {
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final int ACK_BODY_SIZE = 1 + 8;
+
+    private final OutboxConfig config;
+    private final Path directory;
+    private final CRC32 crc32 = new CRC32();
+    private final Map<Long, Segment> pendingSegments = new HashMap<>();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final List<Path> recoveredSegments = new ArrayList<>();
+    private Segment current;
+    private long nextSegmentSeq;
+    private long nextId = 1;
+    private boolean isClosed;
+
+    PublishOutbox(OutboxConfig config) throws IOException {
+        if (config.getDirectory() == null) {
+            throw new IllegalArgumentException("directory of OutboxConfig is required");
+        }
+        this.config = config;
+        this.directory = Paths.get(config.getDirectory());
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Read the segments left by the last run, the messages without ack and within maxReplayAgeMillis
+     * are returned in append order. The segments are kept until deleteRecoveredSegments, so call it once
+     * the returned messages are appended again.
+     *
+     * @return
+     */
+    synchronized List<Entry> recover() throws IOException {
+        List<Path> segmentFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> _segmentSeq(path) >= 0).forEach(segmentFiles::add);
+        }
+        segmentFiles.sort((a, b) -> Long.compare(_segmentSeq(a), _segmentSeq(b)));
+
+        Map<Long, Entry> unacked = new LinkedHashMap<>();
+        for (Path segmentFile : segmentFiles) {
+            _read(segmentFile, unacked);
+            nextSegmentSeq = Math.max(nextSegmentSeq, _segmentSeq(segmentFile) + 1);
+            recoveredSegments.add(segmentFile);
+        }
+        for (Long id : unacked.keySet()) {
+            nextId = Math.max(nextId, id + 1);
+        }
+
+        long replayAfter = System.currentTimeMillis() - config.getMaxReplayAgeMillis();
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : unacked.values()) {
+            if (entry.timestampMillis >= replayAfter) {
+                entries.add(entry);
+            } else {
+                log.warn("outbox, drop expired message, action:{}, callId:{}, userId:{}",
+                        entry.action, entry.callId, entry.userId);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Delete the segments read by recover
+     *
+     * @return
+     */
+    synchronized Void deleteRecoveredSegments() {
+        for (Path segmentFile : recoveredSegments) {
+            _delete(segmentFile);
+        }
+        recoveredSegments.clear();
+        return null;
+    }
+
+    /**
+     * Append a message before publishing it
+     *
+     * @param userId
+     * @param message
+     * @param action
+     * @param callId
+     * @param timestampMillis when the message was first sent, kept across replays for maxReplayAgeMillis
+     * @return id for ack, 0 if the message is not journaled
+     * @throws IOException if a new segment cannot be created, nothing is journaled then
+     */
+    synchronized long append(String userId, byte[] message, CallAction action, String callId, long timestampMillis)
+            throws IOException {
+        if (isClosed) {
+            return 0;
+        }
+
+        byte[] userIdBytes = userId.getBytes(StandardCharsets.UTF_8);
+        byte[] callIdBytes = callId == null ? null : callId.getBytes(StandardCharsets.UTF_8);
+        int bodySize = 1 + 8 + 8 + 4 + 2 + userIdBytes.length + 2 + (callIdBytes == null ? 0 : callIdBytes.length)
+                + 4 + message.length;
+        ByteBuffer buffer = _reserve(bodySize);
+        if (buffer == null) {
+            log.warn("outbox, message larger than segment, not journaled, action:{}, callId:{}, userId:{}",
+                    action, callId, userId);
+            return 0;
+        }
+
+        long id = nextId++;
+        int bodyStart = buffer.position() + HEADER_SIZE;
+        buffer.position(bodyStart);
+        buffer.put(TYPE_MESSAGE);
+        buffer.putLong(id);
+        buffer.putLong(timestampMillis);
+        buffer.putInt(action.getValue());
+        buffer.putShort((short) userIdBytes.length);
+        buffer.put(userIdBytes);
+        buffer.putShort((short) (callIdBytes == null ? -1 : callIdBytes.length));
+        if (callIdBytes != null) {
+            buffer.put(callIdBytes);
+        }
+        buffer.putInt(message.length);
+        buffer.put(message);
+        _commit(buffer, bodyStart, bodySize);
+
+        current.pendingCount++;
+        pendingSegments.put(id, current);
+        return id;
+    }
+
+    /**
+     * Mark a message as done, it will not be recovered
+     *
+     * @param id
+     * @return
+     */
+    synchronized Void ack(long id) {
+        Segment segment = pendingSegments.remove(id);
+        if (segment == null || isClosed) {
+            return null;
+        }
+
+        try {
+            ByteBuffer buffer = _reserve(ACK_BODY_SIZE);
+            int bodyStart = buffer.position() + HEADER_SIZE;
+            buffer.position(bodyStart);
+            buffer.put(TYPE_ACK);
+            buffer.putLong(id);
+            _commit(buffer, bodyStart, ACK_BODY_SIZE);
+        } catch (IOException e) {
+            // 消息所在文件未删除时下次启动会重发, 至少一次
+            log.warn("outbox, ack not journaled, id:{}, error:{}", id, e.getMessage());
+        }
+
+        segment.pendingCount--;
+        _deleteAckedSegments();
+        return null;
+    }
+
+    /**
+     * Number of messages without ack
+     *
+     * @return
+     */
+    synchronized int getPendingCount() {
+        return pendingSegments.size();
+    }
+
+    /**
+     * Close the segment files, the messages without ack stay for the next start
+     *
+     * @return
+     */
+    synchronized Void close() {
+        isClosed = true;
+        if (current != null) {
+            current.buffer.force();
+        }
+        // MappedByteBuffer 无法主动释放, 由 GC 回收, 未确认的消息留在文件中供下次启动恢复
+        segments.clear();
+        pendingSegments.clear();
+        current = null;
+        return null;
+    }
+
+    /**
+     * Buffer positioned at the start of a record with room for the body, rolling to a new segment if needed
+     */
+    private ByteBuffer _reserve(int bodySize) throws IOException {
+        // 记录之后至少保留 4 字节的结束标记
+        int recordSize = HEADER_SIZE + bodySize;
+        if (recordSize + 4 > config.getSegmentSizeBytes()) {
+            return null;
+        }
+        if (current == null || current.buffer.remaining() < recordSize + 4) {
+            _roll();
+        }
+        return current.buffer;
+    }
+
+    private void _commit(ByteBuffer buffer, int bodyStart, int bodySize) {
+        crc32.reset();
+        ByteBuffer body = buffer.duplicate();
+        body.position(bodyStart).limit(bodyStart + bodySize);
+        crc32.update(body);
+        buffer.putInt(bodyStart - HEADER_SIZE + 4, (int) crc32.getValue());
+        // 长度最后写入, 读取时以非 0 长度作为记录完整的标志
+        buffer.putInt(bodyStart - HEADER_SIZE, bodySize);
+        if (config.isForceOnWrite()) {
+            current.buffer.force();
+        }
+    }
+
+    private void _roll() throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentSeq++, SEGMENT_SUFFIX));
+        Segment segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, config.getSegmentSizeBytes()));
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException e) {
+            // 已创建但映射失败的文件
+            _delete(path);
+            throw e;
+        }
+        current = segment;
+        segments.addLast(current);
+        _deleteAckedSegments();
+    }
+
+    /**
+     * Delete the oldest segments whose messages are all acked. A segment holds acks of older segments,
+     * so it is only deleted after all older ones.
+     */
+    private void _deleteAckedSegments() {
+        while (!segments.isEmpty() && segments.peekFirst() != current && segments.peekFirst().pendingCount == 0) {
+            _delete(segments.pollFirst().path);
+        }
+    }
+
+    private void _read(Path segmentFile, Map<Long, Entry> unacked) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        CRC32 readCrc32 = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int bodySize = buffer.getInt();
+            int crc = buffer.getInt();
+            if (bodySize <= 0 || bodySize > buffer.remaining()) {
+                break;
+            }
+
+            ByteBuffer body = buffer.slice();
+            body.limit(bodySize);
+            readCrc32.reset();
+            readCrc32.update(body.duplicate());
+            if ((int) readCrc32.getValue() != crc) {
+                log.warn("outbox, corrupted record, stop reading, path:{}, position:{}", segmentFile,
+                        buffer.position() - HEADER_SIZE);
+                break;
+            }
+            buffer.position(buffer.position() + bodySize);
+
+            byte type = body.get();
+            long id = body.getLong();
+            if (type == TYPE_ACK) {
+                unacked.remove(id);
+                continue;
+            }
+            long timestampMillis = body.getLong();
+            CallAction action = CallAction.fromValue(body.getInt());
+            String userId = _readString(body);
+            String callId = _readString(body);
+            byte[] message = new byte[body.getInt()];
+            body.get(message);
+            if (action != null) {
+                unacked.put(id, new Entry(timestampMillis, action, userId, callId, message));
+            }
+        }
+    }
+
+    private static String _readString(ByteBuffer body) {
+        short length = body.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long _segmentSeq(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void _delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("outbox, delete segment failed, path:{}, error:{}", path, e.getMessage());
+        }
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int pendingCount;
+
+        Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * A recovered message without ack
+     */
+    @Getter
+    static class Entry {
+        private final long timestampMillis;
+        private final CallAction action;
+        private final String userId;
+        private final String callId;
+        private final byte[] message;
+
+        Entry(long timestampMillis, CallAction action, String userId, String callId, byte[] message) {
+            this.timestampMillis = timestampMillis;
+            this.action = action;
+            this.userId = userId;
+            this.callId = callId;
+            this.message = message;
+        }
+    }
+}
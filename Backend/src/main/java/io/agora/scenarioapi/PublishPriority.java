@@ -0,0 +1,33 @@
+package io.agora.scenarioapi;
+
+/**
+ * Scheduling class of a message waiting in the publish rate limiter, terminations end calls the users
+ * already see so they are sent ahead of new invitations
+ */
+public enum PublishPriority {
+    // CANCEL_CALL、REJECT、HANGUP
+    TERMINATION,
+    // ACCEPT
+    ACCEPT,
+    // CALL、AUDIO_CALL
+    INVITATION;
+
+    /**
+     * Class of an action
+     *
+     * @param action
+     * @return
+     */
+    public static PublishPriority of(CallAction action) {
+        switch (action) {
+            case CANCEL_CALL:
+            case REJECT:
+            case HANGUP:
+                return TERMINATION;
+            case ACCEPT:
+                return ACCEPT;
+            default:
+                return INVITATION;
+        }
+    }
+}
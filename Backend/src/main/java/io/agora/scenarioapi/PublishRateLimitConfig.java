@@ -0,0 +1,23 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class PublishRateLimitConfig {
+    // 全局每秒最大发送条数, 0 为不限制
+    private int globalPermitsPerSecond = 0;
+    // 全局突发条数
+    private int globalBurst = 1;
+    // 每个 rtm client 每秒最大发送条数, 0 为不限制
+    private int clientPermitsPerSecond = 0;
+    // 每个 rtm client 的突发条数
+    private int clientBurst = 1;
+    // 每类消息(挂断/接听/邀请)各自等待发送的最大消息数, 超出后直接回调失败; 各类分别计数, 邀请排满时挂断仍可排队, 总计最多 3 倍
+    private int maxQueueSize = 10000;
+    // 排队时按权重轮流发送各类消息, 挂断类(CANCEL_CALL/REJECT/HANGUP)的权重
+    private int terminationWeight = 8;
+    // 接听(ACCEPT)的权重
+    private int acceptWeight = 4;
+    // 邀请(CALL/AUDIO_CALL)的权重, 邀请大量排队时挂断仍按权重优先发出
+    private int invitationWeight = 1;
+}
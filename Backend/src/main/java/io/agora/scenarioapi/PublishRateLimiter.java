@@ -0,0 +1,342 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rate limiter of the publish path, with a token bucket per rtm client and a global one.
+ * Messages that cannot be sent right away wait in bounded queues per client and PublishPriority,
+ * drained by a single thread as permits become available, taking turns between the priorities by
+ * smooth weighted round robin so terminations are not stuck behind a flood of invitations; messages
+ * beyond maxQueueSize of their priority are rejected with RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION
+ * instead of being sent to RTM. The bound is per priority so a flood of invitations never rejects a
+ * termination, up to 3 × maxQueueSize messages may wait in total. A termination withdraws the invitation of the same callId still
+ * queued for the same user, so the user never gets the invitation after its hangup.
+ */
+@Slf4j
+class PublishRateLimiter {
+    private static final PublishPriority[] PRIORITIES = PublishPriority.values();
+
+    private final TokenBucket globalBucket;
+    private final Map<RtmClientPool.Member, Lane> lanes = new IdentityHashMap<>();
+    private final Lane[] laneArray;
+    private final int maxQueueSize;
+    private final int[] weights = new int[PRIORITIES.length];
+    private final AtomicInteger[] queuedCounts = new AtomicInteger[PRIORITIES.length];
+    private final Thread drainThread;
+    private volatile boolean isRunning = true;
+
+    PublishRateLimiter(PublishRateLimitConfig config, List<RtmClientPool.Member> members) {
+        this.globalBucket = config.getGlobalPermitsPerSecond() > 0
+                ? new TokenBucket(config.getGlobalPermitsPerSecond(), config.getGlobalBurst())
+                : null;
+        for (RtmClientPool.Member member : members) {
+            TokenBucket clientBucket = config.getClientPermitsPerSecond() > 0
+                    ? new TokenBucket(config.getClientPermitsPerSecond(), config.getClientBurst())
+                    : null;
+            lanes.put(member, new Lane(clientBucket));
+        }
+        this.laneArray = lanes.values().toArray(new Lane[0]);
+        this.maxQueueSize = config.getMaxQueueSize();
+        this.weights[PublishPriority.TERMINATION.ordinal()] = Math.max(config.getTerminationWeight(), 1);
+        this.weights[PublishPriority.ACCEPT.ordinal()] = Math.max(config.getAcceptWeight(), 1);
+        this.weights[PublishPriority.INVITATION.ordinal()] = Math.max(config.getInvitationWeight(), 1);
+        for (int i = 0; i < queuedCounts.length; i++) {
+            queuedCounts[i] = new AtomicInteger(0);
+        }
+
+        this.drainThread = new Thread(this::_drain, "callapi-publish-limiter");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    /**
+     * Publish right away if permits are available and nothing of the same or a higher priority is
+     * waiting, otherwise queue or reject
+     *
+     * @param task
+     * @return
+     */
+    Void submit(PublishTask task) {
+        if (!isRunning) {
+            _failStopped(task);
+            return null;
+        }
+
+        PublishPriority priority = PublishPriority.of(task.getAction());
+        Lane lane = lanes.get(task.getMember());
+        if (priority == PublishPriority.TERMINATION) {
+            _withdrawInvitation(lane, task);
+        }
+        if (lane.isIdle(priority) && _tryAcquire(lane, System.nanoTime()) == 0) {
+            task.run();
+            return null;
+        }
+
+        AtomicInteger queuedCount = queuedCounts[priority.ordinal()];
+        if (queuedCount.incrementAndGet() > maxQueueSize) {
+            queuedCount.decrementAndGet();
+            log.warn("publish rejected, queue is full, userId:{}, priority:{}, queuedCount:{}", task.getUserId(),
+                    priority, queuedCount.get());
+            task.fail(new ErrorInfo(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                    "publish queue is full", "publish"));
+            return null;
+        }
+
+        if (priority == PublishPriority.INVITATION && task.getCallId() != null) {
+            lane.queuedInvitations.put(_invitationKey(task), task);
+        }
+        lane.queues.get(priority.ordinal()).offer(task);
+        if (!isRunning) {
+            // stop 可能已在入队前清空了队列, 由入队方自己取回并回调失败
+            _removeStopped(lane, priority, task);
+            return null;
+        }
+        LockSupport.unpark(drainThread);
+        return null;
+    }
+
+    /**
+     * Number of messages waiting for permits
+     *
+     * @return
+     */
+    int getQueuedCount() {
+        int queuedCount = 0;
+        for (AtomicInteger count : queuedCounts) {
+            queuedCount += count.get();
+        }
+        return queuedCount;
+    }
+
+    /**
+     * Number of messages of a priority waiting for permits
+     *
+     * @param priority
+     * @return
+     */
+    int getQueuedCount(PublishPriority priority) {
+        return queuedCounts[priority.ordinal()].get();
+    }
+
+    /**
+     * Stop draining, messages still waiting and messages submitted afterwards are failed with NOT_INITIALIZED
+     *
+     * @return
+     */
+    Void stop() {
+        isRunning = false;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Lane lane : laneArray) {
+            for (PublishPriority priority : PRIORITIES) {
+                PublishTask task;
+                while ((task = lane.queues.get(priority.ordinal()).poll()) != null) {
+                    queuedCounts[priority.ordinal()].decrementAndGet();
+                    _failStopped(task);
+                }
+            }
+            lane.queuedInvitations.clear();
+        }
+        return null;
+    }
+
+    /**
+     * Take back a message queued while stop was draining, it is failed by whichever of stop and submit
+     * removes it from the queue
+     *
+     * @param lane
+     * @param priority
+     * @param task
+     */
+    private void _removeStopped(Lane lane, PublishPriority priority, PublishTask task) {
+        if (!lane.queues.get(priority.ordinal()).remove(task)) {
+            return;
+        }
+
+        queuedCounts[priority.ordinal()].decrementAndGet();
+        if (priority == PublishPriority.INVITATION && task.getCallId() != null) {
+            lane.queuedInvitations.remove(_invitationKey(task), task);
+        }
+        _failStopped(task);
+    }
+
+    private static void _failStopped(PublishTask task) {
+        if (task.claim()) {
+            task.fail(new ErrorInfo(RtmErrorCode.NOT_INITIALIZED, "call api deinitialized", "publish"));
+        }
+    }
+
+    private void _drain() {
+        while (isRunning) {
+            boolean isProgressed = false;
+            long minWaitNanos = Long.MAX_VALUE;
+            for (Lane lane : laneArray) {
+                if (lane.isIdle(PublishPriority.INVITATION)) {
+                    continue;
+                }
+
+                long waitNanos = _tryAcquire(lane, System.nanoTime());
+                if (waitNanos > 0) {
+                    minWaitNanos = Math.min(minWaitNanos, waitNanos);
+                    continue;
+                }
+
+                PublishTask task = _poll(lane);
+                if (task == null || !task.claim()) {
+                    // 已被挂断撤回, 不占用发送配额
+                    _refund(lane);
+                } else {
+                    _run(task);
+                }
+                isProgressed = true;
+            }
+
+            if (isProgressed) {
+                continue;
+            }
+            if (minWaitNanos == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, minWaitNanos);
+            }
+        }
+    }
+
+    /**
+     * Take the head of the priority whose turn it is among the non empty ones, smooth weighted round
+     * robin as in nginx upstreams, so with weights 8:4:1 a busy lane sends 8 terminations, 4 accepts
+     * and 1 invitation in every 13 messages, spread out rather than in bursts
+     *
+     * @param lane
+     * @return
+     */
+    private PublishTask _poll(Lane lane) {
+        int selected = -1;
+        int totalWeight = 0;
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            if (lane.queues.get(i).isEmpty()) {
+                continue;
+            }
+            lane.currentWeights[i] += weights[i];
+            totalWeight += weights[i];
+            if (selected < 0 || lane.currentWeights[i] > lane.currentWeights[selected]) {
+                selected = i;
+            }
+        }
+        if (selected < 0) {
+            return null;
+        }
+
+        lane.currentWeights[selected] -= totalWeight;
+        PublishTask task = lane.queues.get(selected).poll();
+        queuedCounts[selected].decrementAndGet();
+        if (PRIORITIES[selected] == PublishPriority.INVITATION && task.getCallId() != null) {
+            lane.queuedInvitations.remove(_invitationKey(task), task);
+        }
+        return task;
+    }
+
+    private void _withdrawInvitation(Lane lane, PublishTask termination) {
+        if (termination.getCallId() == null || lane.queuedInvitations.isEmpty()) {
+            return;
+        }
+
+        PublishTask invitation = lane.queuedInvitations.remove(_invitationKey(termination));
+        if (invitation != null && invitation.claim()) {
+            log.info("publish withdrawn, action:{}, callId:{}, userId:{}, by:{}", invitation.getAction(),
+                    invitation.getCallId(), invitation.getUserId(), termination.getAction());
+            invitation.fail(new ErrorInfo(RtmErrorCode.DUPLICATE_OPERATION,
+                    "invitation withdrawn by " + termination.getAction(), "publish"));
+        }
+    }
+
+    private static String _invitationKey(PublishTask task) {
+        return task.getCallId() + "|" + task.getUserId();
+    }
+
+    private void _run(PublishTask task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("publish failed, userId:{}, error:{}", task.getUserId(), e.getMessage());
+            task.fail(new ErrorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, e.getMessage(), "publish"));
+        }
+    }
+
+    private long _tryAcquire(Lane lane, long nowNanos) {
+        if (lane.clientBucket != null) {
+            long waitNanos = lane.clientBucket.tryAcquire(nowNanos);
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+        }
+        if (globalBucket != null) {
+            long waitNanos = globalBucket.tryAcquire(nowNanos);
+            if (waitNanos > 0) {
+                if (lane.clientBucket != null) {
+                    lane.clientBucket.refund();
+                }
+                return waitNanos;
+            }
+        }
+        return 0;
+    }
+
+    private void _refund(Lane lane) {
+        if (lane.clientBucket != null) {
+            lane.clientBucket.refund();
+        }
+        if (globalBucket != null) {
+            globalBucket.refund();
+        }
+    }
+
+    private static class Lane {
+        private final TokenBucket clientBucket;
+        // 按 PublishPriority 分开的等待队列
+        private final List<Queue<PublishTask>> queues = new ArrayList<>(PRIORITIES.length);
+        // 排队中的邀请, 按 callId + 接收方索引, 同一呼叫的挂断入队前撤回
+        private final Map<String, PublishTask> queuedInvitations = new ConcurrentHashMap<>();
+        // 平滑加权轮询的当前权重, 只在 drain 线程中访问
+        private final int[] currentWeights = new int[PRIORITIES.length];
+
+        Lane(TokenBucket clientBucket) {
+            this.clientBucket = clientBucket;
+            for (int i = 0; i < PRIORITIES.length; i++) {
+                queues.add(new ConcurrentLinkedQueue<>());
+            }
+        }
+
+        /**
+         * Whether nothing of the priority or a higher one is waiting
+         *
+         * @param priority
+         * @return
+         */
+        boolean isIdle(PublishPriority priority) {
+            for (int i = 0; i <= priority.ordinal(); i++) {
+                if (!queues.get(i).isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
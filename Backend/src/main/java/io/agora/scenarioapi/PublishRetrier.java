@@ -0,0 +1,371 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Retries failed publishes per recipient with jittered exponential backoff.
+ * Deliveries are keyed by action + callId + recipient, so sending the same message again
+ * while it is in flight joins the pending delivery, and after it was delivered reports
+ * success without publishing, only the recipient that failed is sent to again.
+ * Retries run through the RetryExecutor, the ordered lane of the recipient, and a termination
+ * withdraws the invitation of the same callId still waiting for a retry to the same user.
+ */
+@Slf4j
+class PublishRetrier {
+    private final PublishRetryConfig config;
+    private final RtmClientPool rtmClientPool;
+    private final Consumer<PublishTask> dispatcher;
+    private final Map<String, Delivery> deliveries = new ConcurrentHashMap<>();
+    private final Set<PendingRetry> pendingRetries = ConcurrentHashMap.newKeySet();
+    // 等待重试的邀请, 按 callId + 接收方索引, 同一呼叫的挂断发送前撤回
+    private final Map<String, PendingRetry> pendingInvitations = new ConcurrentHashMap<>();
+    private final RetryExecutor retryExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final boolean isSharedScheduler;
+    private final ScheduledFuture<?> purgeFuture;
+    private volatile boolean isStopped;
+
+    /**
+     * @param config
+     * @param rtmClientPool
+     * @param dispatcher
+     * @param retryExecutor   runs the retries, on the scheduler thread if null
+     * @param sharedScheduler not shut down on stop, a retry thread is created if null
+     */
+    PublishRetrier(PublishRetryConfig config, RtmClientPool rtmClientPool, Consumer<PublishTask> dispatcher,
+                   RetryExecutor retryExecutor, ScheduledExecutorService sharedScheduler) {
+        this.config = config;
+        this.rtmClientPool = rtmClientPool;
+        this.dispatcher = dispatcher;
+        this.retryExecutor = retryExecutor;
+        this.isSharedScheduler = sharedScheduler != null;
+        this.scheduler = isSharedScheduler ? sharedScheduler : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "callapi-publish-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.purgeFuture = this.scheduler.scheduleWithFixedDelay(this::_purge, config.getIdempotencyTtlMillis(),
+                config.getIdempotencyTtlMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publish with retry, deduplicated by action + callId + recipient
+     *
+     * @param task
+     * @return
+     */
+    Void submit(PublishTask task) {
+        if (task.getCallId() == null) {
+            _attempt(task, 1, null);
+            return null;
+        }
+
+        if (PublishPriority.of(task.getAction()) == PublishPriority.TERMINATION) {
+            _withdrawInvitation(task);
+        }
+
+        String key = task.getAction().getValue() + "|" + task.getCallId() + "|" + task.getUserId();
+        Delivery delivery = new Delivery(key, task.getResultCallback());
+        while (true) {
+            Delivery existing = deliveries.putIfAbsent(key, delivery);
+            if (existing == null) {
+                break;
+            }
+            if (existing.join(task.getResultCallback())) {
+                log.info("publish deduplicated, action:{}, callId:{}, userId:{}",
+                        task.getAction(), task.getCallId(), task.getUserId());
+                return null;
+            }
+            // 之前的发送已失败, 替换后重新发起, 被并发的重发替换时加入新的发送
+            if (deliveries.replace(key, existing, delivery)) {
+                break;
+            }
+        }
+
+        _attempt(task, 1, delivery);
+        return null;
+    }
+
+    /**
+     * Stop retrying, deliveries waiting for a retry are failed
+     *
+     * @return
+     */
+    Void stop() {
+        isStopped = true;
+        purgeFuture.cancel(false);
+        if (!isSharedScheduler) {
+            scheduler.shutdownNow();
+        }
+        for (PendingRetry pendingRetry : pendingRetries) {
+            if (_removePending(pendingRetry)) {
+                pendingRetry.cancel();
+            }
+        }
+        deliveries.clear();
+        return null;
+    }
+
+    private void _withdrawInvitation(PublishTask termination) {
+        if (pendingInvitations.isEmpty()) {
+            return;
+        }
+
+        PendingRetry invitation = pendingInvitations.get(termination.getCallId() + "|" + termination.getUserId());
+        if (invitation != null && _removePending(invitation)) {
+            log.info("publish retry withdrawn, action:{}, callId:{}, userId:{}, by:{}", invitation.task.getAction(),
+                    invitation.task.getCallId(), invitation.task.getUserId(), termination.getAction());
+            invitation.fail(new ErrorInfo(RtmErrorCode.DUPLICATE_OPERATION,
+                    "invitation withdrawn by " + termination.getAction(), "publish"));
+        }
+    }
+
+    /**
+     * Take the exclusive right to run or fail a pending retry
+     *
+     * @param pendingRetry
+     * @return false if already run, withdrawn or cancelled
+     */
+    private boolean _removePending(PendingRetry pendingRetry) {
+        if (!pendingRetries.remove(pendingRetry)) {
+            return false;
+        }
+        if (pendingRetry.invitationKey != null) {
+            pendingInvitations.remove(pendingRetry.invitationKey, pendingRetry);
+        }
+        return true;
+    }
+
+    private void _attempt(PublishTask task, int attempt, Delivery delivery) {
+        ResultCallback<Void> attemptCallback = new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                if (delivery == null) {
+                    _notifySuccess(task.getResultCallback());
+                } else {
+                    delivery.succeed(System.currentTimeMillis() + config.getIdempotencyTtlMillis());
+                }
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                if (attempt < config.getMaxAttempts()
+                        && config.getRetryableErrorCodes().contains(errorInfo.getErrorCode())
+                        && !isStopped) {
+                    long backoffMillis = _backoffMillis(attempt);
+                    log.warn("publish failed, retry in {} ms, attempt:{}, action:{}, callId:{}, userId:{}, errorInfo:{}",
+                            backoffMillis, attempt, task.getAction(), task.getCallId(), task.getUserId(), errorInfo);
+                    _schedule(new PendingRetry(task, attempt + 1, delivery), backoffMillis);
+                    return;
+                }
+
+                if (delivery == null) {
+                    _notifyFailure(task.getResultCallback(), errorInfo);
+                } else {
+                    deliveries.remove(delivery.key, delivery);
+                    delivery.fail(errorInfo);
+                }
+            }
+        };
+
+        // 重试时重新选择 client, 避开已断开的连接
+        RtmClientPool.Member member = attempt == 1 ? task.getMember() : rtmClientPool.select(task.getUserId());
+        dispatcher.accept(task.copy(member, attemptCallback));
+    }
+
+    private void _schedule(PendingRetry pendingRetry, long delayMillis) {
+        pendingRetries.add(pendingRetry);
+        if (pendingRetry.invitationKey != null) {
+            pendingInvitations.put(pendingRetry.invitationKey, pendingRetry);
+        }
+        if (isStopped) {
+            // 与 stop 并发时由这里结束
+            if (_removePending(pendingRetry)) {
+                pendingRetry.cancel();
+            }
+            return;
+        }
+        try {
+            scheduler.schedule(pendingRetry, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            if (_removePending(pendingRetry)) {
+                pendingRetry.cancel();
+            }
+        }
+    }
+
+    private long _backoffMillis(int attempt) {
+        long backoffMillis = config.getInitialBackoffMillis() << Math.min(attempt - 1, 30);
+        backoffMillis = Math.min(backoffMillis, config.getMaxBackoffMillis());
+        // equal jitter, 一半固定, 一半随机
+        long half = backoffMillis / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private void _purge() {
+        long now = System.currentTimeMillis();
+        Iterator<Delivery> iterator = deliveries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void _notifySuccess(ResultCallback<Void> resultCallback) {
+        if (resultCallback != null) {
+            resultCallback.onSuccess(null);
+        }
+    }
+
+    private static void _notifyFailure(ResultCallback<Void> resultCallback, ErrorInfo errorInfo) {
+        if (resultCallback != null) {
+            resultCallback.onFailure(errorInfo);
+        }
+    }
+
+    /**
+     * Runs a retry where the first attempt of the message ran, so the retry keeps its order with the
+     * messages sent to the same user
+     */
+    interface RetryExecutor {
+        /**
+         * @param task
+         * @param attempt
+         * @return false if the attempt cannot be run, the retry is then failed
+         */
+        boolean execute(PublishTask task, Runnable attempt);
+    }
+
+    private class PendingRetry implements Runnable {
+        private final PublishTask task;
+        private final int attempt;
+        private final Delivery delivery;
+        private final String invitationKey;
+
+        PendingRetry(PublishTask task, int attempt, Delivery delivery) {
+            this.task = task;
+            this.attempt = attempt;
+            this.delivery = delivery;
+            this.invitationKey = PublishPriority.of(task.getAction()) == PublishPriority.INVITATION
+                    && task.getCallId() != null ? task.getCallId() + "|" + task.getUserId() : null;
+        }
+
+        @Override
+        public void run() {
+            if (retryExecutor == null) {
+                _run();
+                return;
+            }
+            // 在执行线程上才移出等待集合, 之前提交的挂断仍可撤回
+            if (!retryExecutor.execute(task, this::_run) && _removePending(this)) {
+                fail(new ErrorInfo(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                        "retry rejected by executor", "publish"));
+            }
+        }
+
+        private void _run() {
+            if (_removePending(this)) {
+                _attempt(task, attempt, delivery);
+            }
+        }
+
+        void cancel() {
+            fail(new ErrorInfo(RtmErrorCode.NOT_INITIALIZED, "call api deinitialized", "publish"));
+        }
+
+        void fail(ErrorInfo errorInfo) {
+            if (delivery == null) {
+                _notifyFailure(task.getResultCallback(), errorInfo);
+            } else {
+                deliveries.remove(delivery.key, delivery);
+                delivery.fail(errorInfo);
+            }
+        }
+    }
+
+    /**
+     * Delivery of one message to one recipient, shared by duplicate submissions
+     */
+    private static class Delivery {
+        private final String key;
+        private final List<ResultCallback<Void>> waiters = new ArrayList<>(1);
+        private boolean isDone;
+        private boolean isDelivered;
+        private long expireAtMillis = Long.MAX_VALUE;
+
+        Delivery(String key, ResultCallback<Void> resultCallback) {
+            this.key = key;
+            this.waiters.add(resultCallback);
+        }
+
+        /**
+         * Join a pending delivery or report an already delivered one
+         *
+         * @param resultCallback
+         * @return false if the delivery has failed and must be sent again
+         */
+        boolean join(ResultCallback<Void> resultCallback) {
+            synchronized (this) {
+                if (!isDone) {
+                    waiters.add(resultCallback);
+                    return true;
+                }
+                if (!isDelivered) {
+                    return false;
+                }
+            }
+            _notifySuccess(resultCallback);
+            return true;
+        }
+
+        void succeed(long expireAtMillis) {
+            List<ResultCallback<Void>> callbacks;
+            synchronized (this) {
+                isDone = true;
+                isDelivered = true;
+                this.expireAtMillis = expireAtMillis;
+                callbacks = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            for (ResultCallback<Void> callback : callbacks) {
+                _notifySuccess(callback);
+            }
+        }
+
+        void fail(ErrorInfo errorInfo) {
+            List<ResultCallback<Void>> callbacks;
+            synchronized (this) {
+                if (isDone) {
+                    return;
+                }
+                isDone = true;
+                callbacks = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            for (ResultCallback<Void> callback : callbacks) {
+                _notifyFailure(callback, errorInfo);
+            }
+        }
+
+        synchronized boolean isExpired(long nowMillis) {
+            return isDelivered && expireAtMillis <= nowMillis;
+        }
+    }
+}
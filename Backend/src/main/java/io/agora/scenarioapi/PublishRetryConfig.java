@@ -0,0 +1,27 @@
+package io.agora.scenarioapi;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import lombok.Data;
+
+@Data
+public class PublishRetryConfig {
+    // 每条消息最多发送次数, 包括首次发送
+    private int maxAttempts = 3;
+    // 首次重试的退避时间, 之后每次翻倍并加入随机抖动
+    private long initialBackoffMillis = 200;
+    // 最大退避时间
+    private long maxBackoffMillis = 5000;
+    // 已送达消息的去重保留时间, 期间相同 callId + 接收方的重复发送直接回调成功
+    private long idempotencyTtlMillis = 60000;
+    // 可重试的错误码
+    private Set<RtmErrorCode> retryableErrorCodes = EnumSet.of(
+            RtmErrorCode.NOT_LOGIN,
+            RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+            RtmErrorCode.CHANNEL_NOT_CONNECTED,
+            RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED,
+            RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_TOO_FREQUENT,
+            RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_TIMEOUT);
+}
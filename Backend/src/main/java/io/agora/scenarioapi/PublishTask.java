@@ -0,0 +1,85 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.PublishOptions;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmChannelType;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A message to be published to a user through a client of the pool
+ */
+@Getter
+class PublishTask {
+    private static final AtomicIntegerFieldUpdater<PublishTask> CLAIMED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PublishTask.class, "claimed");
+
+    private final RtmClientPool.Member member;
+    private final String userId;
+    private final byte[] message;
+    private final CallAction action;
+    private final String callId;
+    private final ResultCallback<Void> resultCallback;
+    // 排队中的消息由发送线程取出或被挂断撤回, 只有先 claim 的一方处理
+    @Getter(AccessLevel.NONE)
+    private volatile int claimed;
+
+    PublishTask(RtmClientPool.Member member, String userId, byte[] message, CallAction action, String callId,
+                ResultCallback<Void> resultCallback) {
+        this.member = member;
+        this.userId = userId;
+        this.message = message;
+        this.action = action;
+        this.callId = callId;
+        this.resultCallback = resultCallback;
+    }
+
+    /**
+     * Same message through another client or with another callback
+     *
+     * @param member
+     * @param resultCallback
+     * @return
+     */
+    PublishTask copy(RtmClientPool.Member member, ResultCallback<Void> resultCallback) {
+        return new PublishTask(member, userId, message, action, callId, resultCallback);
+    }
+
+    /**
+     * Take the exclusive right to run or fail a queued message
+     *
+     * @return false if already claimed
+     */
+    boolean claim() {
+        return CLAIMED_UPDATER.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Publish to RTM
+     *
+     * @return
+     */
+    Void run() {
+        PublishOptions options = new PublishOptions();
+        options.setChannelType(RtmChannelType.USER);
+
+        member.getRtmClient().publish(userId, message, options, resultCallback);
+        return null;
+    }
+
+    /**
+     * Report failure without publishing
+     *
+     * @param errorInfo
+     * @return
+     */
+    Void fail(ErrorInfo errorInfo) {
+        if (resultCallback != null) {
+            resultCallback.onFailure(errorInfo);
+        }
+        return null;
+    }
+}
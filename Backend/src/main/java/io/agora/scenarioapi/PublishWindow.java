@@ -0,0 +1,210 @@
+package io.agora.scenarioapi;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+/**
+ * Tracks the messages published but not yet called back, bounded by maxInFlight if configured.
+ * Once closed for deinitialize no message is admitted and awaitDrained waits for the outstanding ones,
+ * those still outstanding after the drain timeout can be failed at once with abandon.
+ */
+class PublishWindow {
+    private static final AtomicIntegerFieldUpdater<WindowCallback> COMPLETED =
+            AtomicIntegerFieldUpdater.newUpdater(WindowCallback.class, "completed");
+
+    // 为空表示不限制, 只统计
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+    // 已放行未回调的消息, 供 abandon 回调失败
+    private final Set<WindowCallback> inFlightCallbacks = ConcurrentHashMap.newKeySet();
+    private final Object drainLock = new Object();
+    private volatile boolean isClosed;
+
+    /**
+     * @param config [可选] null to track without bounding
+     */
+    PublishWindow(PublishWindowConfig config) {
+        this.permits = config == null ? null : new Semaphore(Math.max(config.getMaxInFlight(), 1));
+        this.acquireTimeoutMillis = config == null ? 0 : config.getAcquireTimeoutMillis();
+    }
+
+    /**
+     * Admit a message, blocking up to acquireTimeoutMillis while the window is full
+     *
+     * @return false if closed, interrupted or still full, the message must not be published then
+     */
+    boolean acquire() {
+        if (isClosed) {
+            return false;
+        }
+        if (permits != null) {
+            try {
+                boolean isAcquired = acquireTimeoutMillis <= 0 ? permits.tryAcquire()
+                        : permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (!isAcquired) {
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        inFlightCount.incrementAndGet();
+        // 与 close 竞争时撤回, awaitDrained 要么看到该消息, 要么该消息不会发送
+        if (isClosed) {
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Error reported for a message that was not admitted
+     *
+     * @return
+     */
+    ErrorInfo rejectedErrorInfo() {
+        if (isClosed) {
+            return new ErrorInfo(RtmErrorCode.NOT_INITIALIZED, "call api deinitializing", "publish");
+        }
+        return new ErrorInfo(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION, "publish window full",
+                "publish");
+    }
+
+    /**
+     * Release the slot of an admitted message once its final result is known, only the first result
+     * is reported
+     *
+     * @param resultCallback
+     * @return
+     */
+    ResultCallback<Void> wrap(ResultCallback<Void> resultCallback) {
+        WindowCallback windowCallback = new WindowCallback(resultCallback);
+        inFlightCallbacks.add(windowCallback);
+        return windowCallback;
+    }
+
+    /**
+     * Fail the admitted messages that are still not called back, a result reported for them later is
+     * ignored
+     *
+     * @param errorInfo
+     * @return number of messages failed
+     */
+    int abandon(ErrorInfo errorInfo) {
+        int abandonedCount = 0;
+        for (WindowCallback windowCallback : inFlightCallbacks) {
+            if (windowCallback.complete()) {
+                abandonedCount++;
+                if (windowCallback.resultCallback != null) {
+                    windowCallback.resultCallback.onFailure(errorInfo);
+                }
+            }
+        }
+        return abandonedCount;
+    }
+
+    void release() {
+        if (permits != null) {
+            permits.release();
+        }
+        if (inFlightCount.decrementAndGet() == 0 && isClosed) {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Number of messages published but not called back
+     *
+     * @return
+     */
+    int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    /**
+     * Stop admitting messages
+     *
+     * @return
+     */
+    Void close() {
+        isClosed = true;
+        return null;
+    }
+
+    /**
+     * Wait until every admitted message is called back
+     *
+     * @param timeoutMillis
+     * @return false on timeout or interrupt
+     */
+    boolean awaitDrained(long timeoutMillis) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (drainLock) {
+            while (inFlightCount.get() > 0) {
+                long waitNanos = deadlineNanos - System.nanoTime();
+                if (waitNanos <= 0) {
+                    return false;
+                }
+                try {
+                    // 向上取整, 不早于 timeoutMillis 返回
+                    drainLock.wait(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Result callback of an admitted message, completed by its result or by abandon
+     */
+    private class WindowCallback implements ResultCallback<Void> {
+        private final ResultCallback<Void> resultCallback;
+        private volatile int completed;
+
+        WindowCallback(ResultCallback<Void> resultCallback) {
+            this.resultCallback = resultCallback;
+        }
+
+        @Override
+        public void onSuccess(Void responseInfo) {
+            if (complete() && resultCallback != null) {
+                resultCallback.onSuccess(responseInfo);
+            }
+        }
+
+        @Override
+        public void onFailure(ErrorInfo errorInfo) {
+            if (complete() && resultCallback != null) {
+                resultCallback.onFailure(errorInfo);
+            }
+        }
+
+        /**
+         * @return false if already completed
+         */
+        boolean complete() {
+            if (!COMPLETED.compareAndSet(this, 0, 1)) {
+                return false;
+            }
+            inFlightCallbacks.remove(this);
+            release();
+            return true;
+        }
+    }
+}
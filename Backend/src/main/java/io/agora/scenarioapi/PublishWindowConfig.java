@@ -0,0 +1,12 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class PublishWindowConfig {
+    // 已发送未回调的最大消息数, 包括排队等待限流和重试中的消息
+    private int maxInFlight = 10000;
+    // 窗口已满时调用方最长阻塞等待时间, 超时后直接回调 RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION, 0 表示不等待
+    // 在 RTM 回调线程中发送(如挂断补偿)时阻塞会推迟其他回调, 建议保持较小的值
+    private long acquireTimeoutMillis = 0;
+}
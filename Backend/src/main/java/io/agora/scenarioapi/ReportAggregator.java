@@ -0,0 +1,289 @@
+package io.agora.scenarioapi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streaming aggregation of the client APIReporter cost events. Each record is one sendCustomReportMessage
+ * call as a JSON object, {"category":"2_Android_x.y.z","event":{"type":1,"desc":step},"label":{"ts":millis},
+ * "value":cost}, where event and label may also be the JSON strings the client sends. Cost events are
+ * recorded into a histogram per step, platform, version and hour, other events are only counted, so raw
+ * events are never stored.
+ */
+@Slf4j
+public class ReportAggregator {
+    private static final int EVENT_TYPE_COST = 1;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final DateTimeFormatter HOUR_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+
+    private final int retentionHours;
+    private final int maxKeys;
+    private final long highestTrackableCostMillis;
+    private final int precisionBits;
+    private final String metricPrefix;
+    private final Map<ReportKey, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final AtomicLong latestHourMillis = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder recordedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder malformedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    public ReportAggregator(ReportAggregatorConfig config) {
+        this.retentionHours = Math.max(config.getRetentionHours(), 1);
+        this.maxKeys = config.getMaxKeys();
+        this.highestTrackableCostMillis = config.getHighestTrackableCostMillis();
+        this.precisionBits = config.getPrecisionBits();
+        this.metricPrefix = config.getMetricPrefix();
+    }
+
+    /**
+     * Ingest one report record
+     *
+     * @param line JSON object of a report, blank lines are ignored
+     * @return true if a cost was recorded
+     */
+    public boolean ingest(String line) {
+        if (line == null || line.isBlank()) {
+            return false;
+        }
+
+        String step;
+        String platform;
+        String version;
+        long timestampMillis;
+        long cost;
+        try {
+            JSONObject record = JSON.parseObject(line);
+            if (record == null) {
+                malformedCount.increment();
+                return false;
+            }
+            JSONObject event = _object(record.get("event"));
+            if (event == null || event.getIntValue("type", -1) != EVENT_TYPE_COST) {
+                skippedCount.increment();
+                return false;
+            }
+
+            // category 为 "${type}_${platform}_${version}", 版本中可能含有下划线
+            String categoryValue = record.getString("category");
+            String[] category = categoryValue == null ? new String[0] : categoryValue.split("_", 3);
+            JSONObject label = _object(record.get("label"));
+            Long value = record.containsKey("value") ? record.getLong("value") : record.getLong("cost");
+            step = event.getString("desc");
+            platform = category.length == 3 ? category[1] : "";
+            version = category.length == 3 ? category[2] : record.getString("version");
+            timestampMillis = label == null ? 0 : label.getLongValue("ts");
+            if (step == null || version == null || value == null || timestampMillis <= 0) {
+                malformedCount.increment();
+                return false;
+            }
+            cost = value;
+        } catch (JSONException | NumberFormatException e) {
+            // 非数字的字符串数值由 fastjson2 抛出 NumberFormatException
+            malformedCount.increment();
+            log.debug("report, malformed record, line:{}, error:{}", line, e.getMessage());
+            return false;
+        }
+
+        return record(new ReportKey(step, platform, version, timestampMillis - Math.floorMod(timestampMillis,
+                HOUR_MILLIS)), cost);
+    }
+
+    /**
+     * Ingest a newline delimited JSON file of report records
+     *
+     * @param path
+     * @return number of costs recorded
+     * @throws IOException
+     */
+    public long ingestFile(Path path) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (ingest(line)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Record a cost, keys older than the retention or beyond maxKeys are dropped, and a clock more than an
+     * hour ahead of the server is treated as a wrong client clock
+     *
+     * @param key
+     * @param costMillis
+     * @return true if recorded
+     */
+    boolean record(ReportKey key, long costMillis) {
+        long hourMillis = key.getHourMillis();
+        if (hourMillis > System.currentTimeMillis() + HOUR_MILLIS) {
+            droppedCount.increment();
+            return false;
+        }
+
+        if (hourMillis > latestHourMillis.getAndAccumulate(hourMillis, Math::max)) {
+            _evict(hourMillis);
+        }
+        if (hourMillis <= latestHourMillis.get() - retentionHours * HOUR_MILLIS) {
+            droppedCount.increment();
+            return false;
+        }
+
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            if (histograms.size() >= maxKeys) {
+                droppedCount.increment();
+                return false;
+            }
+            histogram = histograms.computeIfAbsent(key,
+                    ignored -> new LatencyHistogram(highestTrackableCostMillis, precisionBits));
+        }
+        histogram.record(costMillis);
+        recordedCount.increment();
+        return true;
+    }
+
+    /**
+     * Cost distribution of a step in an hour, in milliseconds
+     *
+     * @param step
+     * @param platform
+     * @param version
+     * @param hourMillis any timestamp within the hour
+     * @return null if nothing was recorded
+     */
+    public LatencySnapshot getCost(String step, String platform, String version, long hourMillis) {
+        LatencyHistogram histogram = histograms.get(new ReportKey(step, platform, version,
+                hourMillis - Math.floorMod(hourMillis, HOUR_MILLIS)));
+        return histogram == null ? null : histogram.snapshot();
+    }
+
+    /**
+     * Retained aggregation keys
+     *
+     * @return
+     */
+    public List<ReportKey> getKeys() {
+        return new ArrayList<>(histograms.keySet());
+    }
+
+    /**
+     * Number of costs recorded
+     *
+     * @return
+     */
+    public long getRecordedCount() {
+        return recordedCount.sum();
+    }
+
+    /**
+     * Number of valid records that are not cost events
+     *
+     * @return
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    /**
+     * Number of records that could not be parsed
+     *
+     * @return
+     */
+    public long getMalformedCount() {
+        return malformedCount.sum();
+    }
+
+    /**
+     * Number of costs dropped for being out of the retention or beyond maxKeys
+     *
+     * @return
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Retained costs in the Prometheus text exposition format, one summary per step, platform, version and
+     * hour (UTC)
+     *
+     * @return
+     */
+    public String scrape() {
+        String name = metricPrefix + "_cost_milliseconds";
+        StringBuilder builder = new StringBuilder();
+        builder.append("# HELP ").append(name).append(" Client reported cost per step, version and hour\n");
+        builder.append("# TYPE ").append(name).append(" summary\n");
+        for (Map.Entry<ReportKey, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencySnapshot snapshot = entry.getValue().snapshot();
+            String labels = _labels(entry.getKey());
+            _sample(builder, name, labels, "quantile=\"0.5\"", snapshot.getP50());
+            _sample(builder, name, labels, "quantile=\"0.9\"", snapshot.getP90());
+            _sample(builder, name, labels, "quantile=\"0.99\"", snapshot.getP99());
+            _sample(builder, name + "_sum", labels, null, snapshot.getSum());
+            _sample(builder, name + "_count", labels, null, snapshot.getCount());
+        }
+        builder.append("# HELP ").append(metricPrefix).append("_dropped_total Reports dropped or malformed\n");
+        builder.append("# TYPE ").append(metricPrefix).append("_dropped_total counter\n");
+        _sample(builder, metricPrefix + "_dropped_total", "reason=\"dropped\"", null, droppedCount.sum());
+        _sample(builder, metricPrefix + "_dropped_total", "reason=\"malformed\"", null, malformedCount.sum());
+        return builder.toString();
+    }
+
+    private void _evict(long latestHour) {
+        long expireBefore = latestHour - (retentionHours - 1) * HOUR_MILLIS;
+        histograms.keySet().removeIf(key -> key.getHourMillis() < expireBefore);
+    }
+
+    private static JSONObject _object(Object value) {
+        if (value instanceof JSONObject) {
+            return (JSONObject) value;
+        }
+        if (value instanceof String && !((String) value).isEmpty()) {
+            return JSON.parseObject((String) value);
+        }
+        return null;
+    }
+
+    private static String _labels(ReportKey key) {
+        return "step=\"" + _escape(key.getStep()) + "\",platform=\"" + _escape(key.getPlatform())
+                + "\",version=\"" + _escape(key.getVersion()) + "\",hour=\""
+                + HOUR_FORMATTER.format(Instant.ofEpochMilli(key.getHourMillis())) + '"';
+    }
+
+    private static String _escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void _sample(StringBuilder builder, String name, String labels, String extraLabels,
+                                long value) {
+        builder.append(name).append('{').append(labels);
+        if (extraLabels != null) {
+            builder.append(',').append(extraLabels);
+        }
+        builder.append("} ").append(value).append('\n');
+    }
+}
@@ -0,0 +1,17 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class ReportAggregatorConfig {
+    // 保留的小时数, 按上报时间戳所在小时聚合, 早于最新小时 retentionHours 的统计被移除, 迟到的上报被丢弃
+    private int retentionHours = 48;
+    // 最多保留的 (耗时步骤, 平台, 版本, 小时) 组合数, 超出后新组合的上报被丢弃
+    private int maxKeys = 10000;
+    // 直方图可记录的最大耗时, 超出按最大值记录
+    private long highestTrackableCostMillis = 600000;
+    // 直方图每个 2 的幂区间的子桶数为 2^precisionBits, 相对误差小于 2^-precisionBits, 默认 5 时约 3%, 每个组合约 4KB
+    private int precisionBits = 5;
+    // scrape 输出的指标名前缀
+    private String metricPrefix = "callapi_report";
+}
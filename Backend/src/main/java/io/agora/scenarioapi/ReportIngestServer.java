@@ -0,0 +1,178 @@
+package io.agora.scenarioapi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * TCP listener that feeds newline delimited JSON report records into a ReportAggregator, meant for a local
+ * log shipper so it should be bound to a loopback address. Each connection is read by a thread of a pool
+ * bounded by maxConnections, a connection accepted while all of them are busy is closed right away.
+ */
+@Slf4j
+public class ReportIngestServer {
+    private static final int DEFAULT_MAX_CONNECTIONS = 16;
+
+    private final ReportAggregator aggregator;
+    private final ServerSocket serverSocket;
+    private final ThreadPoolExecutor readers;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder rejectedCount = new LongAdder();
+    private volatile boolean isStopped;
+
+    /**
+     * Bind and start accepting up to 16 concurrent connections
+     *
+     * @param aggregator
+     * @param host       such as 127.0.0.1
+     * @param port       0 to pick a free port, see getPort
+     * @throws IOException
+     */
+    public ReportIngestServer(ReportAggregator aggregator, String host, int port) throws IOException {
+        this(aggregator, host, port, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Bind and start accepting connections
+     *
+     * @param aggregator
+     * @param host           such as 127.0.0.1
+     * @param port           0 to pick a free port, see getPort
+     * @param maxConnections connections read concurrently, each takes a thread
+     * @throws IOException
+     */
+    public ReportIngestServer(ReportAggregator aggregator, String host, int port, int maxConnections)
+            throws IOException {
+        this.aggregator = aggregator;
+        AtomicInteger index = new AtomicInteger();
+        // 不排队, 线程用尽时 execute 直接拒绝
+        this.readers = new ThreadPoolExecutor(0, Math.max(maxConnections, 1), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "callapi-report-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(host, port));
+        _startThread("callapi-report-accept", this::_accept);
+        log.info("report ingest server started, address:{}", serverSocket.getLocalSocketAddress());
+    }
+
+    /**
+     * Bound port
+     *
+     * @return
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Number of open connections
+     *
+     * @return
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Number of connections closed because maxConnections were already being read
+     *
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Stop accepting and close the open connections, records already read are kept in the aggregator
+     *
+     * @return
+     */
+    public Void stop() {
+        isStopped = true;
+        _close(serverSocket);
+        for (Socket socket : connections) {
+            _close(socket);
+        }
+        connections.clear();
+        readers.shutdown();
+        return null;
+    }
+
+    private void _accept() {
+        while (!isStopped) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!isStopped) {
+                    log.warn("report ingest server, accept failed, error:{}", e.getMessage());
+                }
+                continue;
+            }
+
+            connections.add(socket);
+            if (isStopped) {
+                _close(socket);
+                connections.remove(socket);
+                return;
+            }
+            try {
+                readers.execute(() -> _read(socket));
+            } catch (RejectedExecutionException e) {
+                rejectedCount.increment();
+                log.warn("report ingest server, too many connections, remote:{}", socket.getRemoteSocketAddress());
+                _close(socket);
+                connections.remove(socket);
+            }
+        }
+    }
+
+    private void _read(Socket socket) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                aggregator.ingest(line);
+            }
+        } catch (IOException e) {
+            if (!isStopped) {
+                log.warn("report ingest server, read failed, remote:{}, error:{}", socket.getRemoteSocketAddress(),
+                        e.getMessage());
+            }
+        } finally {
+            _close(socket);
+            connections.remove(socket);
+        }
+    }
+
+    private static void _startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void _close(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("report ingest server, close failed, error:{}", e.getMessage());
+        }
+    }
+}
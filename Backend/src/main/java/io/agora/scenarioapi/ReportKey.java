@@ -0,0 +1,24 @@
+package io.agora.scenarioapi;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Aggregation key of the client cost reports
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ReportKey {
+    // 耗时步骤, 如 firstFrameActual、firstFramePerceived 及 CallConnectCostType 的各步骤
+    private final String step;
+    // 客户端平台, 如 Android
+    private final String platform;
+    // 客户端 CallApi 版本
+    private final String version;
+    // 上报时间戳所在小时的起始时间戳
+    private final long hourMillis;
+}
@@ -0,0 +1,15 @@
+package io.agora.scenarioapi;
+
+import lombok.Data;
+
+@Data
+public class RingTimeoutConfig {
+    // 振铃超时时间, 超时未接通则自动挂断, 与客户端 callTimeoutMillisecond 一致
+    private long ringTimeoutMillis = 15000;
+    // 超时挂断时发给双方的原因
+    private String hangupReason = "CallingTimeout";
+    // 时间轮每格的时长, 即超时的精度
+    private long tickMillis = 100;
+    // 时间轮格数, 取 2 的幂
+    private int wheelSize = 512;
+}
@@ -0,0 +1,104 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ring timeouts of the calling sessions on a hashed timing wheel, a session still CALLING when its
+ * timeout fires is moved to TIMEOUT and handed to onTimeout on an executor, so the wheel thread never
+ * publishes; connecting or ending the session cancels it
+ */
+@Slf4j
+class RingTimeoutService {
+    private final RingTimeoutConfig config;
+    private final Consumer<CallSession> onTimeout;
+    private final HashedWheelTimer timer;
+    private final ExecutorService executor;
+    private final boolean isSharedExecutor;
+
+    /**
+     * @param config
+     * @param onTimeout
+     * @param sharedExecutor runs onTimeout, not shut down on stop, a hangup thread is created if null
+     */
+    RingTimeoutService(RingTimeoutConfig config, Consumer<CallSession> onTimeout, ExecutorService sharedExecutor) {
+        this.config = config;
+        this.onTimeout = onTimeout;
+        this.isSharedExecutor = sharedExecutor != null;
+        this.executor = isSharedExecutor ? sharedExecutor : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "callapi-ring-timeout-hangup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = new HashedWheelTimer(config.getTickMillis(), config.getWheelSize(), "callapi-ring-timeout");
+    }
+
+    /**
+     * Start the ring timeout of a session, ignored if it already has one
+     *
+     * @param session
+     * @return
+     */
+    Void schedule(CallSession session) {
+        RingTimeout timeout = new RingTimeout(session);
+        if (session.setRingTimeout(timeout)) {
+            timer.schedule(timeout, config.getRingTimeoutMillis());
+        }
+        return null;
+    }
+
+    /**
+     * Number of pending ring timeouts
+     *
+     * @return
+     */
+    long size() {
+        return timer.size();
+    }
+
+    /**
+     * Stop the timer, timeouts already handed to the executor still hang up unless it is shut down
+     *
+     * @return
+     */
+    Void stop() {
+        timer.stop();
+        if (!isSharedExecutor) {
+            executor.shutdown();
+        }
+        return null;
+    }
+
+    private void _hangup(CallSession session) {
+        try {
+            onTimeout.accept(session);
+        } catch (RuntimeException e) {
+            log.error("ring timeout, hangup failed, callId:{}, error:{}", session.getCallId(), e.getMessage());
+        }
+    }
+
+    private class RingTimeout extends HashedWheelTimer.Timeout {
+        private final CallSession session;
+
+        RingTimeout(CallSession session) {
+            this.session = session;
+        }
+
+        @Override
+        void expire() {
+            // 与接通并发时只有一方成功
+            if (!session.timeout()) {
+                return;
+            }
+            try {
+                executor.execute(() -> _hangup(session));
+            } catch (RejectedExecutionException e) {
+                log.warn("ring timeout, hangup rejected, callId:{}", session.getCallId());
+            }
+        }
+    }
+}
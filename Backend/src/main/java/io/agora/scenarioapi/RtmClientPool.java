@@ -0,0 +1,398 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.LockEvent;
+import io.agora.rtm.MessageEvent;
+import io.agora.rtm.PresenceEvent;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmClient;
+import io.agora.rtm.RtmConfig;
+import io.agora.rtm.RtmConstants;
+import io.agora.rtm.RtmEventListener;
+import io.agora.rtm.StorageEvent;
+import io.agora.rtm.TopicEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * RtmClient pool, messages are spread across the clients by consistent hashing on the target userId.
+ * The login state of each client is tracked separately, clients that are not logged in are skipped.
+ * <p>
+ * Note: RtmClient.create of the RTM Java SDK returns a process wide instance, so at most one identity
+ * may let the pool create its client, the others must provide their own rtmClient.
+ */
+@Slf4j
+class RtmClientPool {
+    // 每个客户端在哈希环上的虚拟节点数
+    private static final int VIRTUAL_NODES = 160;
+
+    private final List<Member> members;
+    private final int[] ringHashes;
+    private final int[] ringMembers;
+
+    private RtmClientPool(List<Member> members) {
+        this.members = Collections.unmodifiableList(members);
+
+        long[] ring = new long[members.size() * VIRTUAL_NODES];
+        for (int i = 0; i < members.size(); i++) {
+            for (int j = 0; j < VIRTUAL_NODES; j++) {
+                int hash = hash(members.get(i).getIdentity().getUserId() + "#" + j);
+                // 高 32 位为哈希值, 低 32 位为成员下标, 排序后同时得到两者
+                ring[i * VIRTUAL_NODES + j] = ((long) hash << 32) | i;
+            }
+        }
+        Arrays.sort(ring);
+
+        this.ringHashes = new int[ring.length];
+        this.ringMembers = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            ringHashes[i] = (int) (ring[i] >> 32);
+            ringMembers[i] = (int) ring[i];
+        }
+    }
+
+    /**
+     * Create pool from the config, rtmIdentities in pooled mode, otherwise rtmClient/userId/rtmToken
+     *
+     * @param callApiConfig
+     * @return
+     */
+    static RtmClientPool create(CallApiConfig callApiConfig) throws Exception {
+        return create(callApiConfig, RtmClient::create);
+    }
+
+    /**
+     * @param callApiConfig
+     * @param rtmClientFactory creates the clients of the identities without rtmClient
+     * @return
+     */
+    static RtmClientPool create(CallApiConfig callApiConfig, RtmClientFactory rtmClientFactory) throws Exception {
+        List<RtmIdentity> identities = callApiConfig.getRtmIdentities();
+        if (identities == null || identities.isEmpty()) {
+            identities = Collections.singletonList(new RtmIdentity(callApiConfig.getUserId(),
+                    callApiConfig.getRtmToken(), callApiConfig.getRtmClient()));
+        }
+
+        Map<RtmClient, Boolean> createdClients = new IdentityHashMap<>();
+        Map<String, Member> members = new LinkedHashMap<>();
+        for (RtmIdentity identity : identities) {
+            if (members.containsKey(identity.getUserId())) {
+                throw new IllegalArgumentException("duplicate rtm identity, userId:" + identity.getUserId());
+            }
+
+            Member member = new Member(identity, callApiConfig.getRtmEventListener());
+            if (member.isExternal()) {
+                identity.getRtmClient().addEventListener(member.getStateListener());
+            } else {
+                RtmConfig rtmConfig = new RtmConfig.Builder(callApiConfig.getAppId(), identity.getUserId())
+                        .eventListener(member.getStateListener())
+                        .build();
+                RtmClient rtmClient = rtmClientFactory.create(rtmConfig);
+                if (createdClients.put(rtmClient, Boolean.TRUE) != null) {
+                    throw new IllegalStateException("RtmClient.create returns a process wide instance, "
+                            + "set rtmClient of the rtm identity, userId:" + identity.getUserId());
+                }
+                member.rtmClient = rtmClient;
+            }
+            members.put(identity.getUserId(), member);
+        }
+
+        return new RtmClientPool(new ArrayList<>(members.values()));
+    }
+
+    /**
+     * All members of the pool
+     *
+     * @return
+     */
+    List<Member> getMembers() {
+        return members;
+    }
+
+    /**
+     * Member by identity userId
+     *
+     * @param userId
+     * @return
+     */
+    Member getMember(String userId) {
+        for (Member member : members) {
+            if (member.getIdentity().getUserId().equals(userId)) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Select the client for the target userId, the next logged in client on the ring is used
+     * if the owner is not logged in, the owner is returned if no client is logged in
+     *
+     * @param targetUserId
+     * @return
+     */
+    Member select(String targetUserId) {
+        if (members.size() == 1) {
+            return members.get(0);
+        }
+
+        return select(hash(targetUserId));
+    }
+
+    /**
+     * Select the client for the target userId by its precomputed hash
+     *
+     * @param targetHash
+     * @return
+     */
+    Member select(int targetHash) {
+        if (members.size() == 1) {
+            return members.get(0);
+        }
+
+        int index = Arrays.binarySearch(ringHashes, targetHash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+
+        Member owner = null;
+        for (int i = 0; i < ringHashes.length; i++) {
+            Member member = members.get(ringMembers[(index + i) % ringHashes.length]);
+            if (owner == null) {
+                owner = member;
+            }
+            if (member.isLogined()) {
+                return member;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * Login the clients created by the pool, the callback is invoked once all logins completed,
+     * with the first error if any login failed. Succeeds right away if every client is external.
+     *
+     * @param resultCallback
+     * @return
+     */
+    Void login(ResultCallback<Void> resultCallback) {
+        List<Member> internalMembers = _internalMembers();
+        ResultCallback<Void> aggregateCallback = _aggregate(internalMembers.size(), resultCallback);
+        for (Member member : internalMembers) {
+            member.getRtmClient().login(member.getIdentity().getRtmToken(), new ResultCallback<Void>() {
+                @Override
+                public void onSuccess(Void responseInfo) {
+                    member.isLogined.set(true);
+                    aggregateCallback.onSuccess(responseInfo);
+                }
+
+                @Override
+                public void onFailure(ErrorInfo errorInfo) {
+                    log.error("login, onFailure, userId:{}, errorInfo:{}", member.getIdentity().getUserId(), errorInfo);
+                    aggregateCallback.onFailure(errorInfo);
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Logout the clients created by the pool and detach from the external ones,
+     * succeeds right away if every client is external
+     *
+     * @param resultCallback
+     * @return
+     */
+    Void logout(ResultCallback<Void> resultCallback) {
+        for (Member member : members) {
+            if (member.isExternal()) {
+                member.getRtmClient().removeEventListener(member.getStateListener());
+            }
+        }
+
+        List<Member> internalMembers = _internalMembers();
+        ResultCallback<Void> aggregateCallback = _aggregate(internalMembers.size(), resultCallback);
+        for (Member member : internalMembers) {
+            member.isLogined.set(false);
+            member.getRtmClient().logout(aggregateCallback);
+        }
+        return null;
+    }
+
+    private List<Member> _internalMembers() {
+        List<Member> internalMembers = new ArrayList<>();
+        for (Member member : members) {
+            if (!member.isExternal()) {
+                internalMembers.add(member);
+            }
+        }
+        return internalMembers;
+    }
+
+    /**
+     * Callback counting down count results, completed right away if count is 0
+     *
+     * @param count
+     * @param resultCallback
+     * @return
+     */
+    private static ResultCallback<Void> _aggregate(int count, ResultCallback<Void> resultCallback) {
+        if (count == 0 && resultCallback != null) {
+            // 外部 rtmClient 由调用方负责 login/logout, 没有需要等待的结果
+            resultCallback.onSuccess(null);
+        }
+        AtomicInteger pendingCount = new AtomicInteger(count);
+        AtomicReference<ErrorInfo> firstError = new AtomicReference<>();
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                _countDown();
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                firstError.compareAndSet(null, errorInfo);
+                _countDown();
+            }
+
+            private void _countDown() {
+                if (pendingCount.decrementAndGet() != 0 || resultCallback == null) {
+                    return;
+                }
+                if (firstError.get() == null) {
+                    resultCallback.onSuccess(null);
+                } else {
+                    resultCallback.onFailure(firstError.get());
+                }
+            }
+        };
+    }
+
+    /**
+     * Position of a key on the ring
+     *
+     * @param key
+     * @return
+     */
+    static int hash(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return MurmurHash3.hash32x86(bytes, 0, bytes.length, 0);
+    }
+
+    /**
+     * Creates the clients owned by the pool, RtmClient.create unless replaced in tests
+     */
+    @FunctionalInterface
+    interface RtmClientFactory {
+        RtmClient create(RtmConfig rtmConfig) throws Exception;
+    }
+
+    /**
+     * A client of the pool with its own login state
+     */
+    @Getter
+    static class Member {
+        private final RtmIdentity identity;
+        private final boolean isExternal;
+        private final RtmEventListener stateListener;
+        private RtmClient rtmClient;
+        // 外部传入的 rtmClient 由调用方负责 login, 视为已登录
+        @Getter(AccessLevel.NONE)
+        private final AtomicBoolean isLogined;
+        // token 即将过期时的处理, 用于自动续期
+        @Getter(AccessLevel.NONE)
+        private volatile Runnable tokenWillExpireHandler;
+
+        Member(RtmIdentity identity, RtmEventListener rtmEventListener) {
+            this.identity = identity;
+            this.isExternal = identity.getRtmClient() != null;
+            this.rtmClient = identity.getRtmClient();
+            this.isLogined = new AtomicBoolean(isExternal);
+            this.stateListener = new RtmEventListener() {
+                @Override
+                public void onConnectionStateChanged(String channelName, RtmConstants.RtmConnectionState state,
+                                                     RtmConstants.RtmConnectionChangeReason reason) {
+                    if (state == RtmConstants.RtmConnectionState.CONNECTED) {
+                        isLogined.set(true);
+                    } else if (state == RtmConstants.RtmConnectionState.DISCONNECTED
+                            || state == RtmConstants.RtmConnectionState.FAILED) {
+                        isLogined.set(false);
+                    }
+                    // 外部 rtmClient 的事件由调用方自行监听
+                    if (!isExternal && rtmEventListener != null) {
+                        rtmEventListener.onConnectionStateChanged(channelName, state, reason);
+                    }
+                }
+
+                @Override
+                public void onTokenPrivilegeWillExpire(String channelName) {
+                    Runnable handler = tokenWillExpireHandler;
+                    if (handler != null) {
+                        handler.run();
+                    }
+                    if (!isExternal && rtmEventListener != null) {
+                        rtmEventListener.onTokenPrivilegeWillExpire(channelName);
+                    }
+                }
+
+                @Override
+                public void onMessageEvent(MessageEvent event) {
+                    if (!isExternal && rtmEventListener != null) {
+                        rtmEventListener.onMessageEvent(event);
+                    }
+                }
+
+                @Override
+                public void onPresenceEvent(PresenceEvent event) {
+                    if (!isExternal && rtmEventListener != null) {
+                        rtmEventListener.onPresenceEvent(event);
+                    }
+                }
+
+                @Override
+                public void onTopicEvent(TopicEvent event) {
+                    if (!isExternal && rtmEventListener != null) {
+                        rtmEventListener.onTopicEvent(event);
+                    }
+                }
+
+                @Override
+                public void onLockEvent(LockEvent event) {
+                    if (!isExternal && rtmEventListener != null) {
+                        rtmEventListener.onLockEvent(event);
+                    }
+                }
+
+                @Override
+                public void onStorageEvent(StorageEvent event) {
+                    if (!isExternal && rtmEventListener != null) {
+                        rtmEventListener.onStorageEvent(event);
+                    }
+                }
+            };
+        }
+
+        boolean isLogined() {
+            return isLogined.get();
+        }
+
+        void setTokenWillExpireHandler(Runnable tokenWillExpireHandler) {
+            this.tokenWillExpireHandler = tokenWillExpireHandler;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.agora.scenarioapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import io.agora.rtm.RtmClient;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RtmIdentity {
+    // 用户Id, 通过该用户Id来发送信令消息
+    private String userId;
+    // RTM token
+    private String rtmToken;
+    // [可选]rtm client实例, 如果设置则需要负责rtmClient的login和logout
+    private RtmClient rtmClient;
+
+    public RtmIdentity(String userId, String rtmToken) {
+        this(userId, rtmToken, null);
+    }
+}
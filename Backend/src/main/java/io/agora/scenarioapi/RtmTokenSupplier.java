@@ -0,0 +1,16 @@
+package io.agora.scenarioapi;
+
+/**
+ * Source of new RTM tokens for the token refresher, e.g. a call to the business token service
+ */
+@FunctionalInterface
+public interface RtmTokenSupplier {
+    /**
+     * New RTM token of the rtm identity
+     *
+     * @param userId rtm identity userId
+     * @return
+     * @throws Exception the refresh is retried with backoff
+     */
+    String getToken(String userId) throws Exception;
+}
@@ -0,0 +1,53 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free token bucket, kept as the theoretical arrival time of the next permit (GCRA form)
+ */
+class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond
+     * @param burst            max permits that can be acquired at once after idle
+     */
+    TokenBucket(int permitsPerSecond, int burst) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.burstNanos = intervalNanos * (Math.max(burst, 1) - 1);
+        this.nextFreeNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Try to take one permit
+     *
+     * @param nowNanos
+     * @return 0 if the permit is taken, otherwise the nanos to wait before retrying
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long next = nextFreeNanos.get();
+            long start = Math.max(next, nowNanos - burstNanos);
+            long wait = start - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (nextFreeNanos.compareAndSet(next, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Give back a permit taken by tryAcquire that was not used
+     *
+     * @return
+     */
+    Void refund() {
+        nextFreeNanos.addAndGet(-intervalNanos);
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.Executor;
+
+import lombok.Data;
+
+@Data
+public class TokenRefreshConfig {
+    // 获取新 token, 如请求业务服务端生成
+    private RtmTokenSupplier tokenSupplier;
+    // [可选]执行 tokenSupplier 的线程池, 不会被关闭; 为空则每个 TokenRefresher 创建一个空闲时回收的线程
+    // tokenSupplier 可能阻塞, 不在定时用的 scheduler 上执行, 以免推迟共享该 scheduler 的其他任务
+    private Executor tokenSupplierExecutor;
+    // token 有效期, 与业务服务端生成 token 时的过期时间一致
+    private long tokenLifetimeMillis = 24 * 60 * 60 * 1000L;
+    // 提前多久续期
+    private long refreshAheadMillis = 10 * 60 * 1000L;
+    // 续期失败后首次重试的退避时间, 之后每次翻倍并加入随机抖动
+    private long initialBackoffMillis = 1000;
+    // 最大退避时间
+    private long maxBackoffMillis = 60000;
+}
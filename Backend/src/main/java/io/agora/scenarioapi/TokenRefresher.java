@@ -0,0 +1,253 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Renews the RTM token of each rtm identity through ICallApi.renewToken ahead of its expiry.
+ * Refreshes of the same identity are single flight, a refresh requested while one is running
+ * joins it, failed refreshes are retried with jittered exponential backoff until they succeed.
+ * The scheduler only times the refreshes, the token supplier runs on its own executor.
+ */
+@Slf4j
+public class TokenRefresher {
+    private final ICallApi callApi;
+    private final List<String> userIds;
+    private final TokenRefreshConfig config;
+    private final Map<String, CompletableFuture<Void>> inFlightRefreshes = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> scheduledRefreshes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final boolean isSharedScheduler;
+    private final Executor tokenSupplierExecutor;
+    // 未配置 tokenSupplierExecutor 时创建, stop 时关闭
+    private final ThreadPoolExecutor ownedTokenSupplierExecutor;
+    private volatile boolean isStopped;
+
+    /**
+     * @param callApi
+     * @param userIds rtm identity userIds
+     * @param config
+     */
+    public TokenRefresher(ICallApi callApi, Collection<String> userIds, TokenRefreshConfig config) {
+        this(callApi, userIds, config, null);
+    }
+
+    /**
+     * @param callApi
+     * @param userIds         rtm identity userIds
+     * @param config
+     * @param sharedScheduler not shut down on stop, a refresh thread is created if null
+     */
+    public TokenRefresher(ICallApi callApi, Collection<String> userIds, TokenRefreshConfig config,
+                          ScheduledExecutorService sharedScheduler) {
+        if (config.getTokenSupplier() == null) {
+            throw new IllegalArgumentException("tokenSupplier of TokenRefreshConfig is required");
+        }
+
+        this.callApi = callApi;
+        this.userIds = new ArrayList<>(userIds);
+        this.config = config;
+        this.isSharedScheduler = sharedScheduler != null;
+        this.scheduler = isSharedScheduler ? sharedScheduler : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "callapi-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (config.getTokenSupplierExecutor() != null) {
+            this.ownedTokenSupplierExecutor = null;
+            this.tokenSupplierExecutor = config.getTokenSupplierExecutor();
+        } else {
+            this.ownedTokenSupplierExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "callapi-token-supplier");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.ownedTokenSupplierExecutor.allowCoreThreadTimeOut(true);
+            this.tokenSupplierExecutor = ownedTokenSupplierExecutor;
+        }
+    }
+
+    /**
+     * Schedule the first refresh of every identity, the current tokens are considered just issued
+     *
+     * @return
+     */
+    public Void start() {
+        for (String userId : userIds) {
+            _scheduleNext(userId);
+        }
+        return null;
+    }
+
+    /**
+     * Stop refreshing, pending refreshes complete exceptionally with NOT_INITIALIZED
+     *
+     * @return
+     */
+    public Void stop() {
+        isStopped = true;
+        if (!isSharedScheduler) {
+            scheduler.shutdownNow();
+        }
+        if (ownedTokenSupplierExecutor != null) {
+            ownedTokenSupplierExecutor.shutdownNow();
+        }
+        for (ScheduledFuture<?> scheduled : scheduledRefreshes.values()) {
+            scheduled.cancel(false);
+        }
+        scheduledRefreshes.clear();
+
+        for (String userId : new ArrayList<>(inFlightRefreshes.keySet())) {
+            CompletableFuture<Void> future = inFlightRefreshes.remove(userId);
+            if (future != null) {
+                future.completeExceptionally(_stoppedException());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Refresh the token of an identity now, joins the refresh in flight if any.
+     * The future completes once the new token is renewed, it is not failed by retried errors.
+     *
+     * @param userId
+     * @return
+     */
+    public CompletableFuture<Void> refresh(String userId) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlightRefreshes.putIfAbsent(userId, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (isStopped) {
+            inFlightRefreshes.remove(userId, created);
+            created.completeExceptionally(_stoppedException());
+            return created;
+        }
+
+        ScheduledFuture<?> scheduled = scheduledRefreshes.remove(userId);
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        _execute(userId, 1, created, 0);
+        return created;
+    }
+
+    private void _attempt(String userId, int attempt, CompletableFuture<Void> future) {
+        if (isStopped) {
+            return;
+        }
+
+        String rtmToken;
+        try {
+            rtmToken = config.getTokenSupplier().getToken(userId);
+        } catch (Exception e) {
+            _retry(userId, attempt, future, "tokenSupplier error:" + e.getMessage());
+            return;
+        }
+        if (rtmToken == null || rtmToken.isEmpty()) {
+            _retry(userId, attempt, future, "tokenSupplier returned empty token");
+            return;
+        }
+
+        callApi.renewToken(userId, rtmToken, new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                log.info("renewToken, onSuccess, userId:{}, attempt:{}", userId, attempt);
+                if (inFlightRefreshes.remove(userId, future)) {
+                    _scheduleNext(userId);
+                    future.complete(null);
+                }
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                _retry(userId, attempt, future, String.valueOf(errorInfo));
+            }
+        });
+    }
+
+    private void _retry(String userId, int attempt, CompletableFuture<Void> future, String reason) {
+        if (inFlightRefreshes.get(userId) != future) {
+            return;
+        }
+
+        long backoffMillis = _backoffMillis(attempt);
+        log.warn("renewToken failed, retry in {} ms, userId:{}, attempt:{}, reason:{}",
+                backoffMillis, userId, attempt, reason);
+        _execute(userId, attempt + 1, future, backoffMillis);
+    }
+
+    private void _scheduleNext(String userId) {
+        if (isStopped) {
+            return;
+        }
+
+        long delayMillis = Math.max(config.getTokenLifetimeMillis() - config.getRefreshAheadMillis(), 0);
+        try {
+            scheduledRefreshes.put(userId, scheduler.schedule(() -> {
+                scheduledRefreshes.remove(userId);
+                refresh(userId);
+            }, delayMillis, TimeUnit.MILLISECONDS));
+        } catch (RejectedExecutionException e) {
+            // 已停止
+        }
+    }
+
+    /**
+     * Wait on the scheduler, then run the attempt on the token supplier executor
+     */
+    private void _execute(String userId, int attempt, CompletableFuture<Void> future, long delayMillis) {
+        if (delayMillis <= 0) {
+            _executeAttempt(userId, attempt, future);
+            return;
+        }
+        try {
+            scheduler.schedule(() -> _executeAttempt(userId, attempt, future), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已停止, 由 stop 负责结束等待中的续期
+        }
+    }
+
+    private void _executeAttempt(String userId, int attempt, CompletableFuture<Void> future) {
+        try {
+            tokenSupplierExecutor.execute(() -> _attempt(userId, attempt, future));
+        } catch (RejectedExecutionException e) {
+            if (!isStopped) {
+                _retry(userId, attempt, future, "tokenSupplierExecutor rejected");
+            }
+        }
+    }
+
+    private static CallApiException _stoppedException() {
+        return new CallApiException(new ErrorInfo(RtmErrorCode.NOT_INITIALIZED, "token refresher stopped",
+                "renewToken"));
+    }
+
+    private long _backoffMillis(int attempt) {
+        long backoffMillis = config.getInitialBackoffMillis() << Math.min(attempt - 1, 30);
+        backoffMillis = Math.min(backoffMillis, config.getMaxBackoffMillis());
+        // equal jitter, 一半固定, 一半随机
+        long half = backoffMillis / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+}
@@ -0,0 +1,57 @@
+package io.agora.scenarioapi;
+
+/**
+ * Direct mapped cache of the channel names of the target userIds, with their hash on the client ring,
+ * so the steady-state publish path does not format a new string per message. Entries are immutable
+ * and replaced without locking, a racing lookup at worst formats the name again.
+ */
+class UserChannelCache {
+    private final UserChannel[] entries;
+    // 取乘积的高 log2(capacity) 位作为下标
+    private final int shift;
+
+    /**
+     * @param size rounded up to a power of two, 0 disables the cache
+     */
+    UserChannelCache(int size) {
+        int capacity = size <= 0 ? 0 : Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        this.entries = new UserChannel[capacity];
+        this.shift = 32 - Integer.numberOfTrailingZeros(Math.max(capacity, 1));
+    }
+
+    /**
+     * Channel of a userId
+     *
+     * @param userId
+     * @return
+     */
+    UserChannel get(int userId) {
+        if (entries.length == 0) {
+            return new UserChannel(userId);
+        }
+
+        // Fibonacci 散列, 打散连续的 userId 之外的规律分布
+        int index = (userId * 0x9E3779B9) >>> shift;
+        UserChannel entry = entries[index];
+        if (entry == null || entry.userId != userId) {
+            entry = new UserChannel(userId);
+            entries[index] = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * Channel name of a userId and its hash on the rtm client ring
+     */
+    static final class UserChannel {
+        final int userId;
+        final String channelName;
+        final int ringHash;
+
+        UserChannel(int userId) {
+            this.userId = userId;
+            this.channelName = Integer.toString(userId);
+            this.ringHash = RtmClientPool.hash(channelName);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.agora.scenarioapi;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fixed set of single threaded lanes, work is partitioned by a hash of the target user so the work of
+ * one user runs in submission order while different users run in parallel, without a shared lock
+ */
+@Slf4j
+class UserOrderedExecutor {
+    private final ThreadPoolExecutor[] lanes;
+    private final long stopTimeoutMillis;
+
+    UserOrderedExecutor(OrderedExecutionConfig config) {
+        this.lanes = new ThreadPoolExecutor[Math.max(config.getLaneCount(), 1)];
+        this.stopTimeoutMillis = config.getStopTimeoutMillis();
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = "callapi-ordered-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(config.getLaneQueueSize(), 1)), runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    /**
+     * Run on the lane of a key, after the work submitted earlier with keys of the same lane
+     *
+     * @param key well mixed hash of the target user, such as RtmClientPool.hash of its channel name
+     * @param runnable
+     * @return false if the lane queue is full or the executor is stopped, the work is not run then
+     */
+    boolean execute(int key, Runnable runnable) {
+        try {
+            lanes[Math.floorMod(key, lanes.length)].execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Run the send of a message on the lane of a key, if the executor stops before it runs the message is
+     * failed with NOT_INITIALIZED
+     *
+     * @param key
+     * @param task
+     * @param runnable sends the task
+     * @return false if the lane queue is full or the executor is stopped, the work is not run then
+     */
+    boolean execute(int key, PublishTask task, Runnable runnable) {
+        return execute(key, new PublishWork(task, runnable));
+    }
+
+    /**
+     * Number of work items waiting in all lanes
+     *
+     * @return
+     */
+    int getQueuedCount() {
+        int queuedCount = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queuedCount += lane.getQueue().size();
+        }
+        return queuedCount;
+    }
+
+    /**
+     * Stop accepting work and wait up to stopTimeoutMillis for the queued work to run, messages still
+     * queued then are failed with NOT_INITIALIZED
+     *
+     * @return
+     */
+    Void stop() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeoutMillis);
+        boolean isInterrupted = false;
+        for (ThreadPoolExecutor lane : lanes) {
+            long waitNanos = Math.max(deadlineNanos - System.nanoTime(), 0);
+            try {
+                if (!isInterrupted && lane.awaitTermination(waitNanos, TimeUnit.NANOSECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+            List<Runnable> dropped = lane.shutdownNow();
+            log.warn("ordered executor, stop timeout, dropped:{}", dropped.size());
+            for (Runnable runnable : dropped) {
+                if (runnable instanceof PublishWork) {
+                    ((PublishWork) runnable).task.fail(new ErrorInfo(RtmErrorCode.NOT_INITIALIZED,
+                            "call api deinitialized", "publish"));
+                }
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Send of a message, kept in the lane queue so a stop can fail the ones that never ran
+     */
+    private static class PublishWork implements Runnable {
+        private final PublishTask task;
+        private final Runnable runnable;
+
+        PublishWork(PublishTask task, Runnable runnable) {
+            this.task = task;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+}
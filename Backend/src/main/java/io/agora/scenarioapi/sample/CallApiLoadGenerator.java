@@ -0,0 +1,187 @@
+package io.agora.scenarioapi.sample;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+import io.agora.scenarioapi.CallAction;
+import io.agora.scenarioapi.CallApiConfig;
+import io.agora.scenarioapi.CallApiImpl;
+import io.agora.scenarioapi.LatencySnapshot;
+import io.agora.scenarioapi.LocalRtmClient;
+import io.agora.scenarioapi.LocalRtmClientConfig;
+import io.agora.scenarioapi.PublishMetrics;
+import io.agora.scenarioapi.PublishMetricsConfig;
+import io.agora.scenarioapi.PublishRateLimitConfig;
+import io.agora.scenarioapi.PublishRetryConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load generator against LocalRtmClient, no RTM service needed.
+ * Every tick calls a new user pair and hangs up the pair called hangupDelay ticks before,
+ * publish latency percentiles and throughput are reported from PublishMetrics.
+ * <p>
+ * Arguments, all optional: --rate=1000 (calls per second) --duration=30 (seconds) --latency=20 --jitter=10
+ * (publish latency in ms) --failureRate=0.01 --capacity=0 (max publishes per second of the fake, 0 unlimited)
+ * --limit=0 (CallApi global publish rate limit, 0 off) --retry=false --messageVersion=1.0 --extensionSize=4
+ * --hangupDelay=100 --verbose=false (keep the per call info logs of CallApiImpl)
+ */
+@Slf4j
+public class CallApiLoadGenerator {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = _parse(args);
+        int rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int hangupDelay = Integer.parseInt(options.getOrDefault("hangupDelay", "100"));
+        int globalLimit = Integer.parseInt(options.getOrDefault("limit", "0"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latency", "20"));
+        long jitterMillis = Long.parseLong(options.getOrDefault("jitter", "10"));
+        double failureRate = Double.parseDouble(options.getOrDefault("failureRate", "0"));
+        int capacity = Integer.parseInt(options.getOrDefault("capacity", "0"));
+        int extensionSize = Integer.parseInt(options.getOrDefault("extensionSize", "4"));
+        _require(rate > 0 && rate <= TimeUnit.SECONDS.toNanos(1), "rate must be in [1, 1000000000], got:" + rate);
+        _require(durationSeconds > 0, "duration must be positive, got:" + durationSeconds);
+        _require(hangupDelay >= 0, "hangupDelay must not be negative, got:" + hangupDelay);
+        _require(globalLimit >= 0, "limit must not be negative, got:" + globalLimit);
+        _require(latencyMillis >= 0 && jitterMillis >= 0, "latency and jitter must not be negative");
+        _require(failureRate >= 0 && failureRate <= 1, "failureRate must be in [0, 1], got:" + failureRate);
+        _require(capacity >= 0, "capacity must not be negative, got:" + capacity);
+        _require(extensionSize >= 0, "extensionSize must not be negative, got:" + extensionSize);
+        if (!Boolean.parseBoolean(options.getOrDefault("verbose", "false"))) {
+            // 每次呼叫的 info 日志会成为瓶颈
+            ((Logger) LoggerFactory.getLogger(CallApiImpl.class)).setLevel(Level.WARN);
+        }
+
+        // 模拟的 RTM 服务
+        LocalRtmClientConfig localRtmClientConfig = new LocalRtmClientConfig();
+        localRtmClientConfig.setPublishLatencyMillis(latencyMillis);
+        localRtmClientConfig.setPublishLatencyJitterMillis(jitterMillis);
+        localRtmClientConfig.setPublishFailureRate(failureRate);
+        localRtmClientConfig.setMaxPublishesPerSecond(capacity);
+        LocalRtmClient rtmClient = new LocalRtmClient(localRtmClientConfig);
+
+        CallApiConfig callApiConfig = new CallApiConfig();
+        callApiConfig.setRtmClient(rtmClient);
+        callApiConfig.setUserId("load_generator");
+        callApiConfig.setMessageVersion(options.getOrDefault("messageVersion", "1.0"));
+        callApiConfig.setPublishMetricsConfig(new PublishMetricsConfig());
+        if (extensionSize > 0) {
+            Map<String, Object> fromUserExtension = new HashMap<>();
+            for (int i = 0; i < extensionSize; i++) {
+                fromUserExtension.put("key" + i, "value" + i);
+            }
+            callApiConfig.setFromUserExtension(fromUserExtension);
+        }
+        if (globalLimit > 0) {
+            PublishRateLimitConfig publishRateLimitConfig = new PublishRateLimitConfig();
+            publishRateLimitConfig.setGlobalPermitsPerSecond(globalLimit);
+            publishRateLimitConfig.setGlobalBurst(Math.max(globalLimit / 10, 1));
+            callApiConfig.setPublishRateLimitConfig(publishRateLimitConfig);
+        }
+        if (Boolean.parseBoolean(options.getOrDefault("retry", "false"))) {
+            callApiConfig.setPublishRetryConfig(new PublishRetryConfig());
+        }
+
+        CallApiImpl callApiImpl = new CallApiImpl();
+        callApiImpl.initialize(callApiConfig, null);
+        PublishMetrics metrics = callApiImpl.getPublishMetrics();
+
+        log.info("load, start, options:{}", options);
+        String roomId = "room_load_" + UUID.randomUUID();
+        String[] callIds = new String[hangupDelay + 1];
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long nextReportNanos = startNanos + TimeUnit.SECONDS.toNanos(1);
+        long lastFinished = 0;
+        long tick = 0;
+
+        // 按计划时间发送(开环), 不因回调变慢而降低发送速率
+        while (true) {
+            long scheduledNanos = startNanos + tick * intervalNanos;
+            if (scheduledNanos >= endNanos) {
+                break;
+            }
+            long waitNanos = scheduledNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+
+            int slot = (int) (tick % callIds.length);
+            int userIdA = (int) (tick * 2);
+            if (callIds[slot] != null) {
+                long calledTick = tick - callIds.length;
+                int calledUserIdA = (int) (calledTick * 2);
+                callApiImpl.hangup(calledUserIdA, "load", calledUserIdA + 1, "load", roomId, callIds[slot],
+                        null, null);
+            }
+            callIds[slot] = UUID.randomUUID().toString();
+            callApiImpl.call(userIdA, userIdA + 1, roomId, callIds[slot], null, null);
+            tick++;
+
+            if (System.nanoTime() >= nextReportNanos) {
+                long finished = _finishedCount(metrics);
+                log.info("load, progress, calls:{}, publishes/s:{}, inFlight:{}, queued:{}", tick,
+                        finished - lastFinished, metrics.getInFlightCount(), callApiImpl.getQueuedPublishCount());
+                lastFinished = finished;
+                nextReportNanos += TimeUnit.SECONDS.toNanos(1);
+            }
+        }
+
+        long sendNanos = System.nanoTime() - startNanos;
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (metrics.getInFlightCount() > 0 && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        long totalNanos = System.nanoTime() - startNanos;
+
+        long finished = _finishedCount(metrics);
+        log.info("load, end, calls:{}, target rate:{}/s, achieved rate:{}/s, publishes:{}, throughput:{} publishes/s, "
+                        + "unfinished:{}", tick, rate, tick * TimeUnit.SECONDS.toNanos(1) / sendNanos, finished,
+                finished * TimeUnit.SECONDS.toNanos(1) / totalNanos, metrics.getInFlightCount());
+        for (CallAction action : new CallAction[]{CallAction.CALL, CallAction.HANGUP}) {
+            LatencySnapshot latency = metrics.getLatency(action);
+            Map<RtmErrorCode, Long> failureCounts = metrics.getFailureCounts(action);
+            log.info("load, {}, count:{}, success:{}, failures:{}, latency ms p50:{}, p99:{}, p999:{}, max:{}",
+                    action, latency.getCount(), metrics.getSuccessCount(action), failureCounts,
+                    _millis(latency.getP50()), _millis(latency.getP99()), _millis(latency.getP999()),
+                    _millis(latency.getMax()));
+        }
+
+        callApiImpl.deinitialize(null);
+        rtmClient.shutdown();
+    }
+
+    private static long _finishedCount(PublishMetrics metrics) {
+        return metrics.getLatency(CallAction.CALL).getCount() + metrics.getLatency(CallAction.HANGUP).getCount();
+    }
+
+    private static String _millis(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+
+    private static void _require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static Map<String, String> _parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("expected --name=value, got:" + arg);
+            }
+            int index = arg.indexOf('=');
+            options.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        return options;
+    }
+}
@@ -13,6 +13,8 @@ import io.agora.rtm.RtmConstants;
 import io.agora.rtm.RtmEventListener;
 import io.agora.scenarioapi.CallApiConfig;
 import io.agora.scenarioapi.CallApiImpl;
+import io.agora.scenarioapi.TokenRefreshConfig;
+import io.agora.scenarioapi.TokenRefresher;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -33,7 +35,7 @@ public class CallApiRtmClientSample {
         // 创建实例
         CallApiImpl callApiImpl = new CallApiImpl();
 
-        // 设置事件监听
+        // 设置事件监听, 外部传入的 rtmClient 的事件不经过 CallApi 转发, 直接在 rtmClient 上监听
         RtmEventListener rtmEventListener = new RtmEventListener() {
             // 连接状态变化回调
             @Override
@@ -46,27 +48,10 @@ public class CallApiRtmClientSample {
             @Override
             public void onTokenPrivilegeWillExpire(String channelName) {
                 log.info("onTokenPrivilegeWillExpire, channelName:{}", channelName);
-
-                // Renew token
-                while (true) {
-                    CountDownLatch latch = new CountDownLatch(1);
-                    AtomicBoolean res = new AtomicBoolean(false);
-                    callApiImpl.renewToken(rtmToken, new ResultCallback<>() {
-                        @Override
-                        public void onSuccess(Void responseInfo) {
-                            res.set(true);
-                            latch.countDown();
-                        }
-
-                        @Override
-                        public void onFailure(ErrorInfo errorInfo) {
-                            latch.countDown();
-                        }
-                    });
-
-                    if (res.get()) {
-                        break;
-                    }
+                // 立即续期, 同一身份正在进行的续期会被复用, 不会重复获取 token
+                TokenRefresher tokenRefresher = callApiImpl.getTokenRefresher();
+                if (tokenRefresher != null) {
+                    tokenRefresher.refresh(userId);
                 }
             }
         };
@@ -75,10 +60,18 @@ public class CallApiRtmClientSample {
         CallApiConfig callApiConfig = new CallApiConfig();
         callApiConfig.setAppId(appId);
         // 传入自定义的rtmClient, 需要自行处理login/logout
-        callApiConfig.setRtmClient(getRtmClient());
-        callApiConfig.setRtmEventListener(rtmEventListener);
+        RtmClient rtmClient = getRtmClient();
+        if (rtmClient == null) {
+            return;
+        }
+        rtmClient.addEventListener(rtmEventListener);
+        callApiConfig.setRtmClient(rtmClient);
         callApiConfig.setRtmToken(rtmToken);
         callApiConfig.setUserId(userId);
+        // token 到期前自动续期, tokenSupplier 需替换为从业务服务端获取新 token
+        TokenRefreshConfig tokenRefreshConfig = new TokenRefreshConfig();
+        tokenRefreshConfig.setTokenSupplier(tokenUserId -> rtmToken);
+        callApiConfig.setTokenRefreshConfig(tokenRefreshConfig);
         String callId = UUID.randomUUID().toString();
 
         // 初始化
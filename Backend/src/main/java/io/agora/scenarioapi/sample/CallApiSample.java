@@ -2,9 +2,7 @@ package io.agora.scenarioapi.sample;
 
 import java.util.HashMap;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.agora.rtm.ErrorInfo;
 import io.agora.rtm.ResultCallback;
@@ -12,6 +10,7 @@ import io.agora.rtm.RtmConstants;
 import io.agora.rtm.RtmEventListener;
 import io.agora.scenarioapi.CallApiConfig;
 import io.agora.scenarioapi.CallApiImpl;
+import io.agora.scenarioapi.TokenRefreshConfig;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -46,36 +45,7 @@ public class CallApiSample {
             @Override
             public void onTokenPrivilegeWillExpire(String channelName) {
                 log.info("onTokenPrivilegeWillExpire, channelName:{}", channelName);
-
-                // Renew token
-                while (true) {
-                    log.info("onTokenPrivilegeWillExpire, renewToken");
-
-                    CountDownLatch latch = new CountDownLatch(1);
-                    AtomicBoolean res = new AtomicBoolean(false);
-
-                    callApiImpl.renewToken(rtmToken, new ResultCallback<Void>() {
-                        @Override
-                        public void onSuccess(Void responseInfo) {
-                            log.info("onTokenPrivilegeWillExpire, renewToken, onSuccess");
-
-                            res.set(true);
-                            latch.countDown();
-                        }
-
-                        @Override
-                        public void onFailure(ErrorInfo errorInfo) {
-                            log.error("onTokenPrivilegeWillExpire, renewToken, onFailure");
-
-                            latch.countDown();
-                        }
-                    });
-
-                    if (res.get()) {
-                        log.info("onTokenPrivilegeWillExpire, break");
-                        break;
-                    }
-                }
+                // 由 tokenRefreshConfig 自动续期, 无需在此调用 renewToken
             }
         };
 
@@ -85,6 +55,10 @@ public class CallApiSample {
         callApiConfig.setRtmEventListener(rtmEventListener);
         callApiConfig.setRtmToken(rtmToken);
         callApiConfig.setUserId(userId);
+        // token 自动续期, tokenSupplier 需替换为从业务服务端获取新 token
+        TokenRefreshConfig tokenRefreshConfig = new TokenRefreshConfig();
+        tokenRefreshConfig.setTokenSupplier(tokenUserId -> rtmToken);
+        callApiConfig.setTokenRefreshConfig(tokenRefreshConfig);
         var fromUserExtension = new HashMap<String, Object>();
         fromUserExtension.put("videoType", "match");
         callApiConfig.setFromUserExtension(fromUserExtension);
@@ -0,0 +1,50 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncCallApiTest {
+    private RecordingRtmClient rtmClient;
+    private AsyncCallApi asyncCallApi;
+
+    @Before
+    public void setUp() throws Exception {
+        rtmClient = new RecordingRtmClient();
+        CallApiConfig config = new CallApiConfig();
+        config.setAppId("test_app_id");
+        config.setUserId("test_server");
+        config.setRtmClient(rtmClient);
+        config.setCallSessionConfig(new CallSessionConfig());
+        asyncCallApi = new AsyncCallApi(new CallApiImpl());
+        asyncCallApi.initialize(config).get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        rtmClient.shutdown();
+    }
+
+    @Test
+    public void deinitializeCompletesWithExternalRtmClient() throws Exception {
+        asyncCallApi.deinitialize().get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void hangupByCallIdReportsTheSessionUsers() throws Exception {
+        CallResult callResult = asyncCallApi.call(1, 2, "room", "call")
+                .get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Assert.assertTrue(callResult.isSuccess());
+
+        CallResult hangupResult = asyncCallApi.hangup("call", "reasonA", "reasonB")
+                .get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Assert.assertTrue(hangupResult.isSuccess());
+        Assert.assertEquals(Integer.valueOf(1), hangupResult.getCallPair().getUserIdA());
+        Assert.assertEquals(Integer.valueOf(2), hangupResult.getCallPair().getUserIdB());
+        Assert.assertEquals("room", hangupResult.getCallPair().getRoomId());
+        asyncCallApi.deinitialize().get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,181 @@
+package io.agora.scenarioapi;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.alibaba.fastjson2.JSONObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryMessageCodecTest {
+    private static final long TIMESTAMP = 1700000000000L;
+
+    // 与 Android CallMessageCodecTest 中的字节一致, 修改格式时两端需同时更新
+    static final byte[] GOLDEN_CALL = _bytes(
+            0x02,                                           // MAGIC
+            0x08, 0x00,                                     // 1 message_action 0
+            0x3A, 0x09, 0x7B, 0x22, 0x6B, 0x22, 0x3A, 0x22, 0x76, 0x22, 0x7D, // 7 fromUserExtension {"k":"v"}
+            0x10, 0x80, 0xA0, 0xAB, 0xFE, 0xF9, 0x62,       // 2 message_timestamp 1700000000000
+            0x18, 0x09,                                     // 3 fromUserId -5
+            0x2A, 0x06, 0x72, 0x6F, 0x6F, 0x6D, 0x5F, 0x31, // 5 fromRoomId "room_1"
+            0x32, 0x06, 0x63, 0x61, 0x6C, 0x6C, 0x5F, 0x31, // 6 callId "call_1"
+            0x20, 0xFE, 0xFF, 0xFF, 0xFF, 0x0F);            // 4 remoteUserId 2147483647
+    static final byte[] GOLDEN_HANGUP = _bytes(
+            0x02,                                           // MAGIC
+            0x08, 0x08,                                     // 1 message_action 4
+            0x10, 0x80, 0xA0, 0xAB, 0xFE, 0xF9, 0x62,       // 2 message_timestamp 1700000000000
+            0x18, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F,             // 3 fromUserId -2147483648
+            0x2A, 0x01, 0x72,                               // 5 fromRoomId "r"
+            0x32, 0x01, 0x63,                               // 6 callId "c"
+            0x42, 0x03, 0xE5, 0xBF, 0x99);                  // 8 hangupReason "忙"
+
+    @Test
+    public void encodesGoldenCall() {
+        byte[] message = CallMessageEncoder.create(CallAction.CALL.getValue(), "2.0", Collections.singletonMap("k", "v"))
+                .encodeCall(TIMESTAMP, -5, Integer.MAX_VALUE, "room_1", "call_1");
+
+        Assert.assertArrayEquals(GOLDEN_CALL, message);
+    }
+
+    @Test
+    public void encodesGoldenHangup() {
+        byte[] message = CallMessageEncoder.create(CallAction.HANGUP.getValue(), "2.0", null)
+                .encodeHangup(TIMESTAMP, Integer.MIN_VALUE, "r", "c", "忙");
+
+        Assert.assertArrayEquals(GOLDEN_HANGUP, message);
+    }
+
+    @Test
+    public void codecEncodesLikeTheTemplateEncoder() {
+        Map<String, Object> messageMap = new LinkedHashMap<>();
+        messageMap.put("message_action", 0);
+        messageMap.put("message_version", "2.0");
+        messageMap.put("fromUserExtension", Collections.singletonMap("k", "v"));
+        messageMap.put("message_timestamp", TIMESTAMP);
+        messageMap.put("fromUserId", -5);
+        messageMap.put("fromRoomId", "room_1");
+        messageMap.put("callId", "call_1");
+        messageMap.put("remoteUserId", Integer.MAX_VALUE);
+
+        Assert.assertArrayEquals(GOLDEN_CALL, BinaryMessageCodec.encode(messageMap));
+    }
+
+    @Test
+    public void decodesGoldenCall() {
+        Map<String, Object> messageMap = BinaryMessageCodec.decode(GOLDEN_CALL);
+
+        Assert.assertEquals(8, messageMap.size());
+        Assert.assertEquals("2.0", messageMap.get("message_version"));
+        Assert.assertEquals(0, messageMap.get("message_action"));
+        Assert.assertEquals(TIMESTAMP, messageMap.get("message_timestamp"));
+        Assert.assertEquals(-5, messageMap.get("fromUserId"));
+        Assert.assertEquals(Integer.MAX_VALUE, messageMap.get("remoteUserId"));
+        Assert.assertEquals("room_1", messageMap.get("fromRoomId"));
+        Assert.assertEquals("call_1", messageMap.get("callId"));
+        Assert.assertEquals(JSONObject.of("k", "v"), messageMap.get("fromUserExtension"));
+    }
+
+    @Test
+    public void decodesGoldenHangup() {
+        Map<String, Object> messageMap = BinaryMessageCodec.decode(GOLDEN_HANGUP);
+
+        Assert.assertEquals(7, messageMap.size());
+        Assert.assertEquals(4, messageMap.get("message_action"));
+        Assert.assertEquals(TIMESTAMP, messageMap.get("message_timestamp"));
+        Assert.assertEquals(Integer.MIN_VALUE, messageMap.get("fromUserId"));
+        Assert.assertEquals("r", messageMap.get("fromRoomId"));
+        Assert.assertEquals("c", messageMap.get("callId"));
+        Assert.assertEquals("忙", messageMap.get("hangupReason"));
+    }
+
+    @Test
+    public void roundTripsUserIds() {
+        CallMessageEncoder encoder = CallMessageEncoder.create(CallAction.CALL.getValue(), "2.0", null);
+        int[] userIds = {0, 1, -1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE, 1_000_000_007};
+        for (int fromUserId : userIds) {
+            for (int remoteUserId : userIds) {
+                Map<String, Object> messageMap = BinaryMessageCodec.decode(
+                        encoder.encodeCall(TIMESTAMP, fromUserId, remoteUserId, "room", "call"));
+
+                Assert.assertEquals(fromUserId, messageMap.get("fromUserId"));
+                Assert.assertEquals(remoteUserId, messageMap.get("remoteUserId"));
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsNullAndEmptyFields() {
+        Map<String, Object> call = BinaryMessageCodec.decode(
+                CallMessageEncoder.create(CallAction.CALL.getValue(), "2.0", null)
+                        .encodeCall(TIMESTAMP, 1, 2, null, null));
+        Assert.assertFalse(call.containsKey("fromRoomId"));
+        Assert.assertFalse(call.containsKey("callId"));
+        Assert.assertFalse(call.containsKey("fromUserExtension"));
+        Assert.assertEquals(2, call.get("remoteUserId"));
+
+        Map<String, Object> hangup = BinaryMessageCodec.decode(
+                CallMessageEncoder.create(CallAction.HANGUP.getValue(), "2.0", Collections.emptyMap())
+                        .encodeHangup(TIMESTAMP, 1, "", "", null));
+        Assert.assertEquals("", hangup.get("fromRoomId"));
+        Assert.assertEquals("", hangup.get("callId"));
+        Assert.assertEquals(new JSONObject(), hangup.get("fromUserExtension"));
+        Assert.assertFalse(hangup.containsKey("hangupReason"));
+    }
+
+    @Test
+    public void roundTripsUnknownKeysAsExtra() {
+        Map<String, Object> messageMap = new LinkedHashMap<>();
+        messageMap.put("message_action", 0);
+        messageMap.put("custom", "value");
+        messageMap.put("rejectByInternal", 1);
+
+        Map<String, Object> decoded = BinaryMessageCodec.decode(BinaryMessageCodec.encode(messageMap));
+
+        Assert.assertEquals("value", decoded.get("custom"));
+        Assert.assertEquals(1, decoded.get("rejectByInternal"));
+    }
+
+    @Test
+    public void skipsUnknownFields() {
+        byte[] message = new byte[GOLDEN_HANGUP.length + 4];
+        System.arraycopy(GOLDEN_HANGUP, 0, message, 0, GOLDEN_HANGUP.length);
+        // 字段 13 的 varint 与字段 14 的字节串
+        System.arraycopy(_bytes(0x68, 0x02, 0x72, 0x00), 0, message, GOLDEN_HANGUP.length, 4);
+
+        Assert.assertEquals(BinaryMessageCodec.decode(GOLDEN_HANGUP), BinaryMessageCodec.decode(message));
+    }
+
+    @Test
+    public void rejectsTruncatedMessages() {
+        for (int length = 2; length < GOLDEN_CALL.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(GOLDEN_CALL, 0, truncated, 0, length);
+            try {
+                BinaryMessageCodec.decode(truncated);
+                // 恰好截断在字段边界时是合法消息
+                Assert.assertTrue(length == 3 || length == 14 || length == 21 || length == 23 || length == 31
+                        || length == 39);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage().startsWith("truncated"));
+            }
+        }
+    }
+
+    @Test
+    public void tellsBinaryFromJsonMessages() {
+        Assert.assertTrue(BinaryMessageCodec.isBinaryMessage(GOLDEN_CALL));
+        Assert.assertFalse(BinaryMessageCodec.isBinaryMessage("{}".getBytes()));
+        Assert.assertFalse(BinaryMessageCodec.isBinaryMessage(new byte[0]));
+        Assert.assertFalse(BinaryMessageCodec.isBinaryMessage(null));
+    }
+
+    private static byte[] _bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,125 @@
+package io.agora.scenarioapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class BusyUserIndexTest {
+    private static final ErrorInfo FAILED = new ErrorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, "test",
+            "test");
+
+    @Test
+    public void releaseOfOldCallKeepsNewCall() {
+        BusyUserIndex index = new BusyUserIndex(new BusyIndexConfig());
+        Assert.assertTrue(index.tryAcquire(1, 2, "call1"));
+        Assert.assertFalse(index.tryAcquire(1, 3, "call2"));
+        index.release(1, 2, "call1");
+        Assert.assertTrue(index.tryAcquire(1, 3, "call2"));
+
+        // call1 迟到的挂断
+        index.release(1, 2, "call1");
+
+        Assert.assertTrue(index.isBusy(1));
+        Assert.assertTrue(index.isBusy(3));
+        index.release(1, 3, "call2");
+        Assert.assertFalse(index.isBusy(1));
+        Assert.assertFalse(index.isBusy(3));
+    }
+
+    @Test
+    public void rejectsSameUser() {
+        BusyUserIndex index = new BusyUserIndex(new BusyIndexConfig());
+
+        Assert.assertFalse(index.tryAcquire(1, 1, "call1"));
+
+        Assert.assertFalse(index.isBusy(1));
+        Assert.assertTrue(index.tryAcquire(1, 2, "call2"));
+    }
+
+    @Test
+    public void failedAcquireMarksNothing() {
+        BusyUserIndex index = new BusyUserIndex(new BusyIndexConfig());
+        Assert.assertTrue(index.tryAcquire(1, 2, "call1"));
+
+        Assert.assertFalse(index.tryAcquire(3, 2, "call2"));
+
+        Assert.assertFalse(index.isBusy(3));
+    }
+
+    @Test
+    public void marksExpireAfterMaxBusyMillis() throws Exception {
+        BusyIndexConfig config = new BusyIndexConfig();
+        config.setMaxBusyMillis(100);
+        BusyUserIndex index = new BusyUserIndex(config);
+        Assert.assertTrue(index.tryAcquire(1, 2, "call1"));
+
+        CallApiTestSupport.awaitTrue(() -> !index.isBusy(1));
+
+        Assert.assertFalse(index.isBusy(2));
+    }
+
+    @Test
+    public void failedCallReleasesUsers() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        rtmClient.setInterceptor((published, resultCallback) -> {
+            resultCallback.onFailure(FAILED);
+            return true;
+        });
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient,
+                config -> config.setBusyIndexConfig(new BusyIndexConfig()));
+        try {
+            FutureCallback<Void> callbackA = new FutureCallback<>();
+            FutureCallback<Void> callbackB = new FutureCallback<>();
+
+            callApi.call(1, 2, "room", "call1", callbackA, callbackB);
+
+            callbackA.awaitFailure();
+            callbackB.awaitFailure();
+            Assert.assertFalse(callApi.getBusyUserIndex().isBusy(1));
+            Assert.assertFalse(callApi.getBusyUserIndex().isBusy(2));
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+
+    @Test
+    public void hangupOfAnotherCallKeepsUsersBusy() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient,
+                config -> config.setBusyIndexConfig(new BusyIndexConfig()));
+        try {
+            callApi.call(1, 2, "room", "call2", null, null);
+
+            FutureCallback<Void> callback = new FutureCallback<>();
+            callApi.hangup(1, "old", 2, "old", "room", "call1", callback, null);
+            callback.await();
+
+            Assert.assertTrue(callApi.getBusyUserIndex().isBusy(1));
+            Assert.assertTrue(callApi.getBusyUserIndex().isBusy(2));
+            callApi.hangup(1, "end", 2, "end", "room", "call2", null, null);
+            Assert.assertFalse(callApi.getBusyUserIndex().isBusy(1));
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+
+    @Test
+    public void callToSelfIsInvalid() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient,
+                config -> config.setBusyIndexConfig(new BusyIndexConfig()));
+        try {
+            FutureCallback<Void> callback = new FutureCallback<>();
+
+            callApi.call(1, 1, "room", "call1", callback, null);
+
+            Assert.assertEquals(RtmErrorCode.INVALID_PARAMETER, callback.awaitFailure().getErrorCode());
+            Assert.assertTrue(rtmClient.getPublished().isEmpty());
+            Assert.assertFalse(callApi.getBusyUserIndex().isBusy(1));
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.agora.scenarioapi;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class CallApiBatchTest {
+    private RecordingRtmClient rtmClient;
+    private CallApiImpl callApi;
+
+    @Before
+    public void setUp() throws Exception {
+        rtmClient = new RecordingRtmClient();
+        callApi = CallApiTestSupport.newCallApi(rtmClient, null);
+    }
+
+    @After
+    public void tearDown() {
+        callApi.deinitialize(null);
+        rtmClient.shutdown();
+    }
+
+    @Test
+    public void hangupBatchSendsEachReasonToItsUser() throws Exception {
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        callApi.hangupBatch(Arrays.asList(new CallPair(1, 2, "room", "call", "reasonA", "reasonB")), callback);
+
+        Assert.assertTrue(callback.await().get(0).isSuccess());
+        for (RecordingRtmClient.Published published : rtmClient.getPublished()) {
+            String expectedReason = published.channelName.equals("1") ? "reasonA" : "reasonB";
+            Assert.assertEquals(expectedReason, published.message.getString("hangupReason"));
+        }
+    }
+
+    @Test
+    public void invalidPairFailsTheBatchBeforePublishing() throws Exception {
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        callApi.callBatch(Arrays.asList(new CallPair(1, 2, "room", "call1"), new CallPair(3, null, "room", "call2")),
+                callback);
+
+        Assert.assertEquals(RtmErrorCode.INVALID_PARAMETER, callback.awaitFailure().getErrorCode());
+        Assert.assertTrue(rtmClient.getPublished().isEmpty());
+
+        FutureCallback<List<CallResult>> hangupCallback = new FutureCallback<>();
+        callApi.hangupBatch(Arrays.asList(new CallPair(1, 2, "room", null)), hangupCallback);
+        Assert.assertEquals(RtmErrorCode.INVALID_PARAMETER, hangupCallback.awaitFailure().getErrorCode());
+    }
+
+    @Test
+    public void exceptionPartwayFailsTheRemainingPairs() throws Exception {
+        AtomicInteger publishCount = new AtomicInteger();
+        rtmClient.setInterceptor((published, resultCallback) -> {
+            if (publishCount.incrementAndGet() == 4) {
+                throw new IllegalStateException("publish broken");
+            }
+            return false;
+        });
+
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        callApi.callBatch(Arrays.asList(new CallPair(1, 2, "room", "call1"), new CallPair(3, 4, "room", "call2"),
+                new CallPair(5, 6, "room", "call3")), callback);
+
+        List<CallResult> callResults = callback.await();
+        Assert.assertTrue(callResults.get(0).isSuccess());
+        Assert.assertNull(callResults.get(1).getErrorInfoB());
+        ErrorInfo errorInfo = callResults.get(1).getErrorInfoA();
+        Assert.assertEquals(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, errorInfo.getErrorCode());
+        Assert.assertFalse(callResults.get(2).isSuccess());
+        Assert.assertEquals(3, publishCount.get() - 1);
+    }
+}
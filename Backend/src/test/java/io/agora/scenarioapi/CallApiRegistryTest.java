@@ -0,0 +1,163 @@
+package io.agora.scenarioapi;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class CallApiRegistryTest {
+    private CallApiRegistry registry;
+
+    @After
+    public void tearDown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    public void evictsIdleTenant() throws Exception {
+        registry = _newRegistry(100, new RecordingRtmClient());
+        registry.get("app1").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        CallApiTestSupport.awaitTrue(() -> registry.size() == 0);
+    }
+
+    @Test
+    public void keepsTenantThatPublishes() throws Exception {
+        // 首次呼叫的类加载可能超过空闲时间
+        CallApiImpl warmUp = CallApiTestSupport.newCallApi(new RecordingRtmClient(), null);
+        warmUp.call(0, 1, "room", "warm_up", null, null);
+        warmUp.deinitialize(null);
+        registry = _newRegistry(300, new RecordingRtmClient());
+        CallApiImpl callApi = registry.get("app1").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        // 只通过保留的实例发送, 不再 get
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1000);
+        int index = 0;
+        while (System.nanoTime() < deadline) {
+            FutureCallback<Void> callback = new FutureCallback<>();
+            callApi.call(index, index + 1, "room", "call" + index, callback, null);
+            callback.await();
+            index += 2;
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(1, registry.size());
+        CallApiTestSupport.awaitTrue(() -> registry.size() == 0);
+    }
+
+    @Test
+    public void keepsTenantWaitingForPublishResult() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        // 消息一直未回调
+        rtmClient.setInterceptor((published, resultCallback) -> true);
+        registry = _newRegistry(300, rtmClient);
+        CallApiImpl callApi = registry.get("app1").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        callApi.call(1, 2, "room", "call1", null, null);
+
+        Thread.sleep(800);
+
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals(2, callApi.getInFlightPublishCount());
+    }
+
+    @Test
+    public void failedConfigIsRetriedOnNextGet() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        boolean[] isFailing = {true};
+        CallApiRegistryConfig config = new CallApiRegistryConfig();
+        registry = new CallApiRegistry(config, appId -> {
+            if (isFailing[0]) {
+                throw new IllegalStateException("config unavailable");
+            }
+            return _config(rtmClient);
+        });
+
+        CompletableFuture<CallApiImpl> failed = registry.get("app1");
+        try {
+            failed.get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Assert.fail("expected config failure");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(0, registry.size());
+
+        isFailing[0] = false;
+        Assert.assertNotNull(registry.get("app1").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdownDeinitializesTenants() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        registry = _newRegistry(0, rtmClient);
+        registry.get("app1").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Assert.assertEquals(1, rtmClient.getEventListenerCount());
+
+        registry.shutdown();
+        registry = null;
+
+        // 外部 rtmClient 不 logout, 只移除 CallApi 添加的监听
+        Assert.assertEquals(0, rtmClient.getEventListenerCount());
+    }
+
+    @Test
+    public void callbacksAfterShutdownAreNotDropped() throws Exception {
+        registry = _newRegistry(0, new RecordingRtmClient());
+        CallApiImpl callApi = registry.get("app1").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        registry.shutdown();
+        registry = null;
+
+        FutureCallback<Void> callback = new FutureCallback<>();
+        callApi.call(1, 2, "room", "call1", callback, null);
+
+        callback.await();
+    }
+
+    @Test
+    public void tenantsRunTokenSupplierOnSharedExecutor() throws Exception {
+        Set<String> supplierThreadNames = ConcurrentHashMap.newKeySet();
+        CallApiRegistryConfig config = new CallApiRegistryConfig();
+        config.setIdleTimeoutMillis(0);
+        config.setTokenSupplierThreads(1);
+        registry = new CallApiRegistry(config, appId -> {
+            CallApiConfig callApiConfig = _config(new RecordingRtmClient());
+            TokenRefreshConfig tokenRefreshConfig = new TokenRefreshConfig();
+            tokenRefreshConfig.setTokenSupplier(userId -> {
+                supplierThreadNames.add(Thread.currentThread().getName());
+                return appId + "_token";
+            });
+            callApiConfig.setTokenRefreshConfig(tokenRefreshConfig);
+            return callApiConfig;
+        });
+
+        for (String appId : new String[]{"app1", "app2"}) {
+            registry.get(appId).get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS).getTokenRefresher()
+                    .refresh("test_server").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        Assert.assertEquals(Set.of("callapi-token-supplier-1"), supplierThreadNames);
+    }
+
+    private static CallApiRegistry _newRegistry(long idleTimeoutMillis, RecordingRtmClient rtmClient) {
+        CallApiRegistryConfig config = new CallApiRegistryConfig();
+        config.setIdleTimeoutMillis(idleTimeoutMillis);
+        config.setIdleCheckIntervalMillis(10);
+        return new CallApiRegistry(config, appId -> _config(rtmClient));
+    }
+
+    private static CallApiConfig _config(RecordingRtmClient rtmClient) {
+        CallApiConfig config = new CallApiConfig();
+        config.setAppId("test_app_id");
+        config.setUserId("test_server");
+        config.setRtmClient(rtmClient);
+        return config;
+    }
+
+}
@@ -0,0 +1,37 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Shared setup of the CallApiImpl tests, an external RecordingRtmClient so no login is needed
+ */
+final class CallApiTestSupport {
+    private CallApiTestSupport() {
+    }
+
+    static CallApiImpl newCallApi(RecordingRtmClient rtmClient, Consumer<CallApiConfig> customizer)
+            throws Exception {
+        CallApiConfig config = new CallApiConfig();
+        config.setAppId("test_app_id");
+        config.setUserId("test_server");
+        config.setRtmClient(rtmClient);
+        if (customizer != null) {
+            customizer.accept(config);
+        }
+        CallApiImpl callApi = new CallApiImpl();
+        callApi.initialize(config, null);
+        return callApi;
+    }
+
+    static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(FutureCallback.TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
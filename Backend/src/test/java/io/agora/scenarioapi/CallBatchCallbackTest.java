@@ -0,0 +1,75 @@
+package io.agora.scenarioapi;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class CallBatchCallbackTest {
+    private static final ErrorInfo ERROR = new ErrorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, "test", "test");
+
+    @Test
+    public void completesOnceEverySideCompleted() throws Exception {
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        CallBatchCallback batchCallback = new CallBatchCallback(1, callback);
+        CallResult callResult = batchCallback.add(new CallPair(1, 2, "room", "call"));
+
+        batchCallback.callbackA(callResult).onSuccess(null);
+        Assert.assertFalse(callback.isDone());
+        batchCallback.callbackB(callResult).onFailure(ERROR);
+
+        List<CallResult> callResults = callback.await();
+        Assert.assertNull(callResults.get(0).getErrorInfoA());
+        Assert.assertSame(ERROR, callResults.get(0).getErrorInfoB());
+    }
+
+    @Test
+    public void sideCompletesAtMostOnce() {
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        CallBatchCallback batchCallback = new CallBatchCallback(2, callback);
+        CallResult first = batchCallback.add(new CallPair(1, 2, "room", "call1"));
+        batchCallback.add(new CallPair(3, 4, "room", "call2"));
+
+        batchCallback.callbackA(first).onSuccess(null);
+        batchCallback.callbackA(first).onFailure(ERROR);
+        batchCallback.callbackB(first).onSuccess(null);
+        batchCallback.callbackB(first).onSuccess(null);
+
+        Assert.assertFalse(callback.isDone());
+        Assert.assertTrue(first.isSuccess());
+    }
+
+    @Test
+    public void failPendingFailsOnlyTheRemainingSides() throws Exception {
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        CallBatchCallback batchCallback = new CallBatchCallback(3, callback);
+        CallResult first = batchCallback.add(new CallPair(1, 2, "room", "call1"));
+        CallResult second = batchCallback.add(new CallPair(3, 4, "room", "call2"));
+        batchCallback.add(new CallPair(5, 6, "room", "call3"));
+
+        batchCallback.callbackA(first).onSuccess(null);
+        batchCallback.callbackB(first).onSuccess(null);
+        batchCallback.callbackB(second).onSuccess(null);
+        batchCallback.failPending(1, ERROR);
+
+        List<CallResult> callResults = callback.await();
+        Assert.assertTrue(callResults.get(0).isSuccess());
+        Assert.assertSame(ERROR, callResults.get(1).getErrorInfoA());
+        Assert.assertNull(callResults.get(1).getErrorInfoB());
+        Assert.assertSame(ERROR, callResults.get(2).getErrorInfoA());
+        Assert.assertSame(ERROR, callResults.get(2).getErrorInfoB());
+    }
+
+    @Test
+    public void emptyBatchCompletesImmediately() throws Exception {
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        CallBatchCallback batchCallback = new CallBatchCallback(0, callback);
+
+        Assert.assertTrue(batchCallback.completeIfEmpty());
+        Assert.assertEquals(Arrays.asList(), callback.await());
+    }
+}
@@ -0,0 +1,213 @@
+package io.agora.scenarioapi;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class CallPairedTest {
+    private final Set<String> failedCalls = ConcurrentHashMap.newKeySet();
+    private final Set<String> failedHangups = ConcurrentHashMap.newKeySet();
+    private RecordingRtmClient rtmClient;
+    private CallApiImpl callApi;
+
+    @Before
+    public void setUp() throws Exception {
+        rtmClient = new RecordingRtmClient();
+        // 发给 failedCalls 中用户的邀请和发给 failedHangups 中用户的挂断失败
+        rtmClient.setInterceptor((published, resultCallback) -> {
+            Set<String> failed = published.getAction() == CallAction.CALL.getValue() ? failedCalls : failedHangups;
+            if (!failed.contains(published.channelName)) {
+                return false;
+            }
+            resultCallback.onFailure(new ErrorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, "publish failed",
+                    "publish"));
+            return true;
+        });
+        callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            config.setCallSessionConfig(new CallSessionConfig());
+            config.setBusyIndexConfig(new BusyIndexConfig());
+            config.setCompensationHangupReason("compensated");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        callApi.deinitialize(null);
+        rtmClient.shutdown();
+    }
+
+    @Test
+    public void bothDeliveredSendsNoHangup() throws Exception {
+        CallResult callResult = _callPaired(1, 2, "call1");
+
+        Assert.assertTrue(callResult.isSuccess());
+        Assert.assertFalse(callResult.isCompensated());
+        Assert.assertTrue(_hangups().isEmpty());
+        Assert.assertNotNull(callApi.getCallSessionRegistry().getSession("call1"));
+        Assert.assertTrue(callApi.getBusyUserIndex().isBusy(1));
+    }
+
+    @Test
+    public void failureToBCompensatesA() throws Exception {
+        failedCalls.add("2");
+
+        CallResult callResult = _callPaired(1, 2, "call1");
+
+        Assert.assertNull(callResult.getErrorInfoA());
+        Assert.assertEquals(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, callResult.getErrorInfoB().getErrorCode());
+        Assert.assertTrue(callResult.isCompensated());
+        List<RecordingRtmClient.Published> hangups = _hangups();
+        Assert.assertEquals(1, hangups.size());
+        Assert.assertEquals("1", hangups.get(0).channelName);
+        Assert.assertEquals(2, hangups.get(0).message.getIntValue("fromUserId"));
+        Assert.assertEquals("compensated", hangups.get(0).message.getString("hangupReason"));
+        Assert.assertEquals("call1", hangups.get(0).getCallId());
+        _assertReleased(1, 2, "call1");
+    }
+
+    @Test
+    public void failureToACompensatesB() throws Exception {
+        failedCalls.add("1");
+
+        CallResult callResult = _callPaired(1, 2, "call1");
+
+        Assert.assertEquals(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, callResult.getErrorInfoA().getErrorCode());
+        Assert.assertNull(callResult.getErrorInfoB());
+        Assert.assertTrue(callResult.isCompensated());
+        List<RecordingRtmClient.Published> hangups = _hangups();
+        Assert.assertEquals(1, hangups.size());
+        Assert.assertEquals("2", hangups.get(0).channelName);
+        Assert.assertEquals(1, hangups.get(0).message.getIntValue("fromUserId"));
+        Assert.assertEquals("compensated", hangups.get(0).message.getString("hangupReason"));
+        _assertReleased(1, 2, "call1");
+    }
+
+    @Test
+    public void bothFailedSendsNoHangupAndReportsOnce() throws Exception {
+        failedCalls.add("1");
+        failedCalls.add("2");
+
+        CallResult callResult = _callPaired(1, 2, "call1");
+
+        Assert.assertNotNull(callResult.getErrorInfoA());
+        Assert.assertNotNull(callResult.getErrorInfoB());
+        Assert.assertFalse(callResult.isCompensated());
+        Assert.assertTrue(_hangups().isEmpty());
+        _assertReleased(1, 2, "call1");
+    }
+
+    @Test
+    public void failedCompensationIsReported() throws Exception {
+        failedCalls.add("2");
+        failedHangups.add("1");
+
+        CallResult callResult = _callPaired(1, 2, "call1");
+
+        Assert.assertNotNull(callResult.getErrorInfoB());
+        Assert.assertFalse(callResult.isCompensated());
+        _assertReleased(1, 2, "call1");
+    }
+
+    @Test
+    public void busyUserIsRejectedWithoutCompensation() throws Exception {
+        Assert.assertTrue(_callPaired(1, 2, "call1").isSuccess());
+
+        CallResult callResult = _callPaired(3, 2, "call2");
+
+        Assert.assertEquals(RtmErrorCode.DUPLICATE_OPERATION, callResult.getErrorInfoA().getErrorCode());
+        Assert.assertEquals(RtmErrorCode.DUPLICATE_OPERATION, callResult.getErrorInfoB().getErrorCode());
+        Assert.assertFalse(callResult.isCompensated());
+        Assert.assertTrue(_hangups().isEmpty());
+        // 另一通话的会话和忙碌标记保留
+        Assert.assertNotNull(callApi.getCallSessionRegistry().getSession("call1"));
+        Assert.assertTrue(callApi.getBusyUserIndex().isBusy(2));
+        Assert.assertFalse(callApi.getBusyUserIndex().isBusy(3));
+    }
+
+    @Test
+    public void nullCallIdIsSentWithoutSession() throws Exception {
+        FutureCallback<Void> callbackA = new FutureCallback<>();
+        FutureCallback<Void> callbackB = new FutureCallback<>();
+        callApi.call(1, 2, "room", null, callbackA, callbackB);
+        callbackA.await();
+        callbackB.await();
+        Assert.assertEquals(0, callApi.getCallSessionRegistry().size());
+        Assert.assertTrue(callApi.getBusyUserIndex().isBusy(1));
+
+        FutureCallback<Void> hangupA = new FutureCallback<>();
+        FutureCallback<Void> hangupB = new FutureCallback<>();
+        callApi.hangup(1, "reasonA", 2, "reasonB", "room", null, hangupA, hangupB);
+        hangupA.await();
+        hangupB.await();
+        Assert.assertFalse(callApi.getBusyUserIndex().isBusy(1));
+        Assert.assertEquals(2, _hangups().size());
+
+        FutureCallback<Void> hangupByCallId = new FutureCallback<>();
+        callApi.hangup(null, "reasonA", "reasonB", hangupByCallId, null);
+        Assert.assertEquals(RtmErrorCode.INVALID_PARAMETER, hangupByCallId.awaitFailure().getErrorCode());
+        Assert.assertFalse(callApi.getCallSessionRegistry().connect(null));
+    }
+
+    @Test
+    public void nullCallIdIsCompensatedWithoutSession() throws Exception {
+        Assert.assertTrue(_callPaired(1, 2, null).isSuccess());
+        Assert.assertEquals(0, callApi.getCallSessionRegistry().size());
+        callApi.hangup(1, "reasonA", 2, "reasonB", "room", null, null, null);
+
+        failedCalls.add("2");
+        CallResult callResult = _callPaired(1, 2, null);
+
+        Assert.assertTrue(callResult.isCompensated());
+        Assert.assertEquals(0, callApi.getCallSessionRegistry().size());
+        Assert.assertFalse(callApi.getBusyUserIndex().isBusy(1));
+        Assert.assertFalse(callApi.getBusyUserIndex().isBusy(2));
+    }
+
+    /**
+     * callPaired and check that its result is reported exactly once
+     */
+    private CallResult _callPaired(int userIdA, int userIdB, String callId) throws Exception {
+        AtomicInteger reportCount = new AtomicInteger();
+        FutureCallback<CallResult> callback = new FutureCallback<CallResult>() {
+            @Override
+            public void onSuccess(CallResult callResult) {
+                reportCount.incrementAndGet();
+                super.onSuccess(callResult);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                reportCount.incrementAndGet();
+                super.onFailure(errorInfo);
+            }
+        };
+        callApi.callPaired(userIdA, userIdB, "room", callId, callback);
+
+        CallResult callResult = callback.await();
+        Thread.sleep(50);
+        Assert.assertEquals(1, reportCount.get());
+        return callResult;
+    }
+
+    private List<RecordingRtmClient.Published> _hangups() {
+        return rtmClient.getPublished().stream()
+                .filter(published -> published.getAction() == CallAction.HANGUP.getValue())
+                .collect(Collectors.toList());
+    }
+
+    private void _assertReleased(int userIdA, int userIdB, String callId) {
+        Assert.assertNull(callApi.getCallSessionRegistry().getSession(callId));
+        Assert.assertFalse(callApi.getBusyUserIndex().isBusy(userIdA));
+        Assert.assertFalse(callApi.getBusyUserIndex().isBusy(userIdB));
+    }
+}
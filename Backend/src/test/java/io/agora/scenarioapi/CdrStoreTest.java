@@ -0,0 +1,99 @@
+package io.agora.scenarioapi;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CdrStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sealedSegmentsKeepBloomFiltersOffHeap() throws Exception {
+        CdrConfig config = _config(temporaryFolder.newFolder(), 0);
+        CdrStore store = new CdrStore(config);
+        long now = System.currentTimeMillis();
+        // 每个文件 64 条记录, 4 块
+        for (int i = 0; i < 256; i++) {
+            store.append(_record(now + i, i, i + 1000));
+        }
+        long unsealedIndexBytes = store.getIndexBytes();
+        store.append(_record(now + 256, 256, 1256));
+
+        Assert.assertEquals(5, store.getSegmentCount());
+        // 已封存的 4 个文件每块只剩时间范围, 新文件 1 块带过滤器
+        Assert.assertEquals(16 * 17 + 8 * 4, store.getIndexBytes());
+        Assert.assertTrue(unsealedIndexBytes > store.getIndexBytes());
+        List<CdrRecord> records = store.queryUser(1010, now, now + 1000);
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(10, records.get(0).getUserIdA());
+        store.close();
+
+        CdrStore reopened = new CdrStore(config);
+        Assert.assertEquals(16 * 17, reopened.getIndexBytes());
+        Assert.assertEquals(1, reopened.queryUser(256, now, now + 1000).size());
+        Assert.assertEquals(1, reopened.queryUser(200, now, now + 1000).size());
+        Assert.assertTrue(reopened.queryUser(5000, now, now + 1000).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void maxSegmentsDeletesOldestSegments() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        CdrStore store = new CdrStore(_config(directory, 2));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 256; i++) {
+            store.append(_record(now + i, i, i + 1000));
+        }
+
+        Assert.assertEquals(2, store.getSegmentCount());
+        Assert.assertEquals(128, store.getRecordCount());
+        Assert.assertTrue(store.queryUser(0, now, now + 1000).isEmpty());
+        Assert.assertEquals(1, store.queryUser(255, now, now + 1000).size());
+        store.close();
+        Assert.assertEquals(4, directory.list().length);
+    }
+
+    @Test
+    public void hangupRecordsReasonOfEachUser() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient,
+                config -> config.setCdrConfig(_config(directory, 0)));
+        try {
+            callApi.hangup(1, "reasonToA", 2, "reasonToB", "room", "call1", null, null);
+
+            CallApiTestSupport.awaitTrue(() -> rtmClient.getPublished().size() == 2);
+            CdrRecord record = callApi.getCdrStore().queryUser(1, 0, Long.MAX_VALUE).get(0);
+            for (RecordingRtmClient.Published published : rtmClient.getPublished()) {
+                String reason = published.message.getString("hangupReason");
+                if ("1".equals(published.channelName)) {
+                    Assert.assertEquals(record.getReasonA(), reason);
+                } else {
+                    Assert.assertEquals(record.getReasonB(), reason);
+                }
+            }
+            Assert.assertEquals("reasonToA", record.getReasonA());
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+
+    private static CdrConfig _config(File directory, int maxSegments) {
+        CdrConfig config = new CdrConfig();
+        config.setDirectory(directory.getAbsolutePath());
+        config.setSegmentSizeBytes(64 * CdrStore.RECORD_SIZE);
+        config.setBlockRecords(16);
+        config.setMaxSegments(maxSegments);
+        return config;
+    }
+
+    private static CdrRecord _record(long timestampMillis, int userIdA, int userIdB) {
+        return new CdrRecord(CallAction.CALL, timestampMillis, userIdA, userIdB, "call" + userIdA, "room", null,
+                null);
+    }
+}
@@ -0,0 +1,45 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+
+/**
+ * ResultCallback that completes a future, failures complete it with CallApiException
+ */
+class FutureCallback<T> implements ResultCallback<T> {
+    static final long TIMEOUT_SECONDS = 5;
+
+    final CompletableFuture<T> future = new CompletableFuture<>();
+
+    @Override
+    public void onSuccess(T responseInfo) {
+        future.complete(responseInfo);
+    }
+
+    @Override
+    public void onFailure(ErrorInfo errorInfo) {
+        future.completeExceptionally(new CallApiException(errorInfo));
+    }
+
+    boolean isDone() {
+        return future.isDone();
+    }
+
+    T await() throws Exception {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    ErrorInfo awaitFailure() throws InterruptedException, TimeoutException {
+        try {
+            T result = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            throw new AssertionError("expected failure, got " + result);
+        } catch (ExecutionException e) {
+            return ((CallApiException) e.getCause()).getErrorInfo();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class HangupRoomTest {
+    private RecordingRtmClient rtmClient;
+    private CallApiImpl callApi;
+
+    @After
+    public void tearDown() {
+        if (callApi != null) {
+            callApi.deinitialize(null);
+        }
+        if (rtmClient != null) {
+            rtmClient.shutdown();
+        }
+    }
+
+    @Test
+    public void hangupRoomEndsEverySessionInBatches() throws Exception {
+        _init(2);
+        for (int index = 0; index < 5; index++) {
+            callApi.call(index * 2, index * 2 + 1, "room", "call" + index, null, null);
+        }
+        callApi.call(100, 101, "other", "other", null, null);
+        CallSessionRegistry registry = callApi.getCallSessionRegistry();
+        Assert.assertEquals(6, registry.size());
+
+        // 挂断信令先不回调, 检查下一批在上一批完成后才发送
+        List<ResultCallback<Void>> heldCallbacks = new ArrayList<>();
+        rtmClient.setInterceptor((published, resultCallback) -> {
+            if (published.getAction() != CallAction.HANGUP.getValue()) {
+                return false;
+            }
+            synchronized (heldCallbacks) {
+                heldCallbacks.add(resultCallback);
+            }
+            return true;
+        });
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        callApi.hangupRoom("room", "closed", callback);
+
+        Set<String> hungUpCallIds = new HashSet<>();
+        for (int batch = 0; batch < 3; batch++) {
+            int expectedCount = batch < 2 ? 4 : 2;
+            CallApiTestSupport.awaitTrue(() -> _size(heldCallbacks) == expectedCount);
+            Thread.sleep(20);
+            Assert.assertEquals(expectedCount, _size(heldCallbacks));
+            Assert.assertFalse(callback.isDone());
+            List<ResultCallback<Void>> batchCallbacks;
+            synchronized (heldCallbacks) {
+                batchCallbacks = new ArrayList<>(heldCallbacks);
+                heldCallbacks.clear();
+            }
+            batchCallbacks.forEach(resultCallback -> resultCallback.onSuccess(null));
+        }
+
+        List<CallResult> callResults = callback.await();
+        Assert.assertEquals(5, callResults.size());
+        for (CallResult callResult : callResults) {
+            Assert.assertTrue(callResult.isSuccess());
+            Assert.assertTrue(hungUpCallIds.add(callResult.getCallPair().getCallId()));
+            Assert.assertEquals("closed", callResult.getCallPair().getReasonA());
+        }
+        for (int index = 0; index < 5; index++) {
+            Assert.assertNull(registry.getSession("call" + index));
+            Assert.assertNull(registry.getSessionByUserId(index * 2));
+            Assert.assertNull(registry.getSessionByUserId(index * 2 + 1));
+        }
+        Assert.assertTrue(registry.getSessionsByRoomId("room").isEmpty());
+        Assert.assertEquals(1, registry.size());
+        Assert.assertNotNull(registry.getSessionByUserId(100));
+        Assert.assertEquals(1, registry.getSessionsByRoomId("other").size());
+    }
+
+    @Test
+    public void hangupRoomSendsReasonToBothUsers() throws Exception {
+        _init(500);
+        callApi.call(1, 2, "room", "call1", null, null);
+
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        callApi.hangupRoom("room", "closed", callback);
+
+        Assert.assertEquals(1, callback.await().size());
+        List<RecordingRtmClient.Published> hangups = _hangups();
+        Assert.assertEquals(2, hangups.size());
+        Set<String> channelNames = hangups.stream().map(published -> published.channelName)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(Set.of("1", "2"), channelNames);
+        for (RecordingRtmClient.Published published : hangups) {
+            Assert.assertEquals("closed", published.message.getString("hangupReason"));
+            Assert.assertEquals("call1", published.getCallId());
+        }
+    }
+
+    @Test
+    public void hangupEmptyRoomCompletesWithNoResults() throws Exception {
+        _init(500);
+
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        callApi.hangupRoom("room", "closed", callback);
+
+        Assert.assertTrue(callback.await().isEmpty());
+        Assert.assertTrue(rtmClient.getPublished().isEmpty());
+    }
+
+    @Test
+    public void hangupUserEndsItsSessionOnly() throws Exception {
+        _init(500);
+        callApi.call(1, 2, "room", "call1", null, null);
+        callApi.call(3, 4, "room", "call2", null, null);
+
+        FutureCallback<List<CallResult>> callback = new FutureCallback<>();
+        callApi.hangupUser(2, "kicked", callback);
+
+        List<CallResult> callResults = callback.await();
+        Assert.assertEquals(1, callResults.size());
+        Assert.assertEquals("call1", callResults.get(0).getCallPair().getCallId());
+        CallSessionRegistry registry = callApi.getCallSessionRegistry();
+        Assert.assertNull(registry.getSession("call1"));
+        Assert.assertNull(registry.getSessionByUserId(1));
+        Assert.assertNull(registry.getSessionByUserId(2));
+        Assert.assertEquals(1, registry.getSessionsByRoomId("room").size());
+        Assert.assertEquals(2, _hangups().size());
+
+        FutureCallback<List<CallResult>> idleCallback = new FutureCallback<>();
+        callApi.hangupUser(2, "kicked", idleCallback);
+        Assert.assertTrue(idleCallback.await().isEmpty());
+        Assert.assertEquals(2, _hangups().size());
+    }
+
+    @Test
+    public void failsWithoutCallSessionConfig() throws Exception {
+        rtmClient = new RecordingRtmClient();
+        callApi = CallApiTestSupport.newCallApi(rtmClient, null);
+
+        FutureCallback<List<CallResult>> roomCallback = new FutureCallback<>();
+        callApi.hangupRoom("room", "closed", roomCallback);
+        FutureCallback<List<CallResult>> userCallback = new FutureCallback<>();
+        callApi.hangupUser(1, "kicked", userCallback);
+
+        Assert.assertEquals(RtmErrorCode.INVALID_PARAMETER, roomCallback.awaitFailure().getErrorCode());
+        Assert.assertEquals(RtmErrorCode.INVALID_PARAMETER, userCallback.awaitFailure().getErrorCode());
+        Assert.assertTrue(rtmClient.getPublished().isEmpty());
+        callApi.hangupRoom("room", "closed", null);
+    }
+
+    private void _init(int hangupBatchSize) throws Exception {
+        rtmClient = new RecordingRtmClient();
+        callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            CallSessionConfig callSessionConfig = new CallSessionConfig();
+            callSessionConfig.setHangupBatchSize(hangupBatchSize);
+            config.setCallSessionConfig(callSessionConfig);
+        });
+    }
+
+    private List<RecordingRtmClient.Published> _hangups() {
+        return rtmClient.getPublished().stream()
+                .filter(published -> published.getAction() == CallAction.HANGUP.getValue())
+                .collect(Collectors.toList());
+    }
+
+    private static int _size(List<?> list) {
+        synchronized (list) {
+            return list.size();
+        }
+    }
+}
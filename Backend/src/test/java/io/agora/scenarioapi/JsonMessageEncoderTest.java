@@ -0,0 +1,163 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.fastjson2.JSON;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonMessageEncoderTest {
+    private static final long TIMESTAMP = 1700000000000L;
+    private static final int[] USER_IDS = {0, 7, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    private static final String[] TEXTS = {null, "", "room_1", "8f14e45f-ceea-467f-a0f6-2b6d7c2f3a1e", "房间",
+            "a\"b\\c\nd\te\u0001f", "😀", "\uD800"};
+
+    @Test
+    public void callMatchesBaselineBytes() {
+        for (Map<String, Object> fromUserExtension : _extensions()) {
+            CallMessageEncoder encoder = CallMessageEncoder.create(CallAction.CALL.getValue(), "1.0",
+                    fromUserExtension);
+            for (int fromUserId : USER_IDS) {
+                for (String text : TEXTS) {
+                    Assert.assertEquals(_baselineCall(fromUserId, 2, text, text, fromUserExtension),
+                            new String(encoder.encodeCall(TIMESTAMP, fromUserId, 2, text, text),
+                                    StandardCharsets.UTF_8));
+                    Assert.assertEquals(_baselineCall(1, fromUserId, "room", text, fromUserExtension),
+                            new String(encoder.encodeCall(TIMESTAMP, 1, fromUserId, "room", text),
+                                    StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hangupMatchesBaselineBytes() {
+        for (Map<String, Object> fromUserExtension : _extensions()) {
+            CallMessageEncoder encoder = CallMessageEncoder.create(CallAction.HANGUP.getValue(), "1.0",
+                    fromUserExtension);
+            for (int fromUserId : USER_IDS) {
+                for (String text : TEXTS) {
+                    Assert.assertEquals(_baselineHangup(fromUserId, text, text, text, fromUserExtension),
+                            new String(encoder.encodeHangup(TIMESTAMP, fromUserId, text, text, text),
+                                    StandardCharsets.UTF_8));
+                    Assert.assertEquals(_baselineHangup(fromUserId, "room", "call", text, fromUserExtension),
+                            new String(encoder.encodeHangup(TIMESTAMP, fromUserId, "room", "call", text),
+                                    StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void escapesEveryCharLikeFastjson() {
+        CallMessageEncoder encoder = CallMessageEncoder.create(CallAction.HANGUP.getValue(), "1.0", null);
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String reason = "a" + (char) c + "b";
+
+            Assert.assertArrayEquals("char " + Integer.toHexString(c),
+                    JSON.toJSONBytes(_baselineHangupMap(1, "room", "call", reason, null)),
+                    encoder.encodeHangup(TIMESTAMP, 1, "room", "call", reason));
+        }
+    }
+
+    @Test
+    public void rebuildsTemplateWhenExtensionIsChangedInPlace() {
+        Map<String, Object> fromUserExtension = new HashMap<>();
+        fromUserExtension.put("level", 1);
+        CallMessageEncoder jsonEncoder = CallMessageEncoder.create(CallAction.CALL.getValue(), "1.0",
+                fromUserExtension);
+        CallMessageEncoder binaryEncoder = CallMessageEncoder.create(CallAction.CALL.getValue(), "2.0",
+                fromUserExtension);
+        Assert.assertTrue(jsonEncoder.isEncodedWith("1.0", fromUserExtension));
+        Assert.assertTrue(binaryEncoder.isEncodedWith("2.0", fromUserExtension));
+        Assert.assertTrue(jsonEncoder.isEncodedWith("1.0", new HashMap<>(fromUserExtension)));
+
+        fromUserExtension.put("level", 2);
+
+        Assert.assertFalse(jsonEncoder.isEncodedWith("1.0", fromUserExtension));
+        Assert.assertFalse(binaryEncoder.isEncodedWith("2.0", fromUserExtension));
+        Assert.assertFalse(jsonEncoder.isEncodedWith("1.0", null));
+        Assert.assertFalse(jsonEncoder.isEncodedWith("2.0", fromUserExtension));
+        Assert.assertTrue(CallMessageEncoder.create(CallAction.CALL.getValue(), "1.0", null)
+                .isEncodedWith("1.0", null));
+    }
+
+    @Test
+    public void callApiPublishesExtensionChangedInPlace() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        Map<String, Object> fromUserExtension = new HashMap<>();
+        fromUserExtension.put("level", 1);
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient,
+                config -> config.setFromUserExtension(fromUserExtension));
+        try {
+            callApi.call(1, 2, "room", "call1", null, null);
+            fromUserExtension.put("level", 2);
+            callApi.call(3, 4, "room", "call2", null, null);
+            fromUserExtension.remove("level");
+            callApi.hangup(3, "reasonA", 4, "reasonB", "room", "call2", null, null);
+
+            CallApiTestSupport.awaitTrue(() -> rtmClient.getPublished().size() == 6);
+            List<RecordingRtmClient.Published> published = rtmClient.getPublished();
+            Assert.assertEquals(1, published.get(0).message.getJSONObject("fromUserExtension").getIntValue("level"));
+            Assert.assertEquals(2, published.get(2).message.getJSONObject("fromUserExtension").getIntValue("level"));
+            Assert.assertTrue(published.get(4).message.getJSONObject("fromUserExtension").isEmpty());
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+
+    private static List<Map<String, Object>> _extensions() {
+        Map<String, Object> fromUserExtension = new LinkedHashMap<>();
+        fromUserExtension.put("nickname", "用户");
+        fromUserExtension.put("age", 18);
+        fromUserExtension.put("tags", List.of("a", "b"));
+        return Arrays.asList(null, new HashMap<>(), fromUserExtension);
+    }
+
+    // 以下按改为模板编码前 CallApiImpl 的方式构建消息
+
+    private static String _baselineCall(int fromUserId, int remoteUserId, String roomId, String callId,
+                                        Map<String, Object> fromUserExtension) {
+        Map<String, Object> messageMap = new HashMap<>();
+        messageMap.put("message_action", 0);
+        messageMap.put("message_version", "1.0");
+        messageMap.put("message_timestamp", TIMESTAMP);
+        messageMap.put("fromUserId", fromUserId);
+        messageMap.put("remoteUserId", remoteUserId);
+        messageMap.put("fromRoomId", roomId);
+        messageMap.put("callId", callId);
+        if (fromUserExtension != null) {
+            messageMap.put("fromUserExtension", fromUserExtension);
+        }
+        return new String(JSON.toJSONBytes(messageMap), StandardCharsets.UTF_8);
+    }
+
+    private static String _baselineHangup(int fromUserId, String roomId, String callId, String hangupReason,
+                                          Map<String, Object> fromUserExtension) {
+        return new String(JSON.toJSONBytes(_baselineHangupMap(fromUserId, roomId, callId, hangupReason,
+                fromUserExtension)), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> _baselineHangupMap(int fromUserId, String roomId, String callId,
+                                                          String hangupReason,
+                                                          Map<String, Object> fromUserExtension) {
+        Map<String, Object> messageMap = new HashMap<>();
+        messageMap.put("message_action", 4);
+        messageMap.put("message_version", "1.0");
+        messageMap.put("message_timestamp", TIMESTAMP);
+        messageMap.put("fromUserId", fromUserId);
+        messageMap.put("fromRoomId", roomId);
+        messageMap.put("callId", callId);
+        messageMap.put("hangupReason", hangupReason);
+        if (fromUserExtension != null) {
+            messageMap.put("fromUserExtension", fromUserExtension);
+        }
+        return messageMap;
+    }
+}
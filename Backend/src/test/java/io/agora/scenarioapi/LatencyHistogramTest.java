@@ -0,0 +1,120 @@
+package io.agora.scenarioapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    private static final long HIGHEST_TRACKABLE_VALUE = 1L << 20;
+
+    @Test
+    public void valuesBelowTwoSubBucketsAreExact() {
+        for (long value = 0; value < 256; value++) {
+            Assert.assertEquals(value, _upperBound(value));
+        }
+    }
+
+    @Test
+    public void bucketsDoubleAtPowersOfTwo() {
+        // 256 起每个二次幂区间分为 128 个子桶, 桶宽依次为 2, 4, 8 ...
+        Assert.assertEquals(257, _upperBound(256));
+        Assert.assertEquals(257, _upperBound(257));
+        Assert.assertEquals(259, _upperBound(258));
+        Assert.assertEquals(511, _upperBound(510));
+        Assert.assertEquals(511, _upperBound(511));
+        Assert.assertEquals(515, _upperBound(512));
+        Assert.assertEquals(1023, _upperBound(1023));
+        Assert.assertEquals(1031, _upperBound(1024));
+        Assert.assertEquals((1L << 19) + 4095, _upperBound(1L << 19));
+    }
+
+    @Test
+    public void upperBoundKeepsTwoSignificantDigits() {
+        long previousUpperBound = -1;
+        for (long value = 0; value < 1L << 16; value++) {
+            long upperBound = _upperBound(value);
+            Assert.assertTrue(value + " -> " + upperBound, upperBound >= value);
+            Assert.assertTrue(value + " -> " + upperBound, upperBound - value <= value / 128);
+            // 同一桶的值上界相同, 上界单调不减
+            Assert.assertTrue(upperBound >= previousUpperBound);
+            if (upperBound != previousUpperBound) {
+                Assert.assertEquals(previousUpperBound + 1, value);
+            }
+            previousUpperBound = upperBound;
+        }
+    }
+
+    @Test
+    public void clampsToTrackableRange() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(2, snapshot.getCount());
+        Assert.assertEquals(1000, snapshot.getSum());
+        Assert.assertEquals(0, snapshot.getP50());
+        Assert.assertEquals(1000, snapshot.getP90());
+        Assert.assertEquals(1000, snapshot.getMax());
+    }
+
+    @Test
+    public void highestTrackableValueCoversTwoSubBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram(10);
+        histogram.record(200);
+        histogram.record(300);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(200, snapshot.getP50());
+        Assert.assertEquals(255, snapshot.getMax());
+    }
+
+    @Test
+    public void selectsPercentilesByRank() {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST_TRACKABLE_VALUE);
+        for (long value = 100; value >= 1; value--) {
+            histogram.record(value);
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(100, snapshot.getCount());
+        Assert.assertEquals(5050, snapshot.getSum());
+        Assert.assertEquals(50, snapshot.getMean());
+        Assert.assertEquals(50, snapshot.getP50());
+        Assert.assertEquals(90, snapshot.getP90());
+        Assert.assertEquals(99, snapshot.getP99());
+        Assert.assertEquals(100, snapshot.getP999());
+        Assert.assertEquals(100, snapshot.getMax());
+    }
+
+    @Test
+    public void percentileDoesNotExceedMax() {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST_TRACKABLE_VALUE);
+        histogram.record(1000);
+
+        // 1000 所在桶的上界为 1003
+        LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1000, snapshot.getP50());
+        Assert.assertEquals(1000, snapshot.getP999());
+    }
+
+    @Test
+    public void emptySnapshotIsZero() {
+        LatencySnapshot snapshot = new LatencyHistogram(HIGHEST_TRACKABLE_VALUE).snapshot();
+
+        Assert.assertEquals(0, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getMean());
+        Assert.assertEquals(0, snapshot.getP50());
+        Assert.assertEquals(0, snapshot.getP999());
+        Assert.assertEquals(0, snapshot.getMax());
+    }
+
+    /**
+     * Upper bound of the bucket of value, the p50 of value and a larger max is that bucket's upper bound
+     */
+    private static long _upperBound(long value) {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST_TRACKABLE_VALUE);
+        histogram.record(value);
+        histogram.record(HIGHEST_TRACKABLE_VALUE);
+        return histogram.snapshot().getP50();
+    }
+}
@@ -0,0 +1,63 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class LocalRtmClientTest {
+    private LocalRtmClient rtmClient;
+
+    @After
+    public void tearDown() {
+        if (rtmClient != null) {
+            rtmClient.shutdown();
+        }
+    }
+
+    @Test
+    public void publishesStringAsUtf8() throws Exception {
+        rtmClient = new LocalRtmClient();
+        String message = "{\"reason\":\"对方忙\"}";
+        FutureCallback<Void> callback = new FutureCallback<>();
+
+        rtmClient.publish("user", message, null, callback);
+
+        callback.await();
+        Assert.assertEquals(message.getBytes(StandardCharsets.UTF_8).length, rtmClient.getPublishedBytes());
+    }
+
+    @Test
+    public void rejectsBeyondCapacity() throws Exception {
+        LocalRtmClientConfig config = new LocalRtmClientConfig();
+        config.setMaxPublishesPerSecond(1);
+        rtmClient = new LocalRtmClient(config);
+        FutureCallback<Void> first = new FutureCallback<>();
+        FutureCallback<Void> second = new FutureCallback<>();
+
+        rtmClient.publish("user", new byte[1], null, first);
+        rtmClient.publish("user", new byte[1], null, second);
+
+        first.await();
+        Assert.assertEquals(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                second.awaitFailure().getErrorCode());
+        Assert.assertEquals(1, rtmClient.getFailedCount());
+    }
+
+    @Test
+    public void failsAtFailureRate() throws Exception {
+        LocalRtmClientConfig config = new LocalRtmClientConfig();
+        config.setPublishFailureRate(1);
+        config.setPublishFailureErrorCode(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_TIMEOUT);
+        rtmClient = new LocalRtmClient(config);
+        FutureCallback<Void> callback = new FutureCallback<>();
+
+        rtmClient.publish("user", new byte[1], null, callback);
+
+        Assert.assertEquals(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_TIMEOUT, callback.awaitFailure().getErrorCode());
+        Assert.assertEquals(0, rtmClient.getPublishedCount());
+    }
+}
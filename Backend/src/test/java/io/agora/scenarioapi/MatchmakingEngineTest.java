@@ -0,0 +1,222 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.ResultCallback;
+
+public class MatchmakingEngineTest {
+    // 每次配对的 userIdA, userIdB, 不发送消息
+    private final List<int[]> calls = Collections.synchronizedList(new ArrayList<>());
+    private final CallApiImpl callApi = new CallApiImpl() {
+        @Override
+        public Void call(Integer userIdA, Integer userIdB, String roomId, String callId,
+                         ResultCallback<Void> resultCallbackUserIdA,
+                         ResultCallback<Void> resultCallbackUserIdB) {
+            calls.add(new int[] {userIdA, userIdB});
+            resultCallbackUserIdA.onSuccess(null);
+            resultCallbackUserIdB.onSuccess(null);
+            return null;
+        }
+    };
+    private MatchmakingEngine engine;
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.stop();
+        }
+    }
+
+    @Test
+    public void pairsUsersAndKeepsBucket() {
+        engine = new MatchmakingEngine(callApi, _config(0), null);
+
+        Assert.assertTrue(engine.enqueue(1, Collections.singletonMap("region", "cn")));
+        Assert.assertFalse(engine.enqueue(1, Collections.singletonMap("region", "cn")));
+        Assert.assertEquals(1, engine.getBucketCount());
+        Assert.assertTrue(engine.enqueue(2, Collections.singletonMap("region", "cn")));
+
+        Assert.assertEquals(1, calls.size());
+        Assert.assertArrayEquals(new int[] {1, 2}, calls.get(0));
+        Assert.assertEquals(0, engine.getWaitingCount());
+        Assert.assertEquals(1, engine.getBucketCount());
+        Assert.assertEquals(0, engine.getRetiredBucketCount());
+    }
+
+    @Test
+    public void sweepRemovesIdleBuckets() throws Exception {
+        MatchmakingConfig config = _config(0);
+        config.setBucketIdleMillis(20);
+        engine = new MatchmakingEngine(callApi, config, null);
+        for (int userId = 0; userId < 1000; userId++) {
+            engine.enqueue(userId, Collections.singletonMap("id", String.valueOf(userId)));
+        }
+        Assert.assertEquals(1000, engine.getBucketCount());
+
+        for (int userId = 0; userId < 1000; userId++) {
+            Assert.assertTrue(engine.cancel(userId));
+        }
+
+        Assert.assertFalse(engine.cancel(0));
+        CallApiTestSupport.awaitTrue(() -> engine.getBucketCount() == 0);
+        Assert.assertEquals(1000, engine.getRetiredBucketCount());
+        Assert.assertEquals(0, engine.getWaitingCount());
+        Assert.assertTrue(calls.isEmpty());
+
+        // 已移除的桶重新创建
+        Assert.assertTrue(engine.enqueue(0, Collections.singletonMap("id", "0")));
+        Assert.assertTrue(engine.enqueue(1, Collections.singletonMap("id", "0")));
+        Assert.assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void sweepKeepsBucketWithWaitingUser() throws Exception {
+        MatchmakingConfig config = _config(0);
+        config.setBucketIdleMillis(20);
+        engine = new MatchmakingEngine(callApi, config, null);
+        engine.enqueue(1);
+
+        Thread.sleep(100);
+
+        Assert.assertEquals(1, engine.getBucketCount());
+        Assert.assertEquals(0, engine.getRetiredBucketCount());
+        Assert.assertTrue(engine.enqueue(2));
+        Assert.assertArrayEquals(new int[] {1, 2}, calls.get(0));
+    }
+
+    @Test
+    public void waitTimeoutEmptiesBucket() throws Exception {
+        List<Integer> timeouts = Collections.synchronizedList(new ArrayList<>());
+        engine = new MatchmakingEngine(callApi, _config(50), new MatchmakingEngine.MatchListener() {
+            @Override
+            public void onWaitTimeout(Integer userId) {
+                timeouts.add(userId);
+            }
+        });
+
+        engine.enqueue(1);
+
+        CallApiTestSupport.awaitTrue(() -> timeouts.size() == 1);
+        Assert.assertEquals(Integer.valueOf(1), timeouts.get(0));
+        Assert.assertEquals(1, engine.getTimeoutCount());
+        Assert.assertFalse(engine.isWaiting(1));
+        Assert.assertTrue(engine.enqueue(2));
+        Assert.assertTrue(engine.isWaiting(2));
+        Assert.assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void cancelsRacingEnqueuesNeverLoseOrDoubleMatchUsers() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            calls.clear();
+            engine = new MatchmakingEngine(callApi, _config(0), null);
+            int threadCount = 4;
+            int perThread = 2000;
+            AtomicInteger cancelledCount = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(threadCount);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < perThread; i++) {
+                        int userId = thread * perThread + i;
+                        engine.enqueue(userId);
+                        // 取消另一线程正在入队或配对的用户
+                        int otherUserId = (thread + 1) % threadCount * perThread + i;
+                        if (i % 3 == 0 && engine.cancel(otherUserId)) {
+                            cancelledCount.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            started.await();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            Set<Integer> matched = new HashSet<>();
+            for (int[] call : calls) {
+                Assert.assertTrue(matched.add(call[0]));
+                Assert.assertTrue(matched.add(call[1]));
+            }
+            Assert.assertTrue("round " + round, engine.getWaitingCount() <= 1);
+            Assert.assertEquals(threadCount * perThread,
+                    matched.size() + cancelledCount.get() + engine.getWaitingCount());
+            Assert.assertEquals(1, engine.getBucketCount());
+            engine.stop();
+        }
+    }
+
+    @Test
+    public void concurrentPairingOnOneBucketKeepsTheBucket() throws Exception {
+        MatchmakingConfig config = _config(0);
+        config.setBucketIdleMillis(60000);
+        engine = new MatchmakingEngine(callApi, config, null);
+        int threadCount = 8;
+        int perThread = 10000;
+        CountDownLatch started = new CountDownLatch(threadCount);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < perThread; i++) {
+                    engine.enqueue(thread * perThread + i, Collections.singletonMap("region", "cn"));
+                }
+            }));
+        }
+        engine.enqueue(-1, Collections.singletonMap("region", "cn"));
+        engine.cancel(-1);
+        // 配对期间桶不被移除重建
+        AtomicInteger missingBucketCount = new AtomicInteger();
+        AtomicBoolean isDone = new AtomicBoolean();
+        Thread monitor = new Thread(() -> {
+            while (!isDone.get()) {
+                if (engine.getBucketCount() != 1) {
+                    missingBucketCount.incrementAndGet();
+                }
+            }
+        });
+        monitor.start();
+        threads.forEach(Thread::start);
+        started.await();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        isDone.set(true);
+        monitor.join();
+
+        Set<Integer> matched = new HashSet<>();
+        for (int[] call : calls) {
+            Assert.assertTrue(matched.add(call[0]));
+            Assert.assertTrue(matched.add(call[1]));
+        }
+        Assert.assertEquals(0, missingBucketCount.get());
+        Assert.assertEquals(threadCount * perThread, matched.size());
+        Assert.assertEquals(threadCount * perThread / 2, engine.getMatchedCount());
+        Assert.assertEquals(0, engine.getWaitingCount());
+        Assert.assertEquals(1, engine.getBucketCount());
+        Assert.assertEquals(0, engine.getRetiredBucketCount());
+    }
+
+    private static MatchmakingConfig _config(long maxWaitMillis) {
+        MatchmakingConfig config = new MatchmakingConfig();
+        config.setMaxWaitMillis(maxWaitMillis);
+        config.setBucketIdleMillis(0);
+        config.setTickMillis(10);
+        return config;
+    }
+}
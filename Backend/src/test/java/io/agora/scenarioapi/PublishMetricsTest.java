@@ -0,0 +1,129 @@
+package io.agora.scenarioapi;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class PublishMetricsTest {
+
+    @Test
+    public void wrapCountsResultsByErrorCode() throws Exception {
+        PublishMetrics metrics = _metrics();
+        FutureCallback<Void> succeeded = new FutureCallback<>();
+        ResultCallback<Void> first = metrics.wrap(CallAction.CALL, succeeded);
+        ResultCallback<Void> second = metrics.wrap(CallAction.CALL, null);
+        FutureCallback<Void> failed = new FutureCallback<>();
+        ResultCallback<Void> third = metrics.wrap(CallAction.CALL, failed);
+        ResultCallback<Void> fourth = metrics.wrap(CallAction.CALL, null);
+        ResultCallback<Void> fifth = metrics.wrap(CallAction.HANGUP, null);
+        Assert.assertEquals(5, metrics.getInFlightCount());
+
+        first.onSuccess(null);
+        second.onSuccess(null);
+        third.onFailure(_errorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED));
+        fourth.onFailure(_errorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED));
+        fifth.onFailure(_errorInfo(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION));
+
+        succeeded.await();
+        Assert.assertEquals(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, failed.awaitFailure().getErrorCode());
+        Assert.assertEquals(0, metrics.getInFlightCount());
+        Assert.assertEquals(2, metrics.getSuccessCount(CallAction.CALL));
+        Assert.assertEquals(Map.of(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, 2L),
+                metrics.getFailureCounts(CallAction.CALL));
+        Assert.assertEquals(4, metrics.getLatency(CallAction.CALL).getCount());
+        Assert.assertEquals(0, metrics.getSuccessCount(CallAction.HANGUP));
+        Assert.assertEquals(Map.of(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION, 1L),
+                metrics.getFailureCounts(CallAction.HANGUP));
+        Assert.assertEquals(1, metrics.getLatency(CallAction.HANGUP).getCount());
+        Assert.assertEquals(0, metrics.getLatency(CallAction.ACCEPT).getCount());
+        Assert.assertTrue(metrics.getFailureCounts(CallAction.ACCEPT).isEmpty());
+    }
+
+    @Test
+    public void wrapRecordsLatencyInMicroseconds() throws Exception {
+        PublishMetrics metrics = _metrics();
+        ResultCallback<Void> callback = metrics.wrap(CallAction.CALL, null);
+
+        Thread.sleep(20);
+        callback.onSuccess(null);
+
+        LatencySnapshot snapshot = metrics.getLatency(CallAction.CALL);
+        Assert.assertTrue(String.valueOf(snapshot.getMax()), snapshot.getMax() >= 20_000);
+        Assert.assertTrue(String.valueOf(snapshot.getMax()), snapshot.getMax() < 5_000_000);
+    }
+
+    @Test
+    public void scrapeWritesPrometheusText() {
+        PublishMetrics metrics = _metrics();
+        metrics.wrap(CallAction.CALL, null).onSuccess(null);
+        metrics.wrap(CallAction.CALL, null).onFailure(_errorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED));
+        metrics.wrap(CallAction.CALL, null).onFailure(
+                _errorInfo(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION));
+        metrics.wrap(CallAction.HANGUP, null).onSuccess(null);
+        metrics.wrap(CallAction.HANGUP, null);
+
+        List<String> lines = Arrays.asList(metrics.scrape().split("\n", -1));
+
+        // 耗时随运行变化, 只检查为整数
+        String latency = "\\d+";
+        List<String> expected = Arrays.asList(
+                "# HELP test_latency_microseconds Publish latency from send to result callback",
+                "# TYPE test_latency_microseconds summary",
+                "test_latency_microseconds\\{action=\"CALL\",quantile=\"0\\.5\"\\} " + latency,
+                "test_latency_microseconds\\{action=\"CALL\",quantile=\"0\\.9\"\\} " + latency,
+                "test_latency_microseconds\\{action=\"CALL\",quantile=\"0\\.99\"\\} " + latency,
+                "test_latency_microseconds\\{action=\"CALL\",quantile=\"0\\.999\"\\} " + latency,
+                "test_latency_microseconds_sum\\{action=\"CALL\"\\} " + latency,
+                "test_latency_microseconds_count\\{action=\"CALL\"\\} 3",
+                "test_latency_microseconds\\{action=\"HANGUP\",quantile=\"0\\.5\"\\} " + latency,
+                "test_latency_microseconds\\{action=\"HANGUP\",quantile=\"0\\.9\"\\} " + latency,
+                "test_latency_microseconds\\{action=\"HANGUP\",quantile=\"0\\.99\"\\} " + latency,
+                "test_latency_microseconds\\{action=\"HANGUP\",quantile=\"0\\.999\"\\} " + latency,
+                "test_latency_microseconds_sum\\{action=\"HANGUP\"\\} " + latency,
+                "test_latency_microseconds_count\\{action=\"HANGUP\"\\} 1",
+                "# HELP test_total Finished publishes by result",
+                "# TYPE test_total counter",
+                "test_total\\{action=\"CALL\",result=\"success\",error_code=\"OK\"\\} 1",
+                "test_total\\{action=\"CALL\",result=\"failure\","
+                        + "error_code=\"RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION\"\\} 1",
+                "test_total\\{action=\"CALL\",result=\"failure\",error_code=\"CHANNEL_PUBLISH_MESSAGE_FAILED\"\\} 1",
+                "test_total\\{action=\"HANGUP\",result=\"success\",error_code=\"OK\"\\} 1",
+                "# HELP test_in_flight Publishes waiting for result callback",
+                "# TYPE test_in_flight gauge",
+                "test_in_flight 1",
+                "");
+        Assert.assertEquals(String.join("\n", lines), expected.size(), lines.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertTrue(lines.get(i), lines.get(i).matches(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void scrapeWithoutPublishesHasOnlyHeadersAndGauge() {
+        Assert.assertEquals("# HELP test_latency_microseconds Publish latency from send to result callback\n"
+                        + "# TYPE test_latency_microseconds summary\n"
+                        + "# HELP test_total Finished publishes by result\n"
+                        + "# TYPE test_total counter\n"
+                        + "# HELP test_in_flight Publishes waiting for result callback\n"
+                        + "# TYPE test_in_flight gauge\n"
+                        + "test_in_flight 0\n",
+                _metrics().scrape());
+    }
+
+    private static PublishMetrics _metrics() {
+        PublishMetricsConfig config = new PublishMetricsConfig();
+        config.setMetricPrefix("test");
+        return new PublishMetrics(config);
+    }
+
+    private static ErrorInfo _errorInfo(RtmErrorCode errorCode) {
+        return new ErrorInfo(errorCode, "publish failed", "publish");
+    }
+}
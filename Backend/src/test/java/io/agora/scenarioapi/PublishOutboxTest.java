@@ -0,0 +1,140 @@
+package io.agora.scenarioapi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class PublishOutboxTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void recoversUnackedMessagesInOrder() throws Exception {
+        OutboxConfig config = _config(temporaryFolder.newFolder());
+        PublishOutbox outbox = new PublishOutbox(config);
+        outbox.recover();
+        long now = System.currentTimeMillis();
+        long first = outbox.append("1", _bytes("call"), CallAction.CALL, "call1", now);
+        long second = outbox.append("2", _bytes("hangup"), CallAction.HANGUP, "call1", now);
+        outbox.append("3", _bytes("cancel"), CallAction.CANCEL_CALL, null, now);
+        outbox.ack(second);
+        outbox.close();
+
+        List<PublishOutbox.Entry> entries = new PublishOutbox(config).recover();
+
+        Assert.assertNotEquals(0, first);
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("1", entries.get(0).getUserId());
+        Assert.assertEquals(CallAction.CALL, entries.get(0).getAction());
+        Assert.assertEquals("call", new String(entries.get(0).getMessage(), StandardCharsets.UTF_8));
+        Assert.assertEquals("3", entries.get(1).getUserId());
+        Assert.assertNull(entries.get(1).getCallId());
+    }
+
+    @Test
+    public void dropsMessagesOlderThanMaxReplayAge() throws Exception {
+        OutboxConfig config = _config(temporaryFolder.newFolder());
+        PublishOutbox outbox = new PublishOutbox(config);
+        outbox.recover();
+        long now = System.currentTimeMillis();
+        outbox.append("1", _bytes("old"), CallAction.CALL, "call1", now - config.getMaxReplayAgeMillis() - 1000);
+        outbox.append("2", _bytes("new"), CallAction.CALL, "call2", now);
+        outbox.close();
+
+        List<PublishOutbox.Entry> entries = new PublishOutbox(config).recover();
+
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals("2", entries.get(0).getUserId());
+    }
+
+    @Test
+    public void segmentFailureIsReported() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        PublishOutbox outbox = new PublishOutbox(_config(directory));
+        outbox.recover();
+        _replaceWithFile(directory);
+
+        try {
+            outbox.append("1", _bytes("call"), CallAction.CALL, "call1", System.currentTimeMillis());
+            Assert.fail("expected IOException");
+        } catch (IOException e) {
+            // 无法创建日志文件
+        }
+        Assert.assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    public void appendFailureFailsPublishAndReleasesWindow() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient,
+                config -> config.setOutboxConfig(_config(directory)));
+        try {
+            _replaceWithFile(directory);
+            FutureCallback<Void> callbackA = new FutureCallback<>();
+            FutureCallback<Void> callbackB = new FutureCallback<>();
+
+            callApi.call(1, 2, "room", "call1", callbackA, callbackB);
+
+            Assert.assertEquals(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, callbackA.awaitFailure().getErrorCode());
+            Assert.assertEquals(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_FAILED, callbackB.awaitFailure().getErrorCode());
+            Assert.assertEquals(0, callApi.getInFlightPublishCount());
+            Assert.assertTrue(rtmClient.getPublished().isEmpty());
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+
+    @Test
+    public void replayKeepsOriginalTimestamp() throws Exception {
+        OutboxConfig config = _config(temporaryFolder.newFolder());
+        PublishOutbox outbox = new PublishOutbox(config);
+        outbox.recover();
+        long timestampMillis = System.currentTimeMillis() - 1000;
+        outbox.append("test_user", _bytes("{\"message_action\":0,\"callId\":\"call1\"}"), CallAction.CALL, "call1",
+                timestampMillis);
+        outbox.close();
+
+        // 重发的消息一直未回调, 仍留在日志中
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        rtmClient.setInterceptor((published, resultCallback) -> true);
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient, callApiConfig -> callApiConfig.setOutboxConfig(
+                config));
+        callApi.deinitialize(null);
+
+        List<PublishOutbox.Entry> entries = new PublishOutbox(config).recover();
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals(timestampMillis, entries.get(0).getTimestampMillis());
+    }
+
+    private static OutboxConfig _config(File directory) {
+        OutboxConfig config = new OutboxConfig();
+        config.setDirectory(directory.getAbsolutePath());
+        config.setSegmentSizeBytes(64 * 1024);
+        return config;
+    }
+
+    private static void _replaceWithFile(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory.toPath());
+        Files.createFile(directory.toPath());
+    }
+
+    private static byte[] _bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class PublishRateLimiterTest {
+    private RecordingRtmClient rtmClient;
+    private RtmClientPool.Member member;
+    private PublishRateLimiter rateLimiter;
+
+    @Before
+    public void setUp() {
+        rtmClient = new RecordingRtmClient();
+        member = new RtmClientPool.Member(new RtmIdentity("test_server", null, rtmClient), null);
+        PublishRateLimitConfig config = new PublishRateLimitConfig();
+        // 首条消息用掉突发配额后, 测试期间不会再有配额
+        config.setClientPermitsPerSecond(1);
+        config.setClientBurst(1);
+        config.setMaxQueueSize(1);
+        rateLimiter = new PublishRateLimiter(config, Collections.singletonList(member));
+    }
+
+    @After
+    public void tearDown() {
+        rateLimiter.stop();
+    }
+
+    @Test
+    public void rejectsBeyondMaxQueueSize() throws Exception {
+        FutureCallback<Void> sent = _submit(CallAction.CALL, "call1", "1");
+        FutureCallback<Void> queued = _submit(CallAction.CALL, "call2", "2");
+        FutureCallback<Void> rejected = _submit(CallAction.CALL, "call3", "3");
+
+        sent.await();
+        Assert.assertEquals(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                rejected.awaitFailure().getErrorCode());
+        Assert.assertFalse(queued.isDone());
+        Assert.assertEquals(1, rateLimiter.getQueuedCount(PublishPriority.INVITATION));
+    }
+
+    @Test
+    public void maxQueueSizeBoundsEachPriority() throws Exception {
+        _submit(CallAction.CALL, "call1", "1").await();
+        FutureCallback<Void> invitation = _submit(CallAction.CALL, "call2", "2");
+        FutureCallback<Void> accept = _submit(CallAction.ACCEPT, "call3", "3");
+        FutureCallback<Void> termination = _submit(CallAction.HANGUP, "call4", "4");
+        FutureCallback<Void> rejected = _submit(CallAction.HANGUP, "call5", "5");
+
+        Assert.assertEquals(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                rejected.awaitFailure().getErrorCode());
+        Assert.assertFalse(invitation.isDone());
+        Assert.assertFalse(accept.isDone());
+        Assert.assertFalse(termination.isDone());
+        Assert.assertEquals(3, rateLimiter.getQueuedCount());
+    }
+
+    @Test
+    public void terminationWithdrawsQueuedInvitation() throws Exception {
+        _submit(CallAction.CALL, "call1", "1").await();
+        FutureCallback<Void> invitation = _submit(CallAction.CALL, "call2", "2");
+        _submit(CallAction.CANCEL_CALL, "call2", "2");
+
+        Assert.assertEquals(RtmErrorCode.DUPLICATE_OPERATION, invitation.awaitFailure().getErrorCode());
+    }
+
+    @Test
+    public void stopFailsQueuedMessages() throws Exception {
+        _submit(CallAction.CALL, "call1", "1").await();
+        FutureCallback<Void> invitation = _submit(CallAction.CALL, "call2", "2");
+        FutureCallback<Void> termination = _submit(CallAction.HANGUP, "call3", "3");
+
+        rateLimiter.stop();
+
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, invitation.awaitFailure().getErrorCode());
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, termination.awaitFailure().getErrorCode());
+        Assert.assertEquals(0, rateLimiter.getQueuedCount());
+    }
+
+    @Test
+    public void submitAfterStopFails() throws Exception {
+        rateLimiter.stop();
+
+        FutureCallback<Void> callback = _submit(CallAction.CALL, "call1", "1");
+
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, callback.awaitFailure().getErrorCode());
+        Assert.assertTrue(rtmClient.getPublished().isEmpty());
+    }
+
+    @Test
+    public void submitsRacingStopAreAllCompleted() throws Exception {
+        PublishRateLimitConfig config = new PublishRateLimitConfig();
+        config.setClientPermitsPerSecond(1);
+        config.setClientBurst(1);
+        config.setMaxQueueSize(Integer.MAX_VALUE);
+        for (int round = 0; round < 20; round++) {
+            PublishRateLimiter limiter = new PublishRateLimiter(config, Collections.singletonList(member));
+            int threadCount = 4;
+            int perThread = 500;
+            CountDownLatch completed = new CountDownLatch(threadCount * perThread);
+            AtomicInteger completedTwice = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(threadCount);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < perThread; i++) {
+                        String callId = thread + "_" + i;
+                        limiter.submit(_task(i % 2 == 0 ? CallAction.CALL : CallAction.HANGUP, callId, callId,
+                                _countDown(completed, completedTwice)));
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            started.await();
+            limiter.stop();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            Assert.assertTrue("round " + round, completed.await(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            Assert.assertEquals(0, completedTwice.get());
+            Assert.assertEquals(0, limiter.getQueuedCount());
+        }
+    }
+
+    private FutureCallback<Void> _submit(CallAction action, String callId, String userId) {
+        FutureCallback<Void> callback = new FutureCallback<>();
+        rateLimiter.submit(_task(action, callId, userId, callback));
+        return callback;
+    }
+
+    private PublishTask _task(CallAction action, String callId, String userId, ResultCallback<Void> callback) {
+        byte[] message = ("{\"message_action\":" + action.getValue() + ",\"callId\":\"" + callId + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        return new PublishTask(member, userId, message, action, callId, callback);
+    }
+
+    private static ResultCallback<Void> _countDown(CountDownLatch completed, AtomicInteger completedTwice) {
+        AtomicInteger count = new AtomicInteger();
+        return new ResultCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                _complete();
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                _complete();
+            }
+
+            private void _complete() {
+                if (count.incrementAndGet() > 1) {
+                    completedTwice.incrementAndGet();
+                }
+                completed.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,186 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class PublishRetrierTest {
+    private static final ErrorInfo RETRYABLE = new ErrorInfo(RtmErrorCode.CHANNEL_PUBLISH_MESSAGE_TIMEOUT, "test",
+            "test");
+    private static final ErrorInfo NOT_RETRYABLE = new ErrorInfo(RtmErrorCode.INVALID_PARAMETER, "test", "test");
+
+    private RtmClientPool rtmClientPool;
+    // 每次发送的消息, 由测试决定其结果
+    private final List<PublishTask> dispatched = Collections.synchronizedList(new ArrayList<>());
+    private final List<Runnable> executedRetries = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean isExecutorRejecting;
+    private PublishRetrier retrier;
+
+    @Before
+    public void setUp() throws Exception {
+        CallApiConfig callApiConfig = new CallApiConfig();
+        callApiConfig.setUserId("test_server");
+        callApiConfig.setRtmClient(new RecordingRtmClient());
+        rtmClientPool = RtmClientPool.create(callApiConfig);
+    }
+
+    @After
+    public void tearDown() {
+        if (retrier != null) {
+            retrier.stop();
+        }
+    }
+
+    @Test
+    public void failedDeliveryIsSentAgain() throws Exception {
+        retrier = _newRetrier(1);
+        FutureCallback<Void> first = _submit(CallAction.CALL, "call1");
+        dispatched.get(0).fail(NOT_RETRYABLE);
+        Assert.assertSame(NOT_RETRYABLE, first.awaitFailure());
+
+        FutureCallback<Void> second = _submit(CallAction.CALL, "call1");
+        Assert.assertEquals(2, dispatched.size());
+        dispatched.get(1).getResultCallback().onSuccess(null);
+        second.await();
+
+        FutureCallback<Void> duplicate = _submit(CallAction.CALL, "call1");
+        duplicate.await();
+        Assert.assertEquals(2, dispatched.size());
+    }
+
+    @Test
+    public void retryRunsOnRetryExecutor() throws Exception {
+        retrier = _newRetrier(2);
+        FutureCallback<Void> callback = _submit(CallAction.CALL, "call1");
+        dispatched.get(0).fail(RETRYABLE);
+
+        CallApiTestSupport.awaitTrue(() -> executedRetries.size() == 1);
+        Assert.assertEquals(1, dispatched.size());
+        executedRetries.get(0).run();
+        Assert.assertEquals(2, dispatched.size());
+        dispatched.get(1).getResultCallback().onSuccess(null);
+        callback.await();
+    }
+
+    @Test
+    public void terminationWithdrawsPendingInvitationRetry() throws Exception {
+        retrier = _newRetrier(2);
+        FutureCallback<Void> invitation = _submit(CallAction.CALL, "call1");
+        dispatched.get(0).fail(RETRYABLE);
+        // 重试已交给执行线程但尚未执行时挂断, 重试不再发送
+        CallApiTestSupport.awaitTrue(() -> executedRetries.size() == 1);
+
+        _submit(CallAction.CANCEL_CALL, "call1");
+
+        Assert.assertEquals(RtmErrorCode.DUPLICATE_OPERATION, invitation.awaitFailure().getErrorCode());
+        executedRetries.get(0).run();
+        Assert.assertEquals(2, dispatched.size());
+        Assert.assertEquals(CallAction.CANCEL_CALL, dispatched.get(1).getAction());
+    }
+
+    @Test
+    public void terminationOfAnotherCallKeepsRetry() throws Exception {
+        retrier = _newRetrier(2);
+        FutureCallback<Void> invitation = _submit(CallAction.CALL, "call1");
+        dispatched.get(0).fail(RETRYABLE);
+        CallApiTestSupport.awaitTrue(() -> executedRetries.size() == 1);
+
+        _submit(CallAction.CANCEL_CALL, "call2");
+        executedRetries.get(0).run();
+
+        Assert.assertEquals(3, dispatched.size());
+        dispatched.get(2).getResultCallback().onSuccess(null);
+        invitation.await();
+    }
+
+    @Test
+    public void rejectedRetryFails() throws Exception {
+        retrier = _newRetrier(2);
+        isExecutorRejecting = true;
+        FutureCallback<Void> callback = _submit(CallAction.CALL, "call1");
+        dispatched.get(0).fail(RETRYABLE);
+
+        Assert.assertEquals(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                callback.awaitFailure().getErrorCode());
+    }
+
+    @Test
+    public void stopFailsPendingRetries() throws Exception {
+        PublishRetryConfig config = new PublishRetryConfig();
+        config.setInitialBackoffMillis(60000);
+        config.setMaxBackoffMillis(60000);
+        retrier = new PublishRetrier(config, rtmClientPool, dispatched::add, null, null);
+        FutureCallback<Void> callback = _submit(CallAction.CALL, "call1");
+        dispatched.get(0).fail(RETRYABLE);
+
+        retrier.stop();
+
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, callback.awaitFailure().getErrorCode());
+        Assert.assertEquals(1, dispatched.size());
+    }
+
+    @Test
+    public void retryKeepsOrderOnTheLaneOfTheUser() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        AtomicInteger callCount = new AtomicInteger();
+        rtmClient.setInterceptor((published, resultCallback) -> {
+            if (published.getAction() == CallAction.CALL.getValue() && callCount.incrementAndGet() == 1) {
+                resultCallback.onFailure(RETRYABLE);
+                return true;
+            }
+            return false;
+        });
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            PublishRetryConfig retryConfig = new PublishRetryConfig();
+            retryConfig.setInitialBackoffMillis(10);
+            config.setPublishRetryConfig(retryConfig);
+            config.setOrderedExecutionConfig(new OrderedExecutionConfig());
+        });
+        try {
+            FutureCallback<Void> callbackA = new FutureCallback<>();
+            FutureCallback<Void> callbackB = new FutureCallback<>();
+            callApi.call(1, 2, "room", "call1", callbackA, callbackB);
+            callbackA.await();
+            callbackB.await();
+
+            for (RecordingRtmClient.Published published : rtmClient.getPublished()) {
+                Assert.assertTrue(published.threadName, published.threadName.startsWith("callapi-ordered-"));
+            }
+            Assert.assertEquals(3, callCount.get());
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+
+    private PublishRetrier _newRetrier(int maxAttempts) {
+        PublishRetryConfig config = new PublishRetryConfig();
+        config.setMaxAttempts(maxAttempts);
+        config.setInitialBackoffMillis(2);
+        config.setMaxBackoffMillis(2);
+        return new PublishRetrier(config, rtmClientPool, dispatched::add, (task, attempt) -> {
+            if (isExecutorRejecting) {
+                return false;
+            }
+            executedRetries.add(attempt);
+            return true;
+        }, null);
+    }
+
+    private FutureCallback<Void> _submit(CallAction action, String callId) {
+        FutureCallback<Void> callback = new FutureCallback<>();
+        byte[] message = ("{\"message_action\":" + action.getValue() + ",\"callId\":\"" + callId + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        retrier.submit(new PublishTask(rtmClientPool.getMembers().get(0), "2", message, action, callId, callback));
+        return callback;
+    }
+}
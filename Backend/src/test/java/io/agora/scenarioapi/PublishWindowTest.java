@@ -0,0 +1,201 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class PublishWindowTest {
+    private final List<ResultCallback<Void>> heldCallbacks = new ArrayList<>();
+    private RecordingRtmClient rtmClient;
+    private CallApiImpl callApi;
+
+    @After
+    public void tearDown() {
+        if (callApi != null) {
+            callApi.deinitialize(null);
+        }
+        if (rtmClient != null) {
+            rtmClient.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsWhenFullWithoutTimeout() throws Exception {
+        _init(2, 0);
+        FutureCallback<Void> heldA = new FutureCallback<>();
+        FutureCallback<Void> heldB = new FutureCallback<>();
+        callApi.call(1, 2, "room", "call1", heldA, heldB);
+        Assert.assertEquals(2, _heldCount());
+
+        FutureCallback<Void> callbackA = new FutureCallback<>();
+        FutureCallback<Void> callbackB = new FutureCallback<>();
+        callApi.call(3, 4, "room", "call2", callbackA, callbackB);
+
+        Assert.assertEquals(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                callbackA.awaitFailure().getErrorCode());
+        Assert.assertEquals(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                callbackB.awaitFailure().getErrorCode());
+        Assert.assertEquals(2, _heldCount());
+        Assert.assertEquals(2, callApi.getInFlightPublishCount());
+
+        _releaseHeld();
+        heldA.await();
+        heldB.await();
+        Assert.assertEquals(0, callApi.getInFlightPublishCount());
+    }
+
+    @Test
+    public void blocksUntilSlotIsReleased() throws Exception {
+        _init(2, 5000);
+        callApi.call(1, 2, "room", "call1", null, null);
+        Assert.assertEquals(2, _heldCount());
+
+        FutureCallback<Void> callbackA = new FutureCallback<>();
+        FutureCallback<Void> callbackB = new FutureCallback<>();
+        Thread caller = new Thread(() -> callApi.call(3, 4, "room", "call2", callbackA, callbackB));
+        caller.start();
+        Thread.sleep(100);
+        Assert.assertTrue(caller.isAlive());
+        Assert.assertFalse(callbackA.isDone());
+
+        _releaseHeld();
+        caller.join(FutureCallback.TIMEOUT_SECONDS * 1000);
+        Assert.assertFalse(caller.isAlive());
+        CallApiTestSupport.awaitTrue(() -> _heldCount() == 2);
+        _releaseHeld();
+        callbackA.await();
+        callbackB.await();
+        Assert.assertEquals(0, callApi.getInFlightPublishCount());
+    }
+
+    @Test
+    public void failsWhenStillFullAfterTimeout() throws Exception {
+        _init(2, 100);
+        callApi.call(1, 2, "room", "call1", null, null);
+
+        FutureCallback<Void> callbackA = new FutureCallback<>();
+        long startNanos = System.nanoTime();
+        callApi.call(3, 4, "room", "call2", callbackA, null);
+
+        Assert.assertEquals(RtmErrorCode.RTM_ERROR_OPERATION_RATE_EXCEED_LIMITATION,
+                callbackA.awaitFailure().getErrorCode());
+        Assert.assertTrue(System.nanoTime() - startNanos >= 100_000_000L);
+        Assert.assertEquals(2, _heldCount());
+    }
+
+    @Test
+    public void deinitializeWaitsForOutstandingBeforeLogout() throws Exception {
+        _init(0, 0);
+        FutureCallback<Void> callbackA = new FutureCallback<>();
+        FutureCallback<Void> callbackB = new FutureCallback<>();
+        callApi.call(1, 2, "room", "call1", callbackA, callbackB);
+        Assert.assertEquals(1, rtmClient.getEventListenerCount());
+
+        CallApiImpl deinitialized = callApi;
+        callApi = null;
+        Thread deinitializer = new Thread(() -> deinitialized.deinitialize(FutureCallback.TIMEOUT_SECONDS * 1000,
+                null));
+        deinitializer.start();
+        Thread.sleep(100);
+        // 未回调前不 logout
+        Assert.assertTrue(deinitializer.isAlive());
+        Assert.assertEquals(1, rtmClient.getEventListenerCount());
+
+        FutureCallback<Void> rejected = new FutureCallback<>();
+        deinitialized.call(3, 4, "room", "call2", rejected, null);
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, rejected.awaitFailure().getErrorCode());
+
+        _releaseHeld();
+        deinitializer.join(FutureCallback.TIMEOUT_SECONDS * 1000);
+        Assert.assertFalse(deinitializer.isAlive());
+        callbackA.await();
+        callbackB.await();
+        Assert.assertEquals(0, rtmClient.getEventListenerCount());
+    }
+
+    @Test
+    public void deinitializeFailsOutstandingAfterDrainTimeout() throws Exception {
+        _init(0, 0);
+        AtomicInteger reportCount = new AtomicInteger();
+        FutureCallback<Void> callbackA = _counting(reportCount);
+        FutureCallback<Void> callbackB = _counting(reportCount);
+        callApi.call(1, 2, "room", "call1", callbackA, callbackB);
+
+        long startNanos = System.nanoTime();
+        callApi.deinitialize(100, null);
+        CallApiImpl deinitialized = callApi;
+        callApi = null;
+
+        Assert.assertTrue(System.nanoTime() - startNanos >= 100_000_000L);
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, callbackA.awaitFailure().getErrorCode());
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, callbackB.awaitFailure().getErrorCode());
+        Assert.assertEquals(0, deinitialized.getInFlightPublishCount());
+        Assert.assertEquals(0, rtmClient.getEventListenerCount());
+
+        // 迟到的 RTM 回调被忽略
+        _releaseHeld();
+        Assert.assertEquals(2, reportCount.get());
+        Assert.assertEquals(0, deinitialized.getInFlightPublishCount());
+    }
+
+    /**
+     * @param maxInFlight 0 to track without bounding
+     */
+    private void _init(int maxInFlight, long acquireTimeoutMillis) throws Exception {
+        rtmClient = new RecordingRtmClient();
+        // 所有消息先不回调
+        rtmClient.setInterceptor((published, resultCallback) -> {
+            synchronized (heldCallbacks) {
+                heldCallbacks.add(resultCallback);
+            }
+            return true;
+        });
+        callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            if (maxInFlight > 0) {
+                PublishWindowConfig publishWindowConfig = new PublishWindowConfig();
+                publishWindowConfig.setMaxInFlight(maxInFlight);
+                publishWindowConfig.setAcquireTimeoutMillis(acquireTimeoutMillis);
+                config.setPublishWindowConfig(publishWindowConfig);
+            }
+        });
+    }
+
+    private int _heldCount() {
+        synchronized (heldCallbacks) {
+            return heldCallbacks.size();
+        }
+    }
+
+    private void _releaseHeld() {
+        List<ResultCallback<Void>> callbacks;
+        synchronized (heldCallbacks) {
+            callbacks = new ArrayList<>(heldCallbacks);
+            heldCallbacks.clear();
+        }
+        callbacks.forEach(resultCallback -> resultCallback.onSuccess(null));
+    }
+
+    private static FutureCallback<Void> _counting(AtomicInteger reportCount) {
+        return new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void responseInfo) {
+                reportCount.incrementAndGet();
+                super.onSuccess(responseInfo);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo errorInfo) {
+                reportCount.incrementAndGet();
+                super.onFailure(errorInfo);
+            }
+        };
+    }
+}
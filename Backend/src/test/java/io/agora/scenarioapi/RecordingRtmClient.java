@@ -0,0 +1,126 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+
+import io.agora.rtm.PublishOptions;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmEventListener;
+
+/**
+ * LocalRtmClient that records the published messages in order, with a hook to fail, hold or throw on
+ * selected publishes, and records the renewed tokens
+ */
+class RecordingRtmClient extends LocalRtmClient {
+    private final List<Published> published = Collections.synchronizedList(new ArrayList<>());
+    private final List<RtmEventListener> eventListeners = new CopyOnWriteArrayList<>();
+    private final List<String> renewedTokens = Collections.synchronizedList(new ArrayList<>());
+    private volatile PublishInterceptor interceptor;
+
+    RecordingRtmClient() {
+        super(new LocalRtmClientConfig());
+    }
+
+    RecordingRtmClient(LocalRtmClientConfig config) {
+        super(config);
+    }
+
+    /**
+     * @param interceptor called before each publish, null to publish everything normally
+     */
+    void setInterceptor(PublishInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    List<Published> getPublished() {
+        synchronized (published) {
+            return new ArrayList<>(published);
+        }
+    }
+
+    List<String> getRenewedTokens() {
+        synchronized (renewedTokens) {
+            return new ArrayList<>(renewedTokens);
+        }
+    }
+
+    int getEventListenerCount() {
+        return eventListeners.size();
+    }
+
+    /**
+     * Deliver onTokenPrivilegeWillExpire to the listeners added to this client
+     */
+    void notifyTokenPrivilegeWillExpire() {
+        for (RtmEventListener listener : eventListeners) {
+            listener.onTokenPrivilegeWillExpire(null);
+        }
+    }
+
+    @Override
+    public void addEventListener(RtmEventListener listener) {
+        eventListeners.add(listener);
+        super.addEventListener(listener);
+    }
+
+    @Override
+    public void removeEventListener(RtmEventListener listener) {
+        eventListeners.remove(listener);
+        super.removeEventListener(listener);
+    }
+
+    @Override
+    public void renewToken(String token, ResultCallback<Void> resultCallback) {
+        renewedTokens.add(token);
+        super.renewToken(token, resultCallback);
+    }
+
+    @Override
+    public void publish(String channelName, byte[] message, PublishOptions options,
+                        ResultCallback<Void> resultCallback) {
+        Published entry = new Published(channelName, JSON.parseObject(message), Thread.currentThread().getName());
+        PublishInterceptor current = interceptor;
+        if (current != null && current.intercept(entry, resultCallback)) {
+            return;
+        }
+        published.add(entry);
+        super.publish(channelName, message, options, resultCallback);
+    }
+
+    interface PublishInterceptor {
+        /**
+         * @return true if the publish was handled, it is then neither recorded nor completed by the client
+         */
+        boolean intercept(Published published, ResultCallback<Void> resultCallback);
+    }
+
+    static class Published {
+        final String channelName;
+        final JSONObject message;
+        final String threadName;
+
+        Published(String channelName, JSONObject message, String threadName) {
+            this.channelName = channelName;
+            this.message = message;
+            this.threadName = threadName;
+        }
+
+        int getAction() {
+            return message.getIntValue("message_action");
+        }
+
+        String getCallId() {
+            return message.getString("callId");
+        }
+
+        @Override
+        public String toString() {
+            return channelName + " " + message;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.agora.scenarioapi;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReportAggregatorTest {
+    @Test
+    public void malformedRecordsAreCounted() {
+        ReportAggregator aggregator = new ReportAggregator(new ReportAggregatorConfig());
+        String[] lines = {
+                "null",
+                "not json",
+                "[1, 2]",
+                "{\"event\":{\"type\":1,\"desc\":\"firstFrame\"},\"label\":{\"ts\":1},\"value\":10}",
+                "{\"category\":\"2_Android_1.0\",\"event\":{\"type\":1,\"desc\":\"firstFrame\"},\"value\":10}",
+                "{\"category\":\"2_Android_1.0\",\"event\":\"{broken\",\"value\":10}",
+                "{\"category\":\"2_Android_1.0\",\"event\":{\"type\":1,\"desc\":\"firstFrame\"},"
+                        + "\"label\":{\"ts\":1},\"value\":\"slow\"}",
+        };
+
+        for (String line : lines) {
+            Assert.assertFalse(line, aggregator.ingest(line));
+        }
+
+        Assert.assertEquals(lines.length, aggregator.getMalformedCount());
+        Assert.assertEquals(0, aggregator.getRecordedCount());
+    }
+
+    @Test
+    public void recordsCostInMilliseconds() {
+        ReportAggregator aggregator = new ReportAggregator(new ReportAggregatorConfig());
+        long now = System.currentTimeMillis();
+
+        Assert.assertTrue(aggregator.ingest(_line("firstFrame", now, 250)));
+        Assert.assertFalse(aggregator.ingest("{\"category\":\"2_Android_1.0\",\"event\":{\"type\":2},\"value\":1}"));
+
+        LatencySnapshot snapshot = aggregator.getCost("firstFrame", "Android", "1.0", now);
+        Assert.assertEquals(1, snapshot.getCount());
+        Assert.assertEquals(250, snapshot.getSum());
+        Assert.assertEquals(1, aggregator.getSkippedCount());
+    }
+
+    @Test
+    public void ingestServerClosesConnectionsBeyondMaxConnections() throws Exception {
+        ReportAggregator aggregator = new ReportAggregator(new ReportAggregatorConfig());
+        ReportIngestServer server = new ReportIngestServer(aggregator, "127.0.0.1", 0, 1);
+        try (Socket first = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream output = first.getOutputStream();
+            output.write((_line("firstFrame", System.currentTimeMillis(), 100) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            CallApiTestSupport.awaitTrue(() -> aggregator.getRecordedCount() == 1);
+
+            try (Socket second = new Socket("127.0.0.1", server.getPort())) {
+                InputStream input = second.getInputStream();
+                Assert.assertEquals(-1, input.read());
+            }
+            Assert.assertEquals(1, server.getRejectedCount());
+
+            server.stop();
+            Assert.assertEquals(-1, first.getInputStream().read());
+            Assert.assertEquals(0, server.getConnectionCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String _line(String step, long timestampMillis, long cost) {
+        return "{\"category\":\"2_Android_1.0\",\"event\":{\"type\":1,\"desc\":\"" + step + "\"},"
+                + "\"label\":{\"ts\":" + timestampMillis + "},\"value\":" + cost + "}";
+    }
+}
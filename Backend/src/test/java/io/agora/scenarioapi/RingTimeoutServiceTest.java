@@ -0,0 +1,99 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingTimeoutServiceTest {
+    private RingTimeoutService service;
+
+    @After
+    public void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    public void timeoutHangsUpOffTheWheelThread() throws Exception {
+        CompletableFuture<String> hangupThread = new CompletableFuture<>();
+        service = new RingTimeoutService(_config(50), session -> hangupThread.complete(
+                Thread.currentThread().getName()), null);
+        CallSession session = _session("call1");
+
+        service.schedule(session);
+
+        Assert.assertEquals("callapi-ring-timeout-hangup",
+                hangupThread.get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals(CallSessionState.TIMEOUT, session.getState());
+        Assert.assertFalse(session.connect(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void connectedSessionDoesNotTimeout() throws Exception {
+        AtomicInteger timeoutCount = new AtomicInteger();
+        service = new RingTimeoutService(_config(50), session -> timeoutCount.incrementAndGet(), null);
+        CallSession session = _session("call1");
+        service.schedule(session);
+
+        Assert.assertTrue(session.connect(System.currentTimeMillis()));
+        Thread.sleep(200);
+
+        Assert.assertEquals(0, timeoutCount.get());
+        Assert.assertEquals(CallSessionState.CONNECTED, session.getState());
+    }
+
+    @Test
+    public void stopCancelsPendingTimeouts() throws Exception {
+        AtomicInteger timeoutCount = new AtomicInteger();
+        service = new RingTimeoutService(_config(100), session -> timeoutCount.incrementAndGet(), null);
+        CallSession session = _session("call1");
+        service.schedule(session);
+
+        service.stop();
+        Thread.sleep(300);
+
+        Assert.assertEquals(0, timeoutCount.get());
+        Assert.assertEquals(CallSessionState.CALLING, session.getState());
+    }
+
+    @Test
+    public void callApiHangsUpBothUsersOnTimeout() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            config.setCallSessionConfig(new CallSessionConfig());
+            config.setRingTimeoutConfig(_config(50));
+        });
+        try {
+            callApi.call(1, 2, "room", "call1", null, null);
+
+            CallApiTestSupport.awaitTrue(() -> rtmClient.getPublished().size() == 4);
+            int hangupCount = 0;
+            for (RecordingRtmClient.Published published : rtmClient.getPublished()) {
+                if (published.getAction() == CallAction.HANGUP.getValue()) {
+                    hangupCount++;
+                }
+            }
+            Assert.assertEquals(2, hangupCount);
+            Assert.assertNull(callApi.getCallSessionRegistry().getSession("call1"));
+            Assert.assertFalse(callApi.getCallSessionRegistry().connect("call1"));
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+
+    private static RingTimeoutConfig _config(long ringTimeoutMillis) {
+        RingTimeoutConfig config = new RingTimeoutConfig();
+        config.setRingTimeoutMillis(ringTimeoutMillis);
+        config.setTickMillis(10);
+        return config;
+    }
+
+    private static CallSession _session(String callId) {
+        return new CallSession(callId, 1, 2, "room", System.currentTimeMillis());
+    }
+}
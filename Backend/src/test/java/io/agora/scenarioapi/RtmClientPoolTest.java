@@ -0,0 +1,228 @@
+package io.agora.scenarioapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.ErrorInfo;
+import io.agora.rtm.ResultCallback;
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class RtmClientPoolTest {
+    private static final int TARGET_COUNT = 100000;
+
+    // 由池创建的客户端, login/logout 的结果由测试决定
+    private final List<HeldClient> createdClients = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void mappingIsStableAcrossPoolsAndMemberOrder() throws Exception {
+        RtmClientPool pool = _externalPool("a", "b", "c", "d");
+        RtmClientPool samePool = _externalPool("a", "b", "c", "d");
+        RtmClientPool reversedPool = _externalPool("d", "c", "b", "a");
+
+        for (int i = 0; i < TARGET_COUNT; i++) {
+            String targetUserId = String.valueOf(i);
+            String owner = _owner(pool, targetUserId);
+            Assert.assertEquals(owner, _owner(pool, targetUserId));
+            Assert.assertEquals(owner, _owner(samePool, targetUserId));
+            Assert.assertEquals(owner, _owner(reversedPool, targetUserId));
+            Assert.assertSame(pool.select(targetUserId), pool.select(RtmClientPool.hash(targetUserId)));
+        }
+    }
+
+    @Test
+    public void spreadsTargetsEvenly() throws Exception {
+        RtmClientPool pool = _externalPool("a", "b", "c", "d");
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < TARGET_COUNT; i++) {
+            counts.merge(_owner(pool, String.valueOf(i)), 1, Integer::sum);
+        }
+
+        // 160 个虚拟节点时每个成员的份额偏差在 15% 以内
+        int expected = TARGET_COUNT / 4;
+        Assert.assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            Assert.assertTrue(counts.toString(), Math.abs(count - expected) < expected * 0.15);
+        }
+    }
+
+    @Test
+    public void addingMemberOnlyMovesTargetsToIt() throws Exception {
+        RtmClientPool pool = _externalPool("a", "b", "c", "d");
+        RtmClientPool grownPool = _externalPool("a", "b", "c", "d", "e");
+
+        int movedCount = 0;
+        for (int i = 0; i < TARGET_COUNT; i++) {
+            String targetUserId = String.valueOf(i);
+            String owner = _owner(grownPool, targetUserId);
+            if (!owner.equals(_owner(pool, targetUserId))) {
+                Assert.assertEquals("e", owner);
+                movedCount++;
+            }
+        }
+
+        // 理想为 1/5
+        Assert.assertTrue(String.valueOf(movedCount), movedCount > TARGET_COUNT * 0.15);
+        Assert.assertTrue(String.valueOf(movedCount), movedCount < TARGET_COUNT * 0.25);
+    }
+
+    @Test
+    public void selectSkipsMembersNotLoggedIn() throws Exception {
+        RtmClientPool pool = _pool(new RtmIdentity("a", "token"), new RtmIdentity("b", "token"),
+                new RtmIdentity("c", "token", new RecordingRtmClient()));
+
+        // 只有外部客户端 c 视为已登录
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("c", _owner(pool, String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void loginCompletesOnceEveryMemberLoggedIn() throws Exception {
+        RtmClientPool pool = _pool(new RtmIdentity("a", "token"), new RtmIdentity("b", "token"),
+                new RtmIdentity("c", "token", new RecordingRtmClient()));
+        FutureCallback<Void> callback = new FutureCallback<>();
+
+        pool.login(callback);
+
+        Assert.assertEquals(2, createdClients.size());
+        createdClients.get(0).takeCallback().onSuccess(null);
+        Assert.assertFalse(callback.isDone());
+        createdClients.get(1).takeCallback().onSuccess(null);
+        callback.await();
+        Assert.assertTrue(pool.getMember("a").isLogined());
+        Assert.assertTrue(pool.getMember("b").isLogined());
+    }
+
+    @Test
+    public void loginReportsFirstFailureAfterAllCompleted() throws Exception {
+        RtmClientPool pool = _pool(new RtmIdentity("a", "token"), new RtmIdentity("b", "token"),
+                new RtmIdentity("c", "token"));
+        FutureCallback<Void> callback = new FutureCallback<>();
+
+        pool.login(callback);
+
+        createdClients.get(0).takeCallback().onFailure(_errorInfo(RtmErrorCode.INVALID_TOKEN));
+        createdClients.get(1).takeCallback().onSuccess(null);
+        Assert.assertFalse(callback.isDone());
+        createdClients.get(2).takeCallback().onFailure(_errorInfo(RtmErrorCode.NOT_LOGIN));
+        Assert.assertEquals(RtmErrorCode.INVALID_TOKEN, callback.awaitFailure().getErrorCode());
+        Assert.assertFalse(pool.getMember("a").isLogined());
+        Assert.assertTrue(pool.getMember("b").isLogined());
+    }
+
+    @Test
+    public void logoutCompletesOnceEveryMemberLoggedOut() throws Exception {
+        RecordingRtmClient externalClient = new RecordingRtmClient();
+        RtmClientPool pool = _pool(new RtmIdentity("a", "token"), new RtmIdentity("b", "token"),
+                new RtmIdentity("c", "token", externalClient));
+        pool.login(null);
+        createdClients.forEach(client -> client.takeCallback().onSuccess(null));
+        FutureCallback<Void> callback = new FutureCallback<>();
+
+        pool.logout(callback);
+
+        Assert.assertFalse(pool.getMember("a").isLogined());
+        Assert.assertEquals(0, externalClient.getEventListenerCount());
+        createdClients.get(0).takeCallback().onSuccess(null);
+        Assert.assertFalse(callback.isDone());
+        createdClients.get(1).takeCallback().onFailure(_errorInfo(RtmErrorCode.NOT_LOGIN));
+        Assert.assertEquals(RtmErrorCode.NOT_LOGIN, callback.awaitFailure().getErrorCode());
+    }
+
+    @Test
+    public void externalOnlyPoolCompletesRightAway() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        RtmClientPool pool = _pool(new RtmIdentity("a", "token", rtmClient));
+        Assert.assertEquals(1, rtmClient.getEventListenerCount());
+
+        FutureCallback<Void> loginCallback = new FutureCallback<>();
+        pool.login(loginCallback);
+        Assert.assertTrue(loginCallback.isDone());
+        loginCallback.await();
+
+        FutureCallback<Void> logoutCallback = new FutureCallback<>();
+        pool.logout(logoutCallback);
+        Assert.assertTrue(logoutCallback.isDone());
+        logoutCallback.await();
+        Assert.assertEquals(0, rtmClient.getEventListenerCount());
+
+        pool.login(null);
+        pool.logout(null);
+    }
+
+    @Test
+    public void externalOnlyCallApiCompletesLoginAndLogout() throws Exception {
+        CallApiConfig config = new CallApiConfig();
+        config.setAppId("test_app_id");
+        config.setUserId("test_server");
+        config.setRtmClient(new RecordingRtmClient());
+        CallApiImpl callApi = new CallApiImpl();
+        FutureCallback<Void> loginCallback = new FutureCallback<>();
+
+        callApi.initialize(config, loginCallback);
+        loginCallback.await();
+        FutureCallback<Void> logoutCallback = new FutureCallback<>();
+        callApi.deinitialize(logoutCallback);
+
+        logoutCallback.await();
+    }
+
+    private RtmClientPool _externalPool(String... userIds) throws Exception {
+        List<RtmIdentity> identities = new ArrayList<>();
+        for (String userId : userIds) {
+            identities.add(new RtmIdentity(userId, "token", new RecordingRtmClient()));
+        }
+        return _pool(identities.toArray(new RtmIdentity[0]));
+    }
+
+    private RtmClientPool _pool(RtmIdentity... identities) throws Exception {
+        CallApiConfig config = new CallApiConfig();
+        config.setAppId("test_app_id");
+        List<RtmIdentity> rtmIdentities = new ArrayList<>();
+        Collections.addAll(rtmIdentities, identities);
+        config.setRtmIdentities(rtmIdentities);
+        return RtmClientPool.create(config, rtmConfig -> {
+            HeldClient rtmClient = new HeldClient();
+            createdClients.add(rtmClient);
+            return rtmClient;
+        });
+    }
+
+    private static String _owner(RtmClientPool pool, String targetUserId) {
+        return pool.select(targetUserId).getIdentity().getUserId();
+    }
+
+    private static ErrorInfo _errorInfo(RtmErrorCode errorCode) {
+        return new ErrorInfo(errorCode, "test", "login");
+    }
+
+    /**
+     * Client whose login and logout results are completed by the test
+     */
+    private static class HeldClient extends RecordingRtmClient {
+        private final List<ResultCallback<Void>> callbacks = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void login(String token, ResultCallback<Void> resultCallback) {
+            callbacks.add(resultCallback);
+        }
+
+        @Override
+        public void logout(ResultCallback<Void> resultCallback) {
+            callbacks.add(resultCallback);
+        }
+
+        ResultCallback<Void> takeCallback() {
+            Assert.assertEquals(1, callbacks.size());
+            return callbacks.remove(0);
+        }
+    }
+}
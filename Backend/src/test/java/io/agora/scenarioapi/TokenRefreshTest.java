@@ -0,0 +1,140 @@
+package io.agora.scenarioapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class TokenRefreshTest {
+    private CallApiImpl callApi;
+
+    @After
+    public void tearDown() {
+        if (callApi != null) {
+            callApi.deinitialize(null);
+        }
+    }
+
+    @Test
+    public void externalClientRefreshesWhenTokenWillExpire() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        AtomicInteger supplied = new AtomicInteger();
+        callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            TokenRefreshConfig tokenRefreshConfig = new TokenRefreshConfig();
+            tokenRefreshConfig.setTokenSupplier(userId -> userId + "_token_" + supplied.incrementAndGet());
+            config.setTokenRefreshConfig(tokenRefreshConfig);
+        });
+
+        rtmClient.notifyTokenPrivilegeWillExpire();
+
+        CallApiTestSupport.awaitTrue(() -> rtmClient.getRenewedTokens().size() == 1);
+        Assert.assertEquals("test_server_token_1", rtmClient.getRenewedTokens().get(0));
+    }
+
+    @Test
+    public void tokenWillExpireAfterDeinitializeIsIgnored() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            TokenRefreshConfig tokenRefreshConfig = new TokenRefreshConfig();
+            tokenRefreshConfig.setTokenSupplier(userId -> "token");
+            config.setTokenRefreshConfig(tokenRefreshConfig);
+        });
+        callApi.deinitialize(null);
+        callApi = null;
+
+        rtmClient.notifyTokenPrivilegeWillExpire();
+
+        Thread.sleep(50);
+        Assert.assertTrue(rtmClient.getRenewedTokens().isEmpty());
+    }
+
+    @Test
+    public void blockingSupplierDoesNotBlockSharedScheduler() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch supplierEntered = new CountDownLatch(1);
+        CountDownLatch supplierReleased = new CountDownLatch(1);
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        try {
+            callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+                TokenRefreshConfig tokenRefreshConfig = new TokenRefreshConfig();
+                tokenRefreshConfig.setTokenSupplier(userId -> {
+                    supplierEntered.countDown();
+                    supplierReleased.await();
+                    return "token";
+                });
+                config.setTokenRefreshConfig(tokenRefreshConfig);
+                config.setScheduler(scheduler);
+            });
+
+            CompletableFuture<Void> refreshed = callApi.getTokenRefresher().refresh("test_server");
+            Assert.assertTrue(supplierEntered.await(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            // 供应方阻塞时共享的 scheduler 仍能执行其他任务
+            scheduler.schedule(() -> null, 0, TimeUnit.MILLISECONDS).get(FutureCallback.TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS);
+            Assert.assertFalse(refreshed.isDone());
+
+            supplierReleased.countDown();
+            refreshed.get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Assert.assertEquals("token", rtmClient.getRenewedTokens().get(0));
+        } finally {
+            supplierReleased.countDown();
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void supplierRunsOnConfiguredExecutor() throws Exception {
+        ExecutorService tokenSupplierExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "test-token-supplier"));
+        AtomicReference<String> supplierThreadName = new AtomicReference<>();
+        try {
+            callApi = CallApiTestSupport.newCallApi(new RecordingRtmClient(), config -> {
+                TokenRefreshConfig tokenRefreshConfig = new TokenRefreshConfig();
+                tokenRefreshConfig.setTokenSupplier(userId -> {
+                    supplierThreadName.set(Thread.currentThread().getName());
+                    return "token";
+                });
+                tokenRefreshConfig.setTokenSupplierExecutor(tokenSupplierExecutor);
+                config.setTokenRefreshConfig(tokenRefreshConfig);
+            });
+
+            callApi.getTokenRefresher().refresh("test_server").get(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            Assert.assertEquals("test-token-supplier", supplierThreadName.get());
+            // 配置的线程池由调用方管理, deinitialize 不关闭
+            callApi.deinitialize(null);
+            callApi = null;
+            Assert.assertFalse(tokenSupplierExecutor.isShutdown());
+        } finally {
+            tokenSupplierExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void renewTokenOfUnknownIdentityFails() throws Exception {
+        callApi = CallApiTestSupport.newCallApi(new RecordingRtmClient(), null);
+        FutureCallback<Void> callback = new FutureCallback<>();
+
+        callApi.renewToken("unknown", "token", callback);
+
+        Assert.assertEquals(RtmErrorCode.INVALID_USER_ID, callback.awaitFailure().getErrorCode());
+    }
+
+    @Test
+    public void renewTokenOfUnknownIdentityWithoutCallback() throws Exception {
+        callApi = CallApiTestSupport.newCallApi(new RecordingRtmClient(), null);
+
+        callApi.renewToken("unknown", "token", null);
+    }
+}
@@ -0,0 +1,70 @@
+package io.agora.scenarioapi;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UserChannelCacheTest {
+    @Test
+    public void returnsChannelOfTheUser() {
+        UserChannelCache cache = new UserChannelCache(4);
+        for (int userId = -10; userId < 1000; userId++) {
+            UserChannelCache.UserChannel channel = cache.get(userId);
+            Assert.assertEquals(userId, channel.userId);
+            Assert.assertEquals(Integer.toString(userId), channel.channelName);
+        }
+    }
+
+    @Test
+    public void disabledCacheStillFormatsChannel() {
+        UserChannelCache cache = new UserChannelCache(0);
+
+        Assert.assertEquals("42", cache.get(42).channelName);
+    }
+
+    @Test
+    public void largeCacheUsesAllEntries() {
+        int size = 1 << 18;
+        UserChannelCache cache = new UserChannelCache(size);
+        UserChannelCache.UserChannel[] first = new UserChannelCache.UserChannel[size];
+        for (int userId = 0; userId < size; userId++) {
+            first[userId] = cache.get(userId);
+        }
+
+        int hitCount = 0;
+        for (int userId = 0; userId < size; userId++) {
+            if (cache.get(userId) == first[userId]) {
+                hitCount++;
+            }
+        }
+
+        // 只用到 2^16 个下标时命中不超过 65536
+        Assert.assertTrue("hitCount:" + hitCount, hitCount > size / 2);
+    }
+
+    @Test
+    public void callAcceptsBoxedAndPrimitiveUserIds() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient, config -> config.setUserChannelCacheSize(4));
+        try {
+            Integer userIdA = 1;
+            FutureCallback<Void> callbackA = new FutureCallback<>();
+            FutureCallback<Void> callbackB = new FutureCallback<>();
+            callApi.call(userIdA, 2, "room", "call1", callbackA, callbackB);
+            callbackA.await();
+            callbackB.await();
+            callApi.hangup(userIdA, "reasonA", 2, "reasonB", "room", "call1", null, null);
+
+            List<RecordingRtmClient.Published> published = rtmClient.getPublished();
+            Assert.assertEquals(4, published.size());
+            Assert.assertEquals("2", published.get(0).channelName);
+            Assert.assertEquals("1", published.get(1).channelName);
+            Assert.assertEquals(2, published.get(1).message.getIntValue("fromUserId"));
+            Assert.assertEquals("1", published.get(3).channelName);
+            Assert.assertEquals("reasonA", published.get(3).message.getString("hangupReason"));
+        } finally {
+            callApi.deinitialize(null);
+        }
+    }
+}
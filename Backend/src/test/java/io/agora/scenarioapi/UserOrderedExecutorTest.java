@@ -0,0 +1,103 @@
+package io.agora.scenarioapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.agora.rtm.RtmConstants.RtmErrorCode;
+
+public class UserOrderedExecutorTest {
+    private final RtmClientPool.Member member =
+            new RtmClientPool.Member(new RtmIdentity("test_server", null, new RecordingRtmClient()), null);
+
+    @Test
+    public void stopRunsQueuedWorkWithinTimeout() throws Exception {
+        UserOrderedExecutor executor = new UserOrderedExecutor(_config(5000));
+        AtomicInteger runCount = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            FutureCallback<Void> callback = new FutureCallback<>();
+            Assert.assertTrue(executor.execute(0, _task(callback), runCount::incrementAndGet));
+        }
+
+        executor.stop();
+
+        Assert.assertEquals(10, runCount.get());
+        Assert.assertFalse(executor.execute(0, runCount::incrementAndGet));
+    }
+
+    @Test
+    public void stopTimeoutFailsQueuedMessages() throws Exception {
+        UserOrderedExecutor executor = new UserOrderedExecutor(_config(50));
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(0, () -> {
+            blocked.countDown();
+            _awaitUninterruptibly(release);
+        });
+        Assert.assertTrue(blocked.await(FutureCallback.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        FutureCallback<Void> queued = new FutureCallback<>();
+        AtomicInteger runCount = new AtomicInteger();
+        executor.execute(0, _task(queued), runCount::incrementAndGet);
+
+        executor.stop();
+        release.countDown();
+
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, queued.awaitFailure().getErrorCode());
+        Assert.assertEquals(0, runCount.get());
+        Assert.assertEquals(0, executor.getQueuedCount());
+    }
+
+    @Test
+    public void deinitializeFailsMessagesStuckInLanes() throws Exception {
+        RecordingRtmClient rtmClient = new RecordingRtmClient();
+        CountDownLatch release = new CountDownLatch(1);
+        // 第一条消息阻塞发送线程, 其后的消息留在队列中
+        rtmClient.setInterceptor((published, resultCallback) -> {
+            _awaitUninterruptibly(release);
+            return false;
+        });
+        CallApiImpl callApi = CallApiTestSupport.newCallApi(rtmClient, config -> {
+            OrderedExecutionConfig orderedExecutionConfig = _config(50);
+            orderedExecutionConfig.setLaneCount(1);
+            config.setOrderedExecutionConfig(orderedExecutionConfig);
+        });
+        FutureCallback<Void> callbackA = new FutureCallback<>();
+        FutureCallback<Void> callbackB = new FutureCallback<>();
+        callApi.call(1, 2, "room", "call1", callbackA, callbackB);
+        CallApiTestSupport.awaitTrue(() -> callApi.getLaneQueuedPublishCount() == 1);
+
+        callApi.deinitialize(null);
+        release.countDown();
+
+        Assert.assertEquals(RtmErrorCode.NOT_INITIALIZED, callbackB.awaitFailure().getErrorCode());
+        callbackA.await();
+        Assert.assertEquals(0, callApi.getInFlightPublishCount());
+    }
+
+    private PublishTask _task(FutureCallback<Void> callback) {
+        return new PublishTask(member, "2", "{}".getBytes(StandardCharsets.UTF_8), CallAction.CALL, "call1",
+                callback);
+    }
+
+    private static OrderedExecutionConfig _config(long stopTimeoutMillis) {
+        OrderedExecutionConfig config = new OrderedExecutionConfig();
+        config.setLaneCount(1);
+        config.setStopTimeoutMillis(stopTimeoutMillis);
+        return config;
+    }
+
+    private static void _awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // shutdownNow 会中断正在发送的线程
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.agora.scenarioapi.sample;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CallApiLoadGeneratorTest {
+    @Test
+    public void rejectsZeroRate() {
+        _assertRejected("--rate=0");
+    }
+
+    @Test
+    public void rejectsInvalidArguments() {
+        _assertRejected("--duration=0");
+        _assertRejected("--hangupDelay=-1");
+        _assertRejected("--failureRate=1.5");
+        _assertRejected("--latency=-1");
+        _assertRejected("--capacity=-1");
+        _assertRejected("rate=10");
+    }
+
+    @Test
+    public void runsShortLoad() throws Exception {
+        CallApiLoadGenerator.main(new String[]{"--rate=200", "--duration=1", "--latency=0", "--jitter=0",
+                "--hangupDelay=10"});
+    }
+
+    private static void _assertRejected(String arg) {
+        try {
+            CallApiLoadGenerator.main(new String[]{arg});
+            Assert.fail("expected rejection of " + arg);
+        } catch (IllegalArgumentException e) {
+            // 参数校验失败
+        } catch (Exception e) {
+            throw new AssertionError("unexpected error for " + arg, e);
+        }
+    }
+}